@@ -1,16 +1,36 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import javax.swing.UIManager;
 
+import controller.BatchCommandController;
 import controller.CommandController;
+import controller.CommandScheduler;
 import controller.ImageCommandController;
 import controller.ImageGUICommandController;
+import controller.ImageLoader;
+import controller.ImageServerController;
+import controller.ImageSaver;
+import model.ConcurrentImageProcessor;
+import model.EvictionPolicy;
 import model.ImageProcessor;
 import model.ImageProcessorImpl;
 import model.ImageProcessorRO;
 import model.ImageProcessorROImpl;
+import model.ImageStore;
+import model.MemoryImageStore;
+import model.ParallelExecutor;
+import model.SpillingImageStore;
 import utility.ImageHelperFactory;
 import view.GraphicalView;
 import view.IGraphicalView;
@@ -21,26 +41,116 @@ import view.View;
  * This is main class. This class represents the entry point of the program.
  */
 public class Main {
+  // the port the server listens on when no port is given
+  private static final int DEFAULT_SERVER_PORT = 8080;
+  // the option that runs each job of a batch or server on a thread of its own
+  private static final String THREAD_PER_JOB = "-thread-per-job";
+  // the option that runs the independent commands of a script concurrently
+  private static final String PARALLEL = "-parallel";
+  // the options that keep the images of a script within a memory budget, in megabytes, by
+  // evicting them in the order of an eviction policy or by spilling them to a directory
+  private static final String MEMORY = "-memory";
+  private static final String EVICTION = "-eviction";
+  private static final String SPILL = "-spill";
+  private static final long MEGABYTE = 1 << 20;
+
   /**
    * It creates a model, view and controller object,
    * then passes the control to the controller.
    */
   public static void main(String[] args) {
-    // Create the model object and view object to pass to the controller
+    // Create the view object to pass to the controller
     // If a script file is passed via command line arguments, pass the script file as the source
-    // of the commands.
-    ImageProcessor model = new ImageProcessorImpl();
+    // of the commands. The model is only created for the text and graphical views, since the
+    // other modes create models of their own.
+    ImageProcessor model = null;
     IView view = new View(System.out);
     if (args.length > 0) {
       if (args[0].equals("-file") && args.length > 1) {
         try {
-          handOver(model, new FileInputStream(args[1]), view);
+          // a script only needs the images it saves, so the rest are computed lazily, and the
+          // saved images are written in the background while the script continues. When asked
+          // to, independent commands of the script also run concurrently.
+          Map<String, String> options = parseOptions(args, 2, PARALLEL);
+          Supplier<ImageStore> stores = createStores(options);
+          InputStream script = new FileInputStream(args[1]);
+          CommandController controller;
+          if (options.containsKey(PARALLEL)) {
+            if (stores != null) {
+              throw new IllegalArgumentException("The memory options cannot be used with "
+                      + PARALLEL);
+            }
+            CommandScheduler scheduler = new CommandScheduler();
+            controller = new ImageCommandController(
+                    new ConcurrentImageProcessor(scheduler.getParallelExecutor()), script, view,
+                    ImageHelperFactory.getInstance(), new ImageLoader(), new ImageSaver(),
+                    scheduler);
+          } else {
+            ImageStore store = stores == null ? new MemoryImageStore() : stores.get();
+            if (store instanceof SpillingImageStore) {
+              // the spilled images are deleted however the script ends
+              SpillingImageStore spillingStore = (SpillingImageStore) store;
+              Runtime.getRuntime().addShutdownHook(new Thread(spillingStore::close));
+            }
+            ImageProcessor scriptModel = new ImageProcessorImpl(new ParallelExecutor(), true,
+                    store);
+            controller = new ImageCommandController(scriptModel, script, view,
+                    ImageHelperFactory.getInstance(), new ImageLoader(), new ImageSaver());
+          }
+          controller.process();
         } catch (FileNotFoundException e) {
           System.out.println("Invalid file");
+        } catch (NumberFormatException e) {
+          System.out.println("Invalid arguments");
+        } catch (IllegalArgumentException e) {
+          System.out.println(e.getMessage());
+        }
+        System.exit(0);
+      } else if (args[0].equals("-batch") && args.length > 3) {
+        // run the script over every image in the input directory
+        try {
+          String script = new String(Files.readAllBytes(Paths.get(args[1])),
+                  StandardCharsets.UTF_8);
+          Map<String, String> options = parseOptions(args, 4, THREAD_PER_JOB);
+          Supplier<ImageStore> stores = createStores(options);
+          CommandController controller = new BatchCommandController(script, Paths.get(args[2]),
+                  Paths.get(args[3]), view, ImageHelperFactory.getInstance(),
+                  options.containsKey(THREAD_PER_JOB),
+                  stores == null ? MemoryImageStore::new : stores);
+          controller.process();
+        } catch (IOException | InvalidPathException e) {
+          System.out.println("Invalid file");
+        } catch (NumberFormatException e) {
+          System.out.println("Invalid arguments");
+        } catch (IllegalArgumentException e) {
+          System.out.println(e.getMessage());
+        }
+        System.exit(0);
+      } else if (args[0].equals("-server")) {
+        // keep running, and run the jobs that are posted to the local server
+        try {
+          int port = DEFAULT_SERVER_PORT;
+          boolean threadPerJob = false;
+          for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(THREAD_PER_JOB)) {
+              threadPerJob = true;
+            } else {
+              port = Integer.parseInt(args[i]);
+            }
+          }
+          new ImageServerController(port, view, ImageHelperFactory.getInstance(), threadPerJob)
+                  .process();
+        } catch (IOException e) {
+          System.out.println("Failed to start the server: " + e.getMessage());
+        } catch (NumberFormatException e) {
+          System.out.println("Invalid arguments");
+        } catch (IllegalArgumentException e) {
+          System.out.println(e.getMessage());
         }
         System.exit(0);
       } else if (args[0].equals("-text")) {
         // open in interactive text mode
+        model = new ImageProcessorImpl();
         handOver(model, System.in, view);
       } else {
         System.out.println("Invalid arguments");
@@ -53,6 +163,9 @@ public class Main {
       System.out.println("Failed to set look and feel");
     }
     // display the graphical view to the user
+    if (model == null) {
+      model = new ImageProcessorImpl();
+    }
     ImageProcessorRO roModel = new ImageProcessorROImpl(model);
     IGraphicalView graphicalView = new GraphicalView("Image Processing Application",
             roModel);
@@ -61,9 +174,71 @@ public class Main {
     controller.process();
   }
 
+  // helper method to read the options from the given index of the arguments, which are the
+  // given flag and the memory options with their values
+  private static Map<String, String> parseOptions(String[] args, int start, String flag) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = start; i < args.length; i++) {
+      if (args[i].equals(flag)) {
+        options.put(flag, "");
+      } else if ((args[i].equals(MEMORY) || args[i].equals(EVICTION) || args[i].equals(SPILL))
+              && i + 1 < args.length) {
+        options.put(args[i], args[++i]);
+      } else {
+        throw new IllegalArgumentException("Invalid arguments");
+      }
+    }
+    return options;
+  }
+
+  // helper method to create the factory of the stores of the images of a script from the given
+  // memory options, or null if there are none, so that images are kept in memory. Spilled
+  // images take a quarter of the maximum heap by default.
+  private static Supplier<ImageStore> createStores(Map<String, String> options) {
+    if (!options.containsKey(MEMORY) && !options.containsKey(SPILL)) {
+      if (options.containsKey(EVICTION)) {
+        throw new IllegalArgumentException(EVICTION + " requires " + MEMORY);
+      }
+      return null;
+    }
+    long budget = options.containsKey(MEMORY)
+            ? Integer.parseInt(options.get(MEMORY)) * MEGABYTE
+            : Runtime.getRuntime().maxMemory() / 4;
+    if (budget < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative");
+    }
+    if (options.containsKey(SPILL)) {
+      if (options.containsKey(EVICTION)) {
+        throw new IllegalArgumentException("Spilled images are not evicted, so " + EVICTION
+                + " cannot be used with " + SPILL);
+      }
+      Path directory;
+      try {
+        directory = Paths.get(options.get(SPILL));
+      } catch (InvalidPathException e) {
+        directory = null;
+      }
+      if (directory == null || !Files.isDirectory(directory)) {
+        throw new IllegalArgumentException("Invalid spill directory: " + options.get(SPILL));
+      }
+      Path spillDirectory = directory;
+      return () -> new SpillingImageStore(budget, spillDirectory);
+    }
+    String policy = options.getOrDefault(EVICTION, "lru");
+    EvictionPolicy evictionPolicy;
+    if (policy.equals("lru")) {
+      evictionPolicy = EvictionPolicy.LEAST_RECENTLY_USED;
+    } else if (policy.equals("lfu")) {
+      evictionPolicy = EvictionPolicy.LEAST_FREQUENTLY_USED;
+    } else {
+      throw new IllegalArgumentException("Invalid eviction policy: " + policy);
+    }
+    return () -> new MemoryImageStore(budget, evictionPolicy);
+  }
+
   private static void handOver(ImageProcessor model, InputStream in, IView view) {
     CommandController controller = new ImageCommandController(model, in, view,
             ImageHelperFactory.getInstance());
     controller.process();
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,33 +1,26 @@
 package controller;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
-import java.util.function.Function;
 
-import controller.commands.Blur;
-import controller.commands.Brighten;
-import controller.commands.Combine;
-import controller.commands.Dither;
-import controller.commands.Flip;
-import controller.commands.Greyscale;
 import controller.commands.Load;
-import controller.commands.Save;
-import controller.commands.Sepia;
-import controller.commands.Sharpen;
-import controller.commands.Split;
 import model.ImageProcessor;
 import utility.IImageHelperFactory;
 
 /**
  * This class represents the abstract base class for concrete implementations of the command
- * controller interface. It contains the common fields and method implementations.
+ * controller interface. It contains the common fields and method implementations. The commands
+ * are created from their input as the commands of a {@link ScriptPlan} are, so that a command
+ * reads its arguments the same way whether it is typed, sent to the server or part of a batch
+ * script.
  */
 public abstract class AbstractCommandController implements CommandController {
   protected final ImageProcessor model;
-  protected final Map<String, Function<Scanner, ImageOperationCommand>> supportedOperations;
   protected final IImageHelperFactory imageHelperFactory;
+  protected final ImageLoader imageLoader;
+  protected final ImageSaver imageSaver;
 
   /**
    * Initialises the fields that are common to the concrete implementations of the command
@@ -39,122 +32,89 @@ public abstract class AbstractCommandController implements CommandController {
    */
   protected AbstractCommandController(ImageProcessor model,
                                       IImageHelperFactory imageHelperFactory) {
-    this.model = model;
-    this.imageHelperFactory = imageHelperFactory;
-    this.supportedOperations = new HashMap<>();
-    addSupportedOperations();
+    this(model, imageHelperFactory, new ImageLoader());
   }
 
-  // helper method to populate the supported operations map
-  private void addSupportedOperations() {
-    this.supportedOperations.put("load", (Scanner sc) -> {
-      ImageOperationCommand command = new Load(sc.nextLine(), sc.nextLine(),
-              this.imageHelperFactory);
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
-
-    this.supportedOperations.put("brighten", (Scanner sc) -> {
-      int increment = sc.nextInt();
-      sc.nextLine();
-      ImageOperationCommand command = new Brighten(increment, sc.nextLine(), sc.nextLine());
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
-
-    this.supportedOperations.put("rgb-combine", (Scanner sc) -> {
-      ImageOperationCommand command = new Combine(sc.nextLine(), sc.nextLine(), sc.nextLine(),
-              sc.nextLine());
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
-
-    this.supportedOperations.put("vertical-flip", (Scanner sc) -> {
-      ImageOperationCommand command = new Flip(sc.nextLine(), sc.nextLine(), 1);
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
-
-    this.supportedOperations.put("horizontal-flip", (Scanner sc) -> {
-      ImageOperationCommand command = new Flip(sc.nextLine(), sc.nextLine(), 0);
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
-
-    this.supportedOperations.put("greyscale", (Scanner sc) -> {
-      String parameter1 = sc.nextLine();
-      String parameter2 = sc.nextLine();
-      ImageOperationCommand command;
-      if (sc.hasNextLine()) {
-        command = new Greyscale(parameter1, parameter2, sc.nextLine());
-      } else {
-        command = new Greyscale(parameter1, parameter2);
-      }
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
-
-    this.supportedOperations.put("rgb-split", (Scanner sc) -> {
-      ImageOperationCommand command = new Split(sc.nextLine(), sc.nextLine(), sc.nextLine(),
-              sc.nextLine());
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
-
-    this.supportedOperations.put("save", (Scanner sc) -> {
-      ImageOperationCommand command = new Save(sc.nextLine(), sc.nextLine(),
-              this.imageHelperFactory);
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
+  /**
+   * Initialises the fields that are common to the concrete implementations of the command
+   * controller interface, with the loader that decodes images concurrently.
+   *
+   * @param model              the model that performs the various image manipulations
+   * @param imageHelperFactory the factory class that provides the utility class based on the
+   *                           image type that is to be modified
+   * @param imageLoader        the loader that decodes the images of independent load commands
+   *                           concurrently
+   * @throws IllegalArgumentException if the image loader is null
+   */
+  protected AbstractCommandController(ImageProcessor model,
+                                      IImageHelperFactory imageHelperFactory,
+                                      ImageLoader imageLoader) throws IllegalArgumentException {
+    this(model, imageHelperFactory, imageLoader, null);
+  }
 
-    this.supportedOperations.put("sepia", (Scanner sc) -> {
-      ImageOperationCommand command = new Sepia(sc.nextLine(), sc.nextLine());
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
+  /**
+   * Initialises the fields that are common to the concrete implementations of the command
+   * controller interface, with the loader that decodes images concurrently and the saver that
+   * writes saved images in the background.
+   *
+   * @param model              the model that performs the various image manipulations
+   * @param imageHelperFactory the factory class that provides the utility class based on the
+   *                           image type that is to be modified
+   * @param imageLoader        the loader that decodes the images of independent load commands
+   *                           concurrently
+   * @param imageSaver         the saver that writes saved images in the background, or null to
+   *                           write them before a save command returns
+   * @throws IllegalArgumentException if the image loader is null
+   */
+  protected AbstractCommandController(ImageProcessor model,
+                                      IImageHelperFactory imageHelperFactory,
+                                      ImageLoader imageLoader, ImageSaver imageSaver)
+          throws IllegalArgumentException {
+    if (imageLoader == null) {
+      throw new IllegalArgumentException("Image loader cannot be null");
+    }
+    this.model = model;
+    this.imageHelperFactory = imageHelperFactory;
+    this.imageLoader = imageLoader;
+    this.imageSaver = imageSaver;
+  }
 
-    this.supportedOperations.put("dither", (Scanner sc) -> {
-      ImageOperationCommand command = new Dither(sc.nextLine(), sc.nextLine());
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
+  // helper method to create a load command from the given input. A file that is still being
+  // saved in the background is written before it is loaded, or its format is recognised.
+  private Load parseLoad(Scanner sc) {
+    String[] arguments = readArguments(sc);
+    if (this.imageSaver != null && arguments.length == 2) {
+      this.imageSaver.awaitFile(arguments[0]);
+    }
+    return (Load) ScriptPlan.createCommand("load", arguments, this.imageHelperFactory,
+            this.imageSaver);
+  }
 
-    this.supportedOperations.put("blur", (Scanner sc) -> {
-      ImageOperationCommand command = new Blur(sc.nextLine(), sc.nextLine());
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
+  // helper method to read the arguments of a command, one per line
+  private static String[] readArguments(Scanner sc) {
+    List<String> arguments = new ArrayList<>();
+    while (sc.hasNextLine()) {
+      arguments.add(sc.nextLine());
+    }
+    return arguments.toArray(new String[0]);
+  }
 
-    this.supportedOperations.put("sharpen", (Scanner sc) -> {
-      ImageOperationCommand command = new Sharpen(sc.nextLine(), sc.nextLine());
-      if (sc.hasNextLine()) {
-        throw new IllegalArgumentException("Invalid command format");
-      }
-      return command;
-    });
+  /**
+   * Creates a load command with the given input via the scanner, and starts decoding its image
+   * on the image loader. Loads that are prepared one after another are decoded concurrently, and
+   * each image is added to the model when its command is executed.
+   *
+   * @param sc the scanner object with the input of the load command
+   * @return the load command
+   * @throws UnsupportedOperationException if the format of the file is not supported
+   * @throws IllegalArgumentException      if the given input is invalid, or does not contain
+   *                                       all the required input to load an image
+   */
+  protected Load prepareLoad(Scanner sc) throws UnsupportedOperationException,
+          IllegalArgumentException {
+    Load command = parseLoad(sc);
+    command.prepare(this.imageLoader);
+    return command;
   }
 
   /**
@@ -164,19 +124,72 @@ public abstract class AbstractCommandController implements CommandController {
    * @param sc      the scanner object with the input to process
    * @return the output on executing the command
    * @throws UnsupportedOperationException if the given command is not supported
-   * @throws NoSuchElementException        if the given command does not contain all the required
-   *                                       input to execute the command
-   * @throws IllegalArgumentException      if the given command contains invalid inputs
+   * @throws IllegalArgumentException      if the given command contains invalid inputs, or does
+   *                                       not contain all the required input to execute the
+   *                                       command
    */
   protected String executeCommand(String command, Scanner sc) throws UnsupportedOperationException,
-          NoSuchElementException, IllegalArgumentException {
-    StringBuilder output = new StringBuilder();
-    Function<Scanner, ImageOperationCommand> commandToExecute =
-            this.supportedOperations.getOrDefault(command, null);
-    if (commandToExecute == null) {
-      throw new UnsupportedOperationException("Invalid command");
+          IllegalArgumentException {
+    return executeCommand(command, parseCommand(command, sc));
+  }
+
+  /**
+   * Creates the given command from its input via the scanner, without executing it.
+   *
+   * @param command the command to create
+   * @param sc      the scanner object with the input of the command
+   * @return the command object
+   * @throws UnsupportedOperationException if the given command is not supported
+   * @throws IllegalArgumentException      if the given command contains invalid inputs, or does
+   *                                       not contain all the required input to execute the
+   *                                       command
+   */
+  protected ImageOperationCommand parseCommand(String command, Scanner sc)
+          throws UnsupportedOperationException, IllegalArgumentException {
+    if (command.equals("load")) {
+      return parseLoad(sc);
+    }
+    return ScriptPlan.createCommand(command, readArguments(sc), this.imageHelperFactory,
+            this.imageSaver);
+  }
+
+  /**
+   * Executes the given command object, which has already been created from its input.
+   *
+   * @param command   the name of the command
+   * @param operation the command to execute
+   * @return the output on executing the command
+   */
+  protected String executeCommand(String command, ImageOperationCommand operation) {
+    return executeCommand(command, operation, this.model);
+  }
+
+  // helper method to get the message that is printed for a command that failed
+  static String getErrorMessage(RuntimeException ex) {
+    if (ex instanceof NoSuchElementException) {
+      return "Invalid command format";
+    } else if (ex instanceof UnsupportedOperationException
+            || ex instanceof IllegalArgumentException) {
+      if (ex.getMessage() == null) {
+        return "Invalid command format";
+      }
+      return ex.getMessage();
     }
-    commandToExecute.apply(sc).execute(this.model);
+    return ex.getMessage();
+  }
+
+  /**
+   * Executes the given command object on the given model.
+   *
+   * @param command   the name of the command
+   * @param operation the command to execute
+   * @param model     the model to execute the command on
+   * @return the output on executing the command
+   */
+  protected String executeCommand(String command, ImageOperationCommand operation,
+                                  ImageProcessor model) {
+    StringBuilder output = new StringBuilder();
+    operation.execute(model);
     output.append("Executed command: ").append(command);
     return output.toString();
   }
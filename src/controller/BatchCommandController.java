@@ -0,0 +1,451 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import model.ImageProcessorImpl;
+import model.ImageStore;
+import model.MemoryImageStore;
+import model.ParallelExecutor;
+import model.SpillingImageStore;
+import utility.IImageHelperFactory;
+import view.IView;
+
+/**
+ * This class represents a controller that runs a script as a template over every image file in
+ * a directory. In the script, {input} stands for the path of the image file, {name} for its name
+ * without the extension and {output} for the output directory, so that a script such as
+ *
+ * <pre>
+ * load {input} image
+ * blur image image-blur
+ * save {output}/{name}-blur.png image-blur
+ * </pre>
+ *
+ * <p>blurs every image in the directory. Each file gets its own model, so files never see each
+ * other's images, and files are processed on a pool of worker threads, each image sequentially.
+ * A file is started only when the estimated size of its images fits in the memory budget
+ * together with the files in progress, so that the memory in use stays bounded however many
+ * files there are. The images of a file are estimated as the size of its decoded image times
+ * the largest number of images the script keeps at once. A file is counted as failed if any of
+ * its commands fails. The script is compiled, and checked, once before any file is processed, so
+ * each file only has the placeholders of the script replaced.
+ *
+ * <p>With a thread per job, each file is processed on a thread of its own, a virtual thread if
+ * the Java runtime supports them, while its images are processed on a confined pool with a
+ * thread per processor. Files that wait for their files to be read or written then do not keep
+ * a worker from processing another file, and the processors are never oversubscribed, so many
+ * more files may be in progress than there are processors.
+ *
+ * <p>The images of each file are kept in a store of their own, which is unbounded by default,
+ * and may instead evict images or spill them to disk when they exceed a memory budget. A store
+ * that spills images is closed, and its files deleted, once its file has been processed.
+ *
+ * <p>At the end, the controller prints the number of files processed, the throughput in images
+ * and in megabytes of input files per second, and the files that failed with their first error.
+ */
+public class BatchCommandController implements CommandController {
+  /**
+   * The placeholder for the path of the image file in a script.
+   */
+  public static final String INPUT = "{input}";
+  /**
+   * The placeholder for the name of the image file, without its extension, in a script.
+   */
+  public static final String NAME = "{name}";
+  /**
+   * The placeholder for the output directory in a script.
+   */
+  public static final String OUTPUT = "{output}";
+
+  // the number of failures that are printed in the summary
+  private static final int MAX_REPORTED_FAILURES = 20;
+  // the memory budget is counted in kilobytes, so that it fits the permits of a semaphore
+  private static final int PERMIT_SIZE = 1024;
+  private static final String SUCCESS_PREFIX = "Executed command: ";
+  // the number of files in progress for each processor, by default, with a thread per job
+  private static final int JOBS_PER_PROCESSOR = 64;
+
+  private final ScriptPlan plan;
+  private final Path inputDirectory;
+  private final Path outputDirectory;
+  private final IView view;
+  private final IImageHelperFactory imageHelperFactory;
+  private final int workers;
+  private final long memoryBudget;
+  private final boolean threadPerJob;
+  private final Supplier<ImageStore> stores;
+
+  /**
+   * Constructs a controller that runs the given script over every image file in the input
+   * directory, with as many workers as there are available processors and half of the maximum
+   * heap as the memory budget.
+   *
+   * @param script             the script, with placeholders for each file
+   * @param inputDirectory     the directory of the image files
+   * @param outputDirectory    the directory to save the results in, which is created if needed
+   * @param view               the view to print the summary to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @throws IllegalArgumentException if an argument is null, or the script quits or is invalid
+   */
+  public BatchCommandController(String script, Path inputDirectory, Path outputDirectory,
+                                IView view, IImageHelperFactory imageHelperFactory)
+          throws IllegalArgumentException {
+    this(script, inputDirectory, outputDirectory, view, imageHelperFactory, false);
+  }
+
+  /**
+   * Constructs a controller that runs the given script over every image file in the input
+   * directory, with half of the maximum heap as the memory budget. With a thread per job, up to
+   * 64 files per available processor are in progress at a time, and otherwise as many files as
+   * there are available processors.
+   *
+   * @param script             the script, with placeholders for each file
+   * @param inputDirectory     the directory of the image files
+   * @param outputDirectory    the directory to save the results in, which is created if needed
+   * @param view               the view to print the summary to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param threadPerJob       true to process each file on a thread of its own, false to
+   *                           process the files on a pool of workers
+   * @throws IllegalArgumentException if an argument is null, or the script quits or is invalid
+   */
+  public BatchCommandController(String script, Path inputDirectory, Path outputDirectory,
+                                IView view, IImageHelperFactory imageHelperFactory,
+                                boolean threadPerJob) throws IllegalArgumentException {
+    this(script, inputDirectory, outputDirectory, view, imageHelperFactory, threadPerJob,
+            MemoryImageStore::new);
+  }
+
+  /**
+   * Constructs a controller that runs the given script over every image file in the input
+   * directory, with half of the maximum heap as the memory budget, and keeps the images of each
+   * file in a store created by the given factory. With a thread per job, up to 64 files per
+   * available processor are in progress at a time, and otherwise as many files as there are
+   * available processors.
+   *
+   * @param script             the script, with placeholders for each file
+   * @param inputDirectory     the directory of the image files
+   * @param outputDirectory    the directory to save the results in, which is created if needed
+   * @param view               the view to print the summary to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param threadPerJob       true to process each file on a thread of its own, false to
+   *                           process the files on a pool of workers
+   * @param stores             the factory of the store of the images of each file
+   * @throws IllegalArgumentException if an argument is null, or the script quits or is invalid
+   */
+  public BatchCommandController(String script, Path inputDirectory, Path outputDirectory,
+                                IView view, IImageHelperFactory imageHelperFactory,
+                                boolean threadPerJob, Supplier<ImageStore> stores)
+          throws IllegalArgumentException {
+    this(script, inputDirectory, outputDirectory, view, imageHelperFactory,
+            Runtime.getRuntime().availableProcessors() * (threadPerJob ? JOBS_PER_PROCESSOR : 1),
+            Runtime.getRuntime().maxMemory() / 2, threadPerJob, stores);
+  }
+
+  /**
+   * Constructs a controller that runs the given script over every image file in the input
+   * directory with the given number of workers and memory budget.
+   *
+   * @param script             the script, with placeholders for each file
+   * @param inputDirectory     the directory of the image files
+   * @param outputDirectory    the directory to save the results in, which is created if needed
+   * @param view               the view to print the summary to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param workers            the number of files that are processed at a time
+   * @param memoryBudget       the number of bytes the decoded images of the files in progress
+   *                           may take. A file larger than the budget is processed alone.
+   * @throws IllegalArgumentException if an argument is null, the script quits or is invalid,
+   *                                  the number of workers is less than 1 or the budget is less
+   *                                  than 1 kB
+   */
+  public BatchCommandController(String script, Path inputDirectory, Path outputDirectory,
+                                IView view, IImageHelperFactory imageHelperFactory, int workers,
+                                long memoryBudget) throws IllegalArgumentException {
+    this(script, inputDirectory, outputDirectory, view, imageHelperFactory, workers,
+            memoryBudget, false);
+  }
+
+  /**
+   * Constructs a controller that runs the given script over every image file in the input
+   * directory with the given number of workers and memory budget, where a worker is a thread of
+   * its own for each file if the controller has a thread per job.
+   *
+   * @param script             the script, with placeholders for each file
+   * @param inputDirectory     the directory of the image files
+   * @param outputDirectory    the directory to save the results in, which is created if needed
+   * @param view               the view to print the summary to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param workers            the number of files that are processed at a time
+   * @param memoryBudget       the number of bytes the decoded images of the files in progress
+   *                           may take. A file larger than the budget is processed alone.
+   * @param threadPerJob       true to process each file on a thread of its own, false to
+   *                           process the files on a pool of workers
+   * @throws IllegalArgumentException if an argument is null, the script quits or is invalid,
+   *                                  the number of workers is less than 1 or the budget is less
+   *                                  than 1 kB
+   */
+  public BatchCommandController(String script, Path inputDirectory, Path outputDirectory,
+                                IView view, IImageHelperFactory imageHelperFactory, int workers,
+                                long memoryBudget, boolean threadPerJob)
+          throws IllegalArgumentException {
+    this(script, inputDirectory, outputDirectory, view, imageHelperFactory, workers,
+            memoryBudget, threadPerJob, MemoryImageStore::new);
+  }
+
+  /**
+   * Constructs a controller that runs the given script over every image file in the input
+   * directory with the given number of workers and memory budget, where a worker is a thread of
+   * its own for each file if the controller has a thread per job, and keeps the images of each
+   * file in a store created by the given factory.
+   *
+   * @param script             the script, with placeholders for each file
+   * @param inputDirectory     the directory of the image files
+   * @param outputDirectory    the directory to save the results in, which is created if needed
+   * @param view               the view to print the summary to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param workers            the number of files that are processed at a time
+   * @param memoryBudget       the number of bytes the decoded images of the files in progress
+   *                           may take. A file larger than the budget is processed alone.
+   * @param threadPerJob       true to process each file on a thread of its own, false to
+   *                           process the files on a pool of workers
+   * @param stores             the factory of the store of the images of each file
+   * @throws IllegalArgumentException if an argument is null, the script quits or is invalid,
+   *                                  the number of workers is less than 1 or the budget is less
+   *                                  than 1 kB
+   */
+  public BatchCommandController(String script, Path inputDirectory, Path outputDirectory,
+                                IView view, IImageHelperFactory imageHelperFactory, int workers,
+                                long memoryBudget, boolean threadPerJob,
+                                Supplier<ImageStore> stores) throws IllegalArgumentException {
+    if (script == null || inputDirectory == null || outputDirectory == null || view == null
+            || imageHelperFactory == null || stores == null) {
+      throw new IllegalArgumentException("Arguments cannot be null");
+    }
+    if (workers < 1) {
+      throw new IllegalArgumentException("Number of workers must be at least 1");
+    }
+    if (memoryBudget < PERMIT_SIZE) {
+      throw new IllegalArgumentException("Memory budget must be at least " + PERMIT_SIZE
+              + " bytes");
+    }
+    this.plan = ScriptPlan.compile(script, imageHelperFactory);
+    this.inputDirectory = inputDirectory;
+    this.outputDirectory = outputDirectory;
+    this.view = view;
+    this.imageHelperFactory = imageHelperFactory;
+    this.workers = workers;
+    this.memoryBudget = memoryBudget;
+    this.threadPerJob = threadPerJob;
+    this.stores = stores;
+  }
+
+  @Override
+  public void process() {
+    try {
+      Files.createDirectories(this.outputDirectory);
+    } catch (IOException e) {
+      view.print("Failed to create the output directory: " + this.outputDirectory);
+      return;
+    }
+    int totalPermits = (int) Math.min(Integer.MAX_VALUE, this.memoryBudget / PERMIT_SIZE);
+    // every image of a file is as large as its decoded image
+    long imageCount = Math.max(1, this.plan.getPeakImageCount());
+    Semaphore memory = new Semaphore(totalPermits);
+    int processors = Runtime.getRuntime().availableProcessors();
+    Semaphore queue;
+    ExecutorService pool;
+    ParallelExecutor executor;
+    ImageLoader loader;
+    if (this.threadPerJob) {
+      // every file in progress has a thread, while images are only processed and decoded by a
+      // thread per processor
+      queue = new Semaphore(this.workers);
+      pool = JobThreads.newThreadPerJobExecutor("batch-job");
+      executor = new ParallelExecutor(processors, ParallelExecutor.DEFAULT_SEQUENTIAL_THRESHOLD,
+              true);
+      loader = new ImageLoader(processors);
+    } else {
+      // at most twice as many files as workers are queued, so that the memory of a file is not
+      // reserved far ahead of the workers
+      queue = new Semaphore(this.workers * 2);
+      pool = Executors.newFixedThreadPool(this.workers);
+      // images are processed sequentially, since the workers already use every processor
+      executor = new ParallelExecutor(1, ParallelExecutor.DEFAULT_SEQUENTIAL_THRESHOLD);
+      loader = new ImageLoader(this.workers);
+    }
+    AtomicInteger processed = new AtomicInteger();
+    AtomicLong bytes = new AtomicLong();
+    List<String> failures = new ArrayList<>();
+    long start = System.nanoTime();
+    List<Path> files;
+    try {
+      files = listImageFiles();
+    } catch (IOException e) {
+      view.print("Failed to read the input directory: " + this.inputDirectory);
+      files = new ArrayList<>();
+    }
+    try {
+      for (Path file : files) {
+        int permits = (int) Math.min(totalPermits,
+                Math.max(1, estimateSize(file) * imageCount / PERMIT_SIZE));
+        queue.acquireUninterruptibly();
+        memory.acquireUninterruptibly(permits);
+        pool.execute(() -> {
+          try {
+            String error = processFile(file, executor, loader);
+            processed.incrementAndGet();
+            bytes.addAndGet(sizeOf(file));
+            if (error != null) {
+              synchronized (failures) {
+                failures.add(file.getFileName() + ": " + error);
+              }
+            }
+          } finally {
+            memory.release(permits);
+            queue.release();
+          }
+        });
+      }
+    } finally {
+      pool.shutdown();
+      awaitTermination(pool);
+    }
+    printSummary(processed.get(), bytes.get(), failures, System.nanoTime() - start);
+  }
+
+  // helper method to list the image files of the input directory. The directory is read in full
+  // before any file is processed, so an output written to the input directory is not processed.
+  private List<Path> listImageFiles() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(this.inputDirectory)) {
+      for (Path file : entries) {
+        if (isImageFile(file)) {
+          files.add(file);
+        }
+      }
+    }
+    return files;
+  }
+
+  // helper method to check whether a file is an image in a supported format
+  private boolean isImageFile(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return false;
+    }
+    try {
+      this.imageHelperFactory.getHelper(file.getFileName().toString());
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  // helper method to run the script over a file with a model of its own. Returns the first
+  // error, or null if every command succeeded.
+  private String processFile(Path file, ParallelExecutor executor, ImageLoader loader) {
+    String fileName = file.getFileName().toString();
+    int extension = fileName.lastIndexOf('.');
+    Map<String, String> values = new LinkedHashMap<>();
+    values.put(INPUT, file.toString());
+    values.put(NAME, extension > 0 ? fileName.substring(0, extension) : fileName);
+    values.put(OUTPUT, this.outputDirectory.toString());
+    ImageStore store = null;
+    try {
+      store = this.stores.get();
+      for (String output : this.plan.run(new ImageProcessorImpl(executor, true, store), values,
+              loader)) {
+        if (!output.startsWith(SUCCESS_PREFIX)) {
+          return output;
+        }
+      }
+    } catch (RuntimeException e) {
+      return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    } finally {
+      if (store instanceof SpillingImageStore) {
+        ((SpillingImageStore) store).close();
+      }
+    }
+    return null;
+  }
+
+  // helper method to estimate the number of bytes the decoded image of a file takes, from its
+  // header for the formats the image readers know, and from its size otherwise
+  private static long estimateSize(Path file) {
+    try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+      Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+      if (readers != null && readers.hasNext()) {
+        ImageReader reader = readers.next();
+        try {
+          reader.setInput(in, true, true);
+          return (long) reader.getWidth(0) * reader.getHeight(0) * Integer.BYTES;
+        } finally {
+          reader.dispose();
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // the size of the file is used instead
+    }
+    // a raw PPM file holds 3 bytes per pixel, while the image takes 4
+    long size = sizeOf(file);
+    return size + size / 3;
+  }
+
+  // helper method to get the size of a file, 0 if it cannot be read
+  private static long sizeOf(Path file) {
+    try {
+      return Files.size(file);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  // helper method to wait for the workers to finish every file
+  private static void awaitTermination(ExecutorService pool) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (pool.awaitTermination(1, TimeUnit.MINUTES)) {
+          break;
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // helper method to print the throughput and the failures
+  private void printSummary(int processed, long bytes, List<String> failures, long nanos) {
+    double seconds = Math.max(nanos, 1) / 1e9;
+    view.print(String.format("Processed %d images in %.2f s: %.1f images/s, %.1f MB/s",
+            processed, seconds, processed / seconds, bytes / 1e6 / seconds));
+    view.print("Failed: " + failures.size());
+    failures.sort(null);
+    for (int i = 0; i < Math.min(failures.size(), MAX_REPORTED_FAILURES); i++) {
+      view.print(failures.get(i));
+    }
+    if (failures.size() > MAX_REPORTED_FAILURES) {
+      view.print("... and " + (failures.size() - MAX_REPORTED_FAILURES) + " more");
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import model.ParallelExecutor;
+
+/**
+ * This class runs the commands of a script on a bounded pool of background threads, each command
+ * as soon as the commands it depends on have finished. A command depends on an earlier command
+ * if it reads something the earlier command writes, or writes something the earlier command
+ * reads or writes. Commands that depend on each other therefore run in the order of the script,
+ * while independent commands, such as different operations on the same image, run concurrently.
+ *
+ * <p>A command whose reads are not known is a barrier: it runs after every command before it,
+ * and every command after it runs after it. The threads are daemon threads that stop when they
+ * have been idle for a while, so an unused scheduler holds no threads.
+ */
+public class CommandScheduler {
+  // the number of seconds an idle thread is kept for
+  private static final long KEEP_ALIVE_SECONDS = 5;
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final ExecutorService executor;
+  private final ParallelExecutor parallelExecutor;
+  private final int threads;
+
+  /**
+   * Constructs a scheduler that runs up to as many commands at a time as there are available
+   * processors.
+   */
+  public CommandScheduler() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a scheduler that runs up to the given number of commands at a time. Commands whose
+   * dependencies have finished wait until a thread is free.
+   *
+   * @param threads the number of commands that are run at a time
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  public CommandScheduler(int threads) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1");
+    }
+    this.threads = threads;
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new SchedulerThreadFactory());
+    pool.allowCoreThreadTimeOut(true);
+    this.executor = pool;
+    this.parallelExecutor = new ParallelExecutor(threads,
+            ParallelExecutor.DEFAULT_SEQUENTIAL_THRESHOLD);
+  }
+
+  /**
+   * Returns the number of commands that are run at a time.
+   *
+   * @return the number of threads of the scheduler
+   */
+  public int getThreadCount() {
+    return this.threads;
+  }
+
+  /**
+   * Returns the executor that the commands run the operations of a model with, which shares the
+   * processors among the rows of the images that are processed at the same time.
+   *
+   * @return the executor for the models of the commands
+   */
+  public ParallelExecutor getParallelExecutor() {
+    return this.parallelExecutor;
+  }
+
+  /**
+   * Starts running the given tasks, each after the earlier tasks it depends on. The returned
+   * futures complete with the results of the tasks, in the order of the given tasks.
+   *
+   * @param tasks the tasks, in the order of the script
+   * @return the future results of the tasks
+   */
+  public List<CompletableFuture<String>> schedule(List<Task> tasks) {
+    List<CompletableFuture<String>> results = new ArrayList<>(tasks.size());
+    // the last task that wrote each key, and the tasks that read it since
+    Map<Object, CompletableFuture<String>> writers = new HashMap<>();
+    Map<Object, List<CompletableFuture<String>>> readers = new HashMap<>();
+    List<CompletableFuture<String>> sinceBarrier = new ArrayList<>();
+    CompletableFuture<String> barrier = null;
+    for (Task task : tasks) {
+      List<CompletableFuture<String>> dependencies = new ArrayList<>();
+      if (barrier != null) {
+        dependencies.add(barrier);
+      }
+      if (task.reads == null) {
+        dependencies.addAll(sinceBarrier);
+      } else {
+        for (Object key : task.reads) {
+          addIfPresent(dependencies, writers.get(key));
+        }
+        for (Object key : task.writes) {
+          addIfPresent(dependencies, writers.get(key));
+          dependencies.addAll(readers.getOrDefault(key, Collections.emptyList()));
+        }
+      }
+      CompletableFuture<String> result = CompletableFuture
+              .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+              .thenApplyAsync(ignored -> task.work.get(), this.executor);
+      if (task.reads == null) {
+        // every later task runs after the barrier, so earlier tasks need not be tracked
+        barrier = result;
+        sinceBarrier.clear();
+        writers.clear();
+        readers.clear();
+      } else {
+        sinceBarrier.add(result);
+        for (Object key : task.reads) {
+          readers.computeIfAbsent(key, k -> new ArrayList<>()).add(result);
+        }
+        for (Object key : task.writes) {
+          writers.put(key, result);
+          readers.remove(key);
+        }
+      }
+      results.add(result);
+    }
+    return results;
+  }
+
+  // helper method to add a dependency if there is one
+  private static void addIfPresent(List<CompletableFuture<String>> dependencies,
+                                   CompletableFuture<String> dependency) {
+    if (dependency != null) {
+      dependencies.add(dependency);
+    }
+  }
+
+  /**
+   * This class represents a command to schedule, with the keys of what it reads and writes, such
+   * as the names of images and the paths of files.
+   */
+  public static class Task {
+    private final Collection<?> reads;
+    private final Collection<?> writes;
+    private final Supplier<String> work;
+
+    /**
+     * Constructs a task that reads and writes the given keys.
+     *
+     * @param reads  the keys the task reads, or null if they are not known
+     * @param writes the keys the task writes
+     * @param work   the work of the task, which returns its result
+     * @throws IllegalArgumentException if the writes or the work are null
+     */
+    public Task(Collection<?> reads, Collection<?> writes, Supplier<String> work)
+            throws IllegalArgumentException {
+      if (writes == null || work == null) {
+        throw new IllegalArgumentException("Arguments cannot be null");
+      }
+      this.reads = reads;
+      this.writes = writes;
+      this.work = work;
+    }
+  }
+
+  /**
+   * This class creates the daemon threads of a scheduler.
+   */
+  private static class SchedulerThreadFactory implements ThreadFactory {
+    private final int pool = POOL_COUNT.incrementAndGet();
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable task) {
+      Thread thread = new Thread(task, "command-scheduler-" + pool + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
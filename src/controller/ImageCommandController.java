@@ -3,9 +3,20 @@ package controller;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import controller.commands.Load;
+import controller.commands.Save;
+import model.ConcurrentImageProcessor;
 import model.ImageProcessor;
 import utility.IImageHelperFactory;
 import view.IView;
@@ -13,10 +24,35 @@ import view.IView;
 /**
  * This class represents a controller that interprets a set of commands to manipulate images and
  * take the appropriate action.
+ *
+ * <p>Load commands that follow one another decode their images concurrently, and the images are
+ * added to the model in the order of the commands, so the result is the same as loading them one
+ * after another. The controller only reads ahead for such commands when the input is not typed
+ * at a terminal, where reading ahead would wait for the user.
+ *
+ * <p>With an image saver, saved images are written in the background while the following
+ * commands run. The errors of saves that failed are printed before the next command, and every
+ * save is finished, and its error printed, at the end of the input and before quitting.
+ *
+ * <p>With a command scheduler, a script that is not typed at a terminal is read up to its next
+ * run or quit command, and its commands are run concurrently in the order of their
+ * dependencies: a command runs after the earlier commands that write the images or files it
+ * reads, and after the earlier commands that read or write the images or files it writes. The
+ * model of the controller is then a {@link ConcurrentImageProcessor}, and each command runs on a
+ * branch of it, which publishes the images the command writes to the model, so that independent
+ * commands do not share a model while they run. A command that only reads images written by one
+ * branch, which no other command has read, runs on that branch, so a chain of commands is
+ * recorded lazily on a single branch: its point operations are computed in a single pass when
+ * its result is saved, and its intermediate images are only computed if they are requested. The
+ * output of the commands is printed in the order of the script, and the resulting images and
+ * files are the same as when the commands are run one after another.
  */
 public class ImageCommandController extends AbstractCommandController {
   private InputStream inputStream;
   private final IView view;
+  private final CommandScheduler commandScheduler;
+  // the model of the controller, if it runs commands on a scheduler
+  private final ConcurrentImageProcessor concurrentModel;
 
   /**
    * Initialises a controller object with the given model, view, input stream and helper factory.
@@ -32,47 +68,329 @@ public class ImageCommandController extends AbstractCommandController {
     super(model, imageHelperFactory);
     this.inputStream = in;
     this.view = view;
+    this.commandScheduler = null;
+    this.concurrentModel = null;
+  }
+
+  /**
+   * Initialises a controller object with the given model, view, input stream, helper factory and
+   * the loader that decodes the images of consecutive load commands concurrently.
+   *
+   * @param model              the model that performs the various image manipulations
+   * @param in                 the input stream
+   * @param view               the view
+   * @param imageHelperFactory the factory class that provides the utility class based on the
+   *                           image type that is to be modified
+   * @param imageLoader        the loader that decodes images concurrently
+   * @throws IllegalArgumentException if the image loader is null
+   */
+  public ImageCommandController(ImageProcessor model, InputStream in, IView view,
+                                IImageHelperFactory imageHelperFactory,
+                                ImageLoader imageLoader) throws IllegalArgumentException {
+    super(model, imageHelperFactory, imageLoader);
+    this.inputStream = in;
+    this.view = view;
+    this.commandScheduler = null;
+    this.concurrentModel = null;
+  }
+
+  /**
+   * Initialises a controller object with the given model, view, input stream, helper factory,
+   * the loader that decodes the images of consecutive load commands concurrently and the saver
+   * that writes saved images in the background.
+   *
+   * @param model              the model that performs the various image manipulations
+   * @param in                 the input stream
+   * @param view               the view
+   * @param imageHelperFactory the factory class that provides the utility class based on the
+   *                           image type that is to be modified
+   * @param imageLoader        the loader that decodes images concurrently
+   * @param imageSaver         the saver that writes saved images in the background
+   * @throws IllegalArgumentException if the image loader or the image saver is null
+   */
+  public ImageCommandController(ImageProcessor model, InputStream in, IView view,
+                                IImageHelperFactory imageHelperFactory, ImageLoader imageLoader,
+                                ImageSaver imageSaver) throws IllegalArgumentException {
+    super(model, imageHelperFactory, imageLoader, imageSaver);
+    if (imageSaver == null) {
+      throw new IllegalArgumentException("Image saver cannot be null");
+    }
+    this.inputStream = in;
+    this.view = view;
+    this.commandScheduler = null;
+    this.concurrentModel = null;
+  }
+
+  /**
+   * Initialises a controller object with the given model, view, input stream, helper factory,
+   * the loader that decodes the images of consecutive load commands concurrently, the saver that
+   * writes saved images in the background and the scheduler that runs the independent commands
+   * of a script concurrently.
+   *
+   * @param model              the model that performs the various image manipulations, on
+   *                           which the commands of a script run concurrently
+   * @param in                 the input stream
+   * @param view               the view
+   * @param imageHelperFactory the factory class that provides the utility class based on the
+   *                           image type that is to be modified
+   * @param imageLoader        the loader that decodes images concurrently
+   * @param imageSaver         the saver that writes saved images in the background
+   * @param commandScheduler   the scheduler that runs the commands of a script concurrently
+   * @throws IllegalArgumentException if the image loader, the image saver or the command
+   *                                  scheduler is null
+   */
+  public ImageCommandController(ConcurrentImageProcessor model, InputStream in, IView view,
+                                IImageHelperFactory imageHelperFactory, ImageLoader imageLoader,
+                                ImageSaver imageSaver, CommandScheduler commandScheduler)
+          throws IllegalArgumentException {
+    super(model, imageHelperFactory, imageLoader, imageSaver);
+    if (imageSaver == null) {
+      throw new IllegalArgumentException("Image saver cannot be null");
+    }
+    if (commandScheduler == null) {
+      throw new IllegalArgumentException("Command scheduler cannot be null");
+    }
+    this.inputStream = in;
+    this.view = view;
+    this.commandScheduler = commandScheduler;
+    this.concurrentModel = model;
   }
 
   @Override
   public void process() {
-    Scanner scanner = new Scanner(this.inputStream);
-    StringBuilder builder = new StringBuilder();
-    String commandStatus;
+    // the stream is kept, since a script that is run replaces the input stream
+    InputStream in = this.inputStream;
+    Scanner scanner = new Scanner(in);
+    if (this.commandScheduler != null && !isInteractive(in)) {
+      processScheduled(scanner);
+      printSaveErrors(true);
+      return;
+    }
+    String[] pending = null;
     // Read from the input stream
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      if (!line.isEmpty() && line.charAt(0) != '#') {
-        // tokenize the line and check for the command, throw an error if it's an invalid command
-        String[] tokens = line.trim().split("\\s+");
-        String command = tokens[0];
-        if (command.equals("quit")) {
-          System.exit(0);
+    while (pending != null || scanner.hasNextLine()) {
+      String[] tokens = pending != null ? pending : tokenize(scanner.nextLine());
+      pending = null;
+      if (tokens == null) {
+        continue;
+      }
+      if (!tokens[0].equals("load")) {
+        processLine(tokens);
+        continue;
+      }
+      // gather the loads that follow, up to the next command
+      List<String[]> loads = new ArrayList<>();
+      loads.add(tokens);
+      while (pending == null && !isInteractive(in) && scanner.hasNextLine()) {
+        String[] next = tokenize(scanner.nextLine());
+        if (next != null && next[0].equals("load")) {
+          loads.add(next);
+        } else {
+          pending = next;
         }
-        // empty the buffer and append the rest of the current user input to the buffer
-        builder.setLength(0);
-        for (int i = 1; i < tokens.length; i++) {
-          builder.append(tokens[i]).append("\n");
+      }
+      processLoads(loads);
+    }
+    printSaveErrors(true);
+  }
+
+  // helper method to read a script up to each run or quit command, and run the commands before
+  // it concurrently. The run or quit command is processed once they have finished.
+  private void processScheduled(Scanner scanner) {
+    List<String[]> commands = new ArrayList<>();
+    while (scanner.hasNextLine()) {
+      String[] tokens = tokenize(scanner.nextLine());
+      if (tokens == null) {
+        continue;
+      }
+      if (tokens[0].equals("run") || tokens[0].equals("quit")) {
+        runScheduled(commands);
+        commands.clear();
+        processLine(tokens);
+      } else {
+        commands.add(tokens);
+      }
+    }
+    runScheduled(commands);
+  }
+
+  // helper method to run the given commands on the scheduler, and print their output in order
+  private void runScheduled(List<String[]> commands) {
+    List<CommandScheduler.Task> tasks = new ArrayList<>();
+    // the branch that last wrote each image, and the images a command has read since
+    Map<String, ConcurrentImageProcessor> branches = new HashMap<>();
+    Set<String> consumed = new HashSet<>();
+    for (String[] tokens : commands) {
+      tasks.add(createTask(tokens, branches, consumed));
+    }
+    for (CompletableFuture<String> result : this.commandScheduler.schedule(tasks)) {
+      String output;
+      try {
+        output = result.join();
+      } catch (CompletionException ex) {
+        if (ex.getCause() instanceof Error) {
+          throw (Error) ex.getCause();
         }
+        throw ex;
+      }
+      printSaveErrors(false);
+      view.print(output);
+    }
+  }
+
+  // helper method to create the task of a tokenized command, with the images and files it reads
+  // and writes, and to choose the branch it runs on. A command that cannot be created only
+  // prints its error.
+  private CommandScheduler.Task createTask(String[] tokens,
+                                           Map<String, ConcurrentImageProcessor> branches,
+                                           Set<String> consumed) {
+    String command = tokens[0];
+    ImageOperationCommand operation;
+    try {
+      operation = parseCommand(command, new Scanner(arguments(tokens)));
+    } catch (RuntimeException ex) {
+      String error = getErrorMessage(ex);
+      return new CommandScheduler.Task(new ArrayList<>(), new ArrayList<>(), () -> error);
+    }
+    List<String> inputImages = operation.getInputImages();
+    if (inputImages == null) {
+      // the command may write any image, so later commands start branches of their own
+      branches.clear();
+      consumed.clear();
+      return new CommandScheduler.Task(null, new ArrayList<>(), () -> {
         try {
-          // Execute the command
-          commandStatus = processCommand(command, new Scanner(builder.toString()));
-          view.print(commandStatus);
-        } catch (NoSuchElementException ex) {
-          view.print("Invalid command format");
-        } catch (UnsupportedOperationException | IllegalArgumentException ex) {
-          if (ex.getMessage() == null) {
-            view.print("Invalid command format");
-          } else {
-            view.print(ex.getMessage());
-          }
+          return executeCommand(command, operation);
         } catch (RuntimeException ex) {
-          view.print(ex.getMessage());
+          return getErrorMessage(ex);
         }
+      });
+    }
+    List<Object> reads = new ArrayList<>(inputImages);
+    List<Object> writes = new ArrayList<>(operation.getOutputImages());
+    if (operation instanceof Load) {
+      reads.add(ImageSaver.keyOf(((Load) operation).getFilePath()));
+    } else if (operation instanceof Save) {
+      writes.add(ImageSaver.keyOf(((Save) operation).getFilePath()));
+    }
+    ConcurrentImageProcessor branch = chooseBranch(inputImages, branches, consumed);
+    if (!(operation instanceof Save)) {
+      consumed.addAll(inputImages);
+    }
+    for (String imageName : operation.getOutputImages()) {
+      branches.put(imageName, branch);
+      consumed.remove(imageName);
+    }
+    return new CommandScheduler.Task(reads, writes, () -> {
+      try {
+        // a load is created again once the commands before it have run, so that a file they
+        // save is written before its format is recognised
+        ImageOperationCommand toExecute = operation instanceof Load
+                ? parseCommand(command, new Scanner(arguments(tokens))) : operation;
+        return executeCommand(command, toExecute, branch);
+      } catch (RuntimeException ex) {
+        return getErrorMessage(ex);
+      }
+    });
+  }
+
+  // helper method to choose the branch of a command that reads the given images. The command
+  // continues the branch that wrote all of them, unless another command has read one of them
+  // since, and starts a branch of its own otherwise. A save does not count as a read, since it
+  // does not continue the chain of the image it saves.
+  private ConcurrentImageProcessor chooseBranch(List<String> inputImages,
+                                                Map<String, ConcurrentImageProcessor> branches,
+                                                Set<String> consumed) {
+    ConcurrentImageProcessor branch = null;
+    for (String imageName : inputImages) {
+      ConcurrentImageProcessor writer = branches.get(imageName);
+      if (writer == null || consumed.contains(imageName)
+              || (branch != null && branch != writer)) {
+        return this.concurrentModel.createBranch();
       }
+      branch = writer;
+    }
+    return branch != null ? branch : this.concurrentModel.createBranch();
+  }
+
+  // helper method to print the errors of the saves that failed in the background, after waiting
+  // for every pending save if required
+  private void printSaveErrors(boolean flush) {
+    if (this.imageSaver == null) {
+      return;
+    }
+    for (String error : flush ? this.imageSaver.flush() : this.imageSaver.pollErrors()) {
+      view.print(error);
     }
   }
 
+  // helper method to tokenize a line of input, null if it is empty or a comment
+  private static String[] tokenize(String line) {
+    if (line.isEmpty() || line.charAt(0) == '#') {
+      return null;
+    }
+    return line.trim().split("\\s+");
+  }
+
+  // helper method to check whether the given input is typed at a terminal
+  private static boolean isInteractive(InputStream in) {
+    return in == System.in && System.console() != null;
+  }
+
+  // helper method to join the arguments of a command, one per line
+  private static String arguments(String[] tokens) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 1; i < tokens.length; i++) {
+      builder.append(tokens[i]).append("\n");
+    }
+    return builder.toString();
+  }
+
+  // helper method to execute a tokenized command, and print its output or error
+  private void processLine(String[] tokens) {
+    String command = tokens[0];
+    printSaveErrors(command.equals("quit"));
+    if (command.equals("quit")) {
+      System.exit(0);
+    }
+    try {
+      // Execute the command
+      view.print(processCommand(command, new Scanner(arguments(tokens))));
+    } catch (RuntimeException ex) {
+      printError(ex);
+    }
+  }
+
+  // helper method to execute consecutive load commands. The images are decoded concurrently,
+  // and added to the model and reported in the order of the commands.
+  private void processLoads(List<String[]> loads) {
+    printSaveErrors(false);
+    Load[] commands = new Load[loads.size()];
+    RuntimeException[] errors = new RuntimeException[loads.size()];
+    for (int i = 0; i < commands.length; i++) {
+      try {
+        commands[i] = prepareLoad(new Scanner(arguments(loads.get(i))));
+      } catch (RuntimeException ex) {
+        errors[i] = ex;
+      }
+    }
+    for (int i = 0; i < commands.length; i++) {
+      if (errors[i] != null) {
+        printError(errors[i]);
+        continue;
+      }
+      try {
+        view.print(executeCommand("load", commands[i]));
+      } catch (RuntimeException ex) {
+        printError(ex);
+      }
+    }
+  }
+
+  // helper method to print the error of a command that failed
+  private void printError(RuntimeException ex) {
+    view.print(getErrorMessage(ex));
+  }
+
   /**
    * Executes the given command with the given input via the scanner.
    *
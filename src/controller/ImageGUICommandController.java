@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Scanner;
 import java.util.function.Function;
 
+import controller.commands.Load;
 import model.ImageProcessor;
 import utility.IImageHelperFactory;
 import utility.ViewMessageType;
@@ -32,6 +33,24 @@ public class ImageGUICommandController extends AbstractCommandController {
     this.view = view;
   }
 
+  /**
+   * Initialises the controller object with the given model, view, helper factory and the loader
+   * that decodes the images to combine concurrently.
+   *
+   * @param model              the model that performs the various image manipulations
+   * @param view               the view to work with
+   * @param imageHelperFactory the factory class that provides the utility class based on the
+   *                           image type that is to be modified
+   * @param imageLoader        the loader that decodes images concurrently
+   * @throws IllegalArgumentException if the image loader is null
+   */
+  public ImageGUICommandController(ImageProcessor model, IGraphicalView view,
+                                   IImageHelperFactory imageHelperFactory,
+                                   ImageLoader imageLoader) throws IllegalArgumentException {
+    super(model, imageHelperFactory, imageLoader);
+    this.view = view;
+  }
+
   @Override
   public void process() {
     // render the view
@@ -144,17 +163,16 @@ public class ImageGUICommandController extends AbstractCommandController {
                 + "operation. Please select three files.");
       }
 
-      // load the given images
-      String parameters = this.format(additionalParameters[0], this.imageName
-              + "-red");
-      Scanner sc = new Scanner(parameters);
-      executeCommand("load", sc);
-      parameters = this.format(additionalParameters[1], this.imageName + "-green");
-      sc = new Scanner(parameters);
-      executeCommand("load", sc);
-      parameters = this.format(additionalParameters[2], this.imageName + "-blue");
-      sc = new Scanner(parameters);
-      executeCommand("load", sc);
+      // decode the given images concurrently, and load them in order
+      String[] names = {this.imageName + "-red", this.imageName + "-green",
+          this.imageName + "-blue"};
+      Load[] loads = new Load[names.length];
+      for (int i = 0; i < names.length; i++) {
+        loads[i] = prepareLoad(new Scanner(this.format(additionalParameters[i], names[i])));
+      }
+      for (Load load : loads) {
+        executeCommand("load", load);
+      }
 
       return this.format(this.imageName, this.imageName + "-red", this.imageName
               + "-green", this.imageName + "-blue");
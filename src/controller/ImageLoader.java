@@ -0,0 +1,91 @@
+package controller;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utility.CustomImage;
+import utility.IImageHelper;
+
+/**
+ * This class decodes image files on a bounded pool of background threads, so that independent
+ * files are read and decoded concurrently. Decoding an image only reads its file, the caller
+ * decides when the decoded image is added to a model. The threads are daemon threads that stop
+ * when they have been idle for a while, so an unused loader holds no threads.
+ */
+public class ImageLoader {
+  // the number of seconds an idle thread is kept for
+  private static final long KEEP_ALIVE_SECONDS = 5;
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final ExecutorService executor;
+  private final int threads;
+
+  /**
+   * Constructs a loader that decodes up to as many images at a time as there are available
+   * processors.
+   */
+  public ImageLoader() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a loader that decodes up to the given number of images at a time. Further images
+   * wait until a thread is free.
+   *
+   * @param threads the number of images that are decoded at a time
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  public ImageLoader(int threads) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1");
+    }
+    this.threads = threads;
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new LoaderThreadFactory());
+    pool.allowCoreThreadTimeOut(true);
+    this.executor = pool;
+  }
+
+  /**
+   * Returns the number of images that are decoded at a time.
+   *
+   * @return the number of threads of the loader
+   */
+  public int getThreadCount() {
+    return this.threads;
+  }
+
+  /**
+   * Starts decoding the file at the given path with the given helper. The returned future
+   * completes with the image, or with the exception that the helper threw.
+   *
+   * @param imageHelper the helper that decodes the file
+   * @param filePath    the path of the file
+   * @param imageName   the name of the image
+   * @return the future image
+   */
+  public Future<CustomImage> submit(IImageHelper imageHelper, String filePath,
+                                    String imageName) {
+    return this.executor.submit(() -> imageHelper.load(filePath, imageName));
+  }
+
+  /**
+   * This class creates the daemon threads of a loader.
+   */
+  private static class LoaderThreadFactory implements ThreadFactory {
+    private final int pool = POOL_COUNT.incrementAndGet();
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable task) {
+      Thread thread = new Thread(task, "image-loader-" + pool + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package controller;
 
+import java.util.Collections;
+import java.util.List;
+
 import model.ImageProcessor;
 
 /**
@@ -13,4 +16,24 @@ public interface ImageOperationCommand {
    * @param model the model object
    */
   void execute(ImageProcessor model);
+
+  /**
+   * Returns the names of the images the command reads from the model. A command whose images are
+   * not known is taken to depend on every command before it, and every command after it is
+   * taken to depend on it.
+   *
+   * @return the names of the images the command reads, or null if they are not known
+   */
+  default List<String> getInputImages() {
+    return null;
+  }
+
+  /**
+   * Returns the names of the images the command adds to the model or replaces in it.
+   *
+   * @return the names of the images the command writes
+   */
+  default List<String> getOutputImages() {
+    return Collections.emptyList();
+  }
 }
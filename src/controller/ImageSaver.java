@@ -0,0 +1,238 @@
+package controller;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utility.CustomImage;
+import utility.IImageHelper;
+
+/**
+ * This class saves images on a bounded pool of background threads, so that the caller can
+ * continue while images are encoded and written. Images are immutable, so an image that is
+ * submitted is saved as it was at that time.
+ *
+ * <p>Saves to the same file are written in the order they are submitted, and
+ * {@link #awaitFile(String)} waits for the pending saves of a file before it is read. At most a
+ * fixed number of saves are pending at a time, beyond which submitting a save waits for the
+ * oldest one, so that images that are waiting to be saved do not pile up in memory. The errors of
+ * failed saves are collected in the order the saves were submitted, and returned by
+ * {@link #pollErrors()} and {@link #flush()}.
+ */
+public class ImageSaver {
+  // the number of seconds an idle thread is kept for
+  private static final long KEEP_ALIVE_SECONDS = 5;
+  // the number of saves that may be pending for each thread
+  private static final int PENDING_PER_THREAD = 2;
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final ExecutorService executor;
+  private final int threads;
+  private final int maxPending;
+  private final Deque<PendingSave> pending;
+
+  /**
+   * Constructs a saver that saves up to as many images at a time as there are available
+   * processors.
+   */
+  public ImageSaver() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a saver that saves up to the given number of images at a time.
+   *
+   * @param threads the number of images that are saved at a time
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  public ImageSaver(int threads) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1");
+    }
+    this.threads = threads;
+    this.maxPending = threads * PENDING_PER_THREAD;
+    this.pending = new ArrayDeque<>();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new SaverThreadFactory());
+    pool.allowCoreThreadTimeOut(true);
+    this.executor = pool;
+  }
+
+  /**
+   * Returns the number of images that are saved at a time.
+   *
+   * @return the number of threads of the saver
+   */
+  public int getThreadCount() {
+    return this.threads;
+  }
+
+  /**
+   * Starts saving the given image to the given file with the given helper. This waits for an
+   * earlier save to the same file, and for the oldest save if too many saves are pending.
+   *
+   * @param imageHelper the helper that encodes the image
+   * @param image       the image to save
+   * @param filePath    the path of the file
+   */
+  public synchronized void submit(IImageHelper imageHelper, CustomImage image,
+                                  String filePath) {
+    awaitFile(filePath);
+    int unfinished = 0;
+    PendingSave oldest = null;
+    for (PendingSave save : this.pending) {
+      if (!save.future.isDone()) {
+        unfinished++;
+        oldest = oldest == null ? save : oldest;
+      }
+    }
+    if (unfinished >= this.maxPending) {
+      await(oldest.future);
+    }
+    Future<?> future = this.executor.submit(() -> {
+      imageHelper.save(image, filePath);
+      return null;
+    });
+    this.pending.addLast(new PendingSave(filePath, future));
+  }
+
+  /**
+   * Waits for the pending saves to the given file, so that the file can be read. The errors of
+   * the saves are still reported.
+   *
+   * @param filePath the path of the file
+   */
+  public synchronized void awaitFile(String filePath) {
+    Object key = keyOf(filePath);
+    for (PendingSave save : this.pending) {
+      if (save.key.equals(key)) {
+        await(save.future);
+      }
+    }
+  }
+
+  /**
+   * Returns the errors of the saves that have failed since the last call, without waiting for
+   * saves that are still in progress. Errors are reported in the order the saves were submitted,
+   * so the error of a save is only reported once the earlier saves have finished.
+   *
+   * @return the error messages of the failed saves
+   */
+  public synchronized List<String> pollErrors() {
+    List<String> errors = new ArrayList<>();
+    Iterator<PendingSave> saves = this.pending.iterator();
+    while (saves.hasNext()) {
+      PendingSave save = saves.next();
+      if (!save.future.isDone()) {
+        break;
+      }
+      saves.remove();
+      String error = save.getError();
+      if (error != null) {
+        errors.add(error);
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * Waits for every pending save to finish, and returns the errors of the saves that failed
+   * since the errors were last returned.
+   *
+   * @return the error messages of the failed saves
+   */
+  public synchronized List<String> flush() {
+    for (PendingSave save : this.pending) {
+      await(save.future);
+    }
+    return pollErrors();
+  }
+
+  // helper method to wait for a save to finish, whether it succeeded or not
+  private static void await(Future<?> future) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        future.get();
+        break;
+      } catch (ExecutionException e) {
+        break;
+      } catch (InterruptedException e) {
+        // the save is still waited for, so that no file is left half written
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // helper method to get the key that identifies a file, so that different paths to the same
+  // file are recognised
+  static Object keyOf(String filePath) {
+    try {
+      return Paths.get(filePath).toAbsolutePath().normalize();
+    } catch (InvalidPathException e) {
+      return filePath;
+    }
+  }
+
+  /**
+   * This class represents a save that was submitted and whose error has not been reported.
+   */
+  private static class PendingSave {
+    private final String filePath;
+    private final Object key;
+    private final Future<?> future;
+
+    private PendingSave(String filePath, Future<?> future) {
+      this.filePath = filePath;
+      this.key = keyOf(filePath);
+      this.future = future;
+    }
+
+    // returns the error of the finished save, null if it succeeded
+    private String getError() {
+      try {
+        this.future.get();
+        return null;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException && cause.getMessage() != null) {
+          return cause.getMessage();
+        }
+        return "Failed to save the image at filepath: " + this.filePath;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return "Interrupted while saving the image at filepath: " + this.filePath;
+      }
+    }
+  }
+
+  /**
+   * This class creates the daemon threads of a saver.
+   */
+  private static class SaverThreadFactory implements ThreadFactory {
+    private final int pool = POOL_COUNT.incrementAndGet();
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable task) {
+      Thread thread = new Thread(task, "image-saver-" + pool + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
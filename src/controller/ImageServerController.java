@@ -0,0 +1,490 @@
+package controller;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.ImageProcessorImpl;
+import model.ParallelExecutor;
+import utility.IImageHelperFactory;
+import view.IView;
+
+/**
+ * This class represents a controller that keeps running as a local server, so that scripts are
+ * run by a JVM that is already started and warmed up instead of a new one for every image. The
+ * server listens on the loopback address only, and accepts jobs as HTTP POST requests to
+ * {@value #PATH}: the body of a request is a script, and the parameters of its query are the
+ * values of the placeholders of the script, so that {@code ?input=a.png} replaces {input}.
+ *
+ * <p>A script may read and write any file the program can, so a request is only accepted with
+ * the token the server prints when it starts, in the {@value #TOKEN_HEADER} header. Listening on
+ * the loopback address alone does not keep out the pages open in a browser on the same machine,
+ * so requests from a page, which carry an Origin header, and requests for a host name other than
+ * a loopback one, which a page may obtain by rebinding its domain name, are rejected with status
+ * 403 as well. Scripts larger than {@value #MAX_SCRIPT_SIZE} bytes are rejected with status 413.
+ *
+ * <p>A job is compiled when it is received, and rejected with status 400 if the script is
+ * invalid. Valid jobs wait in a bounded queue for a pool of workers, and each job runs on a
+ * model of its own. When the queue is full, a job is rejected right away with status 503 and a
+ * Retry-After header, so that clients back off instead of piling up work in the server. The
+ * response of a job lists the output of each of its commands, with status 200 if they all
+ * succeeded and 422 otherwise. The time the job waited in the queue and its total latency are
+ * returned in the response, and printed to the view for every job.
+ *
+ * <p>With a thread per job, every request and job runs on a thread of its own, a virtual thread
+ * if the Java runtime supports them, and the jobs beyond the number of workers wait for their
+ * turn on their threads rather than in the queue of a pool. The images of every job are
+ * processed and decoded on confined pools with a thread per processor, so that many jobs may
+ * wait on their files without taking an operating system thread each, while the processors are
+ * never oversubscribed.
+ */
+public class ImageServerController implements CommandController {
+  /**
+   * The path that jobs are posted to.
+   */
+  public static final String PATH = "/jobs";
+  /**
+   * The header that carries the token of the server.
+   */
+  public static final String TOKEN_HEADER = "X-Job-Token";
+  /**
+   * The largest script, in bytes, that a job may have.
+   */
+  public static final int MAX_SCRIPT_SIZE = 1 << 20;
+
+  // the number of jobs that may wait in the queue for each worker, by default
+  private static final int QUEUED_JOBS_PER_WORKER = 4;
+  // the number of workers for each processor, by default, with a thread per job
+  private static final int JOBS_PER_PROCESSOR = 64;
+  // the number of random bytes of a token
+  private static final int TOKEN_SIZE = 24;
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final HttpServer server;
+  private final IView view;
+  private final IImageHelperFactory imageHelperFactory;
+  private final ExecutorService jobs;
+  private final ExecutorService connections;
+  // a job holds an admission from when it is queued until it has run, and a turn while it runs
+  private final Semaphore admissions;
+  private final Semaphore turns;
+  private final ParallelExecutor executor;
+  private final ImageLoader loader;
+  private final CountDownLatch stopped;
+  private final AtomicLong jobCount;
+  private final String token;
+
+  /**
+   * Constructs a server on the given port of the loopback address, with as many workers as there
+   * are available processors, and a queue of four jobs per worker.
+   *
+   * @param port               the port to listen on, or 0 for any free port
+   * @param view               the view to print the jobs to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @throws IOException              if the server cannot listen on the port
+   * @throws IllegalArgumentException if an argument is null or the port is invalid
+   */
+  public ImageServerController(int port, IView view, IImageHelperFactory imageHelperFactory)
+          throws IOException, IllegalArgumentException {
+    this(port, view, imageHelperFactory, false);
+  }
+
+  /**
+   * Constructs a server on the given port of the loopback address, with a queue of four jobs per
+   * worker. With a thread per job, there are 64 workers per available processor, and otherwise
+   * as many workers as there are available processors.
+   *
+   * @param port               the port to listen on, or 0 for any free port
+   * @param view               the view to print the jobs to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param threadPerJob       true to run each job on a thread of its own, false to run the jobs
+   *                           on a pool of workers
+   * @throws IOException              if the server cannot listen on the port
+   * @throws IllegalArgumentException if an argument is null or the port is invalid
+   */
+  public ImageServerController(int port, IView view, IImageHelperFactory imageHelperFactory,
+                               boolean threadPerJob) throws IOException, IllegalArgumentException {
+    this(port, view, imageHelperFactory, defaultWorkers(threadPerJob),
+            defaultWorkers(threadPerJob) * QUEUED_JOBS_PER_WORKER, threadPerJob);
+  }
+
+  /**
+   * Constructs a server on the given port of the loopback address, with the given number of
+   * workers and the given capacity of the job queue.
+   *
+   * @param port               the port to listen on, or 0 for any free port
+   * @param view               the view to print the jobs to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param workers            the number of jobs that run at a time
+   * @param queueCapacity      the number of jobs that may wait for a worker
+   * @throws IOException              if the server cannot listen on the port
+   * @throws IllegalArgumentException if an argument is null, the port is invalid, the number of
+   *                                  workers is less than 1 or the capacity is negative
+   */
+  public ImageServerController(int port, IView view, IImageHelperFactory imageHelperFactory,
+                               int workers, int queueCapacity)
+          throws IOException, IllegalArgumentException {
+    this(port, view, imageHelperFactory, workers, queueCapacity, false);
+  }
+
+  /**
+   * Constructs a server on the given port of the loopback address, with the given number of
+   * workers and the given capacity of the job queue, where a worker is a thread of its own for
+   * each job if the server has a thread per job.
+   *
+   * @param port               the port to listen on, or 0 for any free port
+   * @param view               the view to print the jobs to
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param workers            the number of jobs that run at a time
+   * @param queueCapacity      the number of jobs that may wait for a worker
+   * @param threadPerJob       true to run each job on a thread of its own, false to run the jobs
+   *                           on a pool of workers
+   * @throws IOException              if the server cannot listen on the port
+   * @throws IllegalArgumentException if an argument is null, the port is invalid, the number of
+   *                                  workers is less than 1 or the capacity is negative
+   */
+  public ImageServerController(int port, IView view, IImageHelperFactory imageHelperFactory,
+                               int workers, int queueCapacity, boolean threadPerJob)
+          throws IOException, IllegalArgumentException {
+    if (view == null || imageHelperFactory == null) {
+      throw new IllegalArgumentException("Arguments cannot be null");
+    }
+    if (port < 0 || port > 0xFFFF) {
+      throw new IllegalArgumentException("Invalid port: " + port);
+    }
+    if (workers < 1) {
+      throw new IllegalArgumentException("Number of workers must be at least 1");
+    }
+    if (queueCapacity < 0) {
+      throw new IllegalArgumentException("Queue capacity cannot be negative");
+    }
+    this.view = view;
+    this.imageHelperFactory = imageHelperFactory;
+    int processors = Runtime.getRuntime().availableProcessors();
+    this.admissions = new Semaphore(workers + queueCapacity);
+    this.turns = new Semaphore(workers);
+    if (threadPerJob) {
+      this.jobs = JobThreads.newThreadPerJobExecutor("image-server-job");
+      this.connections = JobThreads.newThreadPerJobExecutor("image-server-connection");
+      // jobs only wait on their threads, while their images are processed by a thread per
+      // processor
+      this.executor = new ParallelExecutor(processors,
+              ParallelExecutor.DEFAULT_SEQUENTIAL_THRESHOLD, true);
+      this.loader = new ImageLoader(processors);
+    } else {
+      ServerThreadFactory threads = new ServerThreadFactory();
+      this.jobs = Executors.newFixedThreadPool(workers, threads);
+      this.connections = Executors.newCachedThreadPool(threads);
+      // jobs run side by side, so each image is processed on a share of the processors
+      this.executor = new ParallelExecutor(Math.max(1, processors / workers),
+              ParallelExecutor.DEFAULT_SEQUENTIAL_THRESHOLD);
+      this.loader = new ImageLoader(workers);
+    }
+    this.stopped = new CountDownLatch(1);
+    this.jobCount = new AtomicLong();
+    this.token = createToken();
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+            port), 0);
+    this.server.createContext(PATH, this::handle);
+    this.server.setExecutor(this.connections);
+  }
+
+  // helper method to return the default number of workers
+  private static int defaultWorkers(boolean threadPerJob) {
+    return Runtime.getRuntime().availableProcessors() * (threadPerJob ? JOBS_PER_PROCESSOR : 1);
+  }
+
+  // helper method to create a random token, which is different every time a server is created
+  private static String createToken() {
+    byte[] bytes = new byte[TOKEN_SIZE];
+    new SecureRandom().nextBytes(bytes);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  /**
+   * Returns the token that requests must carry in the {@value #TOKEN_HEADER} header.
+   *
+   * @return the token of the server
+   */
+  public String getToken() {
+    return this.token;
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return the port of the server
+   */
+  public int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * Starts the server, and waits until it is stopped.
+   */
+  @Override
+  public void process() {
+    this.server.start();
+    view.print("Listening on http://localhost:" + getPort() + PATH);
+    view.print("Token: " + this.token);
+    boolean interrupted = false;
+    while (this.stopped.getCount() > 0) {
+      try {
+        this.stopped.await();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stops the server. Jobs that are running are finished, while new jobs are no longer accepted.
+   */
+  public void stop() {
+    this.server.stop(0);
+    this.jobs.shutdown();
+    this.connections.shutdown();
+    this.stopped.countDown();
+  }
+
+  // helper method to handle a request, by compiling its job, queueing it and responding with its
+  // output once it has run
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      long received = System.nanoTime();
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        respond(exchange, 405, "Jobs must be posted");
+        return;
+      }
+      String refusal = checkSource(exchange);
+      if (refusal != null) {
+        respond(exchange, 403, refusal);
+        return;
+      }
+      String script = readBody(exchange.getRequestBody());
+      if (script == null) {
+        respond(exchange, 413, "The script is larger than " + MAX_SCRIPT_SIZE + " bytes");
+        return;
+      }
+      ScriptPlan plan;
+      Map<String, String> values;
+      try {
+        plan = ScriptPlan.compile(script, this.imageHelperFactory);
+        values = parseQuery(exchange.getRequestURI().getRawQuery());
+      } catch (IllegalArgumentException e) {
+        respond(exchange, 400, e.getMessage());
+        return;
+      }
+      long id = this.jobCount.incrementAndGet();
+      Future<JobResult> job = null;
+      if (this.admissions.tryAcquire()) {
+        try {
+          job = this.jobs.submit(() -> runJob(plan, values));
+        } catch (RejectedExecutionException e) {
+          // the server is stopping
+          this.admissions.release();
+        }
+      }
+      if (job == null) {
+        view.print("Job " + id + " rejected: the queue is full");
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, 503, "The job queue is full");
+        return;
+      }
+      JobResult result = await(job);
+      double latency = (result.finished - received) / 1e6;
+      double queued = (result.started - received) / 1e6;
+      String summary = String.format("Job %d: %d commands, %d failed in %.1f ms "
+              + "(%.1f ms queued)", id, result.outputs.size(), result.failures, latency, queued);
+      view.print(summary);
+      exchange.getResponseHeaders().set("X-Job-Latency-Ms", String.format("%.1f", latency));
+      exchange.getResponseHeaders().set("X-Job-Queued-Ms", String.format("%.1f", queued));
+      respond(exchange, result.failures == 0 ? 200 : 422,
+              String.join("\n", result.outputs) + "\n" + summary);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  // helper method to run a job on a model of its own, once it has its turn
+  private JobResult runJob(ScriptPlan plan, Map<String, String> values) {
+    List<String> outputs;
+    long started;
+    try {
+      this.turns.acquireUninterruptibly();
+      try {
+        started = System.nanoTime();
+        outputs = plan.run(new ImageProcessorImpl(this.executor, true), values, this.loader);
+      } finally {
+        this.turns.release();
+      }
+    } finally {
+      this.admissions.release();
+    }
+    int failures = 0;
+    for (String output : outputs) {
+      if (!output.startsWith("Executed command: ")) {
+        failures++;
+      }
+    }
+    return new JobResult(outputs, failures, started, System.nanoTime());
+  }
+
+  // helper method to wait for a job, which is finished even if the thread is interrupted
+  private static JobResult await(Future<JobResult> job) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return job.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // helper method to check that a request comes from a local client that knows the token, and
+  // not from a web page. Returns the reason the request is refused, or null if it is accepted.
+  private String checkSource(HttpExchange exchange) {
+    Headers headers = exchange.getRequestHeaders();
+    if (headers.containsKey("Origin")) {
+      return "Requests from web pages are not accepted";
+    }
+    String host = headers.getFirst("Host");
+    if (host == null || !isLoopbackHost(host)) {
+      return "Invalid host: " + host;
+    }
+    String token = headers.getFirst(TOKEN_HEADER);
+    if (token == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+            this.token.getBytes(StandardCharsets.UTF_8))) {
+      return "Missing or invalid " + TOKEN_HEADER + " header";
+    }
+    return null;
+  }
+
+  // helper method to check whether the value of a Host header names the loopback address
+  private static boolean isLoopbackHost(String host) {
+    String name = host;
+    if (name.startsWith("[")) {
+      int end = name.indexOf(']');
+      name = end < 0 ? name : name.substring(0, end + 1);
+    } else if (name.indexOf(':') >= 0) {
+      name = name.substring(0, name.indexOf(':'));
+    }
+    name = name.toLowerCase(Locale.ROOT);
+    return name.equals("localhost") || name.equals("127.0.0.1") || name.equals("[::1]");
+  }
+
+  // helper method to read the body of a request as text, or return null if it is larger than
+  // the largest script
+  private static String readBody(InputStream body) throws IOException {
+    try (InputStream in = body) {
+      byte[] bytes = in.readNBytes(MAX_SCRIPT_SIZE + 1);
+      if (bytes.length > MAX_SCRIPT_SIZE) {
+        return null;
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  // helper method to read the values of the placeholders from the query of a request
+  private static Map<String, String> parseQuery(String query) throws IllegalArgumentException {
+    Map<String, String> values = new LinkedHashMap<>();
+    if (query == null || query.isEmpty()) {
+      return values;
+    }
+    for (String parameter : query.split("&")) {
+      int separator = parameter.indexOf('=');
+      if (separator <= 0) {
+        throw new IllegalArgumentException("Invalid query parameter: " + parameter);
+      }
+      String name = URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8);
+      String value = URLDecoder.decode(parameter.substring(separator + 1),
+              StandardCharsets.UTF_8);
+      values.put("{" + name + "}", value);
+    }
+    return values;
+  }
+
+  // helper method to send a text response
+  private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+    byte[] body = text.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /**
+   * This class represents the outcome of a job, with the times it started and finished.
+   */
+  private static class JobResult {
+    private final List<String> outputs;
+    private final int failures;
+    private final long started;
+    private final long finished;
+
+    private JobResult(List<String> outputs, int failures, long started, long finished) {
+      this.outputs = outputs;
+      this.failures = failures;
+      this.started = started;
+      this.finished = finished;
+    }
+  }
+
+  /**
+   * This class creates the daemon threads of a server.
+   */
+  private static class ServerThreadFactory implements ThreadFactory {
+    private final int pool = POOL_COUNT.incrementAndGet();
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable task) {
+      Thread thread = new Thread(task, "image-server-" + pool + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
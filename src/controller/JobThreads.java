@@ -0,0 +1,73 @@
+package controller;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class creates the executors that run each job on a thread of its own. A job mostly waits,
+ * for its files to be read and written and for its images to be processed on a bounded pool, so
+ * its thread is cheap if it is a virtual thread, which lets many jobs be in progress without
+ * taking an operating system thread each. Virtual threads are used when the Java runtime
+ * supports them, and platform daemon threads otherwise, so that the program still runs on
+ * runtimes without virtual threads.
+ */
+final class JobThreads {
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private JobThreads() {
+  }
+
+  /**
+   * Returns whether the Java runtime supports virtual threads.
+   *
+   * @return true if jobs run on virtual threads, false if they run on platform threads
+   */
+  static boolean hasVirtualThreads() {
+    return createVirtualThreadFactory("job-") != null;
+  }
+
+  /**
+   * Creates an executor that starts a new thread for every job, whose threads are named after
+   * the given prefix. The executor does not queue jobs, so the caller bounds the number of jobs
+   * in progress.
+   *
+   * @param prefix the prefix of the names of the threads
+   * @return the executor
+   */
+  static ExecutorService newThreadPerJobExecutor(String prefix) {
+    ThreadFactory factory = createVirtualThreadFactory(prefix + "-");
+    if (factory != null) {
+      try {
+        return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor",
+                ThreadFactory.class).invoke(null, factory);
+      } catch (ReflectiveOperationException e) {
+        // platform threads are used instead
+      }
+    }
+    int pool = POOL_COUNT.incrementAndGet();
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task, prefix + "-" + pool + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // helper method to create a factory of virtual threads named after the given prefix, or null
+  // if the runtime has no virtual threads. The methods are looked up by reflection, since they
+  // are not part of every runtime the program supports.
+  private static ThreadFactory createVirtualThreadFactory(String prefix) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix,
+              1L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // virtual threads are missing, or are a preview feature that is not enabled
+      return null;
+    }
+  }
+}
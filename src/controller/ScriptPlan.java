@@ -0,0 +1,360 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import controller.commands.Blur;
+import controller.commands.Brighten;
+import controller.commands.ColorMatrixTransform;
+import controller.commands.Combine;
+import controller.commands.Dither;
+import controller.commands.Filter;
+import controller.commands.Flip;
+import controller.commands.Greyscale;
+import controller.commands.Load;
+import controller.commands.Save;
+import controller.commands.Sepia;
+import controller.commands.Sharpen;
+import controller.commands.Split;
+import model.ImageProcessor;
+import utility.IImageHelperFactory;
+
+/**
+ * This class represents a script that has been compiled into a plan of commands, so that it can
+ * be run many times, for example once for every image of a directory, without being parsed
+ * again. Compiling a script tokenizes every line, looks up its command and checks its number of
+ * arguments, and reads the arguments that are not names, such as the value to brighten by, the
+ * greyscale component, filter kernels and color matrices, and the format of the files to save.
+ * A script with an invalid line is rejected as a whole, with the number of the line.
+ *
+ * <p>The names and file paths of a script may contain placeholders, such as {input}, that are
+ * replaced with the values given when the plan is run. Running the plan only replaces the
+ * placeholders and creates the command objects. A plan is immutable, so it can be run by several
+ * threads at once.
+ */
+public final class ScriptPlan {
+  private static final String SUCCESS_PREFIX = "Executed command: ";
+  private static final Map<String, StepCompiler> COMPILERS = createCompilers();
+
+  private final List<Step> steps;
+  private final int peakImageCount;
+
+  private ScriptPlan(List<Step> steps) {
+    this.steps = Collections.unmodifiableList(steps);
+    Set<String> imageNames = new HashSet<>();
+    for (Step step : steps) {
+      imageNames.addAll(step.getOutputImages());
+    }
+    this.peakImageCount = imageNames.size();
+  }
+
+  /**
+   * Compiles the given script into a plan. Empty lines and lines starting with '#' are ignored.
+   *
+   * @param script             the script, with one command per line
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @return the plan of the script
+   * @throws IllegalArgumentException if an argument is null, or a line of the script is not a
+   *                                  valid command, which includes the run and quit commands
+   */
+  public static ScriptPlan compile(String script, IImageHelperFactory imageHelperFactory)
+          throws IllegalArgumentException {
+    if (script == null || imageHelperFactory == null) {
+      throw new IllegalArgumentException("Arguments cannot be null");
+    }
+    List<Step> steps = new ArrayList<>();
+    String[] lines = script.split("\n");
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.isEmpty() || line.charAt(0) == '#') {
+        continue;
+      }
+      String[] tokens = line.split("\\s+");
+      String[] arguments = Arrays.copyOfRange(tokens, 1, tokens.length);
+      try {
+        steps.add(new Step(tokens[0], arguments, getCompiler(tokens[0]).compile(arguments,
+                imageHelperFactory, null)));
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": "
+                + AbstractCommandController.getErrorMessage(e), e);
+      }
+    }
+    return new ScriptPlan(steps);
+  }
+
+  /**
+   * Creates the command with the given name from its arguments, with the same checks as a line of
+   * a script, so that the commands a controller reads one at a time are read as the commands of a
+   * script are.
+   *
+   * @param name               the name of the command
+   * @param arguments          the arguments of the command
+   * @param imageHelperFactory the factory that provides the helper of each image type
+   * @param imageSaver         the saver that writes saved images in the background, or null to
+   *                           write them before a save command returns
+   * @return the command
+   * @throws UnsupportedOperationException if the command is not supported
+   * @throws IllegalArgumentException      if the arguments of the command are invalid
+   */
+  static ImageOperationCommand createCommand(String name, String[] arguments,
+                                             IImageHelperFactory imageHelperFactory,
+                                             ImageSaver imageSaver)
+          throws UnsupportedOperationException, IllegalArgumentException {
+    return getCompiler(name).compile(arguments, imageHelperFactory, imageSaver).apply(arguments);
+  }
+
+  /**
+   * Returns the number of commands of the plan.
+   *
+   * @return the number of commands
+   */
+  public int size() {
+    return this.steps.size();
+  }
+
+  /**
+   * Returns the largest number of images a run of the plan keeps in its model at once. A model
+   * keeps an image until another image is stored under its name, so this is the number of
+   * different names the commands of the plan write, counting names with placeholders once.
+   *
+   * @return the largest number of images in the model during a run
+   */
+  public int getPeakImageCount() {
+    return this.peakImageCount;
+  }
+
+  /**
+   * Runs the commands of the plan on the given model, in order, with the given values in place of
+   * the placeholders of the script. As in a script, the commands after a failed command are still
+   * run. Load commands that follow one another decode their images concurrently on the given
+   * loader, and each load is only created once the commands before it have run, so that the
+   * format of a file saved by them is recognised.
+   *
+   * @param model  the model to run the commands on
+   * @param values the value of each placeholder, such as {input}, by placeholder
+   * @param loader the loader that decodes the images of the load commands
+   * @return the output of each command, which is "Executed command: " followed by the name of
+   *         the command, or the error of the command
+   * @throws IllegalArgumentException if an argument is null
+   */
+  public List<String> run(ImageProcessor model, Map<String, String> values, ImageLoader loader)
+          throws IllegalArgumentException {
+    if (model == null || values == null || loader == null) {
+      throw new IllegalArgumentException("Arguments cannot be null");
+    }
+    int size = this.steps.size();
+    ImageOperationCommand[] commands = new ImageOperationCommand[size];
+    RuntimeException[] errors = new RuntimeException[size];
+    List<String> outputs = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      if (commands[i] == null && errors[i] == null) {
+        // create the loads that follow, so that their images are decoded together
+        int end = i + 1;
+        while (this.steps.get(i).isLoad() && end < size && this.steps.get(end).isLoad()) {
+          end++;
+        }
+        for (int j = i; j < end; j++) {
+          try {
+            commands[j] = this.steps.get(j).bind(values);
+            if (commands[j] instanceof Load) {
+              ((Load) commands[j]).prepare(loader);
+            }
+          } catch (RuntimeException e) {
+            errors[j] = e;
+          }
+        }
+      }
+      try {
+        if (errors[i] != null) {
+          throw errors[i];
+        }
+        commands[i].execute(model);
+        outputs.add(SUCCESS_PREFIX + this.steps.get(i).name);
+      } catch (RuntimeException e) {
+        outputs.add(AbstractCommandController.getErrorMessage(e));
+      }
+      // the command is no longer needed, so that a decoded image is not kept
+      commands[i] = null;
+      errors[i] = null;
+    }
+    return outputs;
+  }
+
+  /**
+   * This interface represents the compilation of the arguments of a command. It checks and reads
+   * the arguments once, and returns the function that creates the command from its arguments
+   * after their placeholders are replaced.
+   */
+  private interface StepCompiler {
+    Function<String[], ImageOperationCommand> compile(String[] arguments,
+                                                      IImageHelperFactory imageHelperFactory,
+                                                      ImageSaver imageSaver);
+  }
+
+  // helper method to get the compiler of the command with the given name
+  private static StepCompiler getCompiler(String name) throws UnsupportedOperationException {
+    StepCompiler compiler = COMPILERS.get(name);
+    if (compiler == null) {
+      throw new UnsupportedOperationException("Invalid command");
+    }
+    return compiler;
+  }
+
+  // helper method to create the compilers of the supported commands
+  private static Map<String, StepCompiler> createCompilers() {
+    Map<String, StepCompiler> compilers = new HashMap<>();
+    compilers.put("load", (arguments, factory, saver) -> {
+      checkArgumentCount(arguments, 2);
+      if (!hasPlaceholder(arguments[0])) {
+        // the format of the file is recognised, or it has a supported extension
+        factory.getLoadHelper(arguments[0]);
+      }
+      return bound -> new Load(bound[0], bound[1], factory);
+    });
+    compilers.put("save", (arguments, factory, saver) -> {
+      checkArgumentCount(arguments, 2);
+      String filePath = arguments[0];
+      if (!hasPlaceholder(filePath.substring(filePath.lastIndexOf('.') + 1))) {
+        factory.getHelper(filePath);
+      }
+      return bound -> new Save(bound[0], bound[1], factory, saver);
+    });
+    compilers.put("brighten", (arguments, factory, saver) -> {
+      checkArgumentCount(arguments, 3);
+      int increment;
+      try {
+        increment = Integer.parseInt(arguments[0]);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid command format");
+      }
+      return bound -> new Brighten(increment, bound[1], bound[2]);
+    });
+    compilers.put("rgb-combine", (arguments, factory, saver) -> {
+      checkArgumentCount(arguments, 4);
+      return bound -> new Combine(bound[0], bound[1], bound[2], bound[3]);
+    });
+    compilers.put("rgb-split", (arguments, factory, saver) -> {
+      checkArgumentCount(arguments, 4);
+      return bound -> new Split(bound[0], bound[1], bound[2], bound[3]);
+    });
+    compilers.put("vertical-flip",
+            imageCommand((image, result) -> new Flip(image, result, 1)));
+    compilers.put("horizontal-flip",
+            imageCommand((image, result) -> new Flip(image, result, 0)));
+    compilers.put("sepia", imageCommand(Sepia::new));
+    compilers.put("dither", imageCommand(Dither::new));
+    compilers.put("blur", imageCommand(Blur::new));
+    compilers.put("sharpen", imageCommand(Sharpen::new));
+    compilers.put("greyscale", (arguments, factory, saver) -> {
+      if (arguments.length == 2) {
+        return bound -> new Greyscale(bound[0], bound[1]);
+      }
+      checkArgumentCount(arguments, 3);
+      String method = arguments[0];
+      if (!Greyscale.isSupportedMethod(method)) {
+        throw new IllegalArgumentException("Invalid command");
+      }
+      return bound -> new Greyscale(method, bound[1], bound[2]);
+    });
+    compilers.put("filter", (arguments, factory, saver) -> {
+      checkArgumentCount(arguments, 3);
+      double[][] kernel = Filter.parseKernel(arguments[0]);
+      return bound -> new Filter(kernel, bound[1], bound[2]);
+    });
+    compilers.put("color-matrix", (arguments, factory, saver) -> {
+      // one or more matrices, followed by the image name and the resulting image name
+      if (arguments.length < 3) {
+        throw new IllegalArgumentException("Invalid command format");
+      }
+      int count = arguments.length - 2;
+      double[][][] matrices = ColorMatrixTransform.parseMatrices(
+              Arrays.asList(arguments).subList(0, count));
+      return bound -> new ColorMatrixTransform(matrices, bound[count], bound[count + 1]);
+    });
+    return compilers;
+  }
+
+  // helper method to compile a command that takes an image name and a resulting image name
+  private static StepCompiler imageCommand(
+          BiFunction<String, String, ImageOperationCommand> constructor) {
+    return (arguments, factory, saver) -> {
+      checkArgumentCount(arguments, 2);
+      return bound -> constructor.apply(bound[0], bound[1]);
+    };
+  }
+
+  // helper method to check that a command has the given number of arguments
+  private static void checkArgumentCount(String[] arguments, int count) {
+    if (arguments.length != count) {
+      throw new IllegalArgumentException("Invalid command format");
+    }
+  }
+
+  // helper method to check whether an argument contains a placeholder
+  private static boolean hasPlaceholder(String argument) {
+    return argument.indexOf('{') >= 0;
+  }
+
+  /**
+   * This class represents a compiled command of a plan, with its arguments and the function that
+   * creates the command once the placeholders of the arguments are replaced.
+   */
+  private static final class Step {
+    private final String name;
+    private final String[] arguments;
+    private final boolean hasPlaceholders;
+    private final Function<String[], ImageOperationCommand> factory;
+
+    private Step(String name, String[] arguments,
+                 Function<String[], ImageOperationCommand> factory) {
+      this.name = name;
+      this.arguments = arguments;
+      this.factory = factory;
+      boolean placeholders = false;
+      for (String argument : arguments) {
+        placeholders = placeholders || hasPlaceholder(argument);
+      }
+      this.hasPlaceholders = placeholders;
+    }
+
+    // returns true if the step loads an image
+    private boolean isLoad() {
+      return this.name.equals("load");
+    }
+
+    // returns the names of the images the step writes, with their placeholders. A load or save
+    // is not created, since creating it checks the format of its file.
+    private List<String> getOutputImages() {
+      if (isLoad()) {
+        return Collections.singletonList(this.arguments[1]);
+      } else if (this.name.equals("save")) {
+        return Collections.emptyList();
+      }
+      return this.factory.apply(this.arguments).getOutputImages();
+    }
+
+    // creates the command of the step with the given values in place of its placeholders
+    private ImageOperationCommand bind(Map<String, String> values) {
+      if (!this.hasPlaceholders) {
+        return this.factory.apply(this.arguments);
+      }
+      String[] bound = this.arguments.clone();
+      for (int i = 0; i < bound.length; i++) {
+        if (hasPlaceholder(bound[i])) {
+          for (Map.Entry<String, String> value : values.entrySet()) {
+            bound[i] = bound[i].replace(value.getKey(), value.getValue());
+          }
+        }
+      }
+      return this.factory.apply(bound);
+    }
+  }
+}
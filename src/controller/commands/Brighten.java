@@ -1,5 +1,8 @@
 package controller.commands;
 
+import java.util.Collections;
+import java.util.List;
+
 import controller.ImageOperationCommand;
 import model.ImageProcessor;
 
@@ -34,4 +37,14 @@ public class Brighten implements ImageOperationCommand {
   public void execute(ImageProcessor model) {
     model.brighten(imageToBrighten, resultingImageName, incrementValue);
   }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageToBrighten);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.resultingImageName);
+  }
 }
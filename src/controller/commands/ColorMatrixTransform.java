@@ -0,0 +1,82 @@
+package controller.commands;
+
+import java.util.Collections;
+import java.util.List;
+
+import controller.ImageOperationCommand;
+import model.ImageProcessor;
+
+/**
+ * This class stores the information required to apply one or more color transformation matrices
+ * to a given image. Each matrix is 3 * 3, with a row for each of the red, green and blue values,
+ * and is given inline or as a file in the same format as a filter kernel. The matrices are
+ * applied in the given order, as a single fused transformation.
+ */
+public class ColorMatrixTransform implements ImageOperationCommand {
+  private final double[][][] matrices;
+  private final String imageName;
+  private final String resultingImageName;
+
+  /**
+   * Constructs a color matrix command object given the matrices, the original image name and the
+   * resulting image name.
+   *
+   * @param matrices           the inline matrices or the paths of the files that contain them,
+   *                           in the order they are to be applied
+   * @param imageName          the name of the image to transform
+   * @param resultingImageName the name of the resulting image
+   * @throws IllegalArgumentException if a matrix cannot be read or contains a weight that is not a
+   *                                  number
+   */
+  public ColorMatrixTransform(List<String> matrices, String imageName, String resultingImageName)
+          throws IllegalArgumentException {
+    this(parseMatrices(matrices), imageName, resultingImageName);
+  }
+
+  /**
+   * Constructs a color matrix command object given matrices that have already been read, the
+   * original image name and the resulting image name.
+   *
+   * @param matrices           the weights of the matrices, in the order they are to be applied
+   * @param imageName          the name of the image to transform
+   * @param resultingImageName the name of the resulting image
+   */
+  public ColorMatrixTransform(double[][][] matrices, String imageName,
+                              String resultingImageName) {
+    this.matrices = matrices;
+    this.imageName = imageName;
+    this.resultingImageName = resultingImageName;
+  }
+
+  /**
+   * Reads the given inline matrices or files of matrices.
+   *
+   * @param matrices the inline matrices or the paths of the files that contain them
+   * @return the weights of the matrices, in the given order
+   * @throws IllegalArgumentException if a matrix cannot be read or contains a weight that is not a
+   *                                  number
+   */
+  public static double[][][] parseMatrices(List<String> matrices)
+          throws IllegalArgumentException {
+    double[][][] parsed = new double[matrices.size()][][];
+    for (int i = 0; i < parsed.length; i++) {
+      parsed[i] = MatrixParser.parse(matrices.get(i), "matrix");
+    }
+    return parsed;
+  }
+
+  @Override
+  public void execute(ImageProcessor model) {
+    model.colorMatrix(this.imageName, this.resultingImageName, this.matrices);
+  }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.resultingImageName);
+  }
+}
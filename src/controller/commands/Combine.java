@@ -1,5 +1,9 @@
 package controller.commands;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import controller.ImageOperationCommand;
 import model.ImageProcessor;
 
@@ -38,4 +42,14 @@ public class Combine implements ImageOperationCommand {
   public void execute(ImageProcessor model) {
     model.combine(this.redImage, this.greenImage, this.blueImage, this.resultingImageName);
   }
+
+  @Override
+  public List<String> getInputImages() {
+    return Arrays.asList(this.redImage, this.greenImage, this.blueImage);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.resultingImageName);
+  }
 }
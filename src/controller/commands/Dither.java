@@ -1,5 +1,8 @@
 package controller.commands;
 
+import java.util.Collections;
+import java.util.List;
+
 import controller.ImageOperationCommand;
 import model.ImageProcessor;
 
@@ -26,4 +29,14 @@ public class Dither implements ImageOperationCommand {
   public void execute(ImageProcessor model) {
     model.dither(this.imageName, this.resultingImageName);
   }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.resultingImageName);
+  }
 }
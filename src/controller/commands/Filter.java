@@ -0,0 +1,76 @@
+package controller.commands;
+
+import java.util.Collections;
+import java.util.List;
+
+import controller.ImageOperationCommand;
+import model.ImageProcessor;
+
+/**
+ * This class stores the information required to filter a given image with a user defined kernel.
+ * The kernel is either given inline, with its rows separated by semicolons and the weights of a
+ * row separated by commas (for example {@code 1,2,1;2,4,2;1,2,1}), or as the path of a text file
+ * that contains one row of the kernel per line, with the weights separated by whitespace or
+ * commas. Empty lines and lines starting with '#' in the file are ignored.
+ */
+public class Filter implements ImageOperationCommand {
+  private final double[][] kernel;
+  private final String imageName;
+  private final String resultingImageName;
+
+  /**
+   * Constructs a filter command object given the kernel, the original image name and the
+   * resulting image name.
+   *
+   * @param kernel             the inline kernel or the path of the file that contains the kernel
+   * @param imageName          the name of the image to filter
+   * @param resultingImageName the name of the resulting image
+   * @throws IllegalArgumentException if the kernel cannot be read or contains a weight that is
+   *                                  not a number
+   */
+  public Filter(String kernel, String imageName, String resultingImageName)
+          throws IllegalArgumentException {
+    this(parseKernel(kernel), imageName, resultingImageName);
+  }
+
+  /**
+   * Constructs a filter command object given a kernel that has already been read, the original
+   * image name and the resulting image name.
+   *
+   * @param kernel             the weights of the kernel
+   * @param imageName          the name of the image to filter
+   * @param resultingImageName the name of the resulting image
+   */
+  public Filter(double[][] kernel, String imageName, String resultingImageName) {
+    this.kernel = kernel;
+    this.imageName = imageName;
+    this.resultingImageName = resultingImageName;
+  }
+
+  /**
+   * Reads the given inline kernel or file of a kernel.
+   *
+   * @param kernel the inline kernel or the path of the file that contains the kernel
+   * @return the weights of the kernel
+   * @throws IllegalArgumentException if the kernel cannot be read or contains a weight that is
+   *                                  not a number
+   */
+  public static double[][] parseKernel(String kernel) throws IllegalArgumentException {
+    return MatrixParser.parse(kernel, "kernel");
+  }
+
+  @Override
+  public void execute(ImageProcessor model) {
+    model.filter(this.imageName, this.resultingImageName, this.kernel);
+  }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.resultingImageName);
+  }
+}
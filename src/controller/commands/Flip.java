@@ -1,5 +1,8 @@
 package controller.commands;
 
+import java.util.Collections;
+import java.util.List;
+
 import controller.ImageOperationCommand;
 import model.ImageProcessor;
 
@@ -34,4 +37,14 @@ public class Flip implements ImageOperationCommand {
   public void execute(ImageProcessor model) {
     model.flip(imageName, resultingImageName, axis);
   }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.resultingImageName);
+  }
 }
@@ -1,6 +1,8 @@
 package controller.commands;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
@@ -47,6 +49,17 @@ public class Greyscale implements ImageOperationCommand {
     setGreyscaleConversionMethods();
   }
 
+  /**
+   * Returns true if the given method to convert an image to a greyscale image is supported.
+   *
+   * @param method the method to convert an image to a greyscale image
+   * @return true if the method is supported
+   */
+  public static boolean isSupportedMethod(String method) {
+    return new Greyscale(method, null, null).supportedGreyscaleConversionMethods
+            .containsKey(method);
+  }
+
   private void setGreyscaleConversionMethods() {
     this.supportedGreyscaleConversionMethods.put("red-component",
         model -> model.visualiseChannel(this.imageName, this.resultingImageName, 2));
@@ -76,4 +89,14 @@ public class Greyscale implements ImageOperationCommand {
     }
     commandToExecute.accept(model);
   }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.resultingImageName);
+  }
 }
@@ -1,7 +1,12 @@
 package controller.commands;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import controller.ImageLoader;
 import controller.ImageOperationCommand;
 import model.ImageProcessor;
 import utility.CustomImage;
@@ -10,12 +15,15 @@ import utility.IImageHelperFactory;
 
 /**
  * This class represents the functionality to load an image from the given filepath and refer to it
- * by the given image name.
+ * by the given image name. The image can be decoded in the background before the command is
+ * executed, so that several files are decoded concurrently, while the model is only updated when
+ * the command is executed.
  */
 public class Load implements ImageOperationCommand {
   private final String filePath;
   private final String imageName;
   private final IImageHelper imageHelper;
+  private Future<CustomImage> image;
 
   /**
    * Constructs a load command object with the given filepath, image name and image helper to
@@ -29,7 +37,20 @@ public class Load implements ImageOperationCommand {
   public Load(String filePath, String imageName, IImageHelperFactory imageHelperFactory) {
     this.filePath = filePath;
     this.imageName = imageName;
-    this.imageHelper = imageHelperFactory.getHelper(this.filePath);
+    this.imageHelper = imageHelperFactory.getLoadHelper(this.filePath);
+  }
+
+  /**
+   * Starts decoding the image on the given loader. The image is added to the model when the
+   * command is executed, which waits for the decoding to complete. Preparing a command more than
+   * once has no effect.
+   *
+   * @param loader the loader to decode the image on
+   */
+  public void prepare(ImageLoader loader) {
+    if (this.image == null) {
+      this.image = loader.submit(this.imageHelper, this.filePath, this.imageName);
+    }
   }
 
   /**
@@ -40,10 +61,47 @@ public class Load implements ImageOperationCommand {
   @Override
   public void execute(ImageProcessor model) {
     try {
-      CustomImage image = imageHelper.load(filePath, imageName);
-      model.loadImage(image);
+      CustomImage loadedImage;
+      if (this.image == null) {
+        loadedImage = imageHelper.load(filePath, imageName);
+      } else {
+        loadedImage = this.image.get();
+      }
+      model.loadImage(loadedImage);
     } catch (IOException e) {
       throw new RuntimeException("Failed to load the image at filepath: " + this.filePath);
+    } catch (ExecutionException e) {
+      // rethrow what decoding the image on the calling thread would have thrown
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException("Failed to load the image at filepath: " + this.filePath);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while loading the image at filepath: "
+              + this.filePath);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns the path of the file the image is loaded from.
+   *
+   * @return the path of the file
+   */
+  public String getFilePath() {
+    return this.filePath;
+  }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+}
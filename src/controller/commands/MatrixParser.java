@@ -0,0 +1,77 @@
+package controller.commands;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class reads the matrices that are given to commands, such as filter kernels and color
+ * transformation matrices. A matrix is either given inline, with its rows separated by
+ * semicolons and the weights of a row separated by commas (for example {@code 1,2,1;2,4,2;1,2,1}),
+ * or as the path of a text file that contains one row of the matrix per line, with the weights
+ * separated by whitespace or commas. Empty lines and lines starting with '#' in the file are
+ * ignored. The shape of the matrix is checked by the model.
+ */
+final class MatrixParser {
+
+  private MatrixParser() {
+    // only static helpers
+  }
+
+  /**
+   * Reads the rows of the matrix from the file at the given path, or from the given inline
+   * matrix if there is no such file.
+   *
+   * @param matrix      the inline matrix or the path of the file that contains the matrix
+   * @param description what the matrix is, used in the error messages
+   * @return the rows of the matrix
+   * @throws IllegalArgumentException if the file cannot be read or the matrix contains a weight
+   *                                  that is not a number
+   */
+  static double[][] parse(String matrix, String description) throws IllegalArgumentException {
+    List<String> rows;
+    Path path = null;
+    try {
+      path = Paths.get(matrix);
+    } catch (InvalidPathException e) {
+      // not a path, so the matrix is inline
+    }
+    if (path != null && Files.isRegularFile(path)) {
+      try {
+        rows = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+          line = line.trim();
+          if (!line.isEmpty() && !line.startsWith("#")) {
+            rows.add(line);
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Failed to read the " + description
+                + " at filepath: " + matrix);
+      }
+    } else {
+      rows = Arrays.asList(matrix.split(";"));
+    }
+    if (rows.isEmpty()) {
+      throw new IllegalArgumentException("The " + description + " cannot be empty");
+    }
+    double[][] weights = new double[rows.size()][];
+    for (int i = 0; i < weights.length; i++) {
+      String[] tokens = rows.get(i).trim().split("[\\s,]+");
+      weights[i] = new double[tokens.length];
+      for (int j = 0; j < tokens.length; j++) {
+        try {
+          weights[i][j] = Double.parseDouble(tokens[j]);
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid " + description + " weight: " + tokens[j]);
+        }
+      }
+    }
+    return weights;
+  }
+}
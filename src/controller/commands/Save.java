@@ -1,8 +1,11 @@
 package controller.commands;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import controller.ImageOperationCommand;
+import controller.ImageSaver;
 import model.ImageProcessor;
 import utility.CustomImage;
 import utility.IImageHelper;
@@ -10,12 +13,14 @@ import utility.IImageHelperFactory;
 
 /**
  * This class represents the functionality to save a CustomImage with the given name,
- * to the given filepath.
+ * to the given filepath. With a saver, the image is written in the background and the command
+ * returns as soon as the image is taken from the model.
  */
 public class Save implements ImageOperationCommand {
   private final String imageName;
   private final String filePath;
   private final IImageHelper imageHelper;
+  private final ImageSaver imageSaver;
 
   /**
    * Constructs a save command object with the given filepath, image name and image helper to
@@ -27,9 +32,26 @@ public class Save implements ImageOperationCommand {
    *                           the file to save
    */
   public Save(String filePath, String imageName, IImageHelperFactory imageHelperFactory) {
+    this(filePath, imageName, imageHelperFactory, null);
+  }
+
+  /**
+   * Constructs a save command object with the given filepath, image name, image helper to save
+   * the file and the saver to write the file in the background.
+   *
+   * @param filePath           the filepath to save the image to
+   * @param imageName          the name of the image that is to be saved
+   * @param imageHelperFactory the imageHelperFactory which gives the image helper class based on
+   *                           the file to save
+   * @param imageSaver         the saver that writes the file in the background, or null to write
+   *                           it before the command returns
+   */
+  public Save(String filePath, String imageName, IImageHelperFactory imageHelperFactory,
+              ImageSaver imageSaver) {
     this.filePath = filePath;
     this.imageName = imageName;
     this.imageHelper = imageHelperFactory.getHelper(filePath);
+    this.imageSaver = imageSaver;
   }
 
   /**
@@ -41,9 +63,32 @@ public class Save implements ImageOperationCommand {
   public void execute(ImageProcessor model) {
     try {
       CustomImage image = model.getImage(this.imageName);
+      if (this.imageSaver != null) {
+        this.imageSaver.submit(this.imageHelper, image, this.filePath);
+        return;
+      }
       this.imageHelper.save(image, this.filePath);
     } catch (IOException e) {
       throw new RuntimeException("Failed to save the image at filepath: " + this.filePath);
     }
   }
+
+  /**
+   * Returns the path of the file the image is saved to.
+   *
+   * @return the path of the file
+   */
+  public String getFilePath() {
+    return this.filePath;
+  }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Collections.emptyList();
+  }
 }
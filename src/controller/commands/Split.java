@@ -1,5 +1,9 @@
 package controller.commands;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import controller.ImageOperationCommand;
 import model.ImageProcessor;
 
@@ -38,4 +42,15 @@ public class Split implements ImageOperationCommand {
   public void execute(ImageProcessor model) {
     model.split(imageName, resultingRedImageName, resultingGreenImageName, resultingBlueImageName);
   }
+
+  @Override
+  public List<String> getInputImages() {
+    return Collections.singletonList(this.imageName);
+  }
+
+  @Override
+  public List<String> getOutputImages() {
+    return Arrays.asList(this.resultingRedImageName, this.resultingGreenImageName,
+            this.resultingBlueImageName);
+  }
 }
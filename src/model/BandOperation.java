@@ -0,0 +1,15 @@
+package model;
+
+/**
+ * This interface represents an operation that processes a horizontal band of rows of an image.
+ * Bands never overlap, so an operation may be run on several bands at the same time.
+ */
+interface BandOperation {
+  /**
+   * Processes the rows from {@code startRow} (inclusive) to {@code endRow} (exclusive).
+   *
+   * @param startRow the first row of the band
+   * @param endRow   the row after the last row of the band
+   */
+  void processRows(int startRow, int endRow);
+}
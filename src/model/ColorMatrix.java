@@ -0,0 +1,110 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a linear color transformation, given by a 3 * 3 matrix. The rows of the
+ * matrix give the new red, green and blue values of a pixel, as weighted sums of its old red,
+ * green and blue values, in that order.
+ *
+ * <p>Color matrices compose: applying one matrix after another is the same as applying their
+ * product, so a chain of color transformations is applied in a single pass over the image. The
+ * intermediate values of a composed transformation are neither rounded nor clamped, so it can
+ * differ from the chained transformations by the rounding of the intermediate images, and by
+ * more where an intermediate value would have been clamped.
+ */
+final class ColorMatrix {
+  /**
+   * The matrix that converts an image to a sepia tone.
+   */
+  static final ColorMatrix SEPIA = new ColorMatrix(new double[][]{{0.393, 0.769, 0.189},
+      {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}});
+
+  /**
+   * The matrix that converts an image to a greyscale image of its luma.
+   */
+  static final ColorMatrix LUMA = new ColorMatrix(new double[][]{{0.216, 0.7152, 0.0722},
+      {0.216, 0.7152, 0.0722}, {0.216, 0.7152, 0.0722}});
+
+  private final double[][] matrix;
+
+  /**
+   * Constructs a color matrix with the given weights.
+   *
+   * @param matrix the 3 * 3 matrix, with a row for each of the red, green and blue values
+   * @throws IllegalArgumentException if the matrix is not 3 * 3 or has a weight that is not a
+   *                                  number
+   */
+  ColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 3) {
+      throw new IllegalArgumentException("Invalid transformation matrix");
+    }
+    this.matrix = new double[3][];
+    for (int row = 0; row < 3; row++) {
+      if (matrix[row] == null || matrix[row].length != 3) {
+        throw new IllegalArgumentException("Invalid transformation matrix");
+      }
+      for (double weight : matrix[row]) {
+        if (!Double.isFinite(weight)) {
+          throw new IllegalArgumentException("Invalid transformation matrix");
+        }
+      }
+      this.matrix[row] = matrix[row].clone();
+    }
+  }
+
+  /**
+   * Returns the color matrix that applies this matrix and then the given matrix.
+   *
+   * @param next the matrix to apply after this matrix
+   * @return the composed color matrix
+   */
+  ColorMatrix andThen(ColorMatrix next) {
+    double[][] product = new double[3][3];
+    for (int row = 0; row < 3; row++) {
+      for (int col = 0; col < 3; col++) {
+        for (int k = 0; k < 3; k++) {
+          product[row][col] += next.matrix[row][k] * this.matrix[k][col];
+        }
+      }
+    }
+    return new ColorMatrix(product);
+  }
+
+  /**
+   * Returns the weight of the given row and column of the matrix.
+   *
+   * @param row the row, 0 - Red, 1 - Green, 2 - Blue
+   * @param col the column, 0 - Red, 1 - Green, 2 - Blue
+   * @return the weight
+   */
+  double get(int row, int col) {
+    return this.matrix[row][col];
+  }
+
+  /**
+   * Returns true if all the rows of the matrix are the same, so that every pixel it transforms
+   * is grey.
+   *
+   * @return true if the matrix gives a greyscale image
+   */
+  boolean isGreyscale() {
+    return Arrays.equals(matrix[0], matrix[1])
+            && Arrays.equals(matrix[0], matrix[2]);
+  }
+
+  /**
+   * Returns the weighted sum of the given row of the matrix with the given values, before it is
+   * rounded or clamped.
+   *
+   * @param row   the row, 0 - Red, 1 - Green, 2 - Blue
+   * @param red   the red value
+   * @param green the green value
+   * @param blue  the blue value
+   * @return the weighted sum
+   */
+  double transform(int row, int red, int green, int blue) {
+    double[] weights = this.matrix[row];
+    return red * weights[0] + green * weights[1] + blue * weights[2];
+  }
+}
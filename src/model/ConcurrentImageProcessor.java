@@ -0,0 +1,422 @@
+package model;
+
+import utility.CustomImage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This class represents an Image Processor that may be used by several threads at once, for
+ * example by the graphical view and a background worker, or by independent commands of a script
+ * that run concurrently.
+ *
+ * <p>The images are kept in a concurrent map by name. An operation reads its input images from
+ * the map, computes its result images on a model of its own, and only then publishes each result
+ * under its name in a single step. A reader, such as an {@link ImageProcessorROImpl} over this
+ * image processor, therefore never sees an image that is partially computed, and never waits for
+ * an operation.
+ *
+ * <p>Every operation, and every loaded image, gets a version when it starts, from a counter that
+ * increases across the image processor. When operations write the same name concurrently, the
+ * image of the operation that started last is kept, however long each operation takes, so the
+ * result is the same as if the operations had run one after the other in the order they started.
+ * The images of an operation with several results, such as split, are published one by one.
+ *
+ * <p>Operations are computed eagerly, and check their arguments as {@link ImageProcessorImpl}
+ * does, with the same errors.
+ *
+ * <p>A branch, created with {@link #createBranch()}, records its operations on a lazy model of
+ * its own instead, and publishes their results to the images of this image processor, where
+ * they are computed when they are first requested. The operations of a branch read the images
+ * the branch wrote from its own model, and the other images from this image processor, so a
+ * chain of operations on a branch is computed in a single pass, and an image of the chain that
+ * is never requested is never computed. The operations of a branch run one at a time, while
+ * different branches run at the same time.
+ *
+ * <p>Reading an image of a branch from this image processor computes it, unless the branch is
+ * running an operation or computing another image at the time. The reader then gets the last
+ * image under the name that is computed, instead of waiting for the branch, and an image that
+ * has no computed version yet is not found. An operation of a branch that reads the image, and
+ * reading it from the branch itself, wait for the image instead, so they always get the latest
+ * version.
+ */
+public class ConcurrentImageProcessor implements ImageProcessor {
+  private final Map<String, VersionedImage> images;
+  private final AtomicLong versions;
+  private final ParallelExecutor executor;
+  // the lazy model of a branch, which is null if this is not a branch
+  private final ImageProcessorImpl branchModel;
+  // the lock held while the model of the branch is used, which is null if this is not a branch
+  private final ReentrantLock branchLock;
+  // the names the branch has written, whose images are read from the model of the branch
+  private final Set<String> written;
+  // the published images the branch has loaded into its model, by name
+  private final Map<String, VersionedImage> loaded;
+
+  /**
+   * Constructs an Image Processor that runs its operations on all the available processors.
+   */
+  public ConcurrentImageProcessor() {
+    this(new ParallelExecutor());
+  }
+
+  /**
+   * Constructs an Image Processor that runs its operations with the given executor, which is
+   * shared by the operations that run at the same time.
+   *
+   * @param executor the executor that runs the operations over the rows of an image
+   * @throws IllegalArgumentException if the executor is null
+   */
+  public ConcurrentImageProcessor(ParallelExecutor executor) throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null");
+    }
+    this.images = new ConcurrentHashMap<>();
+    this.versions = new AtomicLong();
+    this.executor = executor;
+    this.branchModel = null;
+    this.branchLock = null;
+    this.written = null;
+    this.loaded = null;
+  }
+
+  // constructs a branch that publishes its images to the same images as the given processor
+  private ConcurrentImageProcessor(ConcurrentImageProcessor processor) {
+    this.images = processor.images;
+    this.versions = processor.versions;
+    this.executor = processor.executor;
+    this.branchModel = new ImageProcessorImpl(processor.executor, true);
+    this.branchLock = new ReentrantLock();
+    this.written = ConcurrentHashMap.newKeySet();
+    this.loaded = new HashMap<>();
+  }
+
+  /**
+   * Creates a branch of this image processor, which records its operations lazily on a model of
+   * its own and publishes their results to the images of this image processor. A branch of a
+   * branch publishes to the same images.
+   *
+   * @return the branch
+   */
+  public ConcurrentImageProcessor createBranch() {
+    return new ConcurrentImageProcessor(this);
+  }
+
+  /**
+   * Returns the version of the image with the given name, which is the version of the operation
+   * or load that produced it. A later image under the same name has a greater version.
+   *
+   * @param imageName the name of the image
+   * @return the version of the image
+   * @throws IllegalArgumentException if there is no image with the given name
+   */
+  public long getVersion(String imageName) throws IllegalArgumentException {
+    return getVersionedImage(imageName).version;
+  }
+
+  @Override
+  public CustomImage getImage(String imageName) {
+    if (this.branchModel == null) {
+      CustomImage image = getVersionedImage(imageName).readImage();
+      if (image == null) {
+        throw new IllegalArgumentException("An Image with the given name not found.");
+      }
+      return image;
+    }
+    if (imageName != null && written.contains(imageName)) {
+      this.branchLock.lock();
+      try {
+        return this.branchModel.getImage(imageName);
+      } finally {
+        this.branchLock.unlock();
+      }
+    }
+    return getVersionedImage(imageName).getImage();
+  }
+
+  @Override
+  public void loadImage(CustomImage image) {
+    if (image == null) {
+      throw new IllegalArgumentException("Image data cannot be null");
+    }
+    long version = versions.incrementAndGet();
+    if (this.branchModel != null) {
+      this.branchLock.lock();
+      try {
+        this.branchModel.loadImage(image);
+        written.add(image.getName());
+      } finally {
+        this.branchLock.unlock();
+      }
+    }
+    publish(image.getName(), new VersionedImage(image, version));
+  }
+
+  @Override
+  public void visualiseChannel(String originalImageName, String resultImageName, int channel) {
+    apply(model -> model.visualiseChannel(originalImageName, resultImageName, channel),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void visualiseValue(String originalImageName, String resultImageName) {
+    apply(model -> model.visualiseValue(originalImageName, resultImageName),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void visualiseIntensity(String originalImageName, String resultImageName) {
+    apply(model -> model.visualiseIntensity(originalImageName, resultImageName),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void visualiseLuma(String originalImageName, String resultImageName) {
+    apply(model -> model.visualiseLuma(originalImageName, resultImageName),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void flip(String originalImageName, String resultImageName, int axis) {
+    apply(model -> model.flip(originalImageName, resultImageName, axis),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void brighten(String originalImageName, String resultImageName, int increment) {
+    apply(model -> model.brighten(originalImageName, resultImageName, increment),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void split(String originalImageName, String resultRedImageName,
+                    String resultGreenImageName, String resultBlueImageName) {
+    apply(model -> model.split(originalImageName, resultRedImageName, resultGreenImageName,
+                    resultBlueImageName), new String[]{originalImageName}, resultRedImageName,
+            resultGreenImageName, resultBlueImageName);
+  }
+
+  @Override
+  public void combine(String redImageName, String greenImageName, String blueImageName,
+                      String resultImageName) {
+    apply(model -> model.combine(redImageName, greenImageName, blueImageName, resultImageName),
+            new String[]{redImageName, greenImageName, blueImageName}, resultImageName);
+  }
+
+  @Override
+  public void blur(String originalImageName, String resultImageName) {
+    apply(model -> model.blur(originalImageName, resultImageName),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void sharpen(String originalImageName, String resultImageName) {
+    apply(model -> model.sharpen(originalImageName, resultImageName),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void filter(String originalImageName, String resultImageName, double[][] kernel)
+          throws IllegalArgumentException {
+    apply(model -> model.filter(originalImageName, resultImageName, kernel),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void sepia(String originalImageName, String resultImageName) {
+    apply(model -> model.sepia(originalImageName, resultImageName),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void colorMatrix(String originalImageName, String resultImageName,
+                          double[][]... matrices) throws IllegalArgumentException {
+    apply(model -> model.colorMatrix(originalImageName, resultImageName, matrices),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  @Override
+  public void dither(String originalImageName, String resultImageName) {
+    apply(model -> model.dither(originalImageName, resultImageName),
+            new String[]{originalImageName}, resultImageName);
+  }
+
+  // helper method to return the image with the given name, with its version
+  private VersionedImage getVersionedImage(String imageName) {
+    if (imageName == null) {
+      throw new IllegalArgumentException("Image name cannot be null");
+    }
+    VersionedImage image = images.get(imageName);
+    if (image == null) {
+      throw new IllegalArgumentException("An Image with the given name not found.");
+    }
+    return image;
+  }
+
+  // helper method to run an operation on a model of its own, which holds the current images of
+  // the given input names, and to publish the images of the given result names once they are
+  // all computed. A missing input is left out, so that the operation reports it.
+  private void apply(Consumer<ImageProcessor> operation, String[] inputNames,
+                     String... resultNames) {
+    long version = versions.incrementAndGet();
+    if (this.branchModel != null) {
+      applyToBranch(operation, inputNames, resultNames, version);
+      return;
+    }
+    ImageProcessor model = new ImageProcessorImpl(executor);
+    for (String inputName : inputNames) {
+      VersionedImage input = inputName == null ? null : images.get(inputName);
+      if (input != null) {
+        model.loadImage(input.getImage());
+      }
+    }
+    operation.accept(model);
+    CustomImage[] results = new CustomImage[resultNames.length];
+    for (int i = 0; i < results.length; i++) {
+      results[i] = model.getImage(resultNames[i]);
+    }
+    for (int i = 0; i < results.length; i++) {
+      publish(resultNames[i], new VersionedImage(results[i], version));
+    }
+  }
+
+  // helper method to record an operation on the model of a branch, and to publish its results,
+  // which are computed when they are first requested. An input the branch has not written is
+  // loaded from the published images, unless the branch has loaded the same image before.
+  private void applyToBranch(Consumer<ImageProcessor> operation, String[] inputNames,
+                             String[] resultNames, long version) {
+    Map<String, VersionedImage> inputs = new HashMap<>();
+    for (String inputName : inputNames) {
+      VersionedImage input = inputName == null || written.contains(inputName) ? null
+              : images.get(inputName);
+      if (input != null) {
+        // the image is computed before the model of the branch is locked, since computing it
+        // may lock the model of another branch
+        input.getImage();
+        inputs.put(inputName, input);
+      }
+    }
+    VersionedImage[] results = new VersionedImage[resultNames.length];
+    this.branchLock.lock();
+    try {
+      for (Map.Entry<String, VersionedImage> input : inputs.entrySet()) {
+        if (!written.contains(input.getKey()) && loaded.get(input.getKey()) != input.getValue()) {
+          this.branchModel.loadImage(input.getValue().getImage());
+          loaded.put(input.getKey(), input.getValue());
+        }
+      }
+      operation.accept(this.branchModel);
+      for (int i = 0; i < results.length; i++) {
+        results[i] = new VersionedImage(this.branchModel.getPendingImage(resultNames[i]),
+                this.branchLock, version);
+      }
+      for (String resultName : resultNames) {
+        written.add(resultName);
+      }
+    } finally {
+      this.branchLock.unlock();
+    }
+    for (int i = 0; i < results.length; i++) {
+      publish(resultNames[i], results[i]);
+    }
+  }
+
+  // helper method to store the given image under the given name, unless an image of a later
+  // version is already stored under it. A pending image keeps the image it replaces, which is
+  // read until the pending image is computed.
+  private void publish(String imageName, VersionedImage image) {
+    images.compute(imageName, (name, current) -> {
+      if (current != null && current.version > image.version) {
+        return current;
+      }
+      if (image.image == null) {
+        image.previous = current;
+      }
+      return image;
+    });
+  }
+
+  /**
+   * This class represents an image with the version of the operation that produced it. The
+   * image of a branch is computed when it is first requested, while the lock of the branch is
+   * held, and until then the image it replaced is kept for readers.
+   */
+  private static final class VersionedImage {
+    private final long version;
+    private volatile CustomImage image;
+    // the supplier of a pending image, and the lock of the branch that computes it
+    private Supplier<CustomImage> pending;
+    private final ReentrantLock lock;
+    // the image that was stored under the name before this pending image
+    private volatile VersionedImage previous;
+
+    private VersionedImage(CustomImage image, long version) {
+      this.image = image;
+      this.lock = null;
+      this.version = version;
+    }
+
+    private VersionedImage(Supplier<CustomImage> pending, ReentrantLock lock, long version) {
+      this.pending = pending;
+      this.lock = lock;
+      this.version = version;
+    }
+
+    // returns the image, which is computed by the first call if it is pending, after waiting for
+    // the branch that computes it
+    private CustomImage getImage() {
+      CustomImage result = this.image;
+      if (result == null) {
+        this.lock.lock();
+        try {
+          result = compute();
+        } finally {
+          this.lock.unlock();
+        }
+      }
+      return result;
+    }
+
+    // returns the image without waiting. A pending image is computed if its branch is not in
+    // use, and the latest computed image it replaced is returned otherwise, or null if there is
+    // none.
+    private CustomImage readImage() {
+      CustomImage result = this.image;
+      if (result != null) {
+        return result;
+      }
+      if (this.lock.tryLock()) {
+        try {
+          return compute();
+        } finally {
+          this.lock.unlock();
+        }
+      }
+      for (VersionedImage older = this.previous; older != null; older = older.previous) {
+        result = older.image;
+        if (result != null) {
+          return result;
+        }
+      }
+      // the image may have been computed while the images it replaced were read
+      return this.image;
+    }
+
+    // helper method to compute the pending image, while the lock of its branch is held
+    private CustomImage compute() {
+      if (this.image == null) {
+        this.image = this.pending.get();
+        this.pending = null;
+        // the images this image replaced are no longer read
+        this.previous = null;
+      }
+      return this.image;
+    }
+  }
+}
@@ -0,0 +1,486 @@
+package model;
+
+/**
+ * This class applies a {@link Kernel} to the channels of an image, each given as an array of
+ * channel values in row-major order, and computes the weighted sum at every position. Positions
+ * outside the image contribute nothing to the sum.
+ *
+ * <p>The strategy is picked per kernel. Separable kernels are applied as a horizontal and a
+ * vertical 1D pass, and 1D passes with equal weights keep a running sum over a sliding window,
+ * so their cost does not depend on the size of the kernel. Large kernels that are not separable
+ * are applied in the frequency domain, one tile of the image at a time, so their cost grows with
+ * the logarithm of the size of the kernel rather than its area. Other kernels are applied
+ * directly, with the interior of the image, where the whole kernel lies inside the image,
+ * processed without bounds checks and only the border processed by dedicated edge loops.
+ *
+ * <p>Integral kernels give exact integer sums with every strategy, the sums computed in the
+ * frequency domain are rounded to the nearest integer, which is exact as their error is far
+ * below one half.
+ */
+class ConvolutionEngine {
+  /**
+   * The smallest size of a kernel that is not separable, for which the frequency domain is
+   * cheaper than applying the kernel directly.
+   */
+  static final int FOURIER_MIN_SIZE = 13;
+
+  /**
+   * The ways a kernel can be applied to an image.
+   */
+  enum Strategy {
+    DIRECT, SEPARABLE, FOURIER
+  }
+
+  private final ParallelExecutor executor;
+
+  /**
+   * Constructs a convolution engine that runs on the given executor.
+   *
+   * @param executor the executor that runs the passes over the rows of an image
+   */
+  ConvolutionEngine(ParallelExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Returns the strategy that applies the given kernel in the least time.
+   *
+   * @param kernel the kernel to apply
+   * @return the strategy for the kernel
+   */
+  static Strategy selectStrategy(Kernel kernel) {
+    if (kernel.isSeparable()) {
+      return Strategy.SEPARABLE;
+    }
+    return kernel.getSize() >= FOURIER_MIN_SIZE ? Strategy.FOURIER : Strategy.DIRECT;
+  }
+
+  /**
+   * Computes the weighted sum of the given channel with the given integral kernel at every
+   * position.
+   *
+   * @param channel the channel values in row-major order
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param kernel  the integral kernel to filter with
+   * @return the weighted sums in row-major order
+   */
+  int[] convolve(int[] channel, int width, int height, Kernel kernel) {
+    return convolve(new int[][]{channel}, width, height, kernel)[0];
+  }
+
+  /**
+   * Computes the weighted sums of each of the given channels with the given integral kernel at
+   * every position.
+   *
+   * @param channels the values of each channel in row-major order
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @param kernel   the integral kernel to filter with
+   * @return the weighted sums of each channel in row-major order
+   * @throws IllegalArgumentException if the kernel is not integral
+   */
+  int[][] convolve(int[][] channels, int width, int height, Kernel kernel)
+          throws IllegalArgumentException {
+    if (!kernel.isIntegral()) {
+      throw new IllegalArgumentException("Kernel does not have integer weights");
+    }
+    int[][] sums = new int[channels.length][];
+    if (selectStrategy(kernel) == Strategy.FOURIER) {
+      double[][] realSums = fourierConvolve(channels, width, height, kernel);
+      for (int c = 0; c < channels.length; c++) {
+        double[] real = realSums[c];
+        int[] rounded = new int[real.length];
+        executor.execute(height, width, (startRow, endRow) -> {
+          for (int i = startRow * width; i < endRow * width; i++) {
+            rounded[i] = (int) Math.round(real[i]);
+          }
+        });
+        sums[c] = rounded;
+      }
+      return sums;
+    }
+    for (int c = 0; c < channels.length; c++) {
+      sums[c] = convolveIntegral(channels[c], width, height, kernel);
+    }
+    return sums;
+  }
+
+  /**
+   * Computes the weighted sums of each of the given channels with the given kernel at every
+   * position, with floating point arithmetic.
+   *
+   * @param channels the values of each channel in row-major order
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @param kernel   the kernel to filter with
+   * @return the weighted sums of each channel in row-major order
+   */
+  double[][] convolveReal(int[][] channels, int width, int height, Kernel kernel) {
+    Strategy strategy = selectStrategy(kernel);
+    if (strategy == Strategy.FOURIER) {
+      return fourierConvolve(channels, width, height, kernel);
+    }
+    double[][] sums = new double[channels.length][];
+    for (int c = 0; c < channels.length; c++) {
+      int[] channel = channels[c];
+      double[] destination = new double[channel.length];
+      if (strategy == Strategy.SEPARABLE) {
+        double[] horizontal = new double[channel.length];
+        double[] rowVector = kernel.getRealRowVector();
+        double[] columnVector = kernel.getRealColumnVector();
+        executor.execute(height, width, (startRow, endRow) ->
+                realHorizontalPass(channel, horizontal, width, rowVector, startRow, endRow));
+        executor.execute(height, width, (startRow, endRow) ->
+                realVerticalPass(horizontal, destination, width, height, columnVector, startRow,
+                        endRow));
+      } else {
+        executor.execute(height, width, (startRow, endRow) ->
+                realDirectPass(channel, destination, width, height, kernel, startRow, endRow));
+      }
+      sums[c] = destination;
+    }
+    return sums;
+  }
+
+  // helper method to apply an integral kernel to a channel in the spatial domain
+  private int[] convolveIntegral(int[] channel, int width, int height, Kernel kernel) {
+    int[] sums;
+    if (kernel.isSeparable()) {
+      int[] horizontal = new int[channel.length];
+      int[] rowVector = kernel.getRowVector();
+      int[] columnVector = kernel.getColumnVector();
+      executor.execute(height, width, (startRow, endRow) ->
+              horizontalPass(channel, horizontal, width, rowVector, startRow, endRow));
+      sums = new int[channel.length];
+      executor.execute(height, width, (startRow, endRow) ->
+              verticalPass(horizontal, sums, width, height, columnVector, startRow, endRow));
+    } else {
+      sums = new int[channel.length];
+      executor.execute(height, width, (startRow, endRow) ->
+              directPass(channel, sums, width, height, kernel, startRow, endRow));
+    }
+    return sums;
+  }
+
+  // helper method to return the common weight of a vector, or 0 if the weights are not equal
+  private static int commonWeight(int[] vector) {
+    for (int weight : vector) {
+      if (weight != vector[0]) {
+        return 0;
+      }
+    }
+    return vector[0];
+  }
+
+  // helper method to apply the row vector to the given rows of the source
+  private static void horizontalPass(int[] source, int[] destination, int width, int[] vector,
+                                     int startRow, int endRow) {
+    int radius = vector.length / 2;
+    int boxWeight = commonWeight(vector);
+    for (int y = startRow; y < endRow; y++) {
+      int offset = y * width;
+      if (boxWeight != 0) {
+        // sliding window: the sum of the window is updated by the values entering and leaving it
+        int windowSum = 0;
+        for (int x = 0; x <= radius && x < width; x++) {
+          windowSum += source[offset + x];
+        }
+        for (int x = 0; x < width; x++) {
+          destination[offset + x] = boxWeight * windowSum;
+          if (x + radius + 1 < width) {
+            windowSum += source[offset + x + radius + 1];
+          }
+          if (x - radius >= 0) {
+            windowSum -= source[offset + x - radius];
+          }
+        }
+        continue;
+      }
+      int interiorEnd = Math.max(radius, width - radius);
+      // left edge
+      for (int x = 0; x < Math.min(radius, width); x++) {
+        destination[offset + x] = checkedRowSum(source, offset, width, x, vector);
+      }
+      // interior, where the whole vector lies inside the row
+      for (int x = radius; x < interiorEnd; x++) {
+        int sum = 0;
+        int start = offset + x - radius;
+        for (int k = 0; k < vector.length; k++) {
+          sum += vector[k] * source[start + k];
+        }
+        destination[offset + x] = sum;
+      }
+      // right edge
+      for (int x = interiorEnd; x < width; x++) {
+        destination[offset + x] = checkedRowSum(source, offset, width, x, vector);
+      }
+    }
+  }
+
+  // helper method to apply the row vector at a position near the edge of a row
+  private static int checkedRowSum(int[] source, int offset, int width, int x, int[] vector) {
+    int radius = vector.length / 2;
+    int sum = 0;
+    for (int k = Math.max(0, radius - x); k < vector.length && x - radius + k < width; k++) {
+      sum += vector[k] * source[offset + x - radius + k];
+    }
+    return sum;
+  }
+
+  // helper method to apply the column vector to the given rows of the source
+  private static void verticalPass(int[] source, int[] destination, int width, int height,
+                                   int[] vector, int startRow, int endRow) {
+    int radius = vector.length / 2;
+    int boxWeight = commonWeight(vector);
+    if (boxWeight != 0) {
+      // sliding window over whole rows: the column sums of the window are updated by the row
+      // entering and the row leaving it
+      int[] windowSums = new int[width];
+      for (int y = Math.max(0, startRow - radius); y <= Math.min(height - 1, startRow + radius);
+           y++) {
+        addRow(source, windowSums, y * width, 1);
+      }
+      for (int y = startRow; y < endRow; y++) {
+        int offset = y * width;
+        for (int x = 0; x < width; x++) {
+          destination[offset + x] = boxWeight * windowSums[x];
+        }
+        if (y + radius + 1 < height) {
+          addRow(source, windowSums, (y + radius + 1) * width, 1);
+        }
+        if (y - radius >= 0) {
+          addRow(source, windowSums, (y - radius) * width, -1);
+        }
+      }
+      return;
+    }
+    for (int y = startRow; y < endRow; y++) {
+      int offset = y * width;
+      // only the taps that lie inside the image are visited, rows are processed as a whole so
+      // no per-pixel checks are needed
+      int firstTap = Math.max(0, radius - y);
+      int lastTap = Math.min(vector.length - 1, radius + height - 1 - y);
+      for (int k = firstTap; k <= lastTap; k++) {
+        int weight = vector[k];
+        if (weight == 0) {
+          continue;
+        }
+        int sourceOffset = (y - radius + k) * width;
+        for (int x = 0; x < width; x++) {
+          destination[offset + x] += weight * source[sourceOffset + x];
+        }
+      }
+    }
+  }
+
+  // helper method to add the given row of the source, times the sign, to the sums
+  private static void addRow(int[] source, int[] sums, int offset, int sign) {
+    for (int x = 0; x < sums.length; x++) {
+      sums[x] += sign * source[offset + x];
+    }
+  }
+
+  // helper method to apply the whole kernel to the given rows of the source
+  private static void directPass(int[] source, int[] destination, int width, int height,
+                                 Kernel kernel, int startRow, int endRow) {
+    int size = kernel.getSize();
+    int radius = kernel.getRadius();
+    // the non-zero taps of the kernel, as weights and offsets from the centre of the kernel
+    int taps = 0;
+    int[] weights = new int[size * size];
+    int[] offsets = new int[size * size];
+    for (int j = 0; j < size; j++) {
+      for (int i = 0; i < size; i++) {
+        if (kernel.getWeight(j, i) != 0) {
+          weights[taps] = kernel.getWeight(j, i);
+          offsets[taps] = (j - radius) * width + (i - radius);
+          taps++;
+        }
+      }
+    }
+    for (int y = startRow; y < endRow; y++) {
+      int offset = y * width;
+      boolean interiorRow = y >= radius && y < height - radius;
+      int interiorStart = interiorRow ? Math.min(radius, width) : width;
+      int interiorEnd = interiorRow ? Math.max(interiorStart, width - radius) : width;
+      // edge loop before the interior, or the whole row if it is near the top or bottom
+      for (int x = 0; x < interiorStart; x++) {
+        destination[offset + x] = checkedSum(source, width, height, kernel, x, y);
+      }
+      // interior, where the whole kernel lies inside the image
+      for (int x = interiorStart; x < interiorEnd; x++) {
+        int centre = offset + x;
+        int sum = 0;
+        for (int t = 0; t < taps; t++) {
+          sum += weights[t] * source[centre + offsets[t]];
+        }
+        destination[centre] = sum;
+      }
+      // edge loop after the interior
+      for (int x = interiorEnd; x < width; x++) {
+        destination[offset + x] = checkedSum(source, width, height, kernel, x, y);
+      }
+    }
+  }
+
+  // helper method to apply the whole kernel at a position near the edge of the image
+  private static int checkedSum(int[] source, int width, int height, Kernel kernel,
+                                int x, int y) {
+    int radius = kernel.getRadius();
+    int sum = 0;
+    for (int j = -radius; j <= radius; j++) {
+      for (int i = -radius; i <= radius; i++) {
+        if (x + i >= 0 && x + i < width && y + j >= 0 && y + j < height) {
+          sum += kernel.getWeight(j + radius, i + radius) * source[(y + j) * width + x + i];
+        }
+      }
+    }
+    return sum;
+  }
+
+  // helper method to apply a real row vector to the given rows of the source
+  private static void realHorizontalPass(int[] source, double[] destination, int width,
+                                         double[] vector, int startRow, int endRow) {
+    int radius = vector.length / 2;
+    for (int y = startRow; y < endRow; y++) {
+      int offset = y * width;
+      for (int x = 0; x < width; x++) {
+        int firstTap = Math.max(0, radius - x);
+        int lastTap = Math.min(vector.length - 1, radius + width - 1 - x);
+        int start = offset + x - radius;
+        double sum = 0;
+        for (int k = firstTap; k <= lastTap; k++) {
+          sum += vector[k] * source[start + k];
+        }
+        destination[offset + x] = sum;
+      }
+    }
+  }
+
+  // helper method to apply a real column vector to the given rows of the source
+  private static void realVerticalPass(double[] source, double[] destination, int width,
+                                       int height, double[] vector, int startRow, int endRow) {
+    int radius = vector.length / 2;
+    for (int y = startRow; y < endRow; y++) {
+      int offset = y * width;
+      int firstTap = Math.max(0, radius - y);
+      int lastTap = Math.min(vector.length - 1, radius + height - 1 - y);
+      for (int k = firstTap; k <= lastTap; k++) {
+        double weight = vector[k];
+        if (weight == 0) {
+          continue;
+        }
+        int sourceOffset = (y - radius + k) * width;
+        for (int x = 0; x < width; x++) {
+          destination[offset + x] += weight * source[sourceOffset + x];
+        }
+      }
+    }
+  }
+
+  // helper method to apply the whole real kernel to the given rows of the source
+  private static void realDirectPass(int[] source, double[] destination, int width, int height,
+                                     Kernel kernel, int startRow, int endRow) {
+    int radius = kernel.getRadius();
+    for (int y = startRow; y < endRow; y++) {
+      int firstRow = Math.max(-radius, -y);
+      int lastRow = Math.min(radius, height - 1 - y);
+      for (int x = 0; x < width; x++) {
+        int firstCol = Math.max(-radius, -x);
+        int lastCol = Math.min(radius, width - 1 - x);
+        double sum = 0;
+        for (int j = firstRow; j <= lastRow; j++) {
+          int offset = (y + j) * width + x;
+          for (int i = firstCol; i <= lastCol; i++) {
+            sum += kernel.getRealWeight(j + radius, i + radius) * source[offset + i];
+          }
+        }
+        destination[y * width + x] = sum;
+      }
+    }
+  }
+
+  // helper method to compute the number of rows and columns of the blocks transformed to the
+  // frequency domain; larger blocks waste less of each block on the overlap between tiles, at
+  // the price of a slightly more expensive transform
+  private static int blockSize(int kernelSize, int width, int height) {
+    int overlap = kernelSize - 1;
+    int block = Integer.highestOneBit(Math.max(64, 8 * overlap) - 1) << 1;
+    int whole = Integer.highestOneBit(Math.max(width, height) + overlap - 1) << 1;
+    return Math.max(Math.min(block, whole), Integer.highestOneBit(overlap) << 1);
+  }
+
+  // helper method to apply a kernel to the channels in the frequency domain with the
+  // overlap-save method: the image is cut into tiles, and each tile, together with a border of
+  // the radius of the kernel, is transformed, multiplied with the spectrum of the kernel and
+  // transformed back. Two channels are transformed together as the real and imaginary parts of
+  // one block, as the kernel is real and keeps them apart.
+  private double[][] fourierConvolve(int[][] channels, int width, int height, Kernel kernel) {
+    int radius = kernel.getRadius();
+    int block = blockSize(kernel.getSize(), width, height);
+    int tile = block - 2 * radius;
+    FastFourierTransform transform = new FastFourierTransform(block);
+    // the kernel is mirrored and wrapped around the block, so that the circular convolution
+    // computes the weighted sums
+    double[] kernelReal = new double[block * block];
+    double[] kernelImaginary = new double[block * block];
+    for (int j = 0; j < kernel.getSize(); j++) {
+      for (int i = 0; i < kernel.getSize(); i++) {
+        int row = Math.floorMod(radius - j, block);
+        int col = Math.floorMod(radius - i, block);
+        kernelReal[row * block + col] = kernel.getRealWeight(j, i);
+      }
+    }
+    transform.transform(kernelReal, kernelImaginary, false);
+    double scale = 1.0 / ((double) block * block);
+    double[][] sums = new double[channels.length][];
+    for (int c = 0; c < channels.length; c++) {
+      sums[c] = new double[width * height];
+    }
+    int tileRows = (height + tile - 1) / tile;
+    int tileCols = (width + tile - 1) / tile;
+    executor.execute(tileRows, width * tile, (startTileRow, endTileRow) -> {
+      double[] real = new double[block * block];
+      double[] imaginary = new double[block * block];
+      for (int tileRow = startTileRow; tileRow < endTileRow; tileRow++) {
+        for (int tileCol = 0; tileCol < tileCols; tileCol++) {
+          int top = tileRow * tile - radius;
+          int left = tileCol * tile - radius;
+          for (int c = 0; c < channels.length; c += 2) {
+            int[] first = channels[c];
+            int[] second = c + 1 < channels.length ? channels[c + 1] : null;
+            for (int a = 0; a < block; a++) {
+              int y = top + a;
+              for (int b = 0; b < block; b++) {
+                int x = left + b;
+                boolean inside = y >= 0 && y < height && x >= 0 && x < width;
+                real[a * block + b] = inside ? first[y * width + x] : 0;
+                imaginary[a * block + b] = inside && second != null ? second[y * width + x] : 0;
+              }
+            }
+            transform.transform(real, imaginary, false);
+            for (int i = 0; i < real.length; i++) {
+              double r = real[i] * kernelReal[i] - imaginary[i] * kernelImaginary[i];
+              imaginary[i] = real[i] * kernelImaginary[i] + imaginary[i] * kernelReal[i];
+              real[i] = r;
+            }
+            transform.transform(real, imaginary, true);
+            // only the centre of the block, away from the wrapped around border, is kept
+            for (int a = radius; a < radius + tile && top + a < height; a++) {
+              int y = top + a;
+              for (int b = radius; b < radius + tile && left + b < width; b++) {
+                int index = y * width + left + b;
+                sums[c][index] = real[a * block + b] * scale;
+                if (second != null) {
+                  sums[c + 1][index] = imaginary[a * block + b] * scale;
+                }
+              }
+            }
+          }
+        }
+      }
+    });
+    return sums;
+  }
+}
@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * This enum represents the order in which a bounded image store evicts its images.
+ */
+public enum EvictionPolicy {
+  /**
+   * Evicts the image that was used least recently first.
+   */
+  LEAST_RECENTLY_USED,
+
+  /**
+   * Evicts the image that was used the fewest times first, and the least recently used of those
+   * that were used as often.
+   */
+  LEAST_FREQUENTLY_USED
+}
@@ -0,0 +1,109 @@
+package model;
+
+/**
+ * This class computes the discrete Fourier transform of square blocks of complex values, whose
+ * size is a power of two, with the iterative radix-2 Cooley-Tukey algorithm. The twiddle factors
+ * and the bit reversal permutation are computed once on construction, so a single instance can
+ * transform any number of blocks of its size. The inverse transform is not scaled, the caller is
+ * expected to divide its result by the number of values in the block.
+ */
+class FastFourierTransform {
+  private final int size;
+  private final double[] cos;
+  private final double[] sin;
+  private final int[] reversed;
+
+  /**
+   * Constructs a transform for blocks with the given number of rows and columns.
+   *
+   * @param size the number of rows and columns of a block
+   * @throws IllegalArgumentException if the size is not a power of two
+   */
+  FastFourierTransform(int size) throws IllegalArgumentException {
+    if (size < 1 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("Transform size must be a power of two");
+    }
+    this.size = size;
+    this.cos = new double[size / 2];
+    this.sin = new double[size / 2];
+    for (int k = 0; k < size / 2; k++) {
+      this.cos[k] = Math.cos(-2 * Math.PI * k / size);
+      this.sin[k] = Math.sin(-2 * Math.PI * k / size);
+    }
+    this.reversed = new int[size];
+    int bits = Integer.numberOfTrailingZeros(size);
+    for (int i = 0; i < size; i++) {
+      this.reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+  }
+
+  /**
+   * Returns the number of rows and columns of the blocks this transform works on.
+   *
+   * @return the size of a block
+   */
+  int getSize() {
+    return this.size;
+  }
+
+  /**
+   * Transforms the given block in place, first along its rows and then along its columns.
+   *
+   * @param real      the real parts of the block in row-major order
+   * @param imaginary the imaginary parts of the block in row-major order
+   * @param inverse   true to compute the (unscaled) inverse transform
+   */
+  void transform(double[] real, double[] imaginary, boolean inverse) {
+    for (int row = 0; row < size; row++) {
+      transform(real, imaginary, row * size, inverse);
+    }
+    // columns are copied to a contiguous buffer, so that the butterflies stay cache friendly
+    double[] columnReal = new double[size];
+    double[] columnImaginary = new double[size];
+    for (int col = 0; col < size; col++) {
+      for (int row = 0; row < size; row++) {
+        columnReal[row] = real[row * size + col];
+        columnImaginary[row] = imaginary[row * size + col];
+      }
+      transform(columnReal, columnImaginary, 0, inverse);
+      for (int row = 0; row < size; row++) {
+        real[row * size + col] = columnReal[row];
+        imaginary[row * size + col] = columnImaginary[row];
+      }
+    }
+  }
+
+  // helper method to transform the contiguous sequence of values that starts at the offset
+  private void transform(double[] real, double[] imaginary, int offset, boolean inverse) {
+    for (int i = 0; i < size; i++) {
+      int j = reversed[i];
+      if (i < j) {
+        double t = real[offset + i];
+        real[offset + i] = real[offset + j];
+        real[offset + j] = t;
+        t = imaginary[offset + i];
+        imaginary[offset + i] = imaginary[offset + j];
+        imaginary[offset + j] = t;
+      }
+    }
+    double sign = inverse ? -1 : 1;
+    for (int length = 2; length <= size; length <<= 1) {
+      int half = length >> 1;
+      int step = size / length;
+      for (int start = offset; start < offset + size; start += length) {
+        for (int k = 0; k < half; k++) {
+          double wr = cos[k * step];
+          double wi = sign * sin[k * step];
+          int even = start + k;
+          int odd = even + half;
+          double tr = wr * real[odd] - wi * imaginary[odd];
+          double ti = wr * imaginary[odd] + wi * real[odd];
+          real[odd] = real[even] - tr;
+          imaginary[odd] = imaginary[even] - ti;
+          real[even] += tr;
+          imaginary[even] += ti;
+        }
+      }
+    }
+  }
+}
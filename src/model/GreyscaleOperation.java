@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * This interface supports operations that turn a single pixel of an image into a greyscale
+ * value, given the values of its red, green and blue channels.
+ */
+interface GreyscaleOperation {
+  /**
+   * Computes the greyscale value of a pixel with the given channel values.
+   *
+   * @param red           the value of the red channel
+   * @param green         the value of the green channel
+   * @param blue          the value of the blue channel
+   * @param maxPixelValue maximum value a channel of the pixel can have.
+   * @return the greyscale value
+   */
+  int toGrey(int red, int green, int blue, int maxPixelValue);
+}
@@ -0,0 +1,191 @@
+package model;
+
+import utility.CustomImage;
+
+/**
+ * This class represents an image in the operation graph of an image processor. A node holds the
+ * id its image is stored under and, unless it was loaded, the operation that computes its image
+ * and the nodes it is computed from, so that the image can be computed when it is first
+ * requested and recomputed if it is evicted. The size and maximum value of a node are known
+ * without computing its image.
+ *
+ * <p>A node counts the references to it, from the name it is stored under and from the nodes
+ * that are computed from it. A node that is no longer referenced can be released, along with
+ * the nodes only it was computed from.
+ */
+final class ImageNode {
+  private final long id;
+  private final String name;
+  private final int width;
+  private final int height;
+  private final int maxPixelValue;
+  private final PointStage stage;
+  private NodeOperation operation;
+  private ImageNode[] inputs;
+  private int references;
+
+  /**
+   * Constructs a node for a loaded image, which has no operation to compute it with.
+   *
+   * @param id            the id the image of the node is stored under
+   * @param name          the name of the image of the node
+   * @param width         the width of the image
+   * @param height        the height of the image
+   * @param maxPixelValue the maximum value of a channel in the image
+   */
+  ImageNode(long id, String name, int width, int height, int maxPixelValue) {
+    this.id = id;
+    this.name = name;
+    this.width = width;
+    this.height = height;
+    this.maxPixelValue = maxPixelValue;
+    this.stage = null;
+  }
+
+  /**
+   * Constructs a node that is computed from the given inputs, with the same size and maximum
+   * value as its first input. The node holds a reference to each of its inputs.
+   *
+   * @param id        the id the image of the node is stored under
+   * @param name      the name of the image of the node
+   * @param operation the operation that computes the image of the node from its inputs
+   * @param stage     the point operation of the node, or null if it is not a point operation
+   * @param inputs    the nodes the image is computed from
+   */
+  ImageNode(long id, String name, NodeOperation operation, PointStage stage,
+            ImageNode... inputs) {
+    this.id = id;
+    this.name = name;
+    this.width = inputs[0].width;
+    this.height = inputs[0].height;
+    this.maxPixelValue = inputs[0].maxPixelValue;
+    this.operation = operation;
+    this.stage = stage;
+    this.inputs = inputs.clone();
+    for (ImageNode input : this.inputs) {
+      input.retain();
+    }
+  }
+
+  /**
+   * Returns the id the image of the node is stored under.
+   *
+   * @return the id of the node
+   */
+  long getId() {
+    return this.id;
+  }
+
+  /**
+   * Returns the name of the image of the node.
+   *
+   * @return the name of the image
+   */
+  String getName() {
+    return this.name;
+  }
+
+  /**
+   * Returns the width of the image of the node.
+   *
+   * @return the width of the image
+   */
+  int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns the height of the image of the node.
+   *
+   * @return the height of the image
+   */
+  int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Returns the maximum value of a channel in the image of the node.
+   *
+   * @return the maximum value of a channel
+   */
+  int getMaxPixelValue() {
+    return this.maxPixelValue;
+  }
+
+  /**
+   * Returns the point operation of the node, which can be fused with the point operations of
+   * adjacent nodes.
+   *
+   * @return the point operation, or null if the node is not a point operation
+   */
+  PointStage getStage() {
+    return this.stage;
+  }
+
+  /**
+   * Returns true if the node still holds the operation that computes its image.
+   *
+   * @return true if the image of the node can be computed
+   */
+  boolean hasLineage() {
+    return this.inputs != null;
+  }
+
+  /**
+   * Returns the number of inputs of a node that can be computed.
+   *
+   * @return the number of inputs
+   */
+  int getInputCount() {
+    return this.inputs.length;
+  }
+
+  /**
+   * Returns the given input of a node that can be computed.
+   *
+   * @param index the index of the input
+   * @return the node of the input
+   */
+  ImageNode getInput(int index) {
+    return this.inputs[index];
+  }
+
+  /**
+   * Computes the image of the node from the given images of its inputs.
+   *
+   * @param inputImages the images of the inputs, in order
+   * @return the computed image
+   */
+  CustomImage compute(CustomImage[] inputImages) {
+    return this.operation.compute(inputImages);
+  }
+
+  /**
+   * Lets go of the operation and the inputs of the node, once its image no longer needs to be
+   * computed. The caller is responsible for releasing the returned inputs.
+   *
+   * @return the inputs the node held a reference to
+   */
+  ImageNode[] dropLineage() {
+    ImageNode[] released = this.inputs == null ? new ImageNode[0] : this.inputs;
+    this.inputs = null;
+    this.operation = null;
+    return released;
+  }
+
+  /**
+   * Adds a reference to the node.
+   */
+  void retain() {
+    this.references++;
+  }
+
+  /**
+   * Removes a reference to the node.
+   *
+   * @return true if the node is no longer referenced
+   */
+  boolean release() {
+    return --this.references == 0;
+  }
+}
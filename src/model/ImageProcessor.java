@@ -114,6 +114,18 @@ public interface ImageProcessor extends ImageProcessorRO {
    */
   void sharpen(String originalImageName, String resultImageName);
 
+  /**
+   * Creates a filtered version of the given image, by applying the given kernel to every
+   * channel of every pixel of the original image.
+   *
+   * @param originalImageName the name of the image that is to be filtered
+   * @param resultImageName   the name of the resulting filtered image
+   * @param kernel            the square kernel with an odd number of rows and columns
+   * @throws IllegalArgumentException if the kernel is not square or does not have an odd size
+   */
+  void filter(String originalImageName, String resultImageName, double[][] kernel)
+          throws IllegalArgumentException;
+
   /**
    * Creates a sepia-toned version of the given image, by applying a color transformation matrix
    * to every channel of every pixel in the original image.
@@ -123,6 +135,19 @@ public interface ImageProcessor extends ImageProcessorRO {
    */
   void sepia(String originalImageName, String resultImageName);
 
+  /**
+   * Creates a new image by applying the given color transformation matrices, in order, to every
+   * channel of every pixel in the original image, as a single fused transformation.
+   *
+   * @param originalImageName the name of the image to transform
+   * @param resultImageName   the name of the resulting image
+   * @param matrices          the 3 * 3 matrices to apply, with a row for each of the red, green
+   *                          and blue values
+   * @throws IllegalArgumentException if no matrix is given or a matrix is not 3 * 3
+   */
+  void colorMatrix(String originalImageName, String resultImageName, double[][]... matrices)
+          throws IllegalArgumentException;
+
   /**
    * Creates an image made of dots using a few colors from the given original image that has many
    * colors.
@@ -1,22 +1,104 @@
 package model;
 
 import utility.CustomImage;
-import utility.Pixel;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
 
 /**
  * This class represents an Image Processor, which can perform a set of manipulations on an image
  * It is given by a collection of base image and its manipulated images.
+ *
+ * <p>Every operation records a node in a graph of operations, whose inputs are the nodes of the
+ * images it works on. By default the node is materialized as soon as it is recorded. In lazy
+ * mode the pixels of a node are only computed when its image is requested with
+ * {@link #getImage(String)}, for example to save or display it, so intermediate images that are
+ * never requested cost neither time nor memory. When a chain of point operations, such as
+ * brighten, greyscale and color transformations, is materialized, it is applied in a single pass
+ * over the pixels, with adjacent lookup tables composed into one. Every stage of the pass rounds
+ * and clamps as the individual operation does, so the result is the same as in eager mode. The
+ * names, sizes and parameters of an operation are checked when it is recorded, in either mode.
+ *
+ * <p>The computed and loaded images are kept in an {@link ImageStore}. A bounded store evicts
+ * images to cap the memory taken by the image processor; a node keeps the operation its image
+ * was computed with for as long as the image may be evicted, so that an evicted image is
+ * recomputed from the images it depends on when it is requested again. Loaded images are pinned
+ * in the store, since they cannot be recomputed. Images that are no longer reachable from a
+ * name, directly or through the images computed from them, are removed from the store.
  */
 public class ImageProcessorImpl implements ImageProcessor {
   private static final int MIN_PIXEL_VALUE = 0;
-  private final Map<String, CustomImage> processedImages;
+  private final Map<String, ImageNode> processedImages;
+  private final ImageStore store;
+  private final ParallelExecutor executor;
+  private final ConvolutionEngine convolutionEngine;
+  private final boolean lazy;
+  private long nextId;
 
+  /**
+   * Constructs an Image Processor that runs its operations on all the available processors.
+   */
   public ImageProcessorImpl() {
+    this(new ParallelExecutor());
+  }
+
+  /**
+   * Constructs an Image Processor that runs its operations with the given executor.
+   *
+   * @param executor the executor that runs the operations over the rows of an image
+   */
+  public ImageProcessorImpl(ParallelExecutor executor) {
+    this(executor, false);
+  }
+
+  /**
+   * Constructs an Image Processor that runs its operations with the given executor, and defers
+   * the operations until their result is requested if it is lazy.
+   *
+   * @param executor the executor that runs the operations over the rows of an image
+   * @param lazy     true to compute images only when they are requested
+   */
+  public ImageProcessorImpl(ParallelExecutor executor, boolean lazy) {
+    this(executor, lazy, new MemoryImageStore());
+  }
+
+  /**
+   * Constructs an Image Processor that runs its operations with the given executor, defers the
+   * operations until their result is requested if it is lazy, and keeps its images in the given
+   * store.
+   *
+   * @param executor the executor that runs the operations over the rows of an image
+   * @param lazy     true to compute images only when they are requested
+   * @param store    the store that holds the images of the image processor
+   */
+  public ImageProcessorImpl(ParallelExecutor executor, boolean lazy, ImageStore store) {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null");
+    }
+    if (store == null) {
+      throw new IllegalArgumentException("Image store cannot be null");
+    }
     this.processedImages = new HashMap<>();
+    this.store = store;
+    this.executor = executor;
+    this.convolutionEngine = new ConvolutionEngine(executor);
+    this.lazy = lazy;
+  }
+
+  /**
+   * Returns true if the operations of this image processor are deferred until their result is
+   * requested.
+   *
+   * @return true if the image processor is lazy
+   */
+  public boolean isLazy() {
+    return this.lazy;
   }
 
   @Override
@@ -24,7 +106,191 @@ public class ImageProcessorImpl implements ImageProcessor {
     if (image == null) {
       throw new IllegalArgumentException("Image data cannot be null");
     }
-    processedImages.put(image.getName(), image);
+    ImageNode node = new ImageNode(nextId++, image.getName(), image.getWidth(),
+        image.getHeight(), image.getMaxPixelValue());
+    store.put(node.getId(), image, true);
+    name(image.getName(), node);
+  }
+
+  // helper method to store the given node under the given name, releasing the node that was
+  // stored under the name before
+  private void name(String imageName, ImageNode node) {
+    node.retain();
+    ImageNode previous = processedImages.put(imageName, node);
+    if (previous != null) {
+      release(previous);
+    }
+  }
+
+  // helper method to remove a reference to the given node, and to remove its image from the
+  // store once it is no longer referenced
+  private void release(ImageNode node) {
+    if (node.release()) {
+      store.remove(node.getId());
+      dropLineage(node);
+    }
+  }
+
+  // helper method to let the given node go of its operation, releasing its inputs
+  private void dropLineage(ImageNode node) {
+    for (ImageNode input : node.dropLineage()) {
+      release(input);
+    }
+  }
+
+  // helper method to return the node of the image with the given name
+  private ImageNode getNode(String imageName) {
+    ImageNode node = processedImages.get(imageName);
+    if (node == null) {
+      throw new IllegalArgumentException("An Image with the given name not found.");
+    }
+    return node;
+  }
+
+  // helper method to create a node that computes an image from the given inputs, which is
+  // materialized right away unless the image processor is lazy
+  private ImageNode createNode(String resultImageName, NodeOperation operation, PointStage stage,
+                               ImageNode... inputs) {
+    ImageNode node = new ImageNode(nextId++, resultImageName, operation, stage, inputs);
+    if (!this.lazy) {
+      try {
+        executor.compute(() -> materialize(node));
+      } catch (RuntimeException e) {
+        dropLineage(node);
+        throw e;
+      }
+    }
+    return node;
+  }
+
+  // helper method to record the operation that computes the image with the given name from the
+  // images with the given input names
+  private void record(String resultImageName, NodeOperation operation, PointStage stage,
+                      String... inputNames) {
+    ImageNode[] inputs = new ImageNode[inputNames.length];
+    for (int i = 0; i < inputNames.length; i++) {
+      inputs[i] = getNode(inputNames[i]);
+    }
+    name(resultImageName, createNode(resultImageName, operation, stage, inputs));
+  }
+
+  // helper method to return the image of the given node, computing it, and the images it
+  // depends on, if it is not in the store. A chain of point operations whose images are not in
+  // the store is applied in a single pass, unless its source is too deep to be packed.
+  private CustomImage materialize(ImageNode node) {
+    CustomImage image = store.get(node.getId());
+    if (image != null) {
+      return image;
+    }
+    if (!node.hasLineage()) {
+      throw new IllegalStateException("The image " + node.getName() + " is no longer available.");
+    }
+    if (node.getStage() != null) {
+      List<PointStage> stages = new ArrayList<>();
+      ImageNode source = node;
+      while (source.getStage() != null && source.hasLineage()
+              && !store.contains(source.getId())) {
+        stages.add(source.getStage());
+        source = source.getInput(0);
+      }
+      if (stages.size() > 1 && source.getMaxPixelValue() <= CustomImage.MAX_PACKED_VALUE) {
+        Collections.reverse(stages);
+        return storeImage(node, fusedHelper(stages, materialize(source), node.getName()));
+      }
+    }
+    CustomImage[] inputImages = new CustomImage[node.getInputCount()];
+    for (int i = 0; i < inputImages.length; i++) {
+      inputImages[i] = materialize(node.getInput(i));
+    }
+    return storeImage(node, node.compute(inputImages));
+  }
+
+  // helper method to store the computed image of the given node. The node only keeps its
+  // operation if the store may evict the image.
+  private CustomImage storeImage(ImageNode node, CustomImage image) {
+    store.put(node.getId(), image, false);
+    if (!store.isBounded()) {
+      dropLineage(node);
+    }
+    return image;
+  }
+
+  // helper method to apply the given point operations, in order, to every pixel of the base
+  // image in a single pass. Adjacent lookup tables are composed into one table.
+  private CustomImage fusedHelper(List<PointStage> stages, CustomImage baseImg,
+                                  String resultImageName) {
+    int maxValue = baseImg.getMaxPixelValue();
+    List<PixelOperation> operations = new ArrayList<>();
+    LookupTable table = null;
+    boolean greyscale = baseImg.isGreyscale();
+    for (PointStage stage : stages) {
+      if (stage.isTable()) {
+        LookupTable next = stage.getTable(maxValue);
+        table = table == null ? next : table.andThen(next);
+        greyscale = greyscale && next.isUniform();
+      } else {
+        if (table != null) {
+          LookupTable composed = table;
+          operations.add((pixel, maxPixelValue) -> composed.applyToPixel(pixel));
+          table = null;
+        }
+        operations.add(stage.getOperation());
+        greyscale = stage.isGreyscale();
+      }
+    }
+    if (table != null) {
+      LookupTable composed = table;
+      operations.add((pixel, maxPixelValue) -> composed.applyToPixel(pixel));
+    }
+    PixelOperation[] pipeline = operations.toArray(new PixelOperation[0]);
+    int width = baseImg.getWidth();
+    int size = width * baseImg.getHeight();
+    int[] pixels = new int[size];
+    baseImg.copyARGB(pixels);
+    executor.execute(baseImg.getHeight(), width, (startRow, endRow) -> {
+      for (int i = startRow * width; i < endRow * width; i++) {
+        int pixel = pixels[i];
+        for (PixelOperation operation : pipeline) {
+          pixel = operation.modifyPixel(pixel, maxValue);
+        }
+        pixels[i] = pixel;
+      }
+    });
+    if (greyscale) {
+      byte[] plane = new byte[size];
+      for (int i = 0; i < size; i++) {
+        plane[i] = (byte) pixels[i];
+      }
+      return baseImg.createGreyscale(resultImageName, plane);
+    }
+    return createImage(resultImageName, baseImg, pixels);
+  }
+
+  // helper method to return the stage of a greyscale operation
+  private static PointStage greyscaleStage(GreyscaleOperation operation) {
+    return PointStage.ofOperation((pixel, maxPixelValue) -> {
+      int grey = operation.toGrey(CustomImage.unpack(pixel, 2), CustomImage.unpack(pixel, 1),
+              CustomImage.unpack(pixel, 0), maxPixelValue);
+      return CustomImage.pack(grey, grey, grey, CustomImage.unpackAlpha(pixel));
+    }, true);
+  }
+
+  // helper method to return the stage of a color matrix
+  private PointStage colorMatrixStage(ColorMatrix matrix) {
+    if (matrix.isGreyscale()) {
+      return greyscaleStage((red, green, blue, maxPixelValue) ->
+              clampPixelValue(roundToInt(matrix.transform(0, red, green, blue)), maxPixelValue));
+    }
+    return PointStage.ofOperation((pixel, maxPixelValue) -> {
+      int r = CustomImage.unpack(pixel, 2);
+      int g = CustomImage.unpack(pixel, 1);
+      int b = CustomImage.unpack(pixel, 0);
+      return CustomImage.pack(
+              clampPixelValue(roundToInt(matrix.transform(0, r, g, b)), maxPixelValue),
+              clampPixelValue(roundToInt(matrix.transform(1, r, g, b)), maxPixelValue),
+              clampPixelValue(roundToInt(matrix.transform(2, r, g, b)), maxPixelValue),
+              CustomImage.unpackAlpha(pixel));
+    }, false);
   }
 
 
@@ -34,21 +300,119 @@ public class ImageProcessorImpl implements ImageProcessor {
     }
   }
 
-  private Pixel[][] pixelOperationHelper(PixelOperation operation, CustomImage baseImg,
-                                         String resultImageName) {
+  private int[] pixelOperationHelper(PixelOperation operation, CustomImage baseImg,
+                                     String resultImageName) {
     checkImageName(resultImageName);
-    int row = baseImg.getHeight();
-    int col = baseImg.getWidth();
-    Pixel[][] newPixels = new Pixel[row][col];
-    for (int i = 0; i < row; i++) {
-      for (int j = 0; j < col; j++) {
-        Pixel originalPixel = baseImg.getPixel(i, j);
-        newPixels[i][j] = operation.modifyPixel(originalPixel, baseImg.getMaxPixelValue());
+    int width = baseImg.getWidth();
+    int[] newPixels = new int[width * baseImg.getHeight()];
+    baseImg.copyARGB(newPixels);
+    int maxPixelValue = baseImg.getMaxPixelValue();
+    executor.execute(baseImg.getHeight(), width, (startRow, endRow) -> {
+      for (int i = startRow * width; i < endRow * width; i++) {
+        newPixels[i] = operation.modifyPixel(newPixels[i], maxPixelValue);
       }
-    }
+    });
     return newPixels;
   }
 
+  // helper method to apply the given lookup table to every pixel of the given base image. A
+  // greyscale base image only has its single plane read and stays greyscale, unless the table
+  // maps the channels differently.
+  private CustomImage lookupTableHelper(LookupTable table, CustomImage baseImg,
+                                        String resultImageName) {
+    checkImageName(resultImageName);
+    int width = baseImg.getWidth();
+    int size = width * baseImg.getHeight();
+    if (baseImg.isGreyscale() && table.isUniform()
+            && baseImg.getMaxPixelValue() <= CustomImage.MAX_PACKED_VALUE) {
+      int[] values = new int[size];
+      baseImg.copyChannel(0, values);
+      byte[] plane = new byte[size];
+      executor.execute(baseImg.getHeight(), width, (startRow, endRow) -> {
+        for (int i = startRow * width; i < endRow * width; i++) {
+          plane[i] = (byte) table.apply(0, values[i]);
+        }
+      });
+      return baseImg.createGreyscale(resultImageName, plane);
+    }
+    if (isWide(baseImg)) {
+      // the channels do not fit in a packed pixel, so each one is looked up on its own
+      int[][] channels = copyChannels(baseImg,
+              baseImg.isGreyscale() && table.isUniform() ? 1 : 3);
+      executor.execute(baseImg.getHeight(), width, (startRow, endRow) -> {
+        for (int channel = 0; channel < channels.length; channel++) {
+          int[] values = channels[channel];
+          for (int i = startRow * width; i < endRow * width; i++) {
+            values[i] = table.apply(channel, values[i]);
+          }
+        }
+      });
+      return baseImg.createPlanar(resultImageName, channels, null);
+    }
+    int[] newPixels = pixelOperationHelper((originalPixel, maxPixelValue) ->
+            table.applyToPixel(originalPixel), baseImg, resultImageName);
+    return createImage(resultImageName, baseImg, newPixels);
+  }
+
+  // helper method to check if the channel values of the given image need more than 8 bits
+  private static boolean isWide(CustomImage image) {
+    return image.getMaxPixelValue() > CustomImage.MAX_PACKED_VALUE;
+  }
+
+  // helper method to copy the given number of channels of the given image, in channel order
+  private static int[][] copyChannels(CustomImage image, int count) {
+    int[][] channels = new int[count][image.getWidth() * image.getHeight()];
+    for (int channel = 0; channel < count; channel++) {
+      image.copyChannel(channel, channels[channel]);
+    }
+    return channels;
+  }
+
+  // helper method to create a new image of the same size and max value as the given base image
+  private CustomImage createImage(String resultImageName, CustomImage baseImg, int[] newPixels) {
+    return new CustomImage(resultImageName, baseImg.getWidth(), baseImg.getHeight(), newPixels,
+            baseImg.getMaxPixelValue());
+  }
+
+  // helper method to apply the given operation to every pixel and return a greyscale image of
+  // the same depth. A greyscale base image only has its single plane read.
+  private CustomImage greyscaleOperationHelper(GreyscaleOperation operation, CustomImage baseImg,
+                                               String resultImageName) {
+    checkImageName(resultImageName);
+    int width = baseImg.getWidth();
+    int size = width * baseImg.getHeight();
+    int maxPixelValue = baseImg.getMaxPixelValue();
+    int[] grey = new int[size];
+    if (baseImg.isGreyscale()) {
+      baseImg.copyChannel(0, grey);
+      executor.execute(baseImg.getHeight(), width, (startRow, endRow) -> {
+        for (int i = startRow * width; i < endRow * width; i++) {
+          int value = grey[i];
+          grey[i] = operation.toGrey(value, value, value, maxPixelValue);
+        }
+      });
+    } else if (isWide(baseImg)) {
+      int[][] channels = copyChannels(baseImg, 3);
+      executor.execute(baseImg.getHeight(), width, (startRow, endRow) -> {
+        for (int i = startRow * width; i < endRow * width; i++) {
+          grey[i] = operation.toGrey(channels[2][i], channels[1][i], channels[0][i],
+                  maxPixelValue);
+        }
+      });
+    } else {
+      int[] pixels = new int[size];
+      baseImg.copyARGB(pixels);
+      executor.execute(baseImg.getHeight(), width, (startRow, endRow) -> {
+        for (int i = startRow * width; i < endRow * width; i++) {
+          int pixel = pixels[i];
+          grey[i] = operation.toGrey(CustomImage.unpack(pixel, 2),
+                  CustomImage.unpack(pixel, 1), CustomImage.unpack(pixel, 0), maxPixelValue);
+        }
+      });
+    }
+    return baseImg.createPlanar(resultImageName, new int[][]{grey}, null);
+  }
+
   /**
    * Creates a greyscale image, where the channel of each pixel is equal to the specified
    * channel value of that pixel in the given original image.
@@ -68,42 +432,30 @@ public class ImageProcessorImpl implements ImageProcessor {
       throw new IllegalArgumentException("Invalid channel value.");
     }
     checkImageName(originalImageName);
-    CustomImage baseImg = this.getImage(originalImageName);
-    Pixel[][] newPixels = pixelOperationHelper((originalPixel, maxPixelValue) -> {
-      int newComponentVal = originalPixel.getColor(channel);
-      return new Pixel(newComponentVal, newComponentVal, newComponentVal, originalPixel.getAlpha());
-    }, baseImg, resultImageName);
-    CustomImage channelVisualisedImg = new CustomImage(resultImageName,
-            newPixels, baseImg.getMaxPixelValue());
-    processedImages.put(resultImageName, channelVisualisedImg);
+    checkImageName(resultImageName);
+    record(resultImageName, inputs -> inputs[0].extractChannel(resultImageName, channel),
+        greyscaleStage((red, green, blue, maxPixelValue) ->
+            channel == 0 ? blue : channel == 1 ? green : red), originalImageName);
   }
 
   @Override
   public void visualiseValue(String originalImageName, String resultImageName) {
     checkImageName(originalImageName);
-    CustomImage baseImg = this.getImage(originalImageName);
-    Pixel[][] newPixels = pixelOperationHelper((originalPixel, maxPixelValue) -> {
-      int maxComponent = Math.max(Math.max(originalPixel.getColor(2),
-              originalPixel.getColor(1)), originalPixel.getColor(0));
-      return new Pixel(maxComponent, maxComponent, maxComponent, originalPixel.getAlpha());
-    }, baseImg, resultImageName);
-    CustomImage valueVisualisedImg = new CustomImage(resultImageName,
-            newPixels, baseImg.getMaxPixelValue());
-    processedImages.put(resultImageName, valueVisualisedImg);
+    checkImageName(resultImageName);
+    GreyscaleOperation value = (red, green, blue, maxPixelValue) ->
+        Math.max(Math.max(red, green), blue);
+    record(resultImageName, inputs -> greyscaleOperationHelper(value, inputs[0], resultImageName),
+        greyscaleStage(value), originalImageName);
   }
 
   @Override
   public void visualiseIntensity(String originalImageName, String resultImageName) {
     checkImageName(originalImageName);
-    CustomImage baseImg = this.getImage(originalImageName);
-    Pixel[][] newPixels = pixelOperationHelper((originalPixel, maxPixelValue) -> {
-      int avgComponent = roundToInt(((originalPixel.getColor(2)
-              + originalPixel.getColor(1) + originalPixel.getColor(0)) / 3.0));
-      return new Pixel(avgComponent, avgComponent, avgComponent, originalPixel.getAlpha());
-    }, baseImg, resultImageName);
-    CustomImage intensityVisualisedImg = new CustomImage(resultImageName,
-            newPixels, baseImg.getMaxPixelValue());
-    processedImages.put(resultImageName, intensityVisualisedImg);
+    checkImageName(resultImageName);
+    GreyscaleOperation intensity = (red, green, blue, maxPixelValue) ->
+        roundToInt((red + green + blue) / 3.0);
+    record(resultImageName, inputs -> greyscaleOperationHelper(intensity, inputs[0],
+        resultImageName), greyscaleStage(intensity), originalImageName);
   }
 
   /**
@@ -119,41 +471,82 @@ public class ImageProcessorImpl implements ImageProcessor {
 
   /**
    * Helper method to return a weighted sum of pixels. This method takes a 3 * 3 matrix and
-   * returns a 2D  array of pixels, where the channel of each pixel is equal to the matrix
+   * returns a packed raster, where the channel of each pixel is equal to the matrix
    * weighted sum of the channel values of that pixel in the given original image.
    *
    * @param originalImage the original image to work with
    * @param matrix        the weight matrix
-   * @return 2D array of pixels
+   * @return packed raster of pixels
    */
-  protected Pixel[][] weightedSum(CustomImage originalImage, double[][] matrix) {
-    if (matrix.length == 0 || matrix.length != 3 || matrix[0].length != 3) {
-      throw new IllegalArgumentException("Invalid transformation matrix");
-    }
-    int height = originalImage.getHeight();
+  protected int[] weightedSum(CustomImage originalImage, double[][] matrix) {
+    return weightedSum(originalImage, new ColorMatrix(matrix));
+  }
+
+  // helper method to apply the given color matrix to every pixel and return a packed raster
+  private int[] weightedSum(CustomImage originalImage, ColorMatrix matrix) {
     int width = originalImage.getWidth();
-    Pixel[][] newPixels = new Pixel[height][width];
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        Pixel pixel = originalImage.getPixel(i, j);
-        int r = pixel.getColor(2);
-        int g = pixel.getColor(1);
-        int b = pixel.getColor(0);
-        int alpha = originalImage.getMaxPixelValue();
-        int rNew =
-                clampPixelValue(roundToInt(r * matrix[0][0] + g * matrix[0][1]
-                        + b * matrix[0][2]), alpha);
-        int gNew = clampPixelValue(roundToInt(r * matrix[1][0] + g * matrix[1][1]
-                + b * matrix[1][2]), alpha);
-        int bNew = clampPixelValue(roundToInt(r * matrix[2][0] + g * matrix[2][1]
-                + b * matrix[2][2]), alpha);
-        Pixel newPixel = new Pixel(rNew, gNew, bNew, pixel.getAlpha());
-        newPixels[i][j] = newPixel;
+    int[] newPixels = new int[width * originalImage.getHeight()];
+    originalImage.copyARGB(newPixels);
+    int maxValue = originalImage.getMaxPixelValue();
+    executor.execute(originalImage.getHeight(), width, (startRow, endRow) -> {
+      for (int i = startRow * width; i < endRow * width; i++) {
+        int pixel = newPixels[i];
+        int r = CustomImage.unpack(pixel, 2);
+        int g = CustomImage.unpack(pixel, 1);
+        int b = CustomImage.unpack(pixel, 0);
+        int rNew = clampPixelValue(roundToInt(matrix.transform(0, r, g, b)), maxValue);
+        int gNew = clampPixelValue(roundToInt(matrix.transform(1, r, g, b)), maxValue);
+        int bNew = clampPixelValue(roundToInt(matrix.transform(2, r, g, b)), maxValue);
+        newPixels[i] = CustomImage.pack(rNew, gNew, bNew, CustomImage.unpackAlpha(pixel));
       }
-    }
+    });
     return newPixels;
   }
 
+  // helper method to apply the given color matrix to every pixel and return the new channels,
+  // for images whose channel values do not fit in a packed pixel
+  private int[][] weightedSumChannels(CustomImage originalImage, ColorMatrix matrix) {
+    int width = originalImage.getWidth();
+    int[][] channels = copyChannels(originalImage, 3);
+    int maxValue = originalImage.getMaxPixelValue();
+    executor.execute(originalImage.getHeight(), width, (startRow, endRow) -> {
+      for (int i = startRow * width; i < endRow * width; i++) {
+        int r = channels[2][i];
+        int g = channels[1][i];
+        int b = channels[0][i];
+        channels[2][i] = clampPixelValue(roundToInt(matrix.transform(0, r, g, b)), maxValue);
+        channels[1][i] = clampPixelValue(roundToInt(matrix.transform(1, r, g, b)), maxValue);
+        channels[0][i] = clampPixelValue(roundToInt(matrix.transform(2, r, g, b)), maxValue);
+      }
+    });
+    return channels;
+  }
+
+  // helper method to apply the given color matrix to the given base image. A greyscale base
+  // image has the same value in every channel, so the matrix is compiled into a lookup table. A
+  // matrix with equal rows gives a greyscale image, so only one weighted sum is computed.
+  private CustomImage colorMatrixHelper(ColorMatrix matrix, CustomImage baseImg,
+                                        String resultImageName) {
+    checkImageName(resultImageName);
+    int maxValue = baseImg.getMaxPixelValue();
+    if (baseImg.isGreyscale() && maxValue <= CustomImage.MAX_PACKED_VALUE) {
+      LookupTable table = LookupTable.compile(maxValue,
+          value -> roundToInt(matrix.transform(0, value, value, value)),
+          value -> roundToInt(matrix.transform(1, value, value, value)),
+          value -> roundToInt(matrix.transform(2, value, value, value)));
+      return lookupTableHelper(table, baseImg, resultImageName);
+    }
+    if (matrix.isGreyscale()) {
+      return greyscaleOperationHelper((red, green, blue, maxPixelValue) ->
+              clampPixelValue(roundToInt(matrix.transform(0, red, green, blue)), maxPixelValue),
+              baseImg, resultImageName);
+    }
+    if (isWide(baseImg)) {
+      return baseImg.createPlanar(resultImageName, weightedSumChannels(baseImg, matrix), null);
+    }
+    return createImage(resultImageName, baseImg, weightedSum(baseImg, matrix));
+  }
+
   /**
    * Helper method to round a given double value to an integer value.
    *
@@ -161,7 +554,8 @@ public class ImageProcessorImpl implements ImageProcessor {
    * @return the rounded integer value
    */
   protected int roundToInt(double val) {
-    return (int) (Math.round(val * Math.pow(10, 0)) / Math.pow(10, 0));
+    // values beyond the range of an int saturate, as they did when rounding through a double
+    return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(val)));
   }
 
   /**
@@ -176,14 +570,8 @@ public class ImageProcessorImpl implements ImageProcessor {
   public void visualiseLuma(String originalImageName, String resultImageName) {
     checkImageName(originalImageName);
     checkImageName(resultImageName);
-    CustomImage baseImg = this.getImage(originalImageName);
-
-    double[][] transformationMatrix = {{0.216, 0.7152, 0.0722}, {0.216, 0.7152, 0.0722},
-        {0.216, 0.7152, 0.0722}};
-    Pixel[][] newPixels = weightedSum(baseImg, transformationMatrix);
-    CustomImage lumaVisualisedImg = new CustomImage(resultImageName, newPixels,
-            baseImg.getMaxPixelValue());
-    processedImages.put(resultImageName, lumaVisualisedImg);
+    record(resultImageName, inputs -> colorMatrixHelper(ColorMatrix.LUMA, inputs[0],
+        resultImageName), colorMatrixStage(ColorMatrix.LUMA), originalImageName);
   }
 
   /**
@@ -202,56 +590,81 @@ public class ImageProcessorImpl implements ImageProcessor {
     if (axis != 0 && axis != 1) {
       throw new IllegalArgumentException("Invalid axis value");
     }
-    CustomImage baseImg = this.getImage(originalImageName);
+    record(resultImageName, inputs -> flipHelper(inputs[0], resultImageName, axis), null,
+        originalImageName);
+  }
+
+  // helper method to flip the given image along the given axis
+  private CustomImage flipHelper(CustomImage baseImg, String resultImageName, int axis) {
     int row = baseImg.getHeight();
     int col = baseImg.getWidth();
-    Pixel[][] newPixels = new Pixel[row][col];
+    if (isWide(baseImg)) {
+      int[][] channels = copyChannels(baseImg, baseImg.isGreyscale() ? 1 : 3);
+      for (int channel = 0; channel < channels.length; channel++) {
+        channels[channel] = flipRaster(channels[channel], row, col, axis);
+      }
+      int[] alpha = new int[row * col];
+      baseImg.copyAlpha(alpha);
+      return baseImg.createPlanar(resultImageName, channels, flipRaster(alpha, row, col, axis));
+    }
+    int[] original = new int[row * col];
+    baseImg.copyARGB(original);
+    return createImage(resultImageName, baseImg, flipRaster(original, row, col, axis));
+  }
+
+  // helper method to flip the given raster of values along the given axis
+  private static int[] flipRaster(int[] original, int row, int col, int axis) {
+    int[] newPixels = new int[row * col];
     if (axis == 0) { //Horizontal
       for (int i = 0; i < row; i++) {
-        for (int j = 0; j <= col / 2; j++) {
-          newPixels[i][col - j - 1] = baseImg.getPixel(i, j);
-          newPixels[i][j] = baseImg.getPixel(i, col - j - 1);
+        int offset = i * col;
+        for (int j = 0; j < col; j++) {
+          newPixels[offset + col - j - 1] = original[offset + j];
         }
       }
     } else if (axis == 1) { //Vertical
-      for (int i = 0; i <= row / 2; i++) {
-        for (int j = 0; j < col; j++) {
-          newPixels[row - i - 1][j] = baseImg.getPixel(i, j);
-          newPixels[i][j] = baseImg.getPixel(row - i - 1, j);
-        }
+      for (int i = 0; i < row; i++) {
+        System.arraycopy(original, (row - i - 1) * col, newPixels, i * col, col);
       }
     }
-    CustomImage newImageFlipped = new CustomImage(resultImageName,
-            newPixels, baseImg.getMaxPixelValue());
-    processedImages.put(resultImageName, newImageFlipped);
+    return newPixels;
   }
 
   @Override
   public void brighten(String originalImageName, String resultImageName, int increment) {
     checkImageName(originalImageName);
-    CustomImage baseImg = this.getImage(originalImageName);
-    PixelOperation brightenFunction = (originalPixel, maxPixelValue) -> new Pixel(
-            (clampPixelValue(originalPixel.getColor(2)
-                    + increment, baseImg.getMaxPixelValue())),
-            (clampPixelValue(originalPixel.getColor(1)
-                    + increment, baseImg.getMaxPixelValue())),
-            (clampPixelValue(originalPixel.getColor(0)
-                    + increment, baseImg.getMaxPixelValue())),
-            originalPixel.getAlpha());
-
-    Pixel[][] newPixels = pixelOperationHelper(brightenFunction, baseImg, resultImageName);
-    CustomImage brightenedImg = new CustomImage(resultImageName,
-            newPixels, baseImg.getMaxPixelValue());
-    processedImages.put(resultImageName, brightenedImg);
+    checkImageName(resultImageName);
+    // the new value of a channel depends only on its old value, so it is looked up in a table
+    IntFunction<LookupTable> brightenTable = maxPixelValue ->
+        LookupTable.compile(maxPixelValue, value -> value + increment);
+    record(resultImageName, inputs -> lookupTableHelper(
+        brightenTable.apply(inputs[0].getMaxPixelValue()), inputs[0], resultImageName),
+        PointStage.ofTable(brightenTable), originalImageName);
   }
 
   @Override
   public void split(String originalImageName, String resultRedImageName,
                     String resultGreenImageName, String resultBlueImageName) {
-
-    this.visualiseChannel(originalImageName, resultBlueImageName, 0);
-    this.visualiseChannel(originalImageName, resultGreenImageName, 1);
-    this.visualiseChannel(originalImageName, resultRedImageName, 2);
+    checkImageName(originalImageName);
+    checkImageName(resultRedImageName);
+    checkImageName(resultGreenImageName);
+    checkImageName(resultBlueImageName);
+    // split the image into planes once, each resulting image then shares one of the planes
+    ImageNode planar = createNode(originalImageName, inputs -> inputs[0].toPlanar(), null,
+        getNode(originalImageName));
+    // the planar node is referenced until all the resulting images are created
+    planar.retain();
+    String[] resultNames = {resultBlueImageName, resultGreenImageName, resultRedImageName};
+    try {
+      for (int channel = 0; channel < 3; channel++) {
+        String resultName = resultNames[channel];
+        int extracted = channel;
+        name(resultName, createNode(resultName,
+            inputs -> inputs[0].extractChannel(resultName, extracted), null, planar));
+      }
+    } finally {
+      release(planar);
+    }
   }
 
   @Override
@@ -261,32 +674,17 @@ public class ImageProcessorImpl implements ImageProcessor {
     checkImageName(greenImageName);
     checkImageName(blueImageName);
     checkImageName(resultImageName);
-    CustomImage redImg = this.getImage(redImageName);
-    CustomImage greenImg = this.getImage(greenImageName);
-    CustomImage blueImg = this.getImage(blueImageName);
-    if (redImg.getWidth() != greenImg.getWidth() || greenImg.getWidth() != blueImg.getWidth()
-            || redImg.getHeight() != greenImg.getHeight()
-            || greenImg.getHeight() != blueImg.getHeight()) {
+    ImageNode red = getNode(redImageName);
+    ImageNode green = getNode(greenImageName);
+    ImageNode blue = getNode(blueImageName);
+    if (red.getWidth() != green.getWidth() || green.getWidth() != blue.getWidth()
+            || red.getHeight() != green.getHeight() || green.getHeight() != blue.getHeight()) {
       throw new IllegalArgumentException("The width and height of the"
               + " given three images are not same.");
     }
-    int row = redImg.getHeight();
-    int col = redImg.getWidth();
-    Pixel[][] newPixels = new Pixel[row][col];
-
-    for (int i = 0; i < row; i++) {
-      for (int j = 0; j < col; j++) {
-        Pixel redComponent = redImg.getPixel(i, j);
-        Pixel greenComponent = greenImg.getPixel(i, j);
-        Pixel blueComponent = blueImg.getPixel(i, j);
-        Pixel newPixelVal = new Pixel(redComponent.getColor(2), greenComponent.getColor(1),
-                blueComponent.getColor(0), redComponent.getAlpha());
-        newPixels[i][j] = newPixelVal;
-      }
-    }
-    CustomImage finalCombinedImg = new CustomImage(resultImageName,
-            newPixels, redImg.getMaxPixelValue());
-    processedImages.put(resultImageName, finalCombinedImg);
+    // the planes of the given images are moved into the combined image
+    record(resultImageName, inputs -> CustomImage.combine(resultImageName, inputs[0], inputs[1],
+        inputs[2]), null, redImageName, greenImageName, blueImageName);
   }
 
   /**
@@ -304,13 +702,36 @@ public class ImageProcessorImpl implements ImageProcessor {
   public void sepia(String originalImageName, String resultImageName) {
     checkImageName(originalImageName);
     checkImageName(resultImageName);
-    CustomImage image = getImage(originalImageName);
-    double[][] transformationMatrix = {{0.393, 0.769, 0.189}, {0.349, 0.686, 0.168},
-        {0.272, 0.534, 0.131}};
-    Pixel[][] newPixels = weightedSum(image, transformationMatrix);
-    CustomImage sepiaTonedImage = new CustomImage(resultImageName, newPixels,
-            image.getMaxPixelValue());
-    processedImages.put(resultImageName, sepiaTonedImage);
+    record(resultImageName, inputs -> colorMatrixHelper(ColorMatrix.SEPIA, inputs[0],
+        resultImageName), colorMatrixStage(ColorMatrix.SEPIA), originalImageName);
+  }
+
+  /**
+   * Creates a new image by applying the given color transformation matrices, in order, to every
+   * pixel of the original image. The matrices are multiplied into a single matrix, so the image
+   * is transformed in a single pass and no intermediate image is created. The intermediate
+   * values are neither rounded nor clamped.
+   *
+   * @param originalImageName the name of the image to transform
+   * @param resultImageName   the name of the resulting image
+   * @param matrices          the 3 * 3 matrices to apply, with a row for each of the red, green
+   *                          and blue values
+   */
+  @Override
+  public void colorMatrix(String originalImageName, String resultImageName,
+                          double[][]... matrices) {
+    checkImageName(originalImageName);
+    checkImageName(resultImageName);
+    if (matrices == null || matrices.length == 0) {
+      throw new IllegalArgumentException("Invalid transformation matrix");
+    }
+    ColorMatrix fused = new ColorMatrix(matrices[0]);
+    for (int i = 1; i < matrices.length; i++) {
+      fused = fused.andThen(new ColorMatrix(matrices[i]));
+    }
+    ColorMatrix matrix = fused;
+    record(resultImageName, inputs -> colorMatrixHelper(matrix, inputs[0], resultImageName),
+        colorMatrixStage(matrix), originalImageName);
   }
 
   /*
@@ -324,128 +745,165 @@ public class ImageProcessorImpl implements ImageProcessor {
   }
 
   /**
-   * Helper method to add a given value to the pixel and return a new pixel.
+   * Helper method to add a given value to a channel value and return the new channel value.
    *
-   * @param originalPixel the pixel to add the given value to
+   * @param channelValue  the channel value to add the given value to
    * @param value         the value to add
    * @param maxPixelValue the maximum value a pixel can hold
-   * @return a new pixel, which has the clamped value of adding the value to the given pixel
+   * @return the clamped value of adding the value to the given channel value
    */
-  protected Pixel addHelper(Pixel originalPixel, double value, int maxPixelValue) {
-    int r = clampPixelValue(roundToInt(originalPixel.getColor(2) + value), maxPixelValue);
-    int g = clampPixelValue(roundToInt(originalPixel.getColor(1) + value), maxPixelValue);
-    int b = clampPixelValue(roundToInt(originalPixel.getColor(0) + value), maxPixelValue);
-    return new Pixel(r, g, b, originalPixel.getAlpha());
+  protected int addHelper(int channelValue, double value, int maxPixelValue) {
+    return clampPixelValue(roundToInt(channelValue + value), maxPixelValue);
   }
 
   @Override
   public void dither(String originalImageName, String resultImageName) {
     checkImageName(originalImageName);
     checkImageName(resultImageName);
-    CustomImage image = getImage(originalImageName);
+    record(resultImageName, inputs -> ditherHelper(inputs[0], resultImageName), null,
+        originalImageName);
+  }
+
+  // helper method to dither the given image with error diffusion
+  private CustomImage ditherHelper(CustomImage image, String resultImageName) {
     int height = image.getHeight();
     int width = image.getWidth();
-    // initially holds the image pixels of the original image, which is modified to hold the
-    // propagated error
-    Pixel[][] imagePixels = new Pixel[height][width];
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        imagePixels[i][j] = image.getPixel(i, j);
-      }
-    }
+    int maxValue = image.getMaxPixelValue();
+    // initially holds the green channel of the original image, which is modified to hold the
+    // propagated error. The green component is used to convert to greyscale, and every pixel is
+    // overwritten once it is visited, so the other channels need not be tracked.
+    int[] greyValues = new int[width * height];
+    image.copyChannel(1, greyValues);
 
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
-        Pixel pixel = imagePixels[i][j];
-        // use the green component to convert to greyscale
-        int oldColor = pixel.getColor(1);
-        int newColor = getClosestColor(oldColor, image.getMaxPixelValue());
-        imagePixels[i][j] = new Pixel(newColor, newColor, newColor, pixel.getAlpha());
+        int index = i * width + j;
+        int oldColor = greyValues[index];
+        int newColor = getClosestColor(oldColor, maxValue);
+        greyValues[index] = newColor;
         int error = oldColor - newColor;
         // add the error term to the neighbouring pixels
         if (j + 1 < width) {
-          Pixel newPixelValue = addHelper(imagePixels[i][j + 1], (error * (7.0 / 16.0)),
-                  image.getMaxPixelValue());
-          imagePixels[i][j + 1] = newPixelValue;
+          greyValues[index + 1] = addHelper(greyValues[index + 1], (error * (7.0 / 16.0)),
+                  maxValue);
         }
 
         if (j - 1 >= 0 && i + 1 < height) {
-          Pixel newPixelValue = addHelper(imagePixels[i + 1][j - 1], (error * (3.0 / 16.0)),
-                  image.getMaxPixelValue());
-          imagePixels[i + 1][j - 1] = newPixelValue;
+          greyValues[index + width - 1] = addHelper(greyValues[index + width - 1],
+                  (error * (3.0 / 16.0)), maxValue);
         }
 
         if (i + 1 < height) {
-          Pixel newPixelValue = addHelper(imagePixels[i + 1][j], (error * (5.0 / 16.0)),
-                  image.getMaxPixelValue());
-          imagePixels[i + 1][j] = newPixelValue;
+          greyValues[index + width] = addHelper(greyValues[index + width],
+                  (error * (5.0 / 16.0)), maxValue);
         }
 
         if (j + 1 < width && i + 1 < height) {
-          Pixel newPixelValue = addHelper(imagePixels[i + 1][j + 1], (error * (1.0 / 16.0)),
-                  image.getMaxPixelValue());
-          imagePixels[i + 1][j + 1] = newPixelValue;
+          greyValues[index + width + 1] = addHelper(greyValues[index + width + 1],
+                  (error * (1.0 / 16.0)), maxValue);
         }
       }
     }
-    CustomImage ditheredImage = new CustomImage(resultImageName, imagePixels,
-            image.getMaxPixelValue());
-    processedImages.put(resultImageName, ditheredImage);
+    return image.createPlanar(resultImageName, new int[][]{greyValues}, null);
   }
 
   /**
    * Helper method to apply a filter on the given image. This method takes a 2D kernel and
-   * returns a 2D array of pixels, which is the filtered version of the pixels of the given image.
+   * returns the filtered version of the given image, with the given name. A greyscale image is
+   * filtered on its single plane and stays greyscale.
    *
-   * @param originalImage the original image to work with
-   * @param kernel        the kernel to filter with
-   * @return 2D array of pixels
+   * @param originalImage   the original image to work with
+   * @param kernel          the kernel to filter with
+   * @param resultImageName the name of the filtered image
+   * @return the filtered image
    */
-  protected Pixel[][] applyFilter(CustomImage originalImage, int[][] kernel) {
-    if (kernel.length % 2 == 0) {
-      throw new IllegalArgumentException("filter contains a incomplete row");
-    }
-    if (kernel[0].length % 2 == 0) {
-      throw new IllegalArgumentException("filter contains a incomplete col");
-    }
-    if (kernel.length % kernel[0].length != 0) {
-      throw new IllegalArgumentException("filter contains a incomplete row or col");
-    }
-    int kernelSize = kernel.length;
-    double kernelSum = Arrays.stream(kernel)
-            .flatMapToInt(Arrays::stream)
-            .sum();
-    int row = originalImage.getHeight();
-    int col = originalImage.getWidth();
-    Pixel[][] newPixels = new Pixel[row][col];
-
-    for (int y = 0; y < row; y++) {
-      for (int x = 0; x < col; x++) {
-        int rSum = 0;
-        int gSum = 0;
-        int bSum = 0;
-        for (int j = -kernelSize / 2; j <= kernelSize / 2; j++) {
-          for (int i = -kernelSize / 2; i <= kernelSize / 2; i++) {
-            if (x + i >= 0 && x + i < col && y + j >= 0 && y + j < row) {
-              int weight = kernel[j + kernelSize / 2][i + kernelSize / 2];
-              Pixel originalPixel = originalImage.getPixel(y + j, x + i);
-              rSum += weight * originalPixel.getColor(2);
-              gSum += weight * originalPixel.getColor(1);
-              bSum += weight * originalPixel.getColor(0);
-            }
-          }
+  protected CustomImage applyFilter(CustomImage originalImage, int[][] kernel,
+                                    String resultImageName) {
+    return applyFilter(originalImage, new Kernel(kernel), resultImageName);
+  }
+
+  // helper method to apply the given kernel to every channel of the given image, the weighted
+  // sums are divided by the sum of the weights of the kernel, unless the weights add up to zero
+  private CustomImage applyFilter(CustomImage originalImage, Kernel kernel,
+                                  String resultImageName) {
+    int width = originalImage.getWidth();
+    int height = originalImage.getHeight();
+    int size = width * height;
+    int maxValue = originalImage.getMaxPixelValue();
+    double kernelSum = kernel.getSum() == 0 ? 1 : kernel.getSum();
+    boolean greyscale = originalImage.isGreyscale();
+    // channels of more than 8 bits are not packed into pixels, and the filtered image is planar
+    boolean planar = greyscale || isWide(originalImage);
+    int[] newPixels = null;
+    int[][] channels;
+    if (planar) {
+      channels = copyChannels(originalImage, greyscale ? 1 : 3);
+    } else {
+      channels = new int[3][size];
+      newPixels = new int[size];
+      originalImage.copyARGB(newPixels);
+      for (int channel = 0; channel < 3; channel++) {
+        int shift = channel << 3;
+        for (int i = 0; i < size; i++) {
+          channels[channel][i] = (newPixels[i] >>> shift) & 0xFF;
         }
-        int newR = clampPixelValue(roundToInt(rSum / kernelSum),
-                originalImage.getMaxPixelValue());
-        int newG = clampPixelValue(roundToInt(gSum / kernelSum),
-                originalImage.getMaxPixelValue());
-        int newB = clampPixelValue(roundToInt(bSum / kernelSum),
-                originalImage.getMaxPixelValue());
-        Pixel newPixel = new Pixel(newR, newG, newB, originalImage.getPixel(y, x).getAlpha());
-        newPixels[y][x] = newPixel;
       }
     }
-    return newPixels;
+    IntToDoubleFunction[] sums = new IntToDoubleFunction[channels.length];
+    if (kernel.isIntegral()) {
+      int[][] integerSums = convolutionEngine.convolve(channels, width, height, kernel);
+      for (int channel = 0; channel < channels.length; channel++) {
+        int[] channelSums = integerSums[channel];
+        sums[channel] = i -> channelSums[i];
+      }
+    } else {
+      double[][] realSums = convolutionEngine.convolveReal(channels, width, height, kernel);
+      for (int channel = 0; channel < channels.length; channel++) {
+        double[] channelSums = realSums[channel];
+        sums[channel] = i -> channelSums[i];
+      }
+    }
+    if (planar) {
+      int[][] results = new int[channels.length][size];
+      executor.execute(height, width, (startRow, endRow) -> {
+        for (int channel = 0; channel < results.length; channel++) {
+          for (int i = startRow * width; i < endRow * width; i++) {
+            results[channel][i] = clampPixelValue(
+                    roundToInt(sums[channel].applyAsDouble(i) / kernelSum), maxValue);
+          }
+        }
+      });
+      return originalImage.createPlanar(resultImageName, results, null);
+    }
+    int[] pixels = newPixels;
+    executor.execute(height, width, (startRow, endRow) -> {
+      for (int i = startRow * width; i < endRow * width; i++) {
+        int newR = clampPixelValue(roundToInt(sums[2].applyAsDouble(i) / kernelSum), maxValue);
+        int newG = clampPixelValue(roundToInt(sums[1].applyAsDouble(i) / kernelSum), maxValue);
+        int newB = clampPixelValue(roundToInt(sums[0].applyAsDouble(i) / kernelSum), maxValue);
+        pixels[i] = CustomImage.pack(newR, newG, newB, CustomImage.unpackAlpha(pixels[i]));
+      }
+    });
+    return createImage(resultImageName, originalImage, pixels);
+  }
+
+  /**
+   * Creates a filtered version of the given image, by applying the given kernel to every
+   * channel of every pixel of the original image. The weighted sums are divided by the sum of
+   * the weights of the kernel, so that the kernel does not change the brightness of the image,
+   * unless the weights add up to zero, as in an edge detection kernel.
+   *
+   * @param originalImageName the name of the image that is to be filtered
+   * @param resultImageName   the name of the resulting filtered image
+   * @param kernel            the square kernel with an odd number of rows and columns
+   */
+  @Override
+  public void filter(String originalImageName, String resultImageName, double[][] kernel) {
+    checkImageName(originalImageName);
+    checkImageName(resultImageName);
+    Kernel filterKernel = new Kernel(kernel);
+    record(resultImageName, inputs -> applyFilter(inputs[0], filterKernel, resultImageName),
+        null, originalImageName);
   }
 
   /**
@@ -463,12 +921,9 @@ public class ImageProcessorImpl implements ImageProcessor {
   public void blur(String originalImageName, String resultImageName) {
     checkImageName(originalImageName);
     checkImageName(resultImageName);
-    CustomImage originalImage = this.getImage(originalImageName);
     int[][] kernel = {{1, 2, 1}, {2, 4, 2}, {1, 2, 1}};
-    Pixel[][] newPixels = applyFilter(originalImage, kernel);
-    CustomImage blurredImage = new CustomImage(resultImageName, newPixels,
-            originalImage.getMaxPixelValue());
-    processedImages.put(resultImageName, blurredImage);
+    record(resultImageName, inputs -> applyFilter(inputs[0], kernel, resultImageName), null,
+        originalImageName);
   }
 
   /**
@@ -488,22 +943,43 @@ public class ImageProcessorImpl implements ImageProcessor {
   public void sharpen(String originalImageName, String resultImageName) {
     checkImageName(originalImageName);
     checkImageName(resultImageName);
-    CustomImage originalImage = this.getImage(originalImageName);
-    int[][] kernel = {{-1, -1, -1, -1, -1}, {-1, 2, 2, 2, -1}, {-1, 2, 8, 2, -1}, {-1, 2, 2, 2, -1},
-        {-1, -1, -1, -1, -1}};
-    Pixel[][] newPixels = applyFilter(originalImage, kernel);
-    CustomImage sharpenedImage = new CustomImage(resultImageName, newPixels,
-            originalImage.getMaxPixelValue());
-    processedImages.put(resultImageName, sharpenedImage);
+    int[][] kernel = {{-1, -1, -1, -1, -1}, {-1, 2, 2, 2, -1}, {-1, 2, 8, 2, -1},
+        {-1, 2, 2, 2, -1}, {-1, -1, -1, -1, -1}};
+    record(resultImageName, inputs -> applyFilter(inputs[0], kernel, resultImageName), null,
+        originalImageName);
   }
 
+  /**
+   * Returns the image with the given name, which is computed first if it is pending.
+   *
+   * @param imageName the name of the image
+   * @return the image with the given name
+   */
   @Override
   public CustomImage getImage(String imageName) {
-    if (processedImages.containsKey(imageName)) {
-      return processedImages.get(imageName);
-    } else {
-      throw new IllegalArgumentException("An Image with the given name not found.");
-    }
+    ImageNode node = getNode(imageName);
+    return executor.compute(() -> materialize(node));
+  }
+
+  /**
+   * Returns a supplier of the image that is stored under the given name now, which is computed
+   * when the supplier is first called, even if the name has been given to another image by then.
+   * The image, and the images it is computed from, are kept until then. The supplier is not
+   * called again once it has returned the image, and is not called while the image processor is
+   * used by another thread.
+   *
+   * @param imageName the name of the image
+   * @return the supplier of the image
+   * @throws IllegalArgumentException if there is no image with the given name
+   */
+  Supplier<CustomImage> getPendingImage(String imageName) throws IllegalArgumentException {
+    ImageNode node = getNode(imageName);
+    node.retain();
+    return () -> {
+      CustomImage image = executor.compute(() -> materialize(node));
+      release(node);
+      return image;
+    };
   }
 
 }
@@ -3,7 +3,9 @@ package model;
 import utility.CustomImage;
 
 /**
- * This class represents a read-only version of the image processor model.
+ * This class represents a read-only version of the image processor model. Reading images is
+ * safe while other threads change the model only if the model itself is thread-safe, such as a
+ * {@link ConcurrentImageProcessor}.
  */
 public class ImageProcessorROImpl implements ImageProcessorRO {
   private final ImageProcessor model;
@@ -0,0 +1,59 @@
+package model;
+
+import utility.CustomImage;
+
+/**
+ * This interface represents the storage of the images an image processor has computed or
+ * loaded. Every image is stored under the unique id of the node that holds it. A store may evict
+ * images to stay within its memory budget, in which case the image processor recomputes them
+ * from the operations they were computed with when they are requested again. Pinned images,
+ * such as loaded images, cannot be recomputed and are never evicted.
+ */
+public interface ImageStore {
+  /**
+   * Stores the given image under the given id, replacing any image stored under it.
+   *
+   * @param id     the id of the image
+   * @param image  the image
+   * @param pinned true if the image cannot be recomputed and must not be evicted
+   */
+  void put(long id, CustomImage image, boolean pinned);
+
+  /**
+   * Returns the image stored under the given id, and counts it as used.
+   *
+   * @param id the id of the image
+   * @return the image, or null if no image is stored under the id or it was evicted
+   */
+  CustomImage get(long id);
+
+  /**
+   * Returns true if an image is stored under the given id, without counting it as used.
+   *
+   * @param id the id of the image
+   * @return true if the image is stored
+   */
+  boolean contains(long id);
+
+  /**
+   * Removes the image stored under the given id, if there is one.
+   *
+   * @param id the id of the image
+   */
+  void remove(long id);
+
+  /**
+   * Returns true if this store may evict images that are not pinned. The image processor only
+   * keeps the operations an image was computed with when the image may have to be recomputed.
+   *
+   * @return true if images may be evicted
+   */
+  boolean isBounded();
+
+  /**
+   * Returns the number of bytes taken by the images in this store.
+   *
+   * @return the size of the stored images in bytes
+   */
+  long getSizeInBytes();
+}
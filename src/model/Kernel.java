@@ -0,0 +1,306 @@
+package model;
+
+/**
+ * This class represents a square filter kernel with an odd size. The weights of a kernel are
+ * real numbers. A kernel whose weights are all small integers is marked as integral, so that it
+ * can be applied with exact integer sums that cannot overflow. On construction the kernel is
+ * checked for separability, that is whether it is the outer product of a column vector and a row
+ * vector, so that it can be applied as two 1D passes.
+ */
+class Kernel {
+  // relative tolerance used to decide whether a real kernel is the outer product of two vectors
+  private static final double SEPARABILITY_TOLERANCE = 1e-9;
+  // largest sum of the magnitudes of integer weights for which the weighted sum of 16-bit
+  // channel values still fits in an int
+  private static final int MAX_INTEGRAL_WEIGHT = Integer.MAX_VALUE / 65535;
+
+  private final double[][] weights;
+  private final int[][] integerWeights;
+  private final int size;
+  private final double sum;
+  private final int[] columnVector;
+  private final int[] rowVector;
+  private final double[] realColumnVector;
+  private final double[] realRowVector;
+
+  /**
+   * Constructs a kernel with the given integer weights.
+   *
+   * @param weights the weights of the kernel
+   * @throws IllegalArgumentException if the kernel is not square or does not have an odd size
+   */
+  Kernel(int[][] weights) throws IllegalArgumentException {
+    this(toReal(weights));
+  }
+
+  /**
+   * Constructs a kernel with the given weights.
+   *
+   * @param weights the weights of the kernel
+   * @throws IllegalArgumentException if the kernel is not square, does not have an odd size or
+   *                                  contains a weight that is not finite
+   */
+  Kernel(double[][] weights) throws IllegalArgumentException {
+    if (weights == null) {
+      throw new IllegalArgumentException("Kernel cannot be null");
+    }
+    if (weights.length % 2 == 0) {
+      throw new IllegalArgumentException("filter contains a incomplete row");
+    }
+    if (weights[0] == null || weights[0].length % 2 == 0) {
+      throw new IllegalArgumentException("filter contains a incomplete col");
+    }
+    for (double[] row : weights) {
+      if (row == null || row.length != weights.length) {
+        throw new IllegalArgumentException("filter contains a incomplete row or col");
+      }
+    }
+    this.size = weights.length;
+    this.weights = new double[size][];
+    double total = 0;
+    double magnitude = 0;
+    boolean integral = true;
+    for (int i = 0; i < size; i++) {
+      this.weights[i] = weights[i].clone();
+      for (double weight : weights[i]) {
+        if (!Double.isFinite(weight)) {
+          throw new IllegalArgumentException("filter contains a weight that is not a number");
+        }
+        integral &= weight == Math.rint(weight);
+        total += weight;
+        magnitude += Math.abs(weight);
+      }
+    }
+    this.sum = total;
+    if (integral && magnitude <= MAX_INTEGRAL_WEIGHT) {
+      this.integerWeights = new int[size][size];
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          this.integerWeights[i][j] = (int) this.weights[i][j];
+        }
+      }
+      int[][] vectors = factorise(this.integerWeights);
+      this.columnVector = vectors == null ? null : vectors[0];
+      this.rowVector = vectors == null ? null : vectors[1];
+      this.realColumnVector = vectors == null ? null : toReal(vectors[0]);
+      this.realRowVector = vectors == null ? null : toReal(vectors[1]);
+    } else {
+      this.integerWeights = null;
+      this.columnVector = null;
+      this.rowVector = null;
+      double[][] vectors = factorise(this.weights);
+      this.realColumnVector = vectors == null ? null : vectors[0];
+      this.realRowVector = vectors == null ? null : vectors[1];
+    }
+  }
+
+  // helper method to convert integer weights to real weights
+  private static double[][] toReal(int[][] weights) {
+    if (weights == null) {
+      return null;
+    }
+    double[][] real = new double[weights.length][];
+    for (int i = 0; i < weights.length; i++) {
+      real[i] = weights[i] == null ? null : toReal(weights[i]);
+    }
+    return real;
+  }
+
+  // helper method to convert an integer vector to a real vector
+  private static double[] toReal(int[] vector) {
+    double[] real = new double[vector.length];
+    for (int i = 0; i < vector.length; i++) {
+      real[i] = vector[i];
+    }
+    return real;
+  }
+
+  // helper method to factorise the kernel into integer column and row vectors, such that
+  // weights[i][j] == column[i] * row[j], or return null if the kernel is not separable
+  private static int[][] factorise(int[][] weights) {
+    int size = weights.length;
+    // the row vector is the first non-zero row, reduced by the gcd of its entries
+    int[] row = null;
+    for (int[] candidate : weights) {
+      int gcd = 0;
+      for (int weight : candidate) {
+        gcd = gcd(gcd, Math.abs(weight));
+      }
+      if (gcd != 0) {
+        row = new int[size];
+        for (int j = 0; j < size; j++) {
+          row[j] = candidate[j] / gcd;
+        }
+        break;
+      }
+    }
+    if (row == null) {
+      return null;
+    }
+    int pivot = 0;
+    while (row[pivot] == 0) {
+      pivot++;
+    }
+    // every row must be an integer multiple of the row vector
+    int[] column = new int[size];
+    for (int i = 0; i < size; i++) {
+      if (weights[i][pivot] % row[pivot] != 0) {
+        return null;
+      }
+      column[i] = weights[i][pivot] / row[pivot];
+      for (int j = 0; j < size; j++) {
+        if ((long) weights[i][j] != (long) column[i] * row[j]) {
+          return null;
+        }
+      }
+    }
+    return new int[][]{column, row};
+  }
+
+  // helper method to factorise the kernel into real column and row vectors, such that
+  // weights[i][j] is column[i] * row[j] within a relative tolerance, or return null if the
+  // kernel is not separable
+  private static double[][] factorise(double[][] weights) {
+    int size = weights.length;
+    // the row vector is the row that contains the weight of the largest magnitude
+    int pivotRow = 0;
+    int pivot = 0;
+    double largest = 0;
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        if (Math.abs(weights[i][j]) > largest) {
+          largest = Math.abs(weights[i][j]);
+          pivotRow = i;
+          pivot = j;
+        }
+      }
+    }
+    if (largest == 0) {
+      return null;
+    }
+    double[] row = weights[pivotRow].clone();
+    double[] column = new double[size];
+    for (int i = 0; i < size; i++) {
+      column[i] = weights[i][pivot] / row[pivot];
+      for (int j = 0; j < size; j++) {
+        if (Math.abs(weights[i][j] - column[i] * row[j]) > SEPARABILITY_TOLERANCE * largest) {
+          return null;
+        }
+      }
+    }
+    return new double[][]{column, row};
+  }
+
+  // helper method to compute the greatest common divisor of two non-negative integers
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  /**
+   * Returns the number of rows and columns of the kernel.
+   *
+   * @return the size of the kernel
+   */
+  int getSize() {
+    return this.size;
+  }
+
+  /**
+   * Returns the distance from the centre of the kernel to its edge.
+   *
+   * @return the radius of the kernel
+   */
+  int getRadius() {
+    return this.size / 2;
+  }
+
+  /**
+   * Returns true if the kernel can be applied with exact integer sums.
+   *
+   * @return true if the kernel is integral
+   */
+  boolean isIntegral() {
+    return this.integerWeights != null;
+  }
+
+  /**
+   * Returns the weight at the given position of an integral kernel.
+   *
+   * @param row the row of the weight
+   * @param col the column of the weight
+   * @return the weight
+   */
+  int getWeight(int row, int col) {
+    return this.integerWeights[row][col];
+  }
+
+  /**
+   * Returns the weight at the given position of the kernel.
+   *
+   * @param row the row of the weight
+   * @param col the column of the weight
+   * @return the weight
+   */
+  double getRealWeight(int row, int col) {
+    return this.weights[row][col];
+  }
+
+  /**
+   * Returns the sum of all the weights of the kernel, which the filtered values are divided by.
+   *
+   * @return the sum of the weights
+   */
+  double getSum() {
+    return this.sum;
+  }
+
+  /**
+   * Returns true if the kernel is the outer product of a column and a row vector.
+   *
+   * @return true if the kernel is separable
+   */
+  boolean isSeparable() {
+    return this.realRowVector != null;
+  }
+
+  /**
+   * Returns the column vector of a separable integral kernel.
+   *
+   * @return the column vector
+   */
+  int[] getColumnVector() {
+    return this.columnVector.clone();
+  }
+
+  /**
+   * Returns the row vector of a separable integral kernel.
+   *
+   * @return the row vector
+   */
+  int[] getRowVector() {
+    return this.rowVector.clone();
+  }
+
+  /**
+   * Returns the column vector of a separable kernel.
+   *
+   * @return the column vector
+   */
+  double[] getRealColumnVector() {
+    return this.realColumnVector.clone();
+  }
+
+  /**
+   * Returns the row vector of a separable kernel.
+   *
+   * @return the row vector
+   */
+  double[] getRealRowVector() {
+    return this.realRowVector.clone();
+  }
+}
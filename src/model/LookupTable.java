@@ -0,0 +1,156 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+import utility.CustomImage;
+
+/**
+ * This class represents a point operation on the channels of an image, compiled into a lookup
+ * table. The new value of a channel depends only on the old value of the same channel, so the
+ * new values are computed once for every possible channel value and applying the operation to a
+ * pixel only reads the table. The tables are indexed by channel, 0 - Blue, 1 - Green, 2 - Red,
+ * and every value in them is clamped to the range of the image.
+ *
+ * <p>Lookup tables compose: applying one table after another is again a lookup table, so a chain
+ * of point operations collapses into a single table that is applied in a single pass.
+ */
+final class LookupTable {
+  private final int maxPixelValue;
+  private final int[][] tables;
+  private final boolean uniform;
+
+  // constructs a lookup table from the given tables, which are owned by the lookup table
+  private LookupTable(int maxPixelValue, int[][] tables) {
+    this.maxPixelValue = maxPixelValue;
+    this.tables = tables;
+    this.uniform = Arrays.equals(tables[0], tables[1]) && Arrays.equals(tables[0], tables[2]);
+  }
+
+  /**
+   * Compiles the given function, applied to every channel, into a lookup table for images with
+   * the given maximum value. The results of the function are clamped to the range of the image.
+   *
+   * @param maxPixelValue the maximum value a channel can have
+   * @param function      the new value of a channel given its old value
+   * @return the lookup table of the function
+   * @throws IllegalArgumentException if the maximum value is negative
+   */
+  static LookupTable compile(int maxPixelValue, IntUnaryOperator function)
+          throws IllegalArgumentException {
+    return compile(maxPixelValue, function, function, function);
+  }
+
+  /**
+   * Compiles the given functions, one per channel, into a lookup table for images with the given
+   * maximum value. The results of the functions are clamped to the range of the image.
+   *
+   * @param maxPixelValue the maximum value a channel can have
+   * @param red           the new value of the red channel given its old value
+   * @param green         the new value of the green channel given its old value
+   * @param blue          the new value of the blue channel given its old value
+   * @return the lookup table of the functions
+   * @throws IllegalArgumentException if the maximum value is negative
+   */
+  static LookupTable compile(int maxPixelValue, IntUnaryOperator red, IntUnaryOperator green,
+                             IntUnaryOperator blue) throws IllegalArgumentException {
+    if (maxPixelValue < 0) {
+      throw new IllegalArgumentException("Max pixel value cannot be negative");
+    }
+    IntUnaryOperator[] functions = {blue, green, red};
+    int[][] tables = new int[3][];
+    for (int channel = 0; channel < 3; channel++) {
+      // a function shared by several channels is only evaluated once
+      for (int previous = 0; previous < channel && tables[channel] == null; previous++) {
+        if (functions[previous] == functions[channel]) {
+          tables[channel] = tables[previous];
+        }
+      }
+      if (tables[channel] == null) {
+        tables[channel] = new int[maxPixelValue + 1];
+        for (int value = 0; value <= maxPixelValue; value++) {
+          tables[channel][value] = Math.max(0, Math.min(maxPixelValue,
+                  functions[channel].applyAsInt(value)));
+        }
+      }
+    }
+    return new LookupTable(maxPixelValue, tables);
+  }
+
+  /**
+   * Returns the lookup table that leaves every channel unchanged.
+   *
+   * @param maxPixelValue the maximum value a channel can have
+   * @return the identity lookup table
+   */
+  static LookupTable identity(int maxPixelValue) {
+    return compile(maxPixelValue, IntUnaryOperator.identity());
+  }
+
+  /**
+   * Returns the lookup table that applies this table and then the given table.
+   *
+   * @param next the table to apply after this table
+   * @return the composed lookup table
+   * @throws IllegalArgumentException if the tables are for images with different maximum values
+   */
+  LookupTable andThen(LookupTable next) throws IllegalArgumentException {
+    if (next.maxPixelValue != this.maxPixelValue) {
+      throw new IllegalArgumentException("Lookup tables are for different max pixel values");
+    }
+    int[][] composed = new int[3][];
+    for (int channel = 0; channel < 3; channel++) {
+      if (channel > 0 && this.uniform && next.uniform) {
+        composed[channel] = composed[0];
+        continue;
+      }
+      composed[channel] = new int[maxPixelValue + 1];
+      for (int value = 0; value <= maxPixelValue; value++) {
+        composed[channel][value] = next.tables[channel][this.tables[channel][value]];
+      }
+    }
+    return new LookupTable(maxPixelValue, composed);
+  }
+
+  /**
+   * Returns the maximum value a channel can have in the images this table applies to.
+   *
+   * @return the maximum value of a channel
+   */
+  int getMaxPixelValue() {
+    return this.maxPixelValue;
+  }
+
+  /**
+   * Returns true if every channel is mapped by the same table, so that a greyscale image stays
+   * greyscale.
+   *
+   * @return true if the table is the same for every channel
+   */
+  boolean isUniform() {
+    return this.uniform;
+  }
+
+  /**
+   * Returns the new value of the given channel.
+   *
+   * @param channel the channel, 0 - Blue, 1 - Green, 2 - Red
+   * @param value   the old value of the channel
+   * @return the new value of the channel
+   */
+  int apply(int channel, int value) {
+    return this.tables[channel][value];
+  }
+
+  /**
+   * Returns the new value of the given pixel, the opacity of the pixel is unchanged.
+   *
+   * @param pixel the packed 0xAARRGGBB value of the pixel
+   * @return the packed value of the new pixel
+   */
+  int applyToPixel(int pixel) {
+    return CustomImage.pack(this.tables[2][CustomImage.unpack(pixel, 2)],
+            this.tables[1][CustomImage.unpack(pixel, 1)],
+            this.tables[0][CustomImage.unpack(pixel, 0)], CustomImage.unpackAlpha(pixel));
+  }
+}
@@ -0,0 +1,156 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import utility.CustomImage;
+
+/**
+ * This class represents an image store that keeps its images in memory. An unbounded store
+ * keeps every image until it is removed. A bounded store has a budget for the number of bytes
+ * its images take, and evicts images that are not pinned, in the order of its eviction policy,
+ * whenever storing an image takes it over the budget. Pinned images count towards the budget
+ * but are never evicted, so a store holding only pinned images can exceed its budget.
+ */
+public class MemoryImageStore implements ImageStore {
+  private final Map<Long, Entry> entries;
+  private final long budget;
+  private final EvictionPolicy policy;
+  private long size;
+  private long clock;
+
+  // the stored image and its bookkeeping
+  private static final class Entry {
+    private final CustomImage image;
+    private final long size;
+    private final boolean pinned;
+    private long lastUsed;
+    private long uses;
+
+    private Entry(CustomImage image, boolean pinned, long time) {
+      this.image = image;
+      this.size = image.getSizeInBytes();
+      this.pinned = pinned;
+      this.lastUsed = time;
+      this.uses = 1;
+    }
+  }
+
+  /**
+   * Constructs an unbounded store, that never evicts its images.
+   */
+  public MemoryImageStore() {
+    this.entries = new HashMap<>();
+    this.budget = Long.MAX_VALUE;
+    this.policy = null;
+  }
+
+  /**
+   * Constructs a bounded store with the given memory budget and eviction policy.
+   *
+   * @param budget the number of bytes the images of the store may take
+   * @param policy the order in which images are evicted
+   * @throws IllegalArgumentException if the budget is negative or the policy is null
+   */
+  public MemoryImageStore(long budget, EvictionPolicy policy) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative");
+    }
+    if (policy == null) {
+      throw new IllegalArgumentException("Eviction policy cannot be null");
+    }
+    this.entries = new HashMap<>();
+    this.budget = budget;
+    this.policy = policy;
+  }
+
+  /**
+   * Returns the number of bytes the images of this store may take.
+   *
+   * @return the memory budget, {@code Long.MAX_VALUE} if the store is unbounded
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  @Override
+  public void put(long id, CustomImage image, boolean pinned) {
+    if (image == null) {
+      throw new IllegalArgumentException("Image data cannot be null");
+    }
+    remove(id);
+    Entry entry = new Entry(image, pinned, ++clock);
+    entries.put(id, entry);
+    size += entry.size;
+    evict(id);
+  }
+
+  @Override
+  public CustomImage get(long id) {
+    Entry entry = entries.get(id);
+    if (entry == null) {
+      return null;
+    }
+    entry.lastUsed = ++clock;
+    entry.uses++;
+    return entry.image;
+  }
+
+  @Override
+  public boolean contains(long id) {
+    return entries.containsKey(id);
+  }
+
+  @Override
+  public void remove(long id) {
+    Entry entry = entries.remove(id);
+    if (entry != null) {
+      size -= entry.size;
+    }
+  }
+
+  @Override
+  public boolean isBounded() {
+    return this.policy != null;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return this.size;
+  }
+
+  // helper method to evict images until the store is within its budget. The image that was
+  // just stored is only evicted when no other image can be.
+  private void evict(long newest) {
+    while (size > budget) {
+      Long victim = null;
+      Entry victimEntry = null;
+      for (Map.Entry<Long, Entry> candidate : entries.entrySet()) {
+        Entry entry = candidate.getValue();
+        if (entry.pinned || candidate.getKey() == newest) {
+          continue;
+        }
+        if (victimEntry == null || precedes(entry, victimEntry)) {
+          victim = candidate.getKey();
+          victimEntry = entry;
+        }
+      }
+      if (victim == null) {
+        Entry entry = entries.get(newest);
+        if (entry == null || entry.pinned) {
+          return;
+        }
+        victim = newest;
+      }
+      remove(victim);
+    }
+  }
+
+  // helper method to decide whether the first entry is evicted before the second
+  private boolean precedes(Entry first, Entry second) {
+    if (policy == EvictionPolicy.LEAST_FREQUENTLY_USED && first.uses != second.uses) {
+      return first.uses < second.uses;
+    }
+    return first.lastUsed < second.lastUsed;
+  }
+}
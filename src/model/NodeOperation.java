@@ -0,0 +1,17 @@
+package model;
+
+import utility.CustomImage;
+
+/**
+ * This interface represents the operation that computes the image of a node in the operation
+ * graph of an image processor, from the images of the inputs of the node.
+ */
+interface NodeOperation {
+  /**
+   * Computes the image of a node.
+   *
+   * @param inputs the materialized images of the inputs of the node, in order
+   * @return the computed image
+   */
+  CustomImage compute(CustomImage[] inputs);
+}
@@ -0,0 +1,226 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * This class runs operations over the rows of an image on a fork-join pool. The image is split
+ * into bands of rows that are processed on all the threads of the pool. Images smaller than the
+ * sequential threshold are processed on the calling thread. Every row is processed exactly once
+ * by the same operation, so the result is identical to processing the rows in order.
+ *
+ * <p>A confined executor processes every image on the threads of its pool, including the images
+ * that are processed sequentially, and the calling thread only waits for it. However many
+ * threads use a confined executor, for example one thread for each job of a server, no more
+ * images are processed at a time than the parallelism allows, so the processors are not
+ * oversubscribed.
+ */
+public class ParallelExecutor {
+  /**
+   * The default number of pixels below which an image is processed sequentially.
+   */
+  public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1 << 16;
+
+  // the number of bands each thread gets on average, so that threads that finish early can
+  // steal work from slower ones
+  private static final int BANDS_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+  private final int parallelism;
+  private final int sequentialThreshold;
+  private final boolean confined;
+
+  /**
+   * Constructs an executor that uses all the available processors and the default sequential
+   * threshold.
+   */
+  public ParallelExecutor() {
+    this(Runtime.getRuntime().availableProcessors(), DEFAULT_SEQUENTIAL_THRESHOLD);
+  }
+
+  /**
+   * Constructs an executor with the given parallelism level and sequential threshold.
+   *
+   * @param parallelism         the number of threads to process an image with, 1 to always
+   *                            process images sequentially
+   * @param sequentialThreshold the number of pixels below which an image is processed
+   *                            sequentially
+   * @throws IllegalArgumentException if the parallelism is less than 1 or the threshold is
+   *                                  negative
+   */
+  public ParallelExecutor(int parallelism, int sequentialThreshold)
+          throws IllegalArgumentException {
+    this(parallelism, sequentialThreshold, false);
+  }
+
+  /**
+   * Constructs an executor with the given parallelism level and sequential threshold, which
+   * processes images on the threads of its pool only if it is confined.
+   *
+   * @param parallelism         the number of threads to process an image with, 1 to always
+   *                            process images sequentially
+   * @param sequentialThreshold the number of pixels below which an image is processed
+   *                            sequentially
+   * @param confined            true to process every image on the threads of the pool, false
+   *                            to process small images on the calling thread
+   * @throws IllegalArgumentException if the parallelism is less than 1 or the threshold is
+   *                                  negative
+   */
+  public ParallelExecutor(int parallelism, int sequentialThreshold, boolean confined)
+          throws IllegalArgumentException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    if (sequentialThreshold < 0) {
+      throw new IllegalArgumentException("Sequential threshold cannot be negative");
+    }
+    this.parallelism = parallelism;
+    this.sequentialThreshold = sequentialThreshold;
+    this.confined = confined;
+    this.pool = parallelism > 1 || confined ? new ForkJoinPool(parallelism) : null;
+  }
+
+  /**
+   * Returns the number of threads an image is processed with.
+   *
+   * @return the parallelism level
+   */
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Returns the number of pixels below which an image is processed sequentially.
+   *
+   * @return the sequential threshold
+   */
+  public int getSequentialThreshold() {
+    return this.sequentialThreshold;
+  }
+
+  /**
+   * Returns whether every image is processed on the threads of the pool.
+   *
+   * @return true if the executor is confined, false otherwise
+   */
+  public boolean isConfined() {
+    return this.confined;
+  }
+
+  /**
+   * Returns the result of the given work, which is computed on a thread of the pool if the
+   * executor is confined, and on the calling thread otherwise. Operations that the work runs
+   * with this executor are processed on the same pool.
+   *
+   * @param work the work to compute
+   * @param <T>  the type of the result
+   * @return the result of the work
+   */
+  <T> T compute(Supplier<T> work) {
+    if (!this.confined || ForkJoinTask.getPool() == this.pool) {
+      return work.get();
+    }
+    WorkTask<T> task = new WorkTask<>(work);
+    this.pool.invoke(task);
+    return task.getResult();
+  }
+
+  /**
+   * Runs the given operation over all the rows of an image with the given dimensions, and
+   * returns once every row has been processed.
+   *
+   * @param height    the number of rows of the image
+   * @param width     the number of pixels in a row of the image
+   * @param operation the operation to run on each band of rows
+   */
+  void execute(int height, int width, BandOperation operation) {
+    if (this.confined && ForkJoinTask.getPool() != this.pool) {
+      compute(() -> {
+        execute(height, width, operation);
+        return null;
+      });
+      return;
+    }
+    long pixels = (long) height * width;
+    if (this.parallelism == 1 || height < 2 || pixels < this.sequentialThreshold) {
+      operation.processRows(0, height);
+      return;
+    }
+    // rows per band, large enough to amortise the cost of a task
+    long bandPixels = Math.max(this.sequentialThreshold / 4,
+            pixels / ((long) this.parallelism * BANDS_PER_THREAD));
+    int bandRows = (int) Math.max(1, Math.min(height, bandPixels / Math.max(1, width)));
+    this.pool.invoke(new BandTask(operation, 0, height, bandRows));
+  }
+
+  /**
+   * This class splits a range of rows in halves until it is no larger than a band.
+   */
+  private static class BandTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final BandOperation operation;
+    private final int startRow;
+    private final int endRow;
+    private final int bandRows;
+
+    private BandTask(BandOperation operation, int startRow, int endRow, int bandRows) {
+      this.operation = operation;
+      this.startRow = startRow;
+      this.endRow = endRow;
+      this.bandRows = bandRows;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.endRow - this.startRow <= this.bandRows) {
+        this.operation.processRows(this.startRow, this.endRow);
+        return;
+      }
+      int middle = (this.startRow + this.endRow) >>> 1;
+      invokeAll(new BandTask(this.operation, this.startRow, middle, this.bandRows),
+              new BandTask(this.operation, middle, this.endRow, this.bandRows));
+    }
+  }
+
+  /**
+   * This class computes a work on the pool. The exception of the work is kept as it is, rather
+   * than copied by the pool when it is rethrown on the calling thread.
+   */
+  private static class WorkTask<T> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Supplier<T> work;
+    private T result;
+    private RuntimeException exception;
+    private Error error;
+
+    private WorkTask(Supplier<T> work) {
+      this.work = work;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        this.result = this.work.get();
+      } catch (RuntimeException e) {
+        this.exception = e;
+      } catch (Error e) {
+        this.error = e;
+      }
+    }
+
+    // returns the result of the work, or throws its exception
+    private T getResult() {
+      if (this.exception != null) {
+        throw this.exception;
+      }
+      if (this.error != null) {
+        throw this.error;
+      }
+      return this.result;
+    }
+  }
+}
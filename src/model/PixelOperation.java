@@ -1,17 +1,16 @@
 package model;
 
-import utility.Pixel;
-
 /**
- * This interface supports simple operations on IPixel.
+ * This interface supports simple operations on a single pixel of an image, where the pixel is
+ * given by its packed 0xAARRGGBB value.
  */
 interface PixelOperation {
   /**
-   * Modifies the originalPixel by performing the required operation on it.
+   * Modifies the original pixel by performing the required operation on it.
    *
-   * @param originalPixel the pixel to be modified
+   * @param originalPixel the packed value of the pixel to be modified
    * @param maxPixelValue maximum value a channel of the pixel can have.
-   * @return modified Pixel
+   * @return packed value of the modified pixel
    */
-  Pixel modifyPixel(Pixel originalPixel, int maxPixelValue);
+  int modifyPixel(int originalPixel, int maxPixelValue);
 }
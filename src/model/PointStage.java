@@ -0,0 +1,81 @@
+package model;
+
+import java.util.function.IntFunction;
+
+/**
+ * This class represents a point operation, whose result for a pixel depends only on that pixel,
+ * as a stage of a fused pass over an image. A stage is either a lookup table, which is compiled
+ * for the maximum value of the image and composed with the tables of adjacent stages, or an
+ * operation on the packed value of a pixel.
+ */
+final class PointStage {
+  private final IntFunction<LookupTable> table;
+  private final PixelOperation operation;
+  private final boolean greyscale;
+
+  // constructs a stage from either a table or an operation
+  private PointStage(IntFunction<LookupTable> table, PixelOperation operation,
+                     boolean greyscale) {
+    this.table = table;
+    this.operation = operation;
+    this.greyscale = greyscale;
+  }
+
+  /**
+   * Returns a stage that applies the lookup table given by the factory.
+   *
+   * @param table the lookup table of the stage, given the maximum value of the image
+   * @return the stage
+   */
+  static PointStage ofTable(IntFunction<LookupTable> table) {
+    return new PointStage(table, null, false);
+  }
+
+  /**
+   * Returns a stage that applies the given operation to the packed value of every pixel.
+   *
+   * @param operation the operation of the stage
+   * @param greyscale true if every pixel the operation returns is grey
+   * @return the stage
+   */
+  static PointStage ofOperation(PixelOperation operation, boolean greyscale) {
+    return new PointStage(null, operation, greyscale);
+  }
+
+  /**
+   * Returns true if the stage is a lookup table.
+   *
+   * @return true if the stage is a lookup table
+   */
+  boolean isTable() {
+    return this.table != null;
+  }
+
+  /**
+   * Returns the lookup table of the stage, for images with the given maximum value.
+   *
+   * @param maxPixelValue the maximum value a channel can have
+   * @return the lookup table
+   */
+  LookupTable getTable(int maxPixelValue) {
+    return this.table.apply(maxPixelValue);
+  }
+
+  /**
+   * Returns the operation of a stage that is not a lookup table.
+   *
+   * @return the operation on the packed value of a pixel
+   */
+  PixelOperation getOperation() {
+    return this.operation;
+  }
+
+  /**
+   * Returns true if every pixel the operation of the stage returns is grey.
+   *
+   * @return true if the stage gives a greyscale image
+   */
+  boolean isGreyscale() {
+    return this.greyscale;
+  }
+}
@@ -0,0 +1,232 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import utility.CustomImage;
+import utility.ImageSnapshot;
+
+/**
+ * This class represents an image store with two tiers: images are kept in memory up to a budget,
+ * and the least recently used images beyond the budget are spilled to snapshot files in a
+ * scratch directory. A spilled image is paged back into memory when it is requested, which only
+ * copies its samples from the file, so it is much faster than decoding the original image or
+ * recomputing it. Loaded and computed images are spilled alike. An image that is not pinned is
+ * dropped instead if its snapshot cannot be written, for example when the disk is full, and
+ * forgotten if its snapshot cannot be read, so that the image processor recomputes it from the
+ * operation it was computed with. The store is therefore bounded, while a pinned image whose
+ * snapshot cannot be written or read is an error.
+ *
+ * <p>The snapshot of an image is kept after it is paged back in, so an image that is spilled
+ * again is not written again. The scratch files are deleted when their image is removed and
+ * when the store is closed.
+ */
+public class SpillingImageStore implements ImageStore, AutoCloseable {
+  private final Map<Long, CustomImage> memory;
+  private final Map<Long, Path> spilled;
+  private final Set<Long> pinned;
+  private final long budget;
+  private final Path directory;
+  private long size;
+  private long spilledSize;
+
+  /**
+   * Constructs a store that keeps up to the given number of bytes of images in memory and
+   * spills the rest to a new directory in the given scratch directory.
+   *
+   * @param budget           the number of bytes the images in memory may take
+   * @param scratchDirectory the directory to create the spill directory in
+   * @throws IllegalArgumentException if the budget is negative or the spill directory cannot be
+   *                                  created
+   */
+  public SpillingImageStore(long budget, Path scratchDirectory)
+          throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative");
+    }
+    if (scratchDirectory == null) {
+      throw new IllegalArgumentException("Scratch directory cannot be null");
+    }
+    try {
+      this.directory = Files.createTempDirectory(scratchDirectory, "images");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Failed to create a scratch directory in: "
+              + scratchDirectory);
+    }
+    this.memory = new LinkedHashMap<>(16, 0.75f, true);
+    this.spilled = new HashMap<>();
+    this.pinned = new HashSet<>();
+    this.budget = budget;
+  }
+
+  /**
+   * Returns the directory the images are spilled to.
+   *
+   * @return the spill directory
+   */
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * Returns true if the image stored under the given id is currently in memory.
+   *
+   * @param id the id of the image
+   * @return true if the image is in memory
+   */
+  public boolean isInMemory(long id) {
+    return memory.containsKey(id);
+  }
+
+  /**
+   * Returns the number of bytes of images that have been spilled to disk.
+   *
+   * @return the size of the spilled images in bytes
+   */
+  public long getSpilledSizeInBytes() {
+    return this.spilledSize;
+  }
+
+  @Override
+  public void put(long id, CustomImage image, boolean pinned) {
+    if (image == null) {
+      throw new IllegalArgumentException("Image data cannot be null");
+    }
+    remove(id);
+    if (pinned) {
+      this.pinned.add(id);
+    }
+    admit(id, image);
+  }
+
+  @Override
+  public CustomImage get(long id) {
+    CustomImage image = memory.get(id);
+    if (image != null) {
+      return image;
+    }
+    Path path = spilled.get(id);
+    if (path == null) {
+      return null;
+    }
+    try {
+      image = ImageSnapshot.read(path);
+    } catch (IOException e) {
+      if (pinned.contains(id)) {
+        throw new UncheckedIOException("Failed to read the spilled image at: " + path, e);
+      }
+      // the image is recomputed by the image processor
+      remove(id);
+      return null;
+    }
+    admit(id, image);
+    return image;
+  }
+
+  @Override
+  public boolean contains(long id) {
+    return memory.containsKey(id) || spilled.containsKey(id);
+  }
+
+  @Override
+  public void remove(long id) {
+    pinned.remove(id);
+    CustomImage image = memory.remove(id);
+    if (image != null) {
+      size -= image.getSizeInBytes();
+    }
+    Path path = spilled.remove(id);
+    if (path != null) {
+      spilledSize -= sizeOf(path);
+      delete(path);
+    }
+  }
+
+  @Override
+  public boolean isBounded() {
+    return true;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return this.size;
+  }
+
+  /**
+   * Deletes every spilled image and the spill directory. The images in memory are kept.
+   */
+  @Override
+  public void close() {
+    for (Path path : spilled.values()) {
+      delete(path);
+    }
+    spilled.clear();
+    spilledSize = 0;
+    delete(directory);
+  }
+
+  // helper method to keep the given image in memory, and spill the least recently used images
+  // until the memory is within the budget. The given image is only spilled when no other image
+  // can be.
+  private void admit(long id, CustomImage image) {
+    memory.put(id, image);
+    size += image.getSizeInBytes();
+    Iterator<Map.Entry<Long, CustomImage>> leastRecent = memory.entrySet().iterator();
+    while (size > budget && leastRecent.hasNext()) {
+      Map.Entry<Long, CustomImage> entry = leastRecent.next();
+      // spilling an image that takes no memory, such as a mapped image, frees nothing
+      if (entry.getValue().getSizeInBytes() > 0
+              && (entry.getKey() != id || memory.size() == 1)) {
+        spill(entry.getKey(), entry.getValue());
+        size -= entry.getValue().getSizeInBytes();
+        leastRecent.remove();
+      }
+    }
+  }
+
+  // helper method to write the given image to a snapshot, unless it already has one. An image
+  // that is not pinned is dropped if its snapshot cannot be written.
+  private void spill(long id, CustomImage image) {
+    if (spilled.containsKey(id)) {
+      return;
+    }
+    Path path = directory.resolve(id + ".img");
+    try {
+      ImageSnapshot.write(image, path);
+    } catch (IOException e) {
+      delete(path);
+      if (pinned.contains(id)) {
+        throw new UncheckedIOException("Failed to spill the image to: " + path, e);
+      }
+      return;
+    }
+    spilled.put(id, path);
+    spilledSize += sizeOf(path);
+  }
+
+  // helper method to get the size of a file, 0 if it cannot be read
+  private static long sizeOf(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  // helper method to delete a file, ignoring a file that cannot be deleted
+  private static void delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // the file is left behind in the scratch directory
+    }
+  }
+}
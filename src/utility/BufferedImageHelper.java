@@ -1,53 +1,267 @@
 package utility;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
 
 /**
  * This class contains helper methods to read and save image of formats supported by
  * BufferedImage class(currently supports - png, jpg, jpeg, bmp).
+ *
+ * <p>The pixels of the common image types, packed RGB and ARGB integers, interleaved BGR and ABGR
+ * bytes and greyscale bytes, are copied directly from and to the arrays that back the image,
+ * instead of being converted one pixel at a time through the color model. A greyscale image is
+ * loaded as a greyscale image with its samples unchanged, and the alpha of an image is kept.
+ *
+ * <p>An image is saved with the encoder of the extension of its file, and a file without a known
+ * image extension is saved as a PNG image. The alpha of an image that is not opaque is saved when
+ * the format supports it, and dropped otherwise. The quality of JPEG images and the compression
+ * level of PNG images can be chosen, to trade the time spent encoding for the size of the file.
+ * A helper holds no state besides these settings, so one instance can be shared by threads.
  */
 public class BufferedImageHelper implements IImageHelper {
+  /**
+   * The JPEG quality used by default, which is the default of the JPEG encoder.
+   */
+  public static final float DEFAULT_JPEG_QUALITY = 0.75f;
+  /**
+   * The PNG compression level used by default, which is the default of the PNG encoder.
+   */
+  public static final int DEFAULT_PNG_COMPRESSION_LEVEL = 4;
+  private static final String DEFAULT_FORMAT = "png";
+  private static final int MAX_PNG_COMPRESSION_LEVEL = 9;
+
+  private final float jpegQuality;
+  private final int pngCompressionLevel;
+
+  /**
+   * Constructs a helper that saves images with the default JPEG quality and PNG compression
+   * level.
+   */
+  public BufferedImageHelper() {
+    this(DEFAULT_JPEG_QUALITY, DEFAULT_PNG_COMPRESSION_LEVEL);
+  }
+
+  /**
+   * Constructs a helper that saves JPEG images with the given quality, and PNG images with the
+   * given compression level. A lower quality gives smaller JPEG files with more artifacts, and a
+   * higher compression level gives smaller PNG files that take longer to encode.
+   *
+   * @param jpegQuality         the quality of JPEG images, from 0 to 1
+   * @param pngCompressionLevel the compression level of PNG images, from 0 for no compression to
+   *                            9 for the best compression
+   * @throws IllegalArgumentException if the quality or the compression level is out of range
+   */
+  public BufferedImageHelper(float jpegQuality, int pngCompressionLevel)
+          throws IllegalArgumentException {
+    if (!(jpegQuality >= 0 && jpegQuality <= 1)) {
+      throw new IllegalArgumentException("JPEG quality must be between 0 and 1");
+    }
+    if (pngCompressionLevel < 0 || pngCompressionLevel > MAX_PNG_COMPRESSION_LEVEL) {
+      throw new IllegalArgumentException("PNG compression level must be between 0 and "
+              + MAX_PNG_COMPRESSION_LEVEL);
+    }
+    this.jpegQuality = jpegQuality;
+    this.pngCompressionLevel = pngCompressionLevel;
+  }
 
   @Override
   public CustomImage load(String filePath, String imageName) throws IOException {
-    FileInputStream inputStream = new FileInputStream(filePath);
-    BufferedImage loadedImage = ImageIO.read(inputStream);
+    BufferedImage loadedImage;
+    try (InputStream inputStream = new FileInputStream(filePath)) {
+      loadedImage = ImageIO.read(inputStream);
+    }
+    if (loadedImage == null) {
+      throw new IOException("Unsupported image file: " + filePath);
+    }
     int width = loadedImage.getWidth();
     int height = loadedImage.getHeight();
-    int bits = loadedImage.getColorModel().getComponentSize(0);
-    int maxValue = (int) Math.pow(2, bits) - 1;
-    Pixel[][] pixels = new Pixel[height][width];
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int color = loadedImage.getRGB(j, i);
-        Color c = new Color(color);
-        pixels[i][j] = new Pixel(c.getRed(), c.getGreen(), c.getBlue(), c.getAlpha());
+    int maxValue = CustomImage.MAX_PACKED_VALUE;
+    Raster raster = loadedImage.getRaster();
+    switch (loadedImage.getType()) {
+      case BufferedImage.TYPE_BYTE_GRAY:
+        return new CustomImage(imageName, width, height,
+                new byte[][]{readBytes(raster, width, height)[0]}, null, maxValue);
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+        byte[][] bands = readBytes(raster, width, height);
+        return new CustomImage(imageName, width, height,
+                new byte[][]{bands[2], bands[1], bands[0]}, bands.length > 3 ? bands[3] : null,
+                maxValue);
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB:
+        return new CustomImage(imageName, width, height, readInts(raster, width, height,
+                loadedImage.getType() == BufferedImage.TYPE_INT_RGB), maxValue);
+      default:
+        // getRGB converts any other type to the default 8-bit per channel sRGB color model, in
+        // a single call for the whole image
+        int[] pixels = loadedImage.getRGB(0, 0, width, height, null, 0, width);
+        if (!loadedImage.getColorModel().hasAlpha()) {
+          makeOpaque(pixels);
+        }
+        return new CustomImage(imageName, width, height, pixels, maxValue);
+    }
+  }
+
+  // helper method to copy the red, green, blue and alpha bands, in that order, of a raster of
+  // interleaved bytes into separate planes. A greyscale raster has a single band.
+  private static byte[][] readBytes(Raster raster, int width, int height) {
+    ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+    DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+    byte[] data = buffer.getData();
+    int pixelStride = model.getPixelStride();
+    int scanlineStride = model.getScanlineStride();
+    int base = buffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX() * pixelStride;
+    int bandCount = model.getNumBands();
+    int[] bandOffsets = model.getBandOffsets();
+    byte[][] bands = new byte[bandCount][width * height];
+    for (int band = 0; band < bandCount; band++) {
+      byte[] plane = bands[band];
+      int offset = base + bandOffsets[band];
+      if (pixelStride == 1 && scanlineStride == width) {
+        System.arraycopy(data, offset, plane, 0, plane.length);
+        continue;
+      }
+      for (int row = 0, i = 0; row < height; row++) {
+        int index = offset + row * scanlineStride;
+        for (int col = 0; col < width; col++, i++, index += pixelStride) {
+          plane[i] = data[index];
+        }
       }
     }
-    return new CustomImage(imageName, pixels, maxValue);
+    return bands;
+  }
+
+  // helper method to copy a raster of packed RGB or ARGB integers, where the alpha of RGB
+  // integers is undefined
+  private static int[] readInts(Raster raster, int width, int height, boolean opaque) {
+    SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+    DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+    int[] data = buffer.getData();
+    int scanlineStride = model.getScanlineStride();
+    int base = buffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX();
+    int[] pixels = new int[width * height];
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(data, base + row * scanlineStride, pixels, row * width, width);
+    }
+    if (opaque) {
+      makeOpaque(pixels);
+    }
+    return pixels;
+  }
+
+  // helper method to set the alpha of the given packed pixels to the maximum
+  private static void makeOpaque(int[] pixels) {
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] |= 0xFF000000;
+    }
   }
 
   @Override
   public void save(CustomImage image, String filePath) throws IOException {
     int width = image.getWidth();
     int height = image.getHeight();
-    BufferedImage outputImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        Pixel pixel = image.getPixel(i, j);
-        int color = new Color(pixel.getColor(2), pixel.getColor(1), pixel.getColor(0)).getRGB();
-        outputImage.setRGB(j, i, color);
+    ImageWriter writer = getWriter(filePath);
+    try {
+      ImageWriterSpi provider = writer.getOriginatingProvider();
+      // samples of more than 8 bits, which the encoders cannot hold, are scaled down to 8 bits
+      int[] pixels = new int[width * height];
+      image.copyARGB(pixels);
+      BufferedImage outputImage = createImage(pixels, width, height, true);
+      if (isOpaque(pixels) || !provider.canEncodeImage(outputImage)) {
+        outputImage = createImage(pixels, width, height, false);
+        if (!provider.canEncodeImage(outputImage)) {
+          throw new IOException("Images cannot be saved as " + provider.getFormatNames()[0]
+                  + " files.");
+        }
+      }
+      try (RandomAccessFile file = new RandomAccessFile(filePath, "rw")) {
+        file.setLength(0);
+        try (ImageOutputStream outputStream = new FileImageOutputStream(file)) {
+          writer.setOutput(outputStream);
+          writer.write(null, new IIOImage(outputImage, null, null), getParameters(writer));
+        }
+      }
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  // helper method to get a writer for the extension of the given file, or for PNG images if the
+  // extension is missing or not known
+  private static ImageWriter getWriter(String filePath) throws IOException {
+    int index = filePath.lastIndexOf('.');
+    if (index > 0) {
+      Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(
+              filePath.substring(index + 1).toLowerCase());
+      if (writers.hasNext()) {
+        return writers.next();
+      }
+    }
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(DEFAULT_FORMAT);
+    if (!writers.hasNext()) {
+      throw new IOException("No encoder is available for " + DEFAULT_FORMAT + " files.");
+    }
+    return writers.next();
+  }
+
+  // helper method to get the parameters of the given writer, with the JPEG quality or the PNG
+  // compression level of this helper
+  private ImageWriteParam getParameters(ImageWriter writer) {
+    ImageWriteParam parameters = writer.getDefaultWriteParam();
+    String format = writer.getOriginatingProvider().getFormatNames()[0].toLowerCase();
+    if (format.equals("jpeg") || format.equals("jpg")) {
+      parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      parameters.setCompressionQuality(jpegQuality);
+    } else if (format.equals("png")) {
+      // the PNG encoder maps a quality q to the compression level 9 * (1 - q)
+      parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      parameters.setCompressionQuality((MAX_PNG_COMPRESSION_LEVEL - pngCompressionLevel)
+              / (float) MAX_PNG_COMPRESSION_LEVEL);
+    }
+    return parameters;
+  }
+
+  // helper method to wrap the given packed pixels in an image, with or without their alpha
+  private static BufferedImage createImage(int[] pixels, int width, int height,
+                                           boolean alpha) {
+    DirectColorModel colorModel = alpha
+        ? (DirectColorModel) ColorModel.getRGBdefault()
+        : new DirectColorModel(24, 0x00FF0000, 0x0000FF00, 0x000000FF);
+    WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length),
+            width, height, width, colorModel.getMasks(), null);
+    return new BufferedImage(colorModel, raster, false, null);
+  }
+
+  // helper method to check whether every one of the given packed pixels is opaque
+  private static boolean isOpaque(int[] pixels) {
+    for (int pixel : pixels) {
+      if ((pixel >>> 24) != CustomImage.MAX_PACKED_VALUE) {
+        return false;
       }
     }
-    FileOutputStream outputStream = new FileOutputStream(filePath);
-    ImageIO.write(outputImage, "png", outputStream);
-    outputStream.close();
+    return true;
   }
 
 }
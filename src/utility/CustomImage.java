@@ -4,33 +4,259 @@ import java.util.Arrays;
 
 /**
  * This class represents an image. Each image is identified by a name and,
- * a 2D array of Pixel that contains the actual data of the image.
+ * a raster that contains the actual data of the image. The raster is either packed, a single
+ * array of primitive integers in row-major order where each integer holds one pixel with its
+ * alpha, red, green and blue channels packed as 8-bit values (0xAARRGGBB), or planar, with a
+ * separate array per channel. A planar image with a single plane is a greyscale image, whose
+ * red, green and blue channels are all equal.
  */
 public class CustomImage {
+  /**
+   * The maximum value a channel can hold in the packed 8-bit per channel representation.
+   */
+  public static final int MAX_PACKED_VALUE = 255;
+
+  /**
+   * The maximum value a channel can hold in the planar 16-bit per channel representation.
+   */
+  public static final int MAX_WIDE_VALUE = 65535;
+
   private final String name;
-  private final Pixel[][] pixels;
+  private final int width;
+  private final int height;
+  private final ImageData data;
   private final int maxPixelValue;
 
   /**
-   * Constructs a Custom Image with the given name and 2D array of Pixel.
+   * Constructs a Custom Image with the given name and 2D array of Pixel. The pixels are packed
+   * when the max value fits in 8 bits, and stored in 16-bit planes otherwise.
    *
    * @param name          is the name used to identify the CustomImage
    * @param pixels        the actual pixel values of the image
    * @param maxPixelValue the maximum value a channel of the Pixel can have
+   * @throws IllegalArgumentException if the max value does not fit in 16 bits, a channel is
+   *                                  negative or greater than the max value, or an alpha value
+   *                                  does not fit in 8 bits
+   */
+  public CustomImage(String name, Pixel[][] pixels, int maxPixelValue)
+          throws IllegalArgumentException {
+    this(name, pixels == null || pixels.length == 0 ? 0 : pixels[0].length,
+            pixels == null ? 0 : pixels.length, toData(pixels, maxPixelValue), maxPixelValue);
+  }
+
+  /**
+   * Constructs a Custom Image with the given name and packed raster. The raster holds one
+   * 0xAARRGGBB value per pixel in row-major order, and is owned by the image after this call.
+   *
+   * @param name          is the name used to identify the CustomImage
+   * @param width         the width of the image
+   * @param height        the height of the image
+   * @param raster        the packed pixel values of the image
+   * @param maxPixelValue the maximum value a channel of the Pixel can have
+   * @throws IllegalArgumentException if the raster does not match the given dimensions or the
+   *                                  max value does not fit in 8 bits
+   */
+  public CustomImage(String name, int width, int height, int[] raster, int maxPixelValue)
+          throws IllegalArgumentException {
+    this(name, width, height, new PackedImageData(raster), maxPixelValue);
+    checkSize(raster.length);
+    checkMaxValue(MAX_PACKED_VALUE);
+  }
+
+  /**
+   * Constructs a planar Custom Image with the given name and 8-bit planes. A single plane makes
+   * a greyscale image, otherwise there must be three planes indexed by channel, using the same
+   * indices as {@link Pixel#getColor(int)}. The planes are owned by the image after this call,
+   * and may be shared with other images.
+   *
+   * @param name          is the name used to identify the CustomImage
+   * @param width         the width of the image
+   * @param height        the height of the image
+   * @param planes        the planes of the image, each in row-major order
+   * @param alpha         the alpha plane of the image, or null if every pixel is opaque
+   * @param maxPixelValue the maximum value a channel of the Pixel can have
+   * @throws IllegalArgumentException if the planes do not match the given dimensions or the
+   *                                  max value does not fit in 8 bits
+   */
+  public CustomImage(String name, int width, int height, byte[][] planes, byte[] alpha,
+                     int maxPixelValue) throws IllegalArgumentException {
+    this(name, width, height, new PlanarImageData(planes, alpha), maxPixelValue);
+    checkPlanes(planes.length);
+    for (byte[] plane : planes) {
+      checkSize(plane.length);
+    }
+    checkAlpha(alpha);
+    checkMaxValue(MAX_PACKED_VALUE);
+  }
+
+  /**
+   * Constructs a planar Custom Image with the given name and planes of up to 16-bit samples. A
+   * single plane makes a greyscale image, otherwise there must be three planes indexed by
+   * channel, using the same indices as {@link Pixel#getColor(int)}. The planes are owned by the
+   * image after this call, and may be shared with other images.
+   *
+   * @param name          is the name used to identify the CustomImage
+   * @param width         the width of the image
+   * @param height        the height of the image
+   * @param planes        the planes of the image, each in row-major order
+   * @param alpha         the alpha plane of the image, or null if every pixel is opaque
+   * @param maxPixelValue the maximum value a channel of the Pixel can have
+   * @throws IllegalArgumentException if the planes do not match the given dimensions or the
+   *                                  max value does not fit in 16 bits
    */
-  public CustomImage(String name, Pixel[][] pixels, int maxPixelValue) {
+  public CustomImage(String name, int width, int height, short[][] planes, byte[] alpha,
+                     int maxPixelValue) throws IllegalArgumentException {
+    this(name, width, height, new PlanarImageData(planes, alpha), maxPixelValue);
+    checkPlanes(planes.length);
+    for (short[] plane : planes) {
+      checkSize(plane.length);
+    }
+    checkAlpha(alpha);
+    checkMaxValue(MAX_WIDE_VALUE);
+  }
+
+  /**
+   * Constructs a Custom Image over the given storage of its pixels.
+   *
+   * @param name          is the name used to identify the CustomImage
+   * @param width         the width of the image
+   * @param height        the height of the image
+   * @param data          the storage of the pixels
+   * @param maxPixelValue the maximum value a channel can have
+   * @throws IllegalArgumentException if the width or height is negative
+   */
+  CustomImage(String name, int width, int height, ImageData data, int maxPixelValue)
+          throws IllegalArgumentException {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("The width and height of the image cannot be "
+              + "negative.");
+    }
     this.name = name;
-    this.pixels = pixels;
+    this.width = width;
+    this.height = height;
+    this.data = data;
     this.maxPixelValue = maxPixelValue;
   }
 
+  // helper method to check that an array holds exactly one value per pixel
+  private void checkSize(int length) {
+    if (length != this.width * this.height) {
+      throw new IllegalArgumentException("The raster does not match the width and height "
+              + "of the image.");
+    }
+  }
+
+  // helper method to check the number of planes of a planar image
+  private void checkPlanes(int count) {
+    if (count != 1 && count != 3) {
+      throw new IllegalArgumentException("A planar image has either one or three planes.");
+    }
+  }
+
+  // helper method to check the alpha plane of a planar image
+  private void checkAlpha(byte[] alpha) {
+    if (alpha != null) {
+      checkSize(alpha.length);
+    }
+  }
+
+  // helper method to check that the max value fits in the storage of the image
+  private void checkMaxValue(int limit) {
+    if (this.maxPixelValue > limit) {
+      throw new IllegalArgumentException("Only images with up to " + Integer.bitCount(limit)
+              + " bits per channel are supported.");
+    }
+  }
+
+  // helper method to store a 2D array of Pixel in row-major order, packed if the max value fits
+  // in 8 bits and in 16-bit planes otherwise. Missing pixels are treated as transparent black.
+  private static ImageData toData(Pixel[][] pixels, int maxPixelValue) {
+    if (maxPixelValue > MAX_WIDE_VALUE) {
+      throw new IllegalArgumentException("Only images with up to "
+              + Integer.bitCount(MAX_WIDE_VALUE) + " bits per channel are supported.");
+    }
+    int height = pixels == null ? 0 : pixels.length;
+    int width = height == 0 ? 0 : pixels[0].length;
+    boolean wide = maxPixelValue > MAX_PACKED_VALUE;
+    int[] raster = wide ? null : new int[width * height];
+    short[][] planes = wide ? new short[3][width * height] : null;
+    byte[] alpha = wide ? new byte[width * height] : null;
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        Pixel p = pixels[i][j];
+        if (p == null) {
+          continue;
+        }
+        int index = i * width + j;
+        for (int channel = 0; channel < 3; channel++) {
+          int value = p.getColor(channel);
+          if (value < 0 || value > maxPixelValue) {
+            throw new IllegalArgumentException("The value of a channel cannot be negative or "
+                    + "greater than the max value of the image.");
+          }
+          if (wide) {
+            planes[channel][index] = (short) value;
+          }
+        }
+        if (p.getAlpha() < 0 || p.getAlpha() > MAX_PACKED_VALUE) {
+          throw new IllegalArgumentException("The alpha value of a pixel must be between 0 and "
+                  + MAX_PACKED_VALUE + ".");
+        }
+        if (wide) {
+          alpha[index] = (byte) p.getAlpha();
+        } else {
+          raster[index] = pack(p.getColor(2), p.getColor(1), p.getColor(0), p.getAlpha());
+        }
+      }
+    }
+    return wide ? new PlanarImageData(planes, alpha) : new PackedImageData(raster);
+  }
+
+  /**
+   * Packs the given channel values into a single 0xAARRGGBB value. Each value is expected to be
+   * within the range 0-255.
+   *
+   * @param red   the value of the red channel
+   * @param green the value of the green channel
+   * @param blue  the value of the blue channel
+   * @param alpha the value of the alpha channel
+   * @return the packed value
+   */
+  public static int pack(int red, int green, int blue, int alpha) {
+    return (alpha << 24) | (red << 16) | (green << 8) | blue;
+  }
+
+  /**
+   * Returns the value of the given channel from a packed 0xAARRGGBB value.
+   *
+   * @param argb    the packed value
+   * @param channel the channel, using the same indices as {@link Pixel#getColor(int)}.
+   *                Red - 2
+   *                Green - 1
+   *                Blue - 0
+   * @return the value of the channel
+   */
+  public static int unpack(int argb, int channel) {
+    return (argb >>> (channel << 3)) & 0xFF;
+  }
+
+  /**
+   * Returns the alpha value from a packed 0xAARRGGBB value.
+   *
+   * @param argb the packed value
+   * @return the alpha value
+   */
+  public static int unpackAlpha(int argb) {
+    return argb >>> 24;
+  }
+
   /**
    * Returns the height of the image.
    *
    * @return height of image
    */
   public int getHeight() {
-    return this.pixels.length;
+    return this.height;
   }
 
   /**
@@ -39,7 +265,7 @@ public class CustomImage {
    * @return width of the image.
    */
   public int getWidth() {
-    return this.pixels[0].length;
+    return this.width;
   }
 
   /**
@@ -51,19 +277,314 @@ public class CustomImage {
     return this.maxPixelValue;
   }
 
+  // helper method to validate the position and return the index into the raster
+  private int indexOf(int row, int col) {
+    if (row < 0 || col < 0 || row >= this.height || col >= this.width) {
+      throw new IllegalArgumentException("The row and col position exceeds "
+              + "the height and width of the image.");
+    }
+    return row * this.width + col;
+  }
+
   /**
-   * Returns the Pixel at the given position from the 2D array.
+   * Returns the Pixel at the given position. This is a compatibility view over the raster and
+   * creates a new Pixel on every call, prefer the primitive accessors on hot paths.
    *
    * @param row the row index
    * @param col the col index
    * @return the Pixel at the given row and col.
    */
   public Pixel getPixel(int row, int col) {
-    if (row >= this.getHeight() || col >= this.getWidth()) {
-      throw new IllegalArgumentException("The row and col position exceeds "
-              + "the height and width of the image.");
+    int index = indexOf(row, col);
+    return new Pixel(this.data.getColor(index, 2), this.data.getColor(index, 1),
+            this.data.getColor(index, 0), this.data.getAlpha(index));
+  }
+
+  /**
+   * Returns the packed 0xAARRGGBB value at the given position. The channels of an image with
+   * more than 8 bits per channel are scaled down to 8 bits, rounding to nearest.
+   *
+   * @param row the row index
+   * @param col the col index
+   * @return the packed value at the given row and col.
+   */
+  public int getARGB(int row, int col) {
+    int index = indexOf(row, col);
+    return pack(packedColor(index, 2), packedColor(index, 1), packedColor(index, 0),
+            this.data.getAlpha(index));
+  }
+
+  // helper method to get the value of a channel of the pixel at the given index, scaled down
+  // to 8 bits if the image has more than 8 bits per channel
+  private int packedColor(int index, int channel) {
+    int value = this.data.getColor(index, channel);
+    if (this.maxPixelValue <= MAX_PACKED_VALUE) {
+      return value;
     }
-    return this.pixels[row][col];
+    return (int) (((long) value * MAX_PACKED_VALUE + this.maxPixelValue / 2)
+            / this.maxPixelValue);
+  }
+
+  /**
+   * Returns the value of the given channel at the given position.
+   *
+   * @param row     the row index
+   * @param col     the col index
+   * @param channel the channel, using the same indices as {@link Pixel#getColor(int)}
+   * @return the value of the channel at the given row and col.
+   */
+  public int getColor(int row, int col, int channel) {
+    if (channel < 0 || channel > 2) {
+      throw new IllegalArgumentException("The Pixel does not have the requested color.");
+    }
+    return this.data.getColor(indexOf(row, col), channel);
+  }
+
+  /**
+   * Returns the alpha value at the given position.
+   *
+   * @param row the row index
+   * @param col the col index
+   * @return the alpha value at the given row and col.
+   */
+  public int getAlpha(int row, int col) {
+    return this.data.getAlpha(indexOf(row, col));
+  }
+
+  /**
+   * Copies the packed 0xAARRGGBB values of the image, in row-major order, into the given array.
+   * The channels of an image with more than 8 bits per channel are scaled down to 8 bits,
+   * rounding to nearest, as in {@link #getARGB(int, int)}.
+   *
+   * @param destination the array to copy to, of length at least width * height
+   */
+  public void copyARGB(int[] destination) {
+    if (this.maxPixelValue <= MAX_PACKED_VALUE) {
+      this.data.copyARGB(destination);
+      return;
+    }
+    int size = this.width * this.height;
+    for (int i = 0; i < size; i++) {
+      destination[i] = pack(packedColor(i, 2), packedColor(i, 1), packedColor(i, 0),
+              this.data.getAlpha(i));
+    }
+  }
+
+  /**
+   * Copies the alpha values of the image, in row-major order, into the given array.
+   *
+   * @param destination the array to copy to, of length at least width * height
+   */
+  public void copyAlpha(int[] destination) {
+    int size = this.width * this.height;
+    for (int i = 0; i < size; i++) {
+      destination[i] = this.data.getAlpha(i);
+    }
+  }
+
+  /**
+   * Copies the values of the given channel of the image, in row-major order, into the given
+   * array.
+   *
+   * @param channel     the channel, using the same indices as {@link Pixel#getColor(int)}
+   * @param destination the array to copy to, of length at least width * height
+   */
+  public void copyChannel(int channel, int[] destination) {
+    if (channel < 0 || channel > 2) {
+      throw new IllegalArgumentException("The Pixel does not have the requested color.");
+    }
+    this.data.copyChannel(channel, destination);
+  }
+
+  /**
+   * Returns true if this is a greyscale image, stored as a single plane.
+   *
+   * @return true if the image is greyscale
+   */
+  public boolean isGreyscale() {
+    return this.data.isGreyscale();
+  }
+
+  /**
+   * Returns the number of bytes taken by the pixels of this image. Planes that are shared with
+   * other images are counted in full.
+   *
+   * @return the size of the pixels in bytes
+   */
+  public long getSizeInBytes() {
+    return this.data.getSizeInBytes();
+  }
+
+  /**
+   * Returns true if the channels of this image are stored as separate planes.
+   *
+   * @return true if the image is planar
+   */
+  public boolean isPlanar() {
+    return this.data instanceof PlanarImageData;
+  }
+
+  /**
+   * Returns the storage of the pixels of this image.
+   *
+   * @return the storage of the pixels
+   */
+  ImageData getData() {
+    return this.data;
+  }
+
+  // helper method to get the planar storage of this image
+  private PlanarImageData planarData() {
+    return this.data.toPlanar();
+  }
+
+  /**
+   * Returns this image with its channels stored as separate planes. A planar image is returned
+   * as is, a packed image is split into planes in a single pass.
+   *
+   * @return the planar image
+   */
+  public CustomImage toPlanar() {
+    if (this.isPlanar()) {
+      return this;
+    }
+    return new CustomImage(this.name, this.width, this.height, this.planarData(),
+            this.maxPixelValue);
+  }
+
+  /**
+   * Returns a greyscale image with the given name, whose single plane is the given channel of
+   * this image. The plane is shared with this image when it is planar, and a mapped image reads
+   * the same mapping, so no pixels are copied.
+   *
+   * @param name    the name of the greyscale image
+   * @param channel the channel, using the same indices as {@link Pixel#getColor(int)}
+   * @return the greyscale image
+   */
+  public CustomImage extractChannel(String name, int channel) {
+    if (channel < 0 || channel > 2) {
+      throw new IllegalArgumentException("Invalid channel value.");
+    }
+    if (this.data instanceof MappedImageData) {
+      return new CustomImage(name, this.width, this.height,
+              ((MappedImageData) this.data).channel(channel), this.maxPixelValue);
+    }
+    return new CustomImage(name, this.width, this.height, this.planarData().channel(channel),
+            this.maxPixelValue);
+  }
+
+  /**
+   * Returns a greyscale image with the given name and plane, that has the same dimensions, max
+   * value and alpha as this image.
+   *
+   * @param name  the name of the greyscale image
+   * @param plane the greyscale plane, which is owned by the new image after this call
+   * @return the greyscale image
+   */
+  public CustomImage createGreyscale(String name, byte[] plane) {
+    checkSize(plane.length);
+    return new CustomImage(name, this.width, this.height, new byte[][]{plane}, alphaPlane(),
+            this.maxPixelValue);
+  }
+
+  /**
+   * Returns a planar image with the given name and channel values, that has the same dimensions
+   * and max value as this image. The values are stored in 8-bit planes when the max value fits
+   * in 8 bits, and in 16-bit planes otherwise, so that an image with more than 8 bits per
+   * channel keeps its depth. A single channel makes a greyscale image, otherwise there must be
+   * three channels indexed by channel. Every value must be within the range of the max value.
+   *
+   * @param name     the name of the image
+   * @param channels the values of the channels, each in row-major order
+   * @param alpha    the alpha values in row-major order, or null to keep the alpha of this image
+   * @return the planar image
+   * @throws IllegalArgumentException if the number or the size of the channels is invalid
+   */
+  public CustomImage createPlanar(String name, int[][] channels, int[] alpha)
+          throws IllegalArgumentException {
+    checkPlanes(channels.length);
+    int size = this.width * this.height;
+    for (int[] channel : channels) {
+      checkSize(channel.length);
+    }
+    byte[] alphaPlane;
+    if (alpha == null) {
+      alphaPlane = alphaPlane();
+    } else {
+      checkSize(alpha.length);
+      alphaPlane = new byte[size];
+      for (int i = 0; i < size; i++) {
+        alphaPlane[i] = (byte) alpha[i];
+      }
+    }
+    if (this.maxPixelValue <= MAX_PACKED_VALUE) {
+      byte[][] planes = new byte[channels.length][size];
+      for (int plane = 0; plane < planes.length; plane++) {
+        for (int i = 0; i < size; i++) {
+          planes[plane][i] = (byte) channels[plane][i];
+        }
+      }
+      return new CustomImage(name, this.width, this.height, planes, alphaPlane,
+              this.maxPixelValue);
+    }
+    short[][] planes = new short[channels.length][size];
+    for (int plane = 0; plane < planes.length; plane++) {
+      for (int i = 0; i < size; i++) {
+        planes[plane][i] = (short) channels[plane][i];
+      }
+    }
+    return new CustomImage(name, this.width, this.height, planes, alphaPlane,
+            this.maxPixelValue);
+  }
+
+  // helper method to get the alpha plane of this image, null if every pixel is opaque
+  private byte[] alphaPlane() {
+    if (this.data instanceof PlanarImageData) {
+      return ((PlanarImageData) this.data).getAlphaPlane();
+    } else if (this.data instanceof PackedImageData) {
+      return opaqueOrAlpha(((PackedImageData) this.data).getRaster());
+    }
+    return null;
+  }
+
+  // helper method to extract the alpha plane of a packed raster, null if every pixel is opaque
+  private static byte[] opaqueOrAlpha(int[] raster) {
+    for (int i = 0; i < raster.length; i++) {
+      if (unpackAlpha(raster[i]) != PlanarImageData.OPAQUE) {
+        byte[] alpha = new byte[raster.length];
+        for (int j = 0; j < raster.length; j++) {
+          alpha[j] = (byte) unpackAlpha(raster[j]);
+        }
+        return alpha;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Combines the given images into a single planar image, that takes the red, green and blue
+   * planes from the given images respectively. The planes are shared with the given images
+   * when they are planar, so no pixels are copied. The alpha and max value are taken from the red
+   * image.
+   *
+   * @param name  the name of the combined image
+   * @param red   the image to take the red channel from
+   * @param green the image to take the green channel from
+   * @param blue  the image to take the blue channel from
+   * @return the combined image
+   * @throws IllegalArgumentException if the images do not have the same width and height
+   */
+  public static CustomImage combine(String name, CustomImage red, CustomImage green,
+                                    CustomImage blue) throws IllegalArgumentException {
+    if (red.getWidth() != green.getWidth() || green.getWidth() != blue.getWidth()
+            || red.getHeight() != green.getHeight()
+            || green.getHeight() != blue.getHeight()) {
+      throw new IllegalArgumentException("The width and height of the"
+              + " given three images are not same.");
+    }
+    return new CustomImage(name, red.width, red.height,
+            PlanarImageData.combine(red.planarData(), green.planarData(), blue.planarData()),
+            red.maxPixelValue);
   }
 
   /**
@@ -76,18 +597,20 @@ public class CustomImage {
   }
 
   // helper method to compute the frequency of each distinct value for the given component.
+  // Samples of images with more than 8 bits per channel are scaled down to the range 0-255.
   private int[] getFrequency(int component) {
     int[] freq = new int[256];
-    for (int i = 0; i < this.getHeight(); i++) {
-      for (int j = 0; j < this.getWidth(); j++) {
-        Pixel p = this.getPixel(i, j);
-        if (component == 3) {
-          int val = (p.getColor(2) + p.getColor(1) + p.getColor(0)) / 3;
-          freq[val]++;
-        } else {
-          freq[p.getColor(component)]++;
-        }
+    int size = this.width * this.height;
+    int scale = Math.max(this.maxPixelValue, MAX_PACKED_VALUE);
+    for (int i = 0; i < size; i++) {
+      int val;
+      if (component == 3) {
+        val = (this.data.getColor(i, 2) + this.data.getColor(i, 1)
+                + this.data.getColor(i, 0)) / 3;
+      } else {
+        val = this.data.getColor(i, component);
       }
+      freq[val * MAX_PACKED_VALUE / scale]++;
     }
     return freq;
   }
@@ -119,7 +642,7 @@ public class CustomImage {
 
   /**
    * Compares if two CustomImage objects are equal. Two CustomImage Objects are equal if they have,
-   * the same width, height and, pixel values at each position in the 2D array of Pixels
+   * the same width, height and, pixel values at each position of the raster.
    *
    * @param o Object to be compares with {@code this}
    * @return boolean value after comparing the two objects.
@@ -135,22 +658,39 @@ public class CustomImage {
     }
     CustomImage img2 = (CustomImage) o;
 
-    if (this.getWidth() == img2.getWidth() && this.getHeight() == img2.getHeight()) {
-      for (int x = 0; x < this.getHeight(); x++) {
-        for (int y = 0; y < this.getWidth(); y++) {
-          if (!this.getPixel(x, y).equals(img2.getPixel(x, y))) {
-            return false;
-          }
+    if (this.width != img2.width || this.height != img2.height) {
+      return false;
+    }
+    if (this.data instanceof PackedImageData && img2.data instanceof PackedImageData) {
+      return Arrays.equals(((PackedImageData) this.data).getRaster(),
+              ((PackedImageData) img2.data).getRaster());
+    }
+    int size = this.width * this.height;
+    for (int i = 0; i < size; i++) {
+      if (this.data.getAlpha(i) != img2.data.getAlpha(i)) {
+        return false;
+      }
+      for (int channel = 0; channel < 3; channel++) {
+        if (this.data.getColor(i, channel) != img2.data.getColor(i, channel)) {
+          return false;
         }
       }
-    } else {
-      return false;
     }
     return true;
   }
 
   @Override
   public int hashCode() {
-    return Arrays.deepHashCode(this.pixels) * this.name.hashCode();
+    int result = 1;
+    int size = this.width * this.height;
+    for (int i = 0; i < size; i++) {
+      // fold every pixel into a single value independent of the storage of the image
+      int value = this.data.getAlpha(i);
+      for (int channel = 2; channel >= 0; channel--) {
+        value = (value << 8) ^ this.data.getColor(i, channel);
+      }
+      result = 31 * result + value;
+    }
+    return result * this.name.hashCode();
   }
 }
@@ -11,4 +11,15 @@ public interface IImageHelperFactory {
    * @return the image helper object
    */
   IImageHelper getHelper(String file);
+
+  /**
+   * Returns the image helper to load the given file with. By default, this is the helper of the
+   * file, but a factory may choose the helper from the content of the file instead.
+   *
+   * @param file the image file
+   * @return the image helper object
+   */
+  default IImageHelper getLoadHelper(String file) {
+    return getHelper(file);
+  }
 }
@@ -0,0 +1,63 @@
+package utility;
+
+/**
+ * This interface represents the storage of the pixels of a {@code CustomImage}. Pixels are
+ * addressed by their row-major index, and channels use the same indices as
+ * {@link Pixel#getColor(int)}.
+ */
+interface ImageData {
+  /**
+   * Returns the value of the given channel of the pixel at the given index.
+   *
+   * @param index   the row-major index of the pixel
+   * @param channel the channel
+   * @return the value of the channel
+   */
+  int getColor(int index, int channel);
+
+  /**
+   * Returns the alpha value of the pixel at the given index.
+   *
+   * @param index the row-major index of the pixel
+   * @return the alpha value
+   */
+  int getAlpha(int index);
+
+  /**
+   * Copies every pixel as a packed 0xAARRGGBB value into the given array.
+   *
+   * @param destination the array to copy to
+   * @throws IllegalStateException if the samples do not fit in 8 bits
+   */
+  void copyARGB(int[] destination) throws IllegalStateException;
+
+  /**
+   * Copies the values of the given channel of every pixel into the given array.
+   *
+   * @param channel     the channel
+   * @param destination the array to copy to
+   */
+  void copyChannel(int channel, int[] destination);
+
+  /**
+   * Returns true if the storage holds a single channel that is shared by red, green and blue.
+   *
+   * @return true if the storage is greyscale
+   */
+  boolean isGreyscale();
+
+  /**
+   * Returns the number of bytes taken by the samples of the storage.
+   *
+   * @return the size of the samples in bytes
+   */
+  long getSizeInBytes();
+
+  /**
+   * Returns the samples of the storage as separate planes, one per channel, which is the
+   * storage itself if it is already planar.
+   *
+   * @return the planar form of this storage
+   */
+  PlanarImageData toPlanar();
+}
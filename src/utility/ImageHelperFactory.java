@@ -1,10 +1,49 @@
 package utility;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * This factory class is used to create objects of helper classes for different image types.
+ *
+ * <p>Helpers are registered for file extensions, and optionally for the signatures that the
+ * files they read start with. The helpers are stateless, so a single instance of each is shared
+ * by every caller. A file is saved with the helper of its extension, while a file is loaded with
+ * the helper whose signature its content starts with, so a file whose extension does not match
+ * its content is still loaded by the right decoder. Further helpers can be registered, and
+ * replace the helpers of the same extensions and signatures.
  */
 public final class ImageHelperFactory implements IImageHelperFactory {
-  private ImageHelperFactory() {
+  // the number of bytes read from a file to recognise its format
+  private static final int SIGNATURE_SIZE = 16;
+
+  private final Map<String, IImageHelper> helpers;
+  private final List<Signature> signatures;
+
+  // callers share the instance, while tests create factories of their own to register helpers
+  ImageHelperFactory() {
+    this.helpers = new ConcurrentHashMap<>();
+    this.signatures = new CopyOnWriteArrayList<>();
+    IImageHelper plainPPM = new PPMImageHelper();
+    IImageHelper bufferedImage = new BufferedImageHelper();
+    // every PPM helper reads plain and raw PPM and PGM files
+    register("ppm", plainPPM, bytes("P3"), bytes("P6"), bytes("P2"), bytes("P5"));
+    register("pnm", new PPMImageHelper(PPMImageHelper.Format.P6));
+    register("pgm", new PPMImageHelper(PPMImageHelper.Format.P5));
+    register("png", bufferedImage,
+            new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+    register("jpg", bufferedImage, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+    register("jpeg", bufferedImage);
+    register("bmp", bufferedImage, bytes("BM"));
   }
 
   private static final ImageHelperFactory instance = new ImageHelperFactory();
@@ -18,6 +57,38 @@ public final class ImageHelperFactory implements IImageHelperFactory {
     return instance;
   }
 
+  /**
+   * Registers the given helper for the files with the given extension, and for the files that
+   * start with any of the given signatures. The helper replaces the helper that was registered
+   * for the extension, and its signatures are checked before the signatures registered earlier.
+   * The helper is shared by every caller, so it must be safe to use from several threads.
+   *
+   * @param extension  the file extension, without the dot
+   * @param helper     the helper for the files
+   * @param signatures the bytes that the files the helper reads start with
+   * @throws IllegalArgumentException if the extension, the helper or a signature is null or
+   *                                  empty
+   */
+  public void register(String extension, IImageHelper helper, byte[]... signatures)
+          throws IllegalArgumentException {
+    if (extension == null || extension.isEmpty()) {
+      throw new IllegalArgumentException("File extension cannot be empty");
+    }
+    if (helper == null) {
+      throw new IllegalArgumentException("Image helper cannot be null");
+    }
+    for (byte[] signature : signatures) {
+      if (signature == null || signature.length == 0 || signature.length > SIGNATURE_SIZE) {
+        throw new IllegalArgumentException("Signatures must have between 1 and "
+                + SIGNATURE_SIZE + " bytes");
+      }
+    }
+    for (int i = signatures.length - 1; i >= 0; i--) {
+      this.signatures.add(0, new Signature(signatures[i].clone(), helper));
+    }
+    this.helpers.put(extension, helper);
+  }
+
   /**
    * Returns a concrete implementation of IImageHelper based on the file extension of the file.
    *
@@ -30,15 +101,53 @@ public final class ImageHelperFactory implements IImageHelperFactory {
   public IImageHelper getHelper(String file) throws IllegalArgumentException,
           UnsupportedOperationException {
     String format = getFileExtension(file);
-    if (format.equals("ppm")) {
-      return new PPMImageHelper();
-    } else if (format.equals("jpg") || format.equals("jpeg") || format.equals("bmp")
-            || format.equals("png")) {
-      return new BufferedImageHelper();
-    } else {
-      throw new UnsupportedOperationException("Unsupported file format. Only jpg, ppm, bmp ang png "
-              + "file formats are supported.");
+    IImageHelper helper = this.helpers.get(format);
+    if (helper == null) {
+      throw new UnsupportedOperationException("Unsupported file format. Only jpg, ppm, pnm, pgm, "
+              + "bmp ang png file formats are supported.");
     }
+    return helper;
+  }
+
+  /**
+   * Returns the helper whose signature the content of the given file starts with. If the file
+   * cannot be read or its content is not recognised, this is the helper of its extension.
+   *
+   * @param file the image file
+   * @return IImageHelper object
+   * @throws IllegalArgumentException      if the content is not recognised and there is no file
+   *                                       extension for the given file
+   * @throws UnsupportedOperationException if the content is not recognised and the file format
+   *                                       is not supported
+   */
+  @Override
+  public IImageHelper getLoadHelper(String file) throws IllegalArgumentException,
+          UnsupportedOperationException {
+    byte[] header = readHeader(file);
+    for (Signature signature : this.signatures) {
+      if (signature.matches(header)) {
+        return signature.helper;
+      }
+    }
+    return getHelper(file);
+  }
+
+  // helper method to read the first bytes of a file, no bytes if it cannot be read
+  private static byte[] readHeader(String file) {
+    try (FileChannel channel = FileChannel.open(Paths.get(file))) {
+      ByteBuffer buffer = ByteBuffer.allocate(SIGNATURE_SIZE);
+      while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+        // keep reading until the buffer is full or the file ends
+      }
+      return Arrays.copyOf(buffer.array(), buffer.position());
+    } catch (IOException | InvalidPathException | UnsupportedOperationException e) {
+      return new byte[0];
+    }
+  }
+
+  // helper method to get the bytes of an ASCII signature
+  private static byte[] bytes(String signature) {
+    return signature.getBytes(StandardCharsets.US_ASCII);
   }
 
   // returns the extension of the file
@@ -49,4 +158,30 @@ public final class ImageHelperFactory implements IImageHelperFactory {
     }
     throw new IllegalArgumentException("File extension is necessary.");
   }
-}
\ No newline at end of file
+
+  /**
+   * This class represents the bytes that the files of a helper start with.
+   */
+  private static final class Signature {
+    private final byte[] bytes;
+    private final IImageHelper helper;
+
+    private Signature(byte[] bytes, IImageHelper helper) {
+      this.bytes = bytes;
+      this.helper = helper;
+    }
+
+    // returns true if the given header starts with the signature
+    private boolean matches(byte[] header) {
+      if (header.length < this.bytes.length) {
+        return false;
+      }
+      for (int i = 0; i < this.bytes.length; i++) {
+        if (header[i] != this.bytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
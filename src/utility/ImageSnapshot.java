@@ -0,0 +1,209 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class contains helper methods to write an image to and read an image from a raw binary
+ * snapshot. A snapshot holds the pixels exactly as the image stores them, so reading it back
+ * only copies the samples into new arrays, with no decoding. Snapshots are meant for scratch
+ * files that are read back by the same program, not for exchanging images.
+ *
+ * <p>A snapshot starts with a header: the magic number, the layout of the samples (a packed
+ * raster, 8-bit planes or 16-bit planes), the number of planes, whether there is an alpha plane,
+ * the width, height and maximum value of the image, and its name in UTF-8. The header is padded
+ * to a multiple of 8 bytes and followed by the samples, plane after plane and then the alpha
+ * plane, in little-endian order. The samples are transferred through memory-mapped regions of
+ * the file.
+ */
+public final class ImageSnapshot {
+  private static final int MAGIC = 0x474D4943;
+  private static final byte PACKED = 0;
+  private static final byte BYTE_PLANES = 1;
+  private static final byte SHORT_PLANES = 2;
+  private static final int FIXED_HEADER_SIZE = 24;
+  // the largest region of the file that is mapped at once
+  private static final int MAX_REGION_SIZE = 1 << 26;
+
+  private ImageSnapshot() {
+  }
+
+  /**
+   * Writes the given image to a snapshot at the given path, replacing the file if it exists.
+   *
+   * @param image the image to write
+   * @param path  the path of the snapshot
+   * @throws IOException if the snapshot cannot be written
+   */
+  public static void write(CustomImage image, Path path) throws IOException {
+    ImageData data = image.getData();
+    byte layout;
+    Object[] planes;
+    byte[] alpha;
+    if (data instanceof PackedImageData) {
+      layout = PACKED;
+      planes = new Object[]{((PackedImageData) data).getRaster()};
+      alpha = null;
+    } else {
+      PlanarImageData planar = data.toPlanar();
+      layout = planar.isWide() ? SHORT_PLANES : BYTE_PLANES;
+      planes = planar.isWide() ? planar.getShortPlanes() : planar.getBytePlanes();
+      alpha = planar.getAlphaPlane();
+    }
+    byte[] name = image.getName() == null ? null
+            : image.getName().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer header = ByteBuffer.allocate(headerSize(name == null ? 0 : name.length))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).put(layout).put((byte) planes.length)
+            .put((byte) (alpha == null ? 0 : 1)).put((byte) 0).putInt(image.getWidth())
+            .putInt(image.getHeight()).putInt(image.getMaxPixelValue())
+            .putInt(name == null ? -1 : name.length);
+    if (name != null) {
+      header.put(name);
+    }
+    header.position(0);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      long position = header.capacity();
+      for (Object plane : planes) {
+        position = transfer(channel, position, plane, true);
+      }
+      if (alpha != null) {
+        transfer(channel, position, alpha, true);
+      }
+    }
+  }
+
+  /**
+   * Reads the image in the snapshot at the given path.
+   *
+   * @param path the path of the snapshot
+   * @return the image in the snapshot
+   * @throws IOException if the snapshot cannot be read or is not a valid snapshot
+   */
+  public static CustomImage read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Invalid image snapshot: " + path);
+      }
+      byte layout = header.get();
+      int planeCount = header.get();
+      boolean hasAlpha = header.get() != 0;
+      header.get();
+      int width = header.getInt();
+      int height = header.getInt();
+      int maxValue = header.getInt();
+      int nameLength = header.getInt();
+      String name = null;
+      if (nameLength >= 0) {
+        ByteBuffer nameBytes = ByteBuffer.allocate(nameLength);
+        readFully(channel, nameBytes, FIXED_HEADER_SIZE);
+        name = new String(nameBytes.array(), StandardCharsets.UTF_8);
+      }
+      long position = headerSize(Math.max(nameLength, 0));
+      int size = width * height;
+      if (layout == PACKED) {
+        int[] raster = new int[size];
+        transfer(channel, position, raster, false);
+        return new CustomImage(name, width, height, raster, maxValue);
+      }
+      byte[] alpha = hasAlpha ? new byte[size] : null;
+      if (layout == SHORT_PLANES) {
+        short[][] planes = new short[planeCount][size];
+        for (short[] plane : planes) {
+          position = transfer(channel, position, plane, false);
+        }
+        if (alpha != null) {
+          transfer(channel, position, alpha, false);
+        }
+        return new CustomImage(name, width, height, planes, alpha, maxValue);
+      }
+      if (layout != BYTE_PLANES) {
+        throw new IOException("Invalid image snapshot: " + path);
+      }
+      byte[][] planes = new byte[planeCount][size];
+      for (byte[] plane : planes) {
+        position = transfer(channel, position, plane, false);
+      }
+      if (alpha != null) {
+        transfer(channel, position, alpha, false);
+      }
+      return new CustomImage(name, width, height, planes, alpha, maxValue);
+    }
+  }
+
+  // helper method to compute the size of the header, padded to a multiple of 8 bytes
+  private static int headerSize(int nameLength) {
+    return (FIXED_HEADER_SIZE + nameLength + 7) & ~7;
+  }
+
+  // helper method to fill the given buffer from the given position of the channel
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+          throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of image snapshot");
+      }
+    }
+  }
+
+  // helper method to copy the given array of samples to or from the file, starting at the given
+  // position, through mapped regions of the file. Returns the position after the samples.
+  private static long transfer(FileChannel channel, long position, Object array, boolean write)
+          throws IOException {
+    int sampleSize;
+    int length;
+    if (array instanceof int[]) {
+      sampleSize = Integer.BYTES;
+      length = ((int[]) array).length;
+    } else if (array instanceof short[]) {
+      sampleSize = Short.BYTES;
+      length = ((short[]) array).length;
+    } else {
+      sampleSize = Byte.BYTES;
+      length = ((byte[]) array).length;
+    }
+    if (!write && channel.size() < position + (long) length * sampleSize) {
+      throw new IOException("Unexpected end of image snapshot");
+    }
+    int samplesPerRegion = MAX_REGION_SIZE / sampleSize;
+    for (int offset = 0; offset < length; offset += samplesPerRegion) {
+      int count = Math.min(samplesPerRegion, length - offset);
+      MappedByteBuffer region = channel.map(write ? FileChannel.MapMode.READ_WRITE
+              : FileChannel.MapMode.READ_ONLY, position + (long) offset * sampleSize,
+              (long) count * sampleSize);
+      region.order(ByteOrder.LITTLE_ENDIAN);
+      if (array instanceof int[]) {
+        if (write) {
+          region.asIntBuffer().put((int[]) array, offset, count);
+        } else {
+          region.asIntBuffer().get((int[]) array, offset, count);
+        }
+      } else if (array instanceof short[]) {
+        if (write) {
+          region.asShortBuffer().put((short[]) array, offset, count);
+        } else {
+          region.asShortBuffer().get((short[]) array, offset, count);
+        }
+      } else if (write) {
+        region.put((byte[]) array, offset, count);
+      } else {
+        region.get((byte[]) array, offset, count);
+      }
+    }
+    return position + (long) length * sampleSize;
+  }
+}
@@ -0,0 +1,154 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class stores the pixels of an image in a read-only mapping of the raw body of a PPM or
+ * PGM file, so the samples are read from the file as they are used instead of being copied into
+ * the heap. The file is mapped in segments of whole pixels, so that images larger than a single
+ * mapping can be addressed. Samples are 8-bit, or big-endian 16-bit when the image is wide, and
+ * every pixel is opaque.
+ *
+ * <p>A mapped image reflects the file it was loaded from, so the file must not be modified or
+ * truncated while the image is in use.
+ */
+class MappedImageData implements ImageData {
+  // the number of pixels in a segment of the mapping, a power of two
+  private static final int SEGMENT_SHIFT = 28;
+  private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+  private final MappedByteBuffer[] segments;
+  private final int pixelStride;
+  private final int[] channelOffsets;
+  private final boolean wide;
+  private final boolean greyscale;
+
+  // constructs the storage over the given segments, with the byte offset of each channel
+  // within a pixel
+  private MappedImageData(MappedByteBuffer[] segments, int pixelStride, int[] channelOffsets,
+                          boolean wide, boolean greyscale) {
+    this.segments = segments;
+    this.pixelStride = pixelStride;
+    this.channelOffsets = channelOffsets;
+    this.wide = wide;
+    this.greyscale = greyscale;
+  }
+
+  /**
+   * Maps the raw body of a PPM or PGM file, which starts at the given position of the channel.
+   * The mapping stays valid after the channel is closed.
+   *
+   * @param channel   the channel of the file
+   * @param position  the position of the first sample in the file
+   * @param size      the number of pixels
+   * @param channels  the number of samples per pixel, 1 for PGM and 3 for PPM files
+   * @param wide      true if the samples are 16-bit
+   * @return the mapped storage
+   * @throws IOException if the file cannot be mapped
+   */
+  static MappedImageData map(FileChannel channel, long position, int size, int channels,
+                             boolean wide) throws IOException {
+    int sampleSize = wide ? Short.BYTES : Byte.BYTES;
+    int pixelStride = channels * sampleSize;
+    int segmentCount = size == 0 ? 0 : ((size - 1) >>> SEGMENT_SHIFT) + 1;
+    MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      long first = (long) i << SEGMENT_SHIFT;
+      long pixels = Math.min(1L << SEGMENT_SHIFT, size - first);
+      segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + first * pixelStride,
+              pixels * pixelStride);
+    }
+    // samples are stored red, green, blue, while channels are indexed blue, green, red
+    int[] channelOffsets = channels == 1 ? new int[]{0, 0, 0}
+        : new int[]{2 * sampleSize, sampleSize, 0};
+    return new MappedImageData(segments, pixelStride, channelOffsets, wide, channels == 1);
+  }
+
+  @Override
+  public int getColor(int index, int channel) {
+    MappedByteBuffer segment = segments[index >>> SEGMENT_SHIFT];
+    int position = (index & SEGMENT_MASK) * pixelStride + channelOffsets[channel];
+    if (wide) {
+      return segment.getShort(position) & 0xFFFF;
+    }
+    return segment.get(position) & 0xFF;
+  }
+
+  @Override
+  public int getAlpha(int index) {
+    return PlanarImageData.OPAQUE;
+  }
+
+  @Override
+  public void copyARGB(int[] destination) throws IllegalStateException {
+    if (wide) {
+      throw new IllegalStateException("Packed pixels are only supported for images with up to"
+              + " 8 bits per channel.");
+    }
+    for (int i = 0; i < destination.length; i++) {
+      destination[i] = CustomImage.pack(getColor(i, 2), getColor(i, 1), getColor(i, 0),
+              PlanarImageData.OPAQUE);
+    }
+  }
+
+  @Override
+  public void copyChannel(int channel, int[] destination) {
+    for (int i = 0; i < destination.length; i++) {
+      destination[i] = getColor(i, channel);
+    }
+  }
+
+  @Override
+  public boolean isGreyscale() {
+    return this.greyscale;
+  }
+
+  /**
+   * Returns 0, since the samples are held by the mapping of the file rather than the heap.
+   *
+   * @return 0
+   */
+  @Override
+  public long getSizeInBytes() {
+    return 0;
+  }
+
+  @Override
+  public PlanarImageData toPlanar() {
+    int size = 0;
+    for (MappedByteBuffer segment : segments) {
+      size += segment.capacity() / pixelStride;
+    }
+    int planeCount = greyscale ? 1 : 3;
+    if (wide) {
+      short[][] planes = new short[planeCount][size];
+      for (int plane = 0; plane < planeCount; plane++) {
+        for (int i = 0; i < size; i++) {
+          planes[plane][i] = (short) getColor(i, plane);
+        }
+      }
+      return new PlanarImageData(planes, null);
+    }
+    byte[][] planes = new byte[planeCount][size];
+    for (int plane = 0; plane < planeCount; plane++) {
+      for (int i = 0; i < size; i++) {
+        planes[plane][i] = (byte) getColor(i, plane);
+      }
+    }
+    return new PlanarImageData(planes, null);
+  }
+
+  /**
+   * Returns a greyscale storage over the same mapping, that reads the given channel.
+   *
+   * @param channel the channel
+   * @return the greyscale storage
+   */
+  MappedImageData channel(int channel) {
+    int offset = channelOffsets[channel];
+    return new MappedImageData(segments, pixelStride, new int[]{offset, offset, offset}, wide,
+            true);
+  }
+}
@@ -1,68 +1,457 @@
 package utility;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * This class contains helper methods to read and save an ASCII PPM image file.
+ * This class contains helper methods to read and save PPM and PGM image files. Plain (P3, P2)
+ * and raw (P6, P5) files are read, whatever format the helper saves in. Raw files with a max
+ * value above 255 hold 16-bit samples, and are read into 16-bit planes. Files are read and
+ * written in chunks through a reusable byte buffer, with bulk transfers for raw bodies, so saving
+ * an image only takes a fixed amount of memory besides the image itself.
+ *
+ * <p>A raw body at least as large as the mapping threshold of the helper is not read into the
+ * heap. The file is memory-mapped instead, and the pixels of the image are read from the
+ * mapping as they are used, so images larger than the heap can be loaded, have their channels
+ * visualised and be saved. The file must not be modified while such an image is in use. Images
+ * are written to a temporary file that then replaces the saved file, so an image can be saved
+ * over the file it is mapped from.
+ *
+ * <p>A helper holds no state besides its settings, so one instance can be shared by threads that
+ * load and save images at the same time.
  */
 public class PPMImageHelper implements IImageHelper {
+  // the number of bytes of a raw body that are transferred at once
+  private static final int CHUNK_SIZE = 1 << 16;
+
+  /**
+   * The size of a raw body, in bytes, from which files are mapped by default.
+   */
+  public static final long DEFAULT_MAPPING_THRESHOLD = 1L << 30;
+
+  // the largest number of bytes a sample and its separator take in a plain file
+  private static final int MAX_PLAIN_SAMPLE_SIZE = 12;
+
+  /**
+   * This enum represents the formats a PPM image helper can save images in.
+   */
+  public enum Format {
+    /**
+     * Plain PPM, with every sample written as decimal text.
+     */
+    P3,
+
+    /**
+     * Raw PPM, with every sample written as one byte, or two for 16-bit images.
+     */
+    P6,
+
+    /**
+     * Raw PGM, with the single channel of a greyscale image written as one byte per pixel, or
+     * two for 16-bit images.
+     */
+    P5
+  }
+
+  private final Format format;
+  private final long mappingThreshold;
+  private final int samplesPerLine;
+
+  /**
+   * Constructs a helper that saves images as plain PPM files.
+   */
+  public PPMImageHelper() {
+    this(Format.P3);
+  }
+
+  /**
+   * Constructs a helper that saves images in the given format.
+   *
+   * @param format the format to save images in
+   * @throws IllegalArgumentException if the format is null
+   */
+  public PPMImageHelper(Format format) throws IllegalArgumentException {
+    this(format, DEFAULT_MAPPING_THRESHOLD);
+  }
+
+  /**
+   * Constructs a helper that saves images in the given format, and maps the raw bodies that
+   * are at least as large as the given threshold.
+   *
+   * @param format           the format to save images in
+   * @param mappingThreshold the size of a raw body, in bytes, from which the file is mapped
+   * @throws IllegalArgumentException if the format is null or the threshold is negative
+   */
+  public PPMImageHelper(Format format, long mappingThreshold) throws IllegalArgumentException {
+    this(format, mappingThreshold, 1);
+  }
+
+  /**
+   * Constructs a helper that saves images in the given format, maps the raw bodies that are at
+   * least as large as the given threshold, and writes the given number of samples on each line
+   * of a plain file.
+   *
+   * @param format           the format to save images in
+   * @param mappingThreshold the size of a raw body, in bytes, from which the file is mapped
+   * @param samplesPerLine   the number of samples on each line of a plain file, separated by
+   *                         spaces
+   * @throws IllegalArgumentException if the format is null, the threshold is negative or the
+   *                                  number of samples per line is less than 1
+   */
+  public PPMImageHelper(Format format, long mappingThreshold, int samplesPerLine)
+          throws IllegalArgumentException {
+    if (format == null) {
+      throw new IllegalArgumentException("Format cannot be null");
+    }
+    if (mappingThreshold < 0) {
+      throw new IllegalArgumentException("Mapping threshold cannot be negative");
+    }
+    if (samplesPerLine < 1) {
+      throw new IllegalArgumentException("Samples per line must be at least 1");
+    }
+    this.format = format;
+    this.mappingThreshold = mappingThreshold;
+    this.samplesPerLine = samplesPerLine;
+  }
+
   @Override
   public CustomImage load(String filePath, String imageName) throws IOException {
-    String fileContents = readPPMFile(filePath);
-    Scanner sc = new Scanner(fileContents);
-    String token = sc.next();
-    if (!token.equals("P3")) {
-      throw new IllegalArgumentException("Invalid PPM file: plain RAW file should begin with P3");
+    try (PPMReader reader = PPMReader.open(filePath)) {
+      String token = reader.nextToken();
+      boolean plain = "P3".equals(token) || "P2".equals(token);
+      boolean grey = "P2".equals(token) || "P5".equals(token);
+      if (!plain && !"P6".equals(token) && !"P5".equals(token)) {
+        throw new IllegalArgumentException("Invalid PPM file: file should begin with P3, P6, "
+                + "P2 or P5");
+      }
+      int width = reader.nextInt();
+      int height = reader.nextInt();
+      int maxValue = reader.nextInt();
+      if (maxValue < 1 || maxValue > CustomImage.MAX_WIDE_VALUE) {
+        throw new IllegalArgumentException("Invalid PPM file: max value must be between 1 and "
+                + CustomImage.MAX_WIDE_VALUE);
+      }
+      int size = pixelCount(width, height);
+      if (plain) {
+        return grey ? loadPlainGrey(reader, imageName, width, height, maxValue)
+                : loadPlain(reader, imageName, width, height, maxValue);
+      }
+      boolean wide = maxValue > CustomImage.MAX_PACKED_VALUE;
+      int channels = grey ? 1 : 3;
+      long bodySize = (long) size * channels * (wide ? Short.BYTES : Byte.BYTES);
+      if (bodySize >= mappingThreshold) {
+        long position = reader.position();
+        if (reader.getChannel().size() - position < bodySize) {
+          throw new IllegalArgumentException("Invalid PPM file: unexpected end of file");
+        }
+        CustomImage image = new CustomImage(imageName, width, height,
+                MappedImageData.map(reader.getChannel(), position, size, channels, wide),
+                maxValue);
+        if (maxValue != (wide ? CustomImage.MAX_WIDE_VALUE : CustomImage.MAX_PACKED_VALUE)) {
+          checkSamples(image.getData(), size, maxValue);
+        }
+        return image;
+      }
+      if (wide) {
+        short[][] planes = new short[channels][size];
+        readWideSamples(reader, planes, maxValue);
+        return new CustomImage(imageName, width, height, planes, null, maxValue);
+      }
+      if (grey) {
+        byte[] plane = new byte[size];
+        readBytes(reader, plane, maxValue);
+        return new CustomImage(imageName, width, height, new byte[][]{plane}, null, maxValue);
+      }
+      return new CustomImage(imageName, width, height, readPackedSamples(reader, size, maxValue),
+              maxValue);
+    }
+  }
+
+  // helper method to compute the number of pixels of an image, which must fit in an array
+  private static int pixelCount(int width, int height) {
+    long count = (long) width * height;
+    if (count > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Invalid PPM file: image is too large");
+    }
+    return (int) count;
+  }
+
+  // helper method to check that a sample is within the range given by the max value of the file
+  private static int checkSample(int sample, int maxValue) {
+    if (sample < 0 || sample > maxValue) {
+      throw new IllegalArgumentException("Invalid PPM file: sample " + sample
+              + " is not between 0 and " + maxValue);
+    }
+    return sample;
+  }
+
+  // helper method to check every sample of a mapped body, whose values are only read on demand
+  private static void checkSamples(ImageData data, int size, int maxValue) {
+    for (int i = 0; i < size; i++) {
+      for (int channel = 0; channel < 3; channel++) {
+        checkSample(data.getColor(i, channel), maxValue);
+      }
     }
-    int width = sc.nextInt();
-    int height = sc.nextInt();
-    int maxValue = sc.nextInt();
-    Pixel[][] pixels = new Pixel[height][width];
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        pixels[i][j] = new Pixel(sc.nextInt(), sc.nextInt(), sc.nextInt(), 255);
+  }
+
+  // helper method to read the body of a plain PPM file
+  private static CustomImage loadPlain(PPMReader reader, String imageName, int width,
+                                       int height, int maxValue) throws IOException {
+    int size = width * height;
+    if (maxValue > CustomImage.MAX_PACKED_VALUE) {
+      short[][] planes = new short[3][size];
+      for (int i = 0; i < size; i++) {
+        for (int channel = 2; channel >= 0; channel--) {
+          planes[channel][i] = (short) checkSample(reader.nextInt(), maxValue);
+        }
+      }
+      return new CustomImage(imageName, width, height, planes, null, maxValue);
+    }
+    int[] raster = new int[size];
+    for (int i = 0; i < raster.length; i++) {
+      int red = checkSample(reader.nextInt(), maxValue);
+      int green = checkSample(reader.nextInt(), maxValue);
+      int blue = checkSample(reader.nextInt(), maxValue);
+      raster[i] = CustomImage.pack(red, green, blue, 255);
+    }
+    return new CustomImage(imageName, width, height, raster, maxValue);
+  }
+
+  // helper method to read the body of a plain PGM file
+  private static CustomImage loadPlainGrey(PPMReader reader, String imageName, int width,
+                                           int height, int maxValue) throws IOException {
+    int size = width * height;
+    if (maxValue > CustomImage.MAX_PACKED_VALUE) {
+      short[] plane = new short[size];
+      for (int i = 0; i < size; i++) {
+        plane[i] = (short) checkSample(reader.nextInt(), maxValue);
+      }
+      return new CustomImage(imageName, width, height, new short[][]{plane}, null, maxValue);
+    }
+    byte[] plane = new byte[size];
+    for (int i = 0; i < size; i++) {
+      plane[i] = (byte) checkSample(reader.nextInt(), maxValue);
+    }
+    return new CustomImage(imageName, width, height, new byte[][]{plane}, null, maxValue);
+  }
+
+  // helper method to read a raw body of 8-bit samples straight into the given plane
+  private static void readBytes(PPMReader reader, byte[] plane, int maxValue)
+          throws IOException {
+    reader.readFully(ByteBuffer.wrap(plane));
+    if (maxValue < CustomImage.MAX_PACKED_VALUE) {
+      for (byte sample : plane) {
+        checkSample(sample & 0xFF, maxValue);
+      }
+    }
+  }
+
+  // helper method to read a raw body of 8-bit red, green and blue samples into a packed raster
+  private static int[] readPackedSamples(PPMReader reader, int size, int maxValue)
+          throws IOException {
+    boolean checked = maxValue < CustomImage.MAX_PACKED_VALUE;
+    int[] raster = new int[size];
+    int pixelsPerChunk = CHUNK_SIZE / 3;
+    ByteBuffer chunk = ByteBuffer.allocate(pixelsPerChunk * 3);
+    byte[] bytes = chunk.array();
+    for (int start = 0; start < size; start += pixelsPerChunk) {
+      int count = Math.min(pixelsPerChunk, size - start);
+      chunk.clear().limit(count * 3);
+      reader.readFully(chunk);
+      if (checked) {
+        for (int j = 0; j < count * 3; j++) {
+          checkSample(bytes[j] & 0xFF, maxValue);
+        }
+      }
+      for (int i = 0, j = 0; i < count; i++, j += 3) {
+        raster[start + i] = CustomImage.pack(bytes[j] & 0xFF, bytes[j + 1] & 0xFF,
+                bytes[j + 2] & 0xFF, 255);
+      }
+    }
+    return raster;
+  }
+
+  // helper method to read a raw body of big-endian 16-bit samples into the given planes, which
+  // are indexed by channel when there are three of them
+  private static void readWideSamples(PPMReader reader, short[][] planes, int maxValue)
+          throws IOException {
+    int size = planes[0].length;
+    int tuple = planes.length * Short.BYTES;
+    int pixelsPerChunk = CHUNK_SIZE / tuple;
+    ByteBuffer chunk = ByteBuffer.allocate(pixelsPerChunk * tuple);
+    for (int start = 0; start < size; start += pixelsPerChunk) {
+      int count = Math.min(pixelsPerChunk, size - start);
+      chunk.clear().limit(count * tuple);
+      reader.readFully(chunk);
+      chunk.flip();
+      if (planes.length == 1) {
+        chunk.asShortBuffer().get(planes[0], start, count);
+        continue;
+      }
+      for (int i = start; i < start + count; i++) {
+        planes[2][i] = chunk.getShort();
+        planes[1][i] = chunk.getShort();
+        planes[0][i] = chunk.getShort();
+      }
+    }
+    if (maxValue < CustomImage.MAX_WIDE_VALUE) {
+      for (short[] plane : planes) {
+        for (short sample : plane) {
+          checkSample(sample & 0xFFFF, maxValue);
+        }
       }
     }
-    return new CustomImage(imageName, pixels, maxValue);
   }
 
   @Override
   public void save(CustomImage image, String filePath) throws IOException {
-    StringBuilder output = new StringBuilder();
-    int width = image.getWidth();
-    int height = image.getHeight();
-    output.append("P3\n").append(width).append(" ").append(height).append("\n")
-            .append(image.getMaxPixelValue()).append("\n");
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        Pixel originalPixel = image.getPixel(i, j);
-        int red = originalPixel.getColor(2);
-        int green = originalPixel.getColor(1);
-        int blue = originalPixel.getColor(0);
-        output.append(red).append("\n").append(green).append("\n").append(blue).append("\n");
-      }
-    }
-    // write to the output stream
-    FileOutputStream outputStream = new FileOutputStream(filePath);
-    outputStream.write(output.toString().getBytes());
-    outputStream.close();
-  }
-
-  // Helper method to read the contents from the input stream
-  private String readPPMFile(String file) throws IOException {
-    FileInputStream inputStream = new FileInputStream(file);
-    Scanner sc = new Scanner(inputStream);
-    StringBuilder builder = new StringBuilder();
-    // read from the input stream, line by line
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s).append(System.lineSeparator());
-      }
-    }
-    return builder.toString();
-  }
-}
\ No newline at end of file
+    if (format != Format.P3) {
+      saveRaw(image, filePath);
+      return;
+    }
+    ImageData data = image.getData();
+    int size = image.getWidth() * image.getHeight();
+    ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    byte[] bytes = chunk.array();
+    writeFile(filePath, channel -> {
+      writeFully(channel, header(image));
+      int position = 0;
+      int column = 0;
+      for (int i = 0; i < size; i++) {
+        for (int c = 2; c >= 0; c--) {
+          if (position > bytes.length - MAX_PLAIN_SAMPLE_SIZE) {
+            chunk.clear().limit(position);
+            writeFully(channel, chunk);
+            position = 0;
+          }
+          position = appendDecimal(bytes, position, data.getColor(i, c));
+          column = column + 1 == samplesPerLine ? 0 : column + 1;
+          bytes[position++] = (byte) (column == 0 ? '\n' : ' ');
+        }
+      }
+      if (column != 0) {
+        bytes[position - 1] = '\n';
+      }
+      chunk.clear().limit(position);
+      writeFully(channel, chunk);
+    });
+  }
+
+  // helper method to write the decimal digits of a non-negative value into the given array at
+  // the given position, and return the position after the digits
+  private static int appendDecimal(byte[] bytes, int position, int value) {
+    if (value < 10) {
+      bytes[position] = (byte) ('0' + value);
+      return position + 1;
+    }
+    int digits = 2;
+    for (int bound = 100; digits < 10 && value >= bound; bound *= 10) {
+      digits++;
+    }
+    int end = position + digits;
+    for (int i = end - 1; i >= position; i--) {
+      bytes[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return end;
+  }
+
+  // helper method to write a file at the given path with the given writer. The file is written
+  // to a temporary file in the same directory, which then replaces the file at the path. The
+  // file at the path is never truncated, so an image mapped from it stays readable.
+  private static void writeFile(String filePath, ChannelWriter writer) throws IOException {
+    Path target = Paths.get(filePath).toAbsolutePath();
+    Path temporary = target.resolveSibling("." + target.getFileName() + "."
+            + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.WRITE)) {
+        writer.write(channel);
+      }
+      try {
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  // writes the contents of a file to the given channel
+  private interface ChannelWriter {
+    void write(FileChannel channel) throws IOException;
+  }
+
+  // helper method to return the header of a file in the format of this helper
+  private ByteBuffer header(CustomImage image) {
+    String header = format.name() + "\n" + image.getWidth() + " " + image.getHeight() + "\n"
+            + image.getMaxPixelValue() + "\n";
+    return ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  // helper method to save the image as a raw PPM or PGM file, in chunks of whole pixels
+  private void saveRaw(CustomImage image, String filePath) throws IOException {
+    ImageData data = image.getData();
+    int size = image.getWidth() * image.getHeight();
+    boolean grey = format == Format.P5;
+    if (grey && !isGrey(data, size)) {
+      throw new IllegalArgumentException("Only greyscale images can be saved as PGM files.");
+    }
+    int maxValue = image.getMaxPixelValue();
+    int bytesPerSample = maxValue > CustomImage.MAX_PACKED_VALUE ? Short.BYTES : Byte.BYTES;
+    int[] channels = grey ? new int[]{0} : new int[]{2, 1, 0};
+    int tuple = channels.length * bytesPerSample;
+    int pixelsPerChunk = CHUNK_SIZE / tuple;
+    ByteBuffer chunk = ByteBuffer.allocate(pixelsPerChunk * tuple);
+    writeFile(filePath, channel -> {
+      writeFully(channel, header(image));
+      for (int start = 0; start < size; start += pixelsPerChunk) {
+        int end = Math.min(size, start + pixelsPerChunk);
+        chunk.clear();
+        for (int i = start; i < end; i++) {
+          for (int c : channels) {
+            if (bytesPerSample == 1) {
+              chunk.put((byte) data.getColor(i, c));
+            } else {
+              chunk.putShort((short) data.getColor(i, c));
+            }
+          }
+        }
+        chunk.flip();
+        writeFully(channel, chunk);
+      }
+    });
+  }
+
+  // helper method to check whether every pixel of the image is grey
+  private static boolean isGrey(ImageData data, int size) {
+    if (data.isGreyscale()) {
+      return true;
+    }
+    for (int i = 0; i < size; i++) {
+      int blue = data.getColor(i, 0);
+      if (data.getColor(i, 1) != blue || data.getColor(i, 2) != blue) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // helper method to write the remaining bytes of the buffer to the channel
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
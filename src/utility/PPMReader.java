@@ -0,0 +1,189 @@
+package utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
+/**
+ * This class reads the tokens of a PPM file in a single pass over a buffered channel. Tokens are
+ * separated by whitespace, and a '#' starts a comment that runs to the end of its line wherever
+ * it appears between tokens. Integers are parsed directly from the bytes of the file, so reading
+ * a file takes a fixed amount of memory besides the image itself.
+ */
+final class PPMReader implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  /**
+   * Constructs a reader over the given channel.
+   *
+   * @param channel the channel to read the file from, which is closed with the reader
+   */
+  PPMReader(FileChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.buffer.flip();
+  }
+
+  /**
+   * Opens a reader over the file at the given path.
+   *
+   * @param filePath the path of the file
+   * @return the reader
+   * @throws IOException if the file cannot be opened
+   */
+  static PPMReader open(String filePath) throws IOException {
+    return new PPMReader(FileChannel.open(Paths.get(filePath)));
+  }
+
+  // helper method to return the next byte of the file, or -1 at the end of the file
+  private int read() throws IOException {
+    if (!buffer.hasRemaining()) {
+      buffer.clear();
+      int count;
+      do {
+        count = channel.read(buffer);
+      } while (count == 0);
+      buffer.flip();
+      if (count < 0) {
+        return -1;
+      }
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  // helper method to check whether a byte is whitespace
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == 0x0B || c == '\f';
+  }
+
+  // helper method to skip whitespace and comments, and return the first byte of the next token,
+  // or -1 at the end of the file
+  private int skipWhitespace() throws IOException {
+    int c = read();
+    while (true) {
+      if (c == '#') {
+        do {
+          c = read();
+        } while (c != '\n' && c != '\r' && c != -1);
+      } else if (!isWhitespace(c)) {
+        return c;
+      }
+      c = read();
+    }
+  }
+
+  // helper method to check the byte that ends a token. A comment right after a token is left to
+  // be skipped before the next token, a single whitespace byte is consumed.
+  private void endToken(int c) {
+    if (c == '#') {
+      buffer.position(buffer.position() - 1);
+    }
+  }
+
+  /**
+   * Reads the next token, which is made of at most 16 bytes.
+   *
+   * @return the token, or null at the end of the file
+   * @throws IOException if the file cannot be read
+   */
+  String nextToken() throws IOException {
+    int c = skipWhitespace();
+    if (c == -1) {
+      return null;
+    }
+    StringBuilder token = new StringBuilder();
+    while (c != -1 && c != '#' && !isWhitespace(c)) {
+      if (token.length() == 16) {
+        throw new IllegalArgumentException("Invalid PPM file: unexpected token");
+      }
+      token.append((char) c);
+      c = read();
+    }
+    endToken(c);
+    return token.toString();
+  }
+
+  /**
+   * Reads the next token as a non-negative decimal integer. A single whitespace byte after the
+   * integer is consumed with it.
+   *
+   * @return the integer
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the file ends or the next token is not a non-negative
+   *                                  integer
+   */
+  int nextInt() throws IOException, IllegalArgumentException {
+    int c = skipWhitespace();
+    if (c == -1) {
+      throw new IllegalArgumentException("Invalid PPM file: unexpected end of file");
+    }
+    if (c < '0' || c > '9') {
+      throw new IllegalArgumentException("Invalid PPM file: expected a number");
+    }
+    int value = 0;
+    do {
+      if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+        throw new IllegalArgumentException("Invalid PPM file: number is too large");
+      }
+      value = value * 10 + (c - '0');
+      c = read();
+    } while (c >= '0' && c <= '9');
+    if (c != -1 && c != '#' && !isWhitespace(c)) {
+      throw new IllegalArgumentException("Invalid PPM file: expected a number");
+    }
+    endToken(c);
+    return value;
+  }
+
+  /**
+   * Returns the channel of the file.
+   *
+   * @return the channel of the file
+   */
+  FileChannel getChannel() {
+    return this.channel;
+  }
+
+  /**
+   * Returns the position in the file of the next byte to be read.
+   *
+   * @return the position of the next byte
+   * @throws IOException if the position of the channel cannot be read
+   */
+  long position() throws IOException {
+    return channel.position() - buffer.remaining();
+  }
+
+  /**
+   * Fills the remaining space of the given buffer with the next bytes of the file, for the
+   * binary body of a file. The bytes already buffered are transferred first, the rest is read
+   * from the channel directly into the given buffer.
+   *
+   * @param destination the buffer to fill
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the file ends before the buffer is full
+   */
+  void readFully(ByteBuffer destination) throws IOException, IllegalArgumentException {
+    if (buffer.hasRemaining()) {
+      int count = Math.min(buffer.remaining(), destination.remaining());
+      int limit = buffer.limit();
+      buffer.limit(buffer.position() + count);
+      destination.put(buffer);
+      buffer.limit(limit);
+    }
+    while (destination.hasRemaining()) {
+      if (channel.read(destination) < 0) {
+        throw new IllegalArgumentException("Invalid PPM file: unexpected end of file");
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,81 @@
+package utility;
+
+/**
+ * This class stores the pixels of an image as a single array of packed 0xAARRGGBB values.
+ */
+class PackedImageData implements ImageData {
+  private final int[] raster;
+
+  /**
+   * Constructs the storage over the given raster, which is owned by this object after the call.
+   *
+   * @param raster the packed pixel values in row-major order
+   */
+  PackedImageData(int[] raster) {
+    this.raster = raster;
+  }
+
+  @Override
+  public int getColor(int index, int channel) {
+    return CustomImage.unpack(this.raster[index], channel);
+  }
+
+  @Override
+  public int getAlpha(int index) {
+    return CustomImage.unpackAlpha(this.raster[index]);
+  }
+
+  @Override
+  public void copyARGB(int[] destination) {
+    System.arraycopy(this.raster, 0, destination, 0, this.raster.length);
+  }
+
+  @Override
+  public void copyChannel(int channel, int[] destination) {
+    int shift = channel << 3;
+    for (int i = 0; i < this.raster.length; i++) {
+      destination[i] = (this.raster[i] >>> shift) & 0xFF;
+    }
+  }
+
+  @Override
+  public boolean isGreyscale() {
+    return false;
+  }
+
+  /**
+   * Splits the raster into separate planes, one per channel.
+   *
+   * @return the planar form of this storage
+   */
+  @Override
+  public PlanarImageData toPlanar() {
+    int size = this.raster.length;
+    byte[][] planes = new byte[3][size];
+    byte[] alpha = new byte[size];
+    boolean opaque = true;
+    for (int i = 0; i < size; i++) {
+      int argb = this.raster[i];
+      planes[0][i] = (byte) argb;
+      planes[1][i] = (byte) (argb >>> 8);
+      planes[2][i] = (byte) (argb >>> 16);
+      alpha[i] = (byte) (argb >>> 24);
+      opaque &= alpha[i] == (byte) PlanarImageData.OPAQUE;
+    }
+    return new PlanarImageData(planes, opaque ? null : alpha);
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return (long) this.raster.length * Integer.BYTES;
+  }
+
+  /**
+   * Returns the raster backing this storage.
+   *
+   * @return the packed raster
+   */
+  int[] getRaster() {
+    return this.raster;
+  }
+}
@@ -0,0 +1,193 @@
+package utility;
+
+/**
+ * This class stores the pixels of an image as separate planes, one per channel. A greyscale
+ * image has a single plane that is shared by the red, green and blue channels. Planes hold 8-bit
+ * samples in a byte array or up to 16-bit samples in a short array, and are never modified after
+ * construction, so they can be shared between images.
+ */
+class PlanarImageData implements ImageData {
+  /**
+   * The alpha value of every pixel of an image without an alpha plane.
+   */
+  static final int OPAQUE = 255;
+
+  private final byte[][] bytePlanes;
+  private final short[][] shortPlanes;
+  private final byte[] alpha;
+
+  /**
+   * Constructs the storage over 8-bit planes. The planes are indexed by channel when there are
+   * three of them.
+   *
+   * @param planes the planes, one for a greyscale image or three for a color image
+   * @param alpha  the alpha plane, or null if every pixel is opaque
+   */
+  PlanarImageData(byte[][] planes, byte[] alpha) {
+    this.bytePlanes = planes;
+    this.shortPlanes = null;
+    this.alpha = alpha;
+  }
+
+  /**
+   * Constructs the storage over 16-bit planes. The planes are indexed by channel when there are
+   * three of them.
+   *
+   * @param planes the planes, one for a greyscale image or three for a color image
+   * @param alpha  the alpha plane, or null if every pixel is opaque
+   */
+  PlanarImageData(short[][] planes, byte[] alpha) {
+    this.bytePlanes = null;
+    this.shortPlanes = planes;
+    this.alpha = alpha;
+  }
+
+  // helper method to find the plane that holds the given channel
+  private int planeOf(int channel) {
+    return this.isGreyscale() ? 0 : channel;
+  }
+
+  @Override
+  public int getColor(int index, int channel) {
+    int plane = planeOf(channel);
+    if (this.bytePlanes != null) {
+      return this.bytePlanes[plane][index] & 0xFF;
+    }
+    return this.shortPlanes[plane][index] & 0xFFFF;
+  }
+
+  @Override
+  public int getAlpha(int index) {
+    return this.alpha == null ? OPAQUE : this.alpha[index] & 0xFF;
+  }
+
+  @Override
+  public void copyARGB(int[] destination) throws IllegalStateException {
+    if (this.bytePlanes == null) {
+      throw new IllegalStateException("Only images with up to 8 bits per channel can be "
+              + "accessed as packed pixels.");
+    }
+    byte[] blue = this.bytePlanes[planeOf(0)];
+    byte[] green = this.bytePlanes[planeOf(1)];
+    byte[] red = this.bytePlanes[planeOf(2)];
+    for (int i = 0; i < blue.length; i++) {
+      destination[i] = CustomImage.pack(red[i] & 0xFF, green[i] & 0xFF, blue[i] & 0xFF,
+              this.getAlpha(i));
+    }
+  }
+
+  @Override
+  public void copyChannel(int channel, int[] destination) {
+    int plane = planeOf(channel);
+    if (this.bytePlanes != null) {
+      byte[] samples = this.bytePlanes[plane];
+      for (int i = 0; i < samples.length; i++) {
+        destination[i] = samples[i] & 0xFF;
+      }
+    } else {
+      short[] samples = this.shortPlanes[plane];
+      for (int i = 0; i < samples.length; i++) {
+        destination[i] = samples[i] & 0xFFFF;
+      }
+    }
+  }
+
+  @Override
+  public boolean isGreyscale() {
+    return (this.bytePlanes != null ? this.bytePlanes.length : this.shortPlanes.length) == 1;
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    long size = this.alpha == null ? 0 : this.alpha.length;
+    if (this.bytePlanes != null) {
+      for (byte[] plane : this.bytePlanes) {
+        size += plane.length;
+      }
+    } else {
+      for (short[] plane : this.shortPlanes) {
+        size += (long) plane.length * Short.BYTES;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public PlanarImageData toPlanar() {
+    return this;
+  }
+
+  /**
+   * Returns true if the planes hold 16-bit samples.
+   *
+   * @return true if the planes are 16-bit
+   */
+  boolean isWide() {
+    return this.shortPlanes != null;
+  }
+
+  /**
+   * Returns a greyscale storage that shares the plane of the given channel and the alpha plane.
+   *
+   * @param channel the channel
+   * @return the greyscale storage
+   */
+  PlanarImageData channel(int channel) {
+    int plane = planeOf(channel);
+    if (this.bytePlanes != null) {
+      return new PlanarImageData(new byte[][]{this.bytePlanes[plane]}, this.alpha);
+    }
+    return new PlanarImageData(new short[][]{this.shortPlanes[plane]}, this.alpha);
+  }
+
+  /**
+   * Returns a color storage that shares the planes of the given channels of the given storages.
+   * The alpha plane is taken from the red storage.
+   *
+   * @param red   the storage to take the red plane from
+   * @param green the storage to take the green plane from
+   * @param blue  the storage to take the blue plane from
+   * @return the combined storage
+   * @throws IllegalArgumentException if the storages do not have the same sample size
+   */
+  static PlanarImageData combine(PlanarImageData red, PlanarImageData green,
+                                 PlanarImageData blue) throws IllegalArgumentException {
+    if (red.isWide() != green.isWide() || green.isWide() != blue.isWide()) {
+      throw new IllegalArgumentException("The given three images do not have the same "
+              + "bit depth.");
+    }
+    if (red.isWide()) {
+      return new PlanarImageData(new short[][]{blue.shortPlanes[blue.planeOf(0)],
+          green.shortPlanes[green.planeOf(1)], red.shortPlanes[red.planeOf(2)]}, red.alpha);
+    }
+    return new PlanarImageData(new byte[][]{blue.bytePlanes[blue.planeOf(0)],
+        green.bytePlanes[green.planeOf(1)], red.bytePlanes[red.planeOf(2)]}, red.alpha);
+  }
+
+  /**
+   * Returns the 8-bit planes, or null if the planes hold 16-bit samples.
+   *
+   * @return the 8-bit planes
+   */
+  byte[][] getBytePlanes() {
+    return this.bytePlanes;
+  }
+
+  /**
+   * Returns the 16-bit planes, or null if the planes hold 8-bit samples.
+   *
+   * @return the 16-bit planes
+   */
+  short[][] getShortPlanes() {
+    return this.shortPlanes;
+  }
+
+  /**
+   * Returns the alpha plane, or null if every pixel is opaque.
+   *
+   * @return the alpha plane
+   */
+  byte[] getAlphaPlane() {
+    return this.alpha;
+  }
+}
@@ -42,7 +42,6 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import controller.Features;
 import model.ImageProcessorRO;
 import utility.CustomImage;
-import utility.Pixel;
 import utility.ViewMessageType;
 
 /**
@@ -399,7 +398,7 @@ public class GraphicalView extends JFrame implements IGraphicalView {
   private String getFilePath() {
     JFileChooser fileChooser = new JFileChooser();
     FileNameExtensionFilter imageFilter = new FileNameExtensionFilter("Image files",
-            "png", "jpg", "bmp", "ppm", "jpeg");
+            "png", "jpg", "bmp", "ppm", "pnm", "pgm", "jpeg");
     fileChooser.setFileFilter(imageFilter);
     int chosenValue = fileChooser.showOpenDialog(this);
     if (chosenValue == JFileChooser.APPROVE_OPTION) {
@@ -502,8 +501,9 @@ public class GraphicalView extends JFrame implements IGraphicalView {
     BufferedImage outputImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
-        Pixel pixel = image.getPixel(i, j);
-        int color = new Color(pixel.getColor(2), pixel.getColor(1), pixel.getColor(0)).getRGB();
+        int argb = image.getARGB(i, j);
+        int color = new Color(CustomImage.unpack(argb, 2), CustomImage.unpack(argb, 1),
+                CustomImage.unpack(argb, 0)).getRGB();
         outputImage.setRGB(j, i, color);
       }
     }
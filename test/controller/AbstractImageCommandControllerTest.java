@@ -2,6 +2,7 @@ package controller;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
 
 import model.ImageProcessor;
 import utility.CustomImage;
@@ -103,6 +104,19 @@ public abstract class AbstractImageCommandControllerTest {
               .append(resultImageName);
     }
 
+    @Override
+    public void filter(String originalImageName, String resultImageName, double[][] kernel) {
+      log.append("Filter: ").append(originalImageName).append(", ")
+              .append(resultImageName).append(", ").append(Arrays.deepToString(kernel));
+    }
+
+    @Override
+    public void colorMatrix(String originalImageName, String resultImageName,
+                            double[][]... matrices) {
+      log.append("Color Matrix: ").append(originalImageName).append(", ")
+              .append(resultImageName).append(", ").append(Arrays.deepToString(matrices));
+    }
+
     @Override
     public void sepia(String originalImageName, String resultImageName) {
       log.append("Sepia: ").append(originalImageName).append(", ")
@@ -150,7 +164,10 @@ public abstract class AbstractImageCommandControllerTest {
 
       @Override
       public CustomImage load(String filePath, String imageName) throws IOException {
-        log.append("Load: ").append(filePath).append(", ").append(imageName);
+        // images may be decoded on several threads at once
+        synchronized (log) {
+          log.append("Load: ").append(filePath).append(", ").append(imageName);
+        }
         return image;
       }
 
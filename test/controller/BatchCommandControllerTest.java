@@ -0,0 +1,242 @@
+package controller;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import model.SpillingImageStore;
+import utility.ImageHelperFactory;
+import view.IView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the BatchCommandController class.
+ */
+public class BatchCommandControllerTest {
+  private static final String SCRIPT = "load {input} image\n"
+          + "brighten 10 image image-bright\n"
+          + "save {output}/{name}-bright.ppm image-bright\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path input;
+  private Path output;
+  private List<String> messages;
+  private IView view;
+
+  @Before
+  public void setUp() throws IOException {
+    input = folder.newFolder("input").toPath();
+    output = folder.getRoot().toPath().resolve("output");
+    messages = Collections.synchronizedList(new ArrayList<>());
+    view = messages::add;
+  }
+
+  // helper method to write a small png image
+  private void writePng(String name) throws IOException {
+    BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(1, 1, 0x102030);
+    ImageIO.write(image, "png", new File(input.toFile(), name));
+  }
+
+  // helper method to write a text file in the input directory
+  private void writeText(String name, String text) throws IOException {
+    Files.write(input.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testProcessesEveryImage() throws IOException {
+    writePng("first.png");
+    writePng("second.png");
+    writeText("third.ppm", "P3\n2 1\n255\n0 0 0 100 100 100\n");
+    new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 2,
+            1 << 20).process();
+    assertTrue(Files.isRegularFile(output.resolve("first-bright.ppm")));
+    assertTrue(Files.isRegularFile(output.resolve("second-bright.ppm")));
+    assertEquals("P3\n2 1\n255\n10\n10\n10\n110\n110\n110\n",
+            new String(Files.readAllBytes(output.resolve("third-bright.ppm")),
+                    StandardCharsets.UTF_8).replace("\r", ""));
+    assertEquals(2, messages.size());
+    assertTrue(messages.get(0), messages.get(0).startsWith("Processed 3 images in "));
+    assertTrue(messages.get(0), messages.get(0).endsWith(" MB/s"));
+    assertEquals("Failed: 0", messages.get(1));
+  }
+
+  @Test
+  public void testThreadPerJobProcessesEveryImage() throws IOException {
+    writePng("first.png");
+    writePng("second.png");
+    writeText("third.ppm", "P3\n2 1\n255\n0 0 0 100 100 100\n");
+    writeText("broken.ppm", "P3\n2 2\n255\n1 2\n");
+    new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 16,
+            1 << 20, true).process();
+    assertTrue(Files.isRegularFile(output.resolve("first-bright.ppm")));
+    assertTrue(Files.isRegularFile(output.resolve("second-bright.ppm")));
+    assertEquals("P3\n2 1\n255\n10\n10\n10\n110\n110\n110\n",
+            new String(Files.readAllBytes(output.resolve("third-bright.ppm")),
+                    StandardCharsets.UTF_8).replace("\r", ""));
+    assertTrue(messages.get(0), messages.get(0).startsWith("Processed 4 images in "));
+    assertEquals("Failed: 1", messages.get(1));
+    assertTrue(messages.get(2), messages.get(2).startsWith("broken.ppm: "));
+  }
+
+  @Test
+  public void testOutputsWrittenToTheInputDirectoryAreNotProcessed() throws IOException {
+    // enough files that the file system does not return the directory in a single read
+    for (int i = 0; i < 2000; i++) {
+      writeText("image" + i + ".ppm", "P3\n2 1\n255\n0 0 0 100 100 100\n");
+    }
+    new BatchCommandController(SCRIPT, input, input, view, ImageHelperFactory.getInstance(), 4,
+            1 << 20).process();
+    assertTrue(messages.get(0), messages.get(0).startsWith("Processed 2000 images in "));
+    assertEquals("Failed: 0", messages.get(1));
+    try (Stream<Path> files = Files.list(input)) {
+      assertEquals(4000, files.count());
+    }
+    assertTrue(Files.isRegularFile(input.resolve("image0-bright.ppm")));
+    assertFalse(Files.exists(input.resolve("image0-bright-bright.ppm")));
+  }
+
+  @Test
+  public void testImagesAreKeptInTheGivenStores() throws IOException {
+    writeText("first.ppm", "P3\n2 1\n255\n0 0 0 100 100 100\n");
+    writeText("second.ppm", "P3\n2 1\n255\n5 5 5 200 200 200\n");
+    Path scratch = folder.newFolder("scratch").toPath();
+    List<SpillingImageStore> stores = Collections.synchronizedList(new ArrayList<>());
+    new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 2,
+            1 << 20, false, () -> {
+              // every image is spilled
+              SpillingImageStore store = new SpillingImageStore(0, scratch);
+              stores.add(store);
+              return store;
+            }).process();
+    assertEquals("P3\n2 1\n255\n10\n10\n10\n110\n110\n110\n",
+            new String(Files.readAllBytes(output.resolve("first-bright.ppm")),
+                    StandardCharsets.UTF_8).replace("\r", ""));
+    assertEquals("P3\n2 1\n255\n15\n15\n15\n210\n210\n210\n",
+            new String(Files.readAllBytes(output.resolve("second-bright.ppm")),
+                    StandardCharsets.UTF_8).replace("\r", ""));
+    assertEquals("Failed: 0", messages.get(1));
+    assertEquals(2, stores.size());
+    // the stores are closed once their files are processed
+    try (Stream<Path> files = Files.list(scratch)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void testSkipsFilesThatAreNotImages() throws IOException {
+    writePng("image.png");
+    writeText("notes.txt", "not an image");
+    folder.newFolder("input", "nested.png");
+    new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 1,
+            1 << 20).process();
+    assertTrue(messages.get(0), messages.get(0).startsWith("Processed 1 images in "));
+    assertEquals("Failed: 0", messages.get(1));
+  }
+
+  @Test
+  public void testReportsFailedImages() throws IOException {
+    writePng("good.png");
+    writeText("broken.ppm", "P3\n2 2\n255\n1 2\n");
+    writeText("empty.png", "");
+    new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 2,
+            1 << 20).process();
+    assertTrue(Files.isRegularFile(output.resolve("good-bright.ppm")));
+    assertTrue(messages.get(0), messages.get(0).startsWith("Processed 3 images in "));
+    assertEquals("Failed: 2", messages.get(1));
+    assertEquals(4, messages.size());
+    // failures are sorted by file, and report the first error of the file
+    assertTrue(messages.get(2), messages.get(2).startsWith("broken.ppm: "));
+    assertTrue(messages.get(3), messages.get(3).startsWith("empty.png: "));
+  }
+
+  @Test
+  public void testImagesLargerThanTheBudgetAreStillProcessed() throws IOException {
+    writePng("first.png");
+    writePng("second.png");
+    new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 2,
+            1024).process();
+    assertTrue(messages.get(0), messages.get(0).startsWith("Processed 2 images in "));
+    assertEquals("Failed: 0", messages.get(1));
+  }
+
+  @Test
+  public void testImagesDoNotShareModels() throws IOException {
+    writePng("first.png");
+    writePng("second.png");
+    // the second command only succeeds if the image of another file is visible
+    String script = "load {input} {name}\nblur first first-blur\n";
+    new BatchCommandController(script, input, output, view, ImageHelperFactory.getInstance(), 2,
+            1 << 20).process();
+    assertEquals("Failed: 1", messages.get(1));
+    assertTrue(messages.get(2), messages.get(2).startsWith("second.png: "));
+  }
+
+  @Test
+  public void testMissingInputDirectory() {
+    new BatchCommandController(SCRIPT, input.resolve("missing"), output, view,
+            ImageHelperFactory.getInstance(), 1, 1 << 20).process();
+    assertEquals("Failed to read the input directory: " + input.resolve("missing"),
+            messages.get(0));
+    assertTrue(messages.get(1), messages.get(1).startsWith("Processed 0 images in "));
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    try {
+      new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 0,
+              1 << 20);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Number of workers must be at least 1", e.getMessage());
+    }
+    try {
+      new BatchCommandController(SCRIPT, input, output, view, ImageHelperFactory.getInstance(), 1,
+              100);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Memory budget must be at least 1024 bytes", e.getMessage());
+    }
+    try {
+      new BatchCommandController(SCRIPT, null, output, view, ImageHelperFactory.getInstance());
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Arguments cannot be null", e.getMessage());
+    }
+    try {
+      new BatchCommandController(SCRIPT + "quit\n", input, output, view,
+              ImageHelperFactory.getInstance());
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 4: Invalid command", e.getMessage());
+    }
+    try {
+      // the script is checked before any image is processed
+      new BatchCommandController(SCRIPT + "brighten image\n", input, output, view,
+              ImageHelperFactory.getInstance());
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 4: Invalid command format", e.getMessage());
+    }
+  }
+}
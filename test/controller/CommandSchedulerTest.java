@@ -0,0 +1,142 @@
+package controller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A JUnit test class for the CommandScheduler class.
+ */
+public class CommandSchedulerTest {
+  private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+  // helper method to create work that waits a while before it logs the given name, so that a
+  // task that does not wait for it would be logged first
+  private Supplier<String> slow(String name) {
+    return () -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      log.add(name);
+      return name;
+    };
+  }
+
+  // helper method to create work that logs the given name right away
+  private Supplier<String> fast(String name) {
+    return () -> {
+      log.add(name);
+      return name;
+    };
+  }
+
+  // helper method to wait for the results of the given futures
+  private static List<String> join(List<CompletableFuture<String>> results) {
+    List<String> values = new ArrayList<>();
+    for (CompletableFuture<String> result : results) {
+      values.add(result.join());
+    }
+    return values;
+  }
+
+  @Test
+  public void testReadWaitsForEarlierWrite() {
+    CommandScheduler scheduler = new CommandScheduler(2);
+    List<String> results = join(scheduler.schedule(Arrays.asList(
+            new CommandScheduler.Task(Collections.emptyList(), Collections.singletonList("x"),
+                    slow("write")),
+            new CommandScheduler.Task(Collections.singletonList("x"), Collections.emptyList(),
+                    fast("read")))));
+    assertEquals(Arrays.asList("write", "read"), results);
+    assertEquals(Arrays.asList("write", "read"), log);
+  }
+
+  @Test
+  public void testWriteWaitsForEarlierReadsAndWrites() {
+    CommandScheduler scheduler = new CommandScheduler(3);
+    join(scheduler.schedule(Arrays.asList(
+            new CommandScheduler.Task(Collections.emptyList(), Collections.singletonList("x"),
+                    fast("first write")),
+            new CommandScheduler.Task(Collections.singletonList("x"), Collections.emptyList(),
+                    slow("read")),
+            new CommandScheduler.Task(Collections.emptyList(), Collections.singletonList("x"),
+                    fast("second write")))));
+    assertEquals(Arrays.asList("first write", "read", "second write"), log);
+  }
+
+  @Test
+  public void testIndependentTasksRunConcurrently() {
+    CountDownLatch latch = new CountDownLatch(2);
+    Supplier<String> work = () -> {
+      latch.countDown();
+      try {
+        return latch.await(10, TimeUnit.SECONDS) ? "concurrent" : "sequential";
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return "interrupted";
+      }
+    };
+    CommandScheduler scheduler = new CommandScheduler(2);
+    // both tasks read the same image, which does not order them
+    List<String> results = join(scheduler.schedule(Arrays.asList(
+            new CommandScheduler.Task(Collections.singletonList("x"),
+                    Collections.singletonList("y"), work),
+            new CommandScheduler.Task(Collections.singletonList("x"),
+                    Collections.singletonList("z"), work))));
+    assertEquals(Arrays.asList("concurrent", "concurrent"), results);
+  }
+
+  @Test
+  public void testBarrierRunsAfterEarlierAndBeforeLaterTasks() {
+    CommandScheduler scheduler = new CommandScheduler(3);
+    List<String> results = join(scheduler.schedule(Arrays.asList(
+            new CommandScheduler.Task(Collections.emptyList(), Collections.singletonList("x"),
+                    slow("before")),
+            new CommandScheduler.Task(null, Collections.emptyList(), slow("barrier")),
+            new CommandScheduler.Task(Collections.emptyList(), Collections.singletonList("y"),
+                    fast("after")))));
+    assertEquals(Arrays.asList("before", "barrier", "after"), results);
+    assertEquals(Arrays.asList("before", "barrier", "after"), log);
+  }
+
+  @Test
+  public void testResultsAreInTheOrderOfTheTasks() {
+    CommandScheduler scheduler = new CommandScheduler(2);
+    List<String> results = join(scheduler.schedule(Arrays.asList(
+            new CommandScheduler.Task(Collections.emptyList(), Collections.singletonList("x"),
+                    slow("slow")),
+            new CommandScheduler.Task(Collections.emptyList(), Collections.singletonList("y"),
+                    fast("fast")))));
+    assertEquals(Arrays.asList("slow", "fast"), results);
+    assertEquals(Arrays.asList("fast", "slow"), log);
+  }
+
+  @Test
+  public void testThreadCount() {
+    assertEquals(3, new CommandScheduler(3).getThreadCount());
+    assertEquals(3, new CommandScheduler(3).getParallelExecutor().getParallelism());
+    assertEquals(Runtime.getRuntime().availableProcessors(),
+            new CommandScheduler().getThreadCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreadCount() {
+    new CommandScheduler(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullWork() {
+    new CommandScheduler.Task(Collections.emptyList(), Collections.emptyList(), null);
+  }
+}
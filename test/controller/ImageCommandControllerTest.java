@@ -10,11 +10,21 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import model.ConcurrentImageProcessor;
+import model.CountingParallelExecutor;
+import model.ImageProcessor;
+import model.ImageProcessorImpl;
 import utility.CustomImage;
+import utility.IImageHelper;
+import utility.IImageHelperFactory;
+import utility.ImageHelperFactory;
 import view.IView;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -182,6 +192,31 @@ public class ImageCommandControllerTest extends AbstractImageCommandControllerTe
     assertEquals("Invalid command format", viewLog.toString());
   }
 
+  @Test
+  public void testCommandsAreReadAsInAScript() {
+    String[] commands = {"brighten 1,000 elephant elephant-brighter",
+        "brighten +10 elephant", "greyscale hue-component elephant elephant-grey",
+        "filter 1,x;3 elephant elephant-filtered", "color-matrix elephant elephant-matrix"};
+    IImageHelperFactory factory = new MockImageHelperFactory(false, helperLog, null);
+    for (String command : commands) {
+      String expected;
+      try {
+        ScriptPlan.compile(command, factory);
+        fail("Expected the script to be rejected: " + command);
+        return;
+      } catch (IllegalArgumentException e) {
+        expected = e.getMessage().substring("Line 1: ".length());
+      }
+      resetLog();
+      InputStream in = new ByteArrayInputStream(command.getBytes());
+      CommandController controller = new ImageCommandController(
+              new MockImageProcessorModel(modelLog), in, new MockView(viewLog), factory);
+      controller.process();
+      assertEquals(command, expected, viewLog.toString());
+      assertEquals(command, "", modelLog.toString());
+    }
+  }
+
   @Test
   public void testGoValidCombineCommand() {
     String command = "rgb-combine elephant-red-tint elephant-red elephant-green elephant-blue";
@@ -992,6 +1027,126 @@ public class ImageCommandControllerTest extends AbstractImageCommandControllerTe
     assertEquals("Invalid command format", viewLog.toString());
   }
 
+  @Test
+  public void testGoValidFilterCommand() {
+    String command = "filter 1,2,1;2,4,2;1,2,1 elephant elephant-filter";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    resetLog();
+    IView view = new MockView(viewLog);
+    CommandController controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Executed command: filter", viewLog.toString());
+    assertEquals("Filter: elephant, elephant-filter, [[1.0, 2.0, 1.0], [2.0, 4.0, 2.0], "
+            + "[1.0, 2.0, 1.0]]", modelLog.toString());
+
+    // kernel read from a file
+    resetLog();
+    File kernelFile = null;
+    try {
+      kernelFile = folder.newFile("kernel.txt");
+      BufferedWriter bw = new BufferedWriter(new FileWriter(kernelFile));
+      bw.write("# edge detection\n0 -1 0\n-1, 4, -1\n\n0 -1 0\n");
+      bw.close();
+    } catch (IOException ex) {
+      fail("Kernel file creation failed");
+    }
+    command = "filter " + kernelFile.getPath() + " elephant elephant-edges";
+    in = new ByteArrayInputStream(command.getBytes());
+    view = new MockView(viewLog);
+    controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Executed command: filter", viewLog.toString());
+    assertEquals("Filter: elephant, elephant-edges, [[0.0, -1.0, 0.0], [-1.0, 4.0, -1.0], "
+            + "[0.0, -1.0, 0.0]]", modelLog.toString());
+  }
+
+  @Test
+  public void testGoInvalidFilterCommand() {
+    // filter with incomplete set of arguments
+    String command = "filter 1,2,1;2,4,2;1,2,1 elephant";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    resetLog();
+    IView view = new MockView(viewLog);
+    CommandController controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Invalid command format", viewLog.toString());
+
+    // filter command with extra arguments
+    resetLog();
+    command = "filter 1 elephant elephant-filter 1";
+    in = new ByteArrayInputStream(command.getBytes());
+    view = new MockView(viewLog);
+    controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Invalid command format", viewLog.toString());
+
+    // filter command with a weight that is not a number
+    resetLog();
+    command = "filter 1,2,1;2,x,2;1,2,1 elephant elephant-filter";
+    in = new ByteArrayInputStream(command.getBytes());
+    view = new MockView(viewLog);
+    controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Invalid kernel weight: x", viewLog.toString());
+    assertEquals("", modelLog.toString());
+  }
+
+  @Test
+  public void testGoValidColorMatrixCommand() {
+    String command = "color-matrix 0,0,1;0,1,0;1,0,0 elephant elephant-swapped";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    resetLog();
+    IView view = new MockView(viewLog);
+    CommandController controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Executed command: color-matrix", viewLog.toString());
+    assertEquals("Color Matrix: elephant, elephant-swapped, [[[0.0, 0.0, 1.0], [0.0, 1.0, 0.0], "
+            + "[1.0, 0.0, 0.0]]]", modelLog.toString());
+
+    // several matrices are passed to the model in order
+    resetLog();
+    command = "color-matrix 2,0,0;0,2,0;0,0,2 1,1,1;1,1,1;1,1,1 elephant elephant-grey";
+    in = new ByteArrayInputStream(command.getBytes());
+    view = new MockView(viewLog);
+    controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Executed command: color-matrix", viewLog.toString());
+    assertEquals("Color Matrix: elephant, elephant-grey, [[[2.0, 0.0, 0.0], [0.0, 2.0, 0.0], "
+            + "[0.0, 0.0, 2.0]], [[1.0, 1.0, 1.0], [1.0, 1.0, 1.0], [1.0, 1.0, 1.0]]]",
+            modelLog.toString());
+  }
+
+  @Test
+  public void testGoInvalidColorMatrixCommand() {
+    // color-matrix without a matrix
+    String command = "color-matrix elephant elephant-swapped";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    resetLog();
+    IView view = new MockView(viewLog);
+    CommandController controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Invalid command format", viewLog.toString());
+
+    // color-matrix with a weight that is not a number
+    resetLog();
+    command = "color-matrix 0,0,1;0,y,0;1,0,0 elephant elephant-swapped";
+    in = new ByteArrayInputStream(command.getBytes());
+    view = new MockView(viewLog);
+    controller = new ImageCommandController(new MockImageProcessorModel(modelLog),
+            in, view, new MockImageHelperFactory(false, helperLog, null));
+    controller.process();
+    assertEquals("Invalid matrix weight: y", viewLog.toString());
+    assertEquals("", modelLog.toString());
+  }
+
   @Test
   public void testGoValidGreyscaleColorTransformationCommand() {
     String command = "greyscale elephant elephant-greyscale";
@@ -1097,4 +1252,296 @@ public class ImageCommandControllerTest extends AbstractImageCommandControllerTe
             .append("Executed command: save").append("Invalid command format");
     assertEquals(expected.toString(), viewLog.toString());
   }
+
+  @Test
+  public void testConsecutiveLoadsDecodeConcurrently() {
+    String command = "load first.ppm first\n"
+            + "# a comment between loads\n"
+            + "load second.ppm second\n"
+            + "load third.ppm third\n"
+            + "brighten 10 first first-brighter\n";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    resetLog();
+    CommandController controller = new ImageCommandController(new NamingModel(modelLog), in,
+            new MockView(viewLog), new LatchedHelperFactory(3), new ImageLoader(3));
+    controller.process();
+    // all three images were decoded at once, and are loaded in the order of the commands
+    assertEquals("Load: firstLoad: secondLoad: thirdBrighten: first, first-brighter, 10",
+            modelLog.toString());
+    assertEquals("Executed command: load".repeat(3) + "Executed command: brighten",
+            viewLog.toString());
+  }
+
+  @Test
+  public void testConsecutiveLoadsReportErrorsInOrder() {
+    String command = "load first.ppm first\n"
+            + "load second.ppm\n"
+            + "load third.ppm third\n";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    resetLog();
+    CommandController controller = new ImageCommandController(new NamingModel(modelLog), in,
+            new MockView(viewLog), new LatchedHelperFactory(2), new ImageLoader(2));
+    controller.process();
+    assertEquals("Load: firstLoad: third", modelLog.toString());
+    assertEquals("Executed command: loadInvalid command format"
+            + "Executed command: load", viewLog.toString());
+  }
+
+  @Test
+  public void testFailedLoadAmongConsecutiveLoads() {
+    String command = "load first.ppm first\n"
+            + "load missing.ppm second\n";
+    InputStream in = new ByteArrayInputStream(command.getBytes());
+    resetLog();
+    CommandController controller = new ImageCommandController(
+            new MockImageProcessorModel(modelLog), in, new MockView(viewLog),
+            new MockImageHelperFactory(true, helperLog, null), new ImageLoader(2));
+    controller.process();
+    assertEquals("", modelLog.toString());
+    assertEquals("Failed to load the image at filepath: first.ppm"
+            + "Failed to load the image at filepath: missing.ppm", viewLog.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImageLoader() {
+    new ImageCommandController(new MockImageProcessorModel(modelLog),
+            new ByteArrayInputStream(new byte[0]), new MockView(viewLog),
+            new MockImageHelperFactory(false, helperLog, null), null);
+  }
+
+  @Test
+  public void testWriteBehindSaveDoesNotBlock() {
+    CountDownLatch brightened = new CountDownLatch(1);
+    StringBuilder saved = new StringBuilder();
+    IImageHelperFactory factory = file -> new IImageHelper() {
+      @Override
+      public CustomImage load(String filePath, String imageName) {
+        return getCustomImage();
+      }
+
+      @Override
+      public void save(CustomImage image, String filePath) throws IOException {
+        try {
+          // the save only finishes once the next command has run
+          if (!brightened.await(10, TimeUnit.SECONDS)) {
+            throw new IOException("The save blocked the script");
+          }
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        synchronized (saved) {
+          saved.append("Saved: ").append(filePath);
+        }
+      }
+    };
+    ImageProcessor model = new MockImageProcessorModel(modelLog) {
+      @Override
+      public void brighten(String originalImageName, String resultImageName, int increment) {
+        super.brighten(originalImageName, resultImageName, increment);
+        brightened.countDown();
+      }
+    };
+    String command = "save out.png elephant\nbrighten 10 elephant elephant-brighter\n";
+    resetLog();
+    CommandController controller = new ImageCommandController(model,
+            new ByteArrayInputStream(command.getBytes()), new MockView(viewLog), factory,
+            new ImageLoader(1), new ImageSaver(1));
+    controller.process();
+    assertEquals("Executed command: saveExecuted command: brighten", viewLog.toString());
+    // the save is finished when the script ends
+    assertEquals("Saved: out.png", saved.toString());
+  }
+
+  @Test
+  public void testWriteBehindSaveReportsErrors() {
+    String command = "save missing/out.png elephant\nbrighten 10 elephant elephant-brighter\n";
+    resetLog();
+    CommandController controller = new ImageCommandController(
+            new MockImageProcessorModel(modelLog), new ByteArrayInputStream(command.getBytes()),
+            new MockView(viewLog), new MockImageHelperFactory(true, helperLog, null),
+            new ImageLoader(1), new ImageSaver(1));
+    controller.process();
+    // the error is printed once the save has failed, before the end of the script
+    String error = "Failed to save the image at filepath: missing/out.png";
+    assertTrue(viewLog.toString().contains(error));
+    assertEquals("Executed command: saveExecuted command: brighten",
+            viewLog.toString().replace(error, ""));
+  }
+
+  @Test
+  public void testLoadWaitsForWriteBehindSave() {
+    File file = new File(folder.getRoot(), "saved.ppm");
+    ImageProcessor model = new ImageProcessorImpl();
+    model.loadImage(getCustomImage());
+    String command = "save " + file.getPath() + " TestImage\n"
+            + "load " + file.getPath() + " saved\n";
+    resetLog();
+    CommandController controller = new ImageCommandController(model,
+            new ByteArrayInputStream(command.getBytes()), new MockView(viewLog),
+            ImageHelperFactory.getInstance(), new ImageLoader(1), new ImageSaver(1));
+    controller.process();
+    assertEquals("Executed command: saveExecuted command: load", viewLog.toString());
+    assertEquals(getCustomImage().getWidth(), model.getImage("saved").getWidth());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImageSaver() {
+    new ImageCommandController(new MockImageProcessorModel(modelLog),
+            new ByteArrayInputStream(new byte[0]), new MockView(viewLog),
+            new MockImageHelperFactory(false, helperLog, null), new ImageLoader(1), null);
+  }
+
+  @Test
+  public void testScheduledCommandsRunConcurrently() {
+    // the second load does not depend on the brighten before it, so it is decoded while the
+    // first load waits, which the helpers require
+    String command = "load first.ppm first\n"
+            + "brighten 10 first first\n"
+            + "load second.ppm second\n";
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor();
+    resetLog();
+    CommandController controller = new ImageCommandController(model,
+            new ByteArrayInputStream(command.getBytes()), new MockView(viewLog),
+            new LatchedHelperFactory(2), new ImageLoader(1), new ImageSaver(1),
+            new CommandScheduler(2));
+    controller.process();
+    assertEquals("Executed command: loadExecuted command: brightenExecuted command: load",
+            viewLog.toString());
+    assertEquals(0xFF0A0A0A, model.getImage("first").getARGB(0, 0));
+    assertEquals(0xFF000000, model.getImage("second").getARGB(0, 0));
+  }
+
+  @Test
+  public void testScheduledScriptMatchesSequentialScript() {
+    File file = new File(folder.getRoot(), "saved.ppm");
+    String command = "brighten 10 TestImage bright\n"
+            + "sepia TestImage sepia\n"
+            + "blur bright bright-blur\n"
+            + "sharpen missing sharp\n"
+            + "rgb-split sepia red green blue\n"
+            + "brighten -5 red red\n"
+            + "rgb-combine combined red green blue\n"
+            + "dither combined dithered\n"
+            + "unknown TestImage\n"
+            + "save " + file.getPath() + " bright-blur\n"
+            + "load " + file.getPath() + " saved\n"
+            + "horizontal-flip saved bright-blur\n"
+            + "greyscale luma-component bright-blur grey\n";
+    String[] images = {"bright", "sepia", "bright-blur", "red", "green", "blue", "combined",
+        "dithered", "saved", "grey"};
+
+    ImageProcessor sequential = new ImageProcessorImpl();
+    sequential.loadImage(getCustomImage());
+    resetLog();
+    new ImageCommandController(sequential, new ByteArrayInputStream(command.getBytes()),
+            new MockView(viewLog), ImageHelperFactory.getInstance(), new ImageLoader(1),
+            new ImageSaver(1)).process();
+    String sequentialOutput = viewLog.toString();
+    assertEquals("Executed command: brighten" + "Executed command: sepia"
+            + "Executed command: blur" + "An Image with the given name not found."
+            + "Executed command: rgb-split" + "Executed command: brighten"
+            + "Executed command: rgb-combine" + "Executed command: dither" + "Invalid command"
+            + "Executed command: save" + "Executed command: load"
+            + "Executed command: horizontal-flip" + "Executed command: greyscale",
+            sequentialOutput);
+
+    ConcurrentImageProcessor scheduled = new ConcurrentImageProcessor();
+    scheduled.loadImage(getCustomImage());
+    resetLog();
+    new ImageCommandController(scheduled, new ByteArrayInputStream(command.getBytes()),
+            new MockView(viewLog), ImageHelperFactory.getInstance(), new ImageLoader(1),
+            new ImageSaver(1), new CommandScheduler(3)).process();
+    assertEquals(sequentialOutput, viewLog.toString());
+    for (String image : images) {
+      assertEquals(image, sequential.getImage(image), scheduled.getImage(image));
+    }
+  }
+
+  @Test
+  public void testScheduledChainIsComputedInOnePass() {
+    File file = new File(folder.getRoot(), "chain.ppm");
+    String command = "brighten 10 TestImage bright\n"
+            + "sepia bright sepia\n"
+            + "brighten -5 sepia result\n"
+            + "save " + file.getPath() + " result\n";
+    CountingParallelExecutor executor = new CountingParallelExecutor(2);
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor(executor);
+    model.loadImage(getCustomImage());
+    resetLog();
+    new ImageCommandController(model, new ByteArrayInputStream(command.getBytes()),
+            new MockView(viewLog), ImageHelperFactory.getInstance(), new ImageLoader(1),
+            new ImageSaver(1), new CommandScheduler(2)).process();
+    assertEquals("Executed command: brighten" + "Executed command: sepia"
+            + "Executed command: brighten" + "Executed command: save", viewLog.toString());
+    // the chain is fused into the pass that computes the saved image, and the images before it
+    // are not computed
+    assertEquals(1, executor.getPasses());
+
+    ImageProcessor expected = new ImageProcessorImpl();
+    expected.loadImage(getCustomImage());
+    expected.brighten("TestImage", "bright", 10);
+    expected.sepia("bright", "sepia");
+    expected.brighten("sepia", "result", -5);
+    assertEquals(expected.getImage("result"), model.getImage("result"));
+    assertEquals(1, executor.getPasses());
+    assertEquals(expected.getImage("bright"), model.getImage("bright"));
+    assertEquals(2, executor.getPasses());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullCommandScheduler() {
+    new ImageCommandController(new ConcurrentImageProcessor(),
+            new ByteArrayInputStream(new byte[0]), new MockView(viewLog),
+            new MockImageHelperFactory(false, helperLog, null), new ImageLoader(1),
+            new ImageSaver(1), null);
+  }
+
+  /**
+   * A model that logs the names of the images that are loaded.
+   */
+  static class NamingModel extends MockImageProcessorModel {
+    NamingModel(StringBuilder log) {
+      super(log);
+    }
+
+    @Override
+    public void loadImage(CustomImage image) {
+      log.append("Load: ").append(image.getName());
+    }
+  }
+
+  /**
+   * A factory of helpers that only finish decoding once the given number of images are being
+   * decoded at the same time, and fail if that does not happen.
+   */
+  static class LatchedHelperFactory implements IImageHelperFactory {
+    private final CountDownLatch latch;
+
+    LatchedHelperFactory(int concurrentLoads) {
+      this.latch = new CountDownLatch(concurrentLoads);
+    }
+
+    @Override
+    public IImageHelper getHelper(String file) {
+      return new IImageHelper() {
+        @Override
+        public CustomImage load(String filePath, String imageName) throws IOException {
+          latch.countDown();
+          try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+              throw new IOException("Images were not decoded concurrently");
+            }
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          return new CustomImage(imageName, 1, 1, new int[]{0xFF000000}, 255);
+        }
+
+        @Override
+        public void save(CustomImage image, String filePath) {
+          // images are not saved
+        }
+      };
+    }
+  }
 }
@@ -323,6 +323,21 @@ public class ImageGUICommandControllerTest extends AbstractImageCommandControlle
     assertEquals("Update UI: base", viewLogData[viewLogData.length - 1]);
   }
 
+  @Test
+  public void testCombineDecodesImagesConcurrently() {
+    resetLog();
+    MockView view = new MockView(viewLog);
+    ImageProcessor model = new ImageCommandControllerTest.NamingModel(modelLog);
+    CommandController controller = new ImageGUICommandController(model, view,
+            new ImageCommandControllerTest.LatchedHelperFactory(3), new ImageLoader(3));
+    controller.process();
+    view.trigger("combine", new String[]{"file1.png", "file2.png", "file3.png"});
+    assertEquals("Load: base-redLoad: base-greenLoad: base-blue"
+            + "Combine: base-red, base-green, base-blue, base", modelLog.toString());
+    String[] viewLogData = viewLog.toString().split("\n");
+    assertEquals("Update UI: base", viewLogData[viewLogData.length - 1]);
+  }
+
   @Test
   public void testCallBackOnCombineCommandWithInvalidParameters() {
     // Combine command with null parameters
@@ -0,0 +1,78 @@
+package controller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import utility.CustomImage;
+import utility.IImageHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the ImageLoader class.
+ */
+public class ImageLoaderTest {
+
+  /**
+   * A helper that returns the given image, or fails when there is none.
+   */
+  private static class FixedHelper implements IImageHelper {
+    private final CustomImage image;
+
+    private FixedHelper(CustomImage image) {
+      this.image = image;
+    }
+
+    @Override
+    public CustomImage load(String filePath, String imageName) throws IOException {
+      if (image == null) {
+        throw new IOException("Missing file: " + filePath);
+      }
+      return image;
+    }
+
+    @Override
+    public void save(CustomImage image, String filePath) {
+      // images are not saved
+    }
+  }
+
+  @Test
+  public void testSubmitReturnsImage() throws Exception {
+    CustomImage image = new CustomImage("image", 1, 1, new int[]{0xFF102030}, 255);
+    Future<CustomImage> future = new ImageLoader(2).submit(new FixedHelper(image),
+            "image.png", "image");
+    assertSame(image, future.get());
+  }
+
+  @Test
+  public void testSubmitReportsFailure() throws InterruptedException {
+    Future<CustomImage> future = new ImageLoader().submit(new FixedHelper(null), "missing.png",
+            "image");
+    try {
+      future.get();
+      fail("Expected the load to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+      assertEquals("Missing file: missing.png", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testThreadCount() {
+    assertEquals(3, new ImageLoader(3).getThreadCount());
+    assertEquals(Runtime.getRuntime().availableProcessors(),
+            new ImageLoader().getThreadCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreadCount() {
+    new ImageLoader(0);
+  }
+}
@@ -0,0 +1,112 @@
+package controller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import utility.CustomImage;
+import utility.IImageHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the ImageSaver class.
+ */
+public class ImageSaverTest {
+  private final CustomImage image = new CustomImage("image", 1, 1, new int[]{0xFF102030}, 255);
+
+  /**
+   * A helper that logs the files it saves, fails to save files named "missing", and waits for a
+   * latch before saving files named "slow".
+   */
+  private static class LoggingHelper implements IImageHelper {
+    private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    @Override
+    public CustomImage load(String filePath, String imageName) {
+      return null;
+    }
+
+    @Override
+    public void save(CustomImage image, String filePath) throws IOException {
+      if (filePath.startsWith("slow")) {
+        try {
+          latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (filePath.startsWith("missing")) {
+        throw new IOException("Missing directory");
+      }
+      saved.add(filePath);
+    }
+  }
+
+  @Test
+  public void testFlushWaitsForSaves() {
+    LoggingHelper helper = new LoggingHelper();
+    ImageSaver saver = new ImageSaver(2);
+    saver.submit(helper, image, "first.png");
+    saver.submit(helper, image, "second.png");
+    assertEquals(Collections.emptyList(), saver.flush());
+    assertEquals(2, helper.saved.size());
+    assertTrue(helper.saved.containsAll(Arrays.asList("first.png", "second.png")));
+  }
+
+  @Test
+  public void testSubmitDoesNotWait() {
+    LoggingHelper helper = new LoggingHelper();
+    ImageSaver saver = new ImageSaver(1);
+    saver.submit(helper, image, "slow.png");
+    assertEquals(Collections.emptyList(), saver.pollErrors());
+    assertTrue(helper.saved.isEmpty());
+    helper.latch.countDown();
+    saver.flush();
+    assertEquals(Collections.singletonList("slow.png"), helper.saved);
+  }
+
+  @Test
+  public void testErrorsAreReportedInOrder() {
+    LoggingHelper helper = new LoggingHelper();
+    ImageSaver saver = new ImageSaver(3);
+    saver.submit(helper, image, "missing1.png");
+    saver.submit(helper, image, "saved.png");
+    saver.submit(helper, image, "missing2.png");
+    assertEquals(Arrays.asList("Failed to save the image at filepath: missing1.png",
+            "Failed to save the image at filepath: missing2.png"), saver.flush());
+    // errors are only reported once
+    assertEquals(Collections.emptyList(), saver.flush());
+  }
+
+  @Test
+  public void testAwaitFileWaitsForItsSave() {
+    LoggingHelper helper = new LoggingHelper();
+    ImageSaver saver = new ImageSaver(2);
+    saver.submit(helper, image, "slow.png");
+    saver.submit(helper, image, "fast.png");
+    saver.awaitFile("fast.png");
+    assertEquals(Collections.singletonList("fast.png"), helper.saved);
+    helper.latch.countDown();
+    saver.awaitFile("./slow.png");
+    assertEquals(Arrays.asList("fast.png", "slow.png"), helper.saved);
+  }
+
+  @Test
+  public void testThreadCount() {
+    assertEquals(4, new ImageSaver(4).getThreadCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreadCount() {
+    new ImageSaver(0);
+  }
+}
@@ -0,0 +1,335 @@
+package controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import utility.CustomImage;
+import utility.IImageHelper;
+import utility.IImageHelperFactory;
+import utility.ImageHelperFactory;
+import view.IView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the ImageServerController class.
+ */
+public class ImageServerControllerTest {
+  private static final String SCRIPT = "load {input} image\n"
+          + "brighten 10 image bright\n"
+          + "save {output}/bright.ppm bright\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<ImageServerController> servers = new ArrayList<>();
+  private List<String> messages;
+  private IView view;
+  private String input;
+
+  @Before
+  public void setUp() throws IOException {
+    messages = Collections.synchronizedList(new ArrayList<>());
+    view = messages::add;
+    input = new File(folder.getRoot(), "image.ppm").getPath();
+    ImageHelperFactory.getInstance().getHelper(input).save(new CustomImage("image", 2, 1,
+            new int[]{0xFF102030, 0xFF405060}, 255), input);
+  }
+
+  @After
+  public void tearDown() {
+    for (ImageServerController server : servers) {
+      server.stop();
+    }
+  }
+
+  // helper method to start a server on a free port
+  private ImageServerController start(IImageHelperFactory factory, int workers, int capacity,
+                                      boolean threadPerJob) throws IOException {
+    ImageServerController server = new ImageServerController(0, view, factory, workers,
+            capacity, threadPerJob);
+    servers.add(server);
+    Thread thread = new Thread(server::process);
+    thread.setDaemon(true);
+    thread.start();
+    return server;
+  }
+
+  // helper method to create the query that gives the test image and the output directory
+  private String query() {
+    return "?input=" + URLEncoder.encode(input, StandardCharsets.UTF_8)
+            + "&output=" + URLEncoder.encode(folder.getRoot().getPath(), StandardCharsets.UTF_8);
+  }
+
+  // helper method to send an empty script with the given header lines over a socket, since a
+  // URL connection sets the Host and Origin headers itself, and return the whole response
+  private static String sendRaw(ImageServerController server, String... headers)
+          throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      StringBuilder request = new StringBuilder("POST " + ImageServerController.PATH
+              + " HTTP/1.1\r\n");
+      for (String header : headers) {
+        request.append(header).append("\r\n");
+      }
+      request.append("Content-Length: 0\r\nConnection: close\r\n\r\n");
+      socket.getOutputStream().write(request.toString().getBytes(StandardCharsets.US_ASCII));
+      return new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+    }
+  }
+
+  // helper method to send a request with the token of the server, and return its status
+  // followed by its body
+  private static List<String> send(ImageServerController server, String method, String query,
+                                   String body) throws IOException {
+    return send(server, method, query, body,
+            Collections.singletonMap(ImageServerController.TOKEN_HEADER, server.getToken()));
+  }
+
+  // helper method to send a request with the given headers to a server, and return its status
+  // followed by its body
+  private static List<String> send(ImageServerController server, String method, String query,
+                                   String body, Map<String, String> headers) throws IOException {
+    URL url = new URL("http://localhost:" + server.getPort() + ImageServerController.PATH
+            + query);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod(method);
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      connection.setRequestProperty(header.getKey(), header.getValue());
+    }
+    if (body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    int status = connection.getResponseCode();
+    InputStream stream = status < 400 ? connection.getInputStream()
+            : connection.getErrorStream();
+    try (InputStream in = stream) {
+      return Arrays.asList(String.valueOf(status),
+              new String(in.readAllBytes(), StandardCharsets.UTF_8),
+              String.valueOf(connection.getHeaderField("X-Job-Latency-Ms")),
+              String.valueOf(connection.getHeaderField("Retry-After")));
+    }
+  }
+
+  @Test
+  public void testJobRunsScript() throws IOException {
+    ImageServerController server = start(ImageHelperFactory.getInstance(), 2, 2, false);
+    List<String> response = send(server, "POST", query(), SCRIPT);
+    assertEquals("200", response.get(0));
+    assertTrue(response.get(1), response.get(1).startsWith("Executed command: load\n"
+            + "Executed command: brighten\nExecuted command: save\nJob 1: 3 commands, 0 failed"));
+    Double.parseDouble(response.get(2));
+    File output = new File(folder.getRoot(), "bright.ppm");
+    assertEquals(0xFF1A2A3A, ImageHelperFactory.getInstance().getHelper(output.getPath())
+            .load(output.getPath(), "bright").getARGB(0, 0));
+    assertTrue(messages.contains("Listening on http://localhost:" + server.getPort()
+            + ImageServerController.PATH));
+    assertTrue(messages.contains("Token: " + server.getToken()));
+    assertTrue(messages.toString(), messages.get(messages.size() - 1)
+            .startsWith("Job 1: 3 commands, 0 failed in "));
+  }
+
+  @Test
+  public void testJobsDoNotShareModels() throws IOException {
+    ImageServerController server = start(ImageHelperFactory.getInstance(), 1, 1, false);
+    assertEquals("200", send(server, "POST", query(), SCRIPT).get(0));
+    // the image of the first job is not visible to the second
+    List<String> response = send(server, "POST", "", "blur bright blurred\n");
+    assertEquals("422", response.get(0));
+    assertTrue(response.get(1), response.get(1).startsWith(
+            "An Image with the given name not found.\nJob 2: 1 commands, 1 failed"));
+  }
+
+  @Test
+  public void testInvalidRequestsAreRejected() throws IOException {
+    ImageServerController server = start(ImageHelperFactory.getInstance(), 1, 1, false);
+    assertEquals(Arrays.asList("400", "Line 2: Invalid command format"),
+            send(server, "POST", query(), "load {input} image\nblur image\n").subList(0, 2));
+    assertEquals(Arrays.asList("400", "Invalid query parameter: x"),
+            send(server, "POST", "?x", SCRIPT).subList(0, 2));
+    assertEquals(Arrays.asList("405", "Jobs must be posted"),
+            send(server, "GET", query(), null).subList(0, 2));
+    // rejected requests are not jobs
+    assertTrue(messages.toString(), messages.stream().noneMatch(m -> m.startsWith("Job ")));
+  }
+
+  @Test
+  public void testRequestsWithoutTheTokenAreRejected() throws IOException {
+    ImageServerController server = start(ImageHelperFactory.getInstance(), 1, 1, false);
+    String message = "Missing or invalid X-Job-Token header";
+    assertEquals(Arrays.asList("403", message),
+            send(server, "POST", query(), SCRIPT, Collections.emptyMap()).subList(0, 2));
+    assertEquals(Arrays.asList("403", message), send(server, "POST", query(), SCRIPT,
+            Collections.singletonMap(ImageServerController.TOKEN_HEADER, "guess")).subList(0, 2));
+    // every server has a token of its own
+    ImageServerController other = start(ImageHelperFactory.getInstance(), 1, 1, false);
+    assertFalse(other.getToken().equals(server.getToken()));
+    assertFalse(new File(folder.getRoot(), "bright.ppm").exists());
+  }
+
+  @Test
+  public void testRequestsFromWebPagesAreRejected() throws IOException {
+    ImageServerController server = start(ImageHelperFactory.getInstance(), 1, 1, false);
+    String token = ImageServerController.TOKEN_HEADER + ": " + server.getToken();
+    String response = sendRaw(server, "Host: localhost:" + server.getPort(),
+            "Origin: http://example.com", token);
+    assertTrue(response, response.startsWith("HTTP/1.1 403"));
+    assertTrue(response, response.endsWith("Requests from web pages are not accepted"));
+    // a page whose domain name was rebound to the loopback address sends its own host name
+    response = sendRaw(server, "Host: attacker.example:" + server.getPort(), token);
+    assertTrue(response, response.startsWith("HTTP/1.1 403"));
+    assertTrue(response, response.endsWith("Invalid host: attacker.example:"
+            + server.getPort()));
+    response = sendRaw(server, "Host: 127.0.0.1:" + server.getPort(), token);
+    assertTrue(response, response.startsWith("HTTP/1.1 200"));
+  }
+
+  @Test
+  public void testLargeScriptsAreRejected() throws IOException {
+    ImageServerController server = start(ImageHelperFactory.getInstance(), 1, 1, false);
+    String script = "# " + "x".repeat(ImageServerController.MAX_SCRIPT_SIZE) + "\n";
+    assertEquals(Arrays.asList("413", "The script is larger than "
+            + ImageServerController.MAX_SCRIPT_SIZE + " bytes"),
+            send(server, "POST", "", script).subList(0, 2));
+    assertEquals("200", send(server, "POST", "", "# " + "x".repeat(1000) + "\n").get(0));
+  }
+
+  @Test
+  public void testThreadPerJobRunsScripts() throws IOException {
+    ImageServerController server = start(ImageHelperFactory.getInstance(), 2, 2, true);
+    for (int i = 1; i <= 2; i++) {
+      List<String> response = send(server, "POST", query(), SCRIPT);
+      assertEquals("200", response.get(0));
+      assertTrue(response.get(1), response.get(1).contains("Executed command: save\nJob " + i
+              + ": 3 commands, 0 failed"));
+    }
+  }
+
+  @Test
+  public void testFullQueueRejectsJobs() throws Exception {
+    assertFullQueueRejectsJobs(false);
+  }
+
+  @Test
+  public void testFullQueueRejectsJobsWithThreadPerJob() throws Exception {
+    assertFullQueueRejectsJobs(true);
+  }
+
+  // helper method to check that a server with one worker and a queue of one job rejects the
+  // third of three jobs that are posted at once
+  @SuppressWarnings("unchecked")
+  private void assertFullQueueRejectsJobs(boolean threadPerJob) throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    // a factory whose loads wait until they are released, which keeps the worker busy
+    IImageHelperFactory factory = new IImageHelperFactory() {
+      @Override
+      public IImageHelper getHelper(String file) {
+        return ImageHelperFactory.getInstance().getHelper(file);
+      }
+
+      @Override
+      public IImageHelper getLoadHelper(String file) {
+        loading.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return getHelper(file);
+      }
+    };
+    ImageServerController server = start(factory, 1, 1, threadPerJob);
+    // each client waits for its response on a thread of its own
+    ExecutorService clients = Executors.newFixedThreadPool(3);
+    List<CompletableFuture<List<String>>> responses = new ArrayList<>();
+    responses.add(CompletableFuture.supplyAsync(() -> post(server), clients));
+    assertTrue(loading.await(10, TimeUnit.SECONDS));
+    // one of the next jobs waits in the queue, and the other finds it full
+    responses.add(CompletableFuture.supplyAsync(() -> post(server), clients));
+    responses.add(CompletableFuture.supplyAsync(() -> post(server), clients));
+    List<String> rejected = (List<String>) CompletableFuture.anyOf(responses.get(1),
+            responses.get(2)).get(10, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList("503", "The job queue is full", "null", "1"), rejected);
+    release.countDown();
+    List<String> statuses = new ArrayList<>();
+    for (CompletableFuture<List<String>> response : responses) {
+      statuses.add(response.get(10, TimeUnit.SECONDS).get(0));
+    }
+    Collections.sort(statuses);
+    assertEquals(Arrays.asList("200", "200", "503"), statuses);
+    clients.shutdown();
+    assertTrue(messages.toString(), messages.stream().anyMatch(m -> m.matches(
+            "Job \\d rejected: the queue is full")));
+  }
+
+  // helper method to post the test script, for a future
+  private List<String> post(ImageServerController server) {
+    try {
+      return send(server, "POST", query(), SCRIPT);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Test
+  public void testInvalidArguments() throws IOException {
+    IImageHelperFactory factory = ImageHelperFactory.getInstance();
+    try {
+      new ImageServerController(0, null, factory);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Arguments cannot be null", e.getMessage());
+    }
+    try {
+      new ImageServerController(70000, view, factory);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid port: 70000", e.getMessage());
+    }
+    try {
+      new ImageServerController(0, view, factory, 0, 1);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Number of workers must be at least 1", e.getMessage());
+    }
+    try {
+      new ImageServerController(0, view, factory, 1, -1);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Queue capacity cannot be negative", e.getMessage());
+    }
+    ImageServerController server = new ImageServerController(0, view, factory, 1, 0);
+    servers.add(server);
+    assertTrue(server.getPort() > 0);
+  }
+}
@@ -0,0 +1,43 @@
+package controller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the JobThreads class.
+ */
+public class JobThreadsTest {
+  @Test
+  public void testEveryJobHasAThread() throws Exception {
+    int jobs = 32;
+    CountDownLatch started = new CountDownLatch(jobs);
+    ExecutorService executor = JobThreads.newThreadPerJobExecutor("test-job");
+    List<Future<String>> names = new ArrayList<>();
+    for (int i = 0; i < jobs; i++) {
+      // a job only finishes once every job has started, which needs a thread for each job
+      names.add(executor.submit(() -> {
+        started.countDown();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return Thread.currentThread().getName();
+      }));
+    }
+    for (Future<String> name : names) {
+      assertTrue(name.get(10, TimeUnit.SECONDS).startsWith("test-job-"));
+    }
+    executor.shutdown();
+  }
+
+  @Test
+  public void testVirtualThreadsMatchTheRuntime() {
+    assertEquals(Runtime.version().feature() >= 21, JobThreads.hasVirtualThreads());
+  }
+}
@@ -0,0 +1,175 @@
+package controller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.ImageProcessor;
+import model.ImageProcessorImpl;
+import utility.CustomImage;
+import utility.IImageHelperFactory;
+import utility.ImageHelperFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the ScriptPlan class.
+ */
+public class ScriptPlanTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final CustomImage image = new CustomImage("image", 2, 1,
+          new int[]{0xFF102030, 0xFF405060}, 255);
+
+  // helper method to compile a script, and check that it is rejected with the given message
+  private static void assertRejected(String script, String message) {
+    try {
+      ScriptPlan.compile(script, ImageHelperFactory.getInstance());
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
+
+  // helper method to create a model that holds the test image
+  private ImageProcessor createModel() {
+    ImageProcessor model = new ImageProcessorImpl();
+    model.loadImage(image);
+    return model;
+  }
+
+  @Test
+  public void testPlanMatchesScript() {
+    String script = "# a comment\n"
+            + "brighten 10 image bright\n"
+            + "\n"
+            + "greyscale red-component bright red\n"
+            + "filter 1,2,1;2,4,2;1,2,1 image blurred\n"
+            + "color-matrix 0,0,1;0,1,0;1,0,0 image swapped\n"
+            + "rgb-split image r g b\n"
+            + "rgb-combine combined b g r\n"
+            + "horizontal-flip combined flipped\n"
+            + "sepia missing sepia\n";
+    ScriptPlan plan = ScriptPlan.compile(script, ImageHelperFactory.getInstance());
+    assertEquals(8, plan.size());
+    ImageProcessor planned = createModel();
+    List<String> outputs = plan.run(planned, Collections.emptyMap(), new ImageLoader(1));
+
+    ImageProcessor scripted = createModel();
+    StringBuilder log = new StringBuilder();
+    new ImageCommandController(scripted, new ByteArrayInputStream(script.getBytes()),
+            message -> log.append(message).append("\n"),
+            ImageHelperFactory.getInstance()).process();
+    assertEquals(log.toString(), String.join("\n", outputs) + "\n");
+    assertEquals("An Image with the given name not found.", outputs.get(7));
+    for (String name : Arrays.asList("bright", "red", "blurred", "swapped", "combined",
+            "flipped")) {
+      assertEquals(name, scripted.getImage(name), planned.getImage(name));
+    }
+  }
+
+  @Test
+  public void testPlanRunsWithDifferentValues() throws IOException {
+    String script = "load {input} {name}\n"
+            + "brighten 10 {name} {name}-bright\n"
+            + "save {output}/{name}-bright.ppm {name}-bright\n"
+            + "load {output}/{name}-bright.ppm saved\n";
+    ScriptPlan plan = ScriptPlan.compile(script, ImageHelperFactory.getInstance());
+    ImageLoader loader = new ImageLoader(2);
+    for (String name : Arrays.asList("first", "second")) {
+      File input = new File(folder.getRoot(), name + ".ppm");
+      ImageHelperFactory.getInstance().getHelper(input.getPath()).save(image, input.getPath());
+      Map<String, String> values = new HashMap<>();
+      values.put("{input}", input.getPath());
+      values.put("{name}", name);
+      values.put("{output}", folder.getRoot().getPath());
+      ImageProcessor model = new ImageProcessorImpl();
+      List<String> outputs = plan.run(model, values, loader);
+      assertEquals(Arrays.asList("Executed command: load", "Executed command: brighten",
+              "Executed command: save", "Executed command: load"), outputs);
+      assertEquals(0xFF1A2A3A, model.getImage(name + "-bright").getARGB(0, 0));
+      assertEquals(0xFF1A2A3A, model.getImage("saved").getARGB(0, 0));
+    }
+  }
+
+  @Test
+  public void testFailedLoadIsReported() {
+    ScriptPlan plan = ScriptPlan.compile("load {input} image\nload {input} other\n"
+            + "blur image blurred\n", ImageHelperFactory.getInstance());
+    Map<String, String> values = Collections.singletonMap("{input}",
+            new File(folder.getRoot(), "missing.ppm").getPath());
+    List<String> outputs = plan.run(new ImageProcessorImpl(), values, new ImageLoader(2));
+    assertEquals(3, outputs.size());
+    assertEquals(outputs.get(0), outputs.get(1));
+    assertEquals("An Image with the given name not found.", outputs.get(2));
+  }
+
+  @Test
+  public void testInvalidScriptsAreRejected() {
+    assertRejected("blur image\n", "Line 1: Invalid command format");
+    assertRejected("blur image result\n\nbrighten x image result\n",
+            "Line 3: Invalid command format");
+    assertRejected("brighten 10 image result extra\n", "Line 1: Invalid command format");
+    assertRejected("greyscale purple-component image result\n", "Line 1: Invalid command");
+    assertRejected("filter 1,x,1 image result\n",
+            "Line 1: Invalid kernel weight: x");
+    assertRejected("color-matrix image result\n", "Line 1: Invalid command format");
+    assertRejected("quit\n", "Line 1: Invalid command");
+    assertRejected("run script.txt\n", "Line 1: Invalid command");
+  }
+
+  @Test
+  public void testPeakImageCount() {
+    IImageHelperFactory factory = ImageHelperFactory.getInstance();
+    assertEquals(0, ScriptPlan.compile("", factory).getPeakImageCount());
+    assertEquals(2, ScriptPlan.compile("load {input} image\nblur image blurred\n"
+            + "save {output}/{name}.png blurred\n", factory).getPeakImageCount());
+    // a name that is written again replaces its image
+    assertEquals(4, ScriptPlan.compile("load {input} {name}\nrgb-split {name} r g b\n"
+            + "rgb-combine {name} b g r\nbrighten 10 r r\n", factory).getPeakImageCount());
+    assertEquals(3, ScriptPlan.compile("load {input} image\ngreyscale image grey\n"
+            + "color-matrix 0,0,1;0,1,0;1,0,0 image swapped\n", factory).getPeakImageCount());
+  }
+
+  @Test
+  public void testSaveFormatIsChecked() {
+    try {
+      ScriptPlan.compile("save {output}/{name}.txt image\n", ImageHelperFactory.getInstance());
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals(UnsupportedOperationException.class, e.getCause().getClass());
+    }
+    // the format of a file with a placeholder in its extension is only known when it is run
+    assertEquals(1, ScriptPlan.compile("save {output}/{name}.{format} image\n",
+            ImageHelperFactory.getInstance()).size());
+  }
+
+  @Test
+  public void testNullArguments() {
+    try {
+      ScriptPlan.compile(null, ImageHelperFactory.getInstance());
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Arguments cannot be null", e.getMessage());
+    }
+    ScriptPlan plan = ScriptPlan.compile("", ImageHelperFactory.getInstance());
+    assertEquals(0, plan.size());
+    try {
+      plan.run(new ImageProcessorImpl(), null, new ImageLoader(1));
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Arguments cannot be null", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A Junit test class for the ColorMatrix class.
+ */
+public class ColorMatrixTest {
+
+  @Test
+  public void testTransform() {
+    assertEquals(0.393 * 10 + 0.769 * 20 + 0.189 * 30,
+            ColorMatrix.SEPIA.transform(0, 10, 20, 30), 1e-12);
+    assertEquals(0.272 * 10 + 0.534 * 20 + 0.131 * 30,
+            ColorMatrix.SEPIA.transform(2, 10, 20, 30), 1e-12);
+  }
+
+  @Test
+  public void testComposedMatrixMatchesChainedMatrices() {
+    ColorMatrix swap = new ColorMatrix(new double[][]{{0, 0, 1}, {0, 1, 0}, {1, 0, 0}});
+    ColorMatrix composed = ColorMatrix.SEPIA.andThen(swap).andThen(ColorMatrix.LUMA);
+    int red = 40;
+    int green = 150;
+    int blue = 90;
+    double[] sepia = new double[3];
+    for (int row = 0; row < 3; row++) {
+      sepia[row] = ColorMatrix.SEPIA.get(row, 0) * red + ColorMatrix.SEPIA.get(row, 1) * green
+              + ColorMatrix.SEPIA.get(row, 2) * blue;
+    }
+    // the swap exchanges red and blue before the luma is computed
+    double expected = 0.216 * sepia[2] + 0.7152 * sepia[1] + 0.0722 * sepia[0];
+    for (int row = 0; row < 3; row++) {
+      assertEquals(expected, composed.transform(row, red, green, blue), 1e-9);
+    }
+  }
+
+  @Test
+  public void testIsGreyscale() {
+    assertTrue(ColorMatrix.LUMA.isGreyscale());
+    assertFalse(ColorMatrix.SEPIA.isGreyscale());
+    assertTrue(ColorMatrix.SEPIA.andThen(ColorMatrix.LUMA).isGreyscale());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMatrixThatIsNotThreeByThree() {
+    new ColorMatrix(new double[][]{{1, 0, 0}, {0, 1, 0}});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMatrixWithIncompleteRow() {
+    new ColorMatrix(new double[][]{{1, 0, 0}, {0, 1}, {0, 0, 1}});
+  }
+}
@@ -0,0 +1,372 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import utility.CustomImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A Junit test class for the ConcurrentImageProcessor class.
+ */
+public class ConcurrentImageProcessorTest {
+
+  // helper method to create an image with random pixel values
+  private static CustomImage randomImage(String name, int width, int height) {
+    Random random = new Random(7);
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = CustomImage.pack(random.nextInt(256), random.nextInt(256),
+              random.nextInt(256), 255);
+    }
+    return new CustomImage(name, width, height, raster, 255);
+  }
+
+  // helper method to run the same operations on the given model
+  private static void runOperations(ImageProcessor model) {
+    model.brighten("base", "bright", 25);
+    model.split("bright", "red", "green", "blue");
+    model.combine("blue", "green", "red", "swapped");
+    model.flip("swapped", "flipped", 1);
+    model.visualiseChannel("base", "channel", 2);
+    model.visualiseValue("base", "value");
+    model.visualiseIntensity("base", "intensity");
+    model.visualiseLuma("base", "luma");
+    model.blur("base", "blurred");
+    model.sharpen("blurred", "sharpened");
+    model.filter("base", "filtered", new double[][]{{0, 1, 0}, {1, 4, 1}, {0, 1, 0}});
+    model.sepia("base", "sepia");
+    model.colorMatrix("sepia", "matrix", new double[][]{{0, 0, 1}, {0, 1, 0}, {1, 0, 0}});
+    model.dither("matrix", "dithered");
+    // the result replaces its own input
+    model.brighten("base", "base", -10);
+  }
+
+  @Test
+  public void testOperationsMatchImageProcessorImpl() {
+    ImageProcessor expected = new ImageProcessorImpl();
+    ConcurrentImageProcessor actual = new ConcurrentImageProcessor();
+    CustomImage base = randomImage("base", 31, 17);
+    for (ImageProcessor model : new ImageProcessor[]{expected, actual}) {
+      model.loadImage(base);
+      runOperations(model);
+    }
+    for (String name : new String[]{"base", "bright", "red", "green", "blue", "swapped",
+        "flipped", "channel", "value", "intensity", "luma", "blurred", "sharpened", "filtered",
+        "sepia", "matrix", "dithered"}) {
+      assertEquals(name, expected.getImage(name), actual.getImage(name));
+      assertEquals(name, actual.getImage(name).getName());
+    }
+  }
+
+  @Test
+  public void testLaterWriteHasLaterVersion() {
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor();
+    model.loadImage(randomImage("base", 4, 3));
+    model.brighten("base", "result", 10);
+    long first = model.getVersion("result");
+    model.sepia("base", "result");
+    assertTrue(model.getVersion("result") > first);
+    assertTrue(model.getVersion("result") > model.getVersion("base"));
+    ImageProcessor expected = new ImageProcessorImpl();
+    expected.loadImage(randomImage("base", 4, 3));
+    expected.sepia("base", "result");
+    assertEquals(expected.getImage("result"), model.getImage("result"));
+  }
+
+  @Test
+  public void testSlowEarlierWriteDoesNotReplaceLaterWrite() throws InterruptedException {
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor(new ParallelExecutor(1, 0));
+    model.loadImage(randomImage("large", 1200, 1200));
+    Thread slow = new Thread(() -> model.blur("large", "result"));
+    slow.start();
+    // the blur has started, and takes its version, long before it finishes
+    Thread.sleep(50);
+    CustomImage small = randomImage("result", 2, 2);
+    model.loadImage(small);
+    slow.join();
+    assertEquals(small, model.getImage("result"));
+  }
+
+  @Test
+  public void testReadersOnlySeeCompleteImages() throws InterruptedException {
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor(new ParallelExecutor(2, 0));
+    CustomImage base = randomImage("base", 64, 48);
+    model.loadImage(base);
+    ImageProcessor sequential = new ImageProcessorImpl();
+    sequential.loadImage(base);
+    sequential.brighten("base", "darker", -40);
+    sequential.brighten("base", "brighter", 40);
+    CustomImage darker = sequential.getImage("darker");
+    CustomImage brighter = sequential.getImage("brighter");
+    model.brighten("base", "shared", -40);
+
+    AtomicBoolean writing = new AtomicBoolean(true);
+    List<Thread> writers = new ArrayList<>();
+    for (int increment : new int[]{-40, 40}) {
+      Thread writer = new Thread(() -> {
+        for (int i = 0; i < 50; i++) {
+          model.brighten("base", "shared", increment);
+        }
+      });
+      writers.add(writer);
+      writer.start();
+    }
+    List<String> errors = new ArrayList<>();
+    Thread reader = new Thread(() -> {
+      ImageProcessorRO roModel = new ImageProcessorROImpl(model);
+      while (writing.get()) {
+        CustomImage image = roModel.getImage("shared");
+        if (!image.equals(darker) && !image.equals(brighter)) {
+          errors.add("Incomplete image");
+        }
+      }
+    });
+    reader.start();
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    writing.set(false);
+    reader.join();
+    assertEquals(new ArrayList<String>(), errors);
+  }
+
+  @Test
+  public void testErrorsMatchImageProcessorImpl() {
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor();
+    model.loadImage(randomImage("base", 4, 3));
+    try {
+      model.getImage("missing");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("An Image with the given name not found.", e.getMessage());
+    }
+    try {
+      model.blur("missing", "result");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("An Image with the given name not found.", e.getMessage());
+    }
+    try {
+      model.brighten("base", null, 10);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Image name cannot be null", e.getMessage());
+    }
+    try {
+      model.loadImage(null);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Image data cannot be null", e.getMessage());
+    }
+    // a failed operation publishes nothing
+    try {
+      model.getImage("result");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("An Image with the given name not found.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testBranchMatchesImageProcessorImpl() {
+    ImageProcessor expected = new ImageProcessorImpl();
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor();
+    ConcurrentImageProcessor branch = model.createBranch();
+    CustomImage base = randomImage("base", 31, 17);
+    expected.loadImage(base);
+    runOperations(expected);
+    branch.loadImage(base);
+    runOperations(branch);
+    for (String name : new String[]{"base", "bright", "red", "green", "blue", "swapped",
+        "flipped", "channel", "value", "intensity", "luma", "blurred", "sharpened", "filtered",
+        "sepia", "matrix", "dithered"}) {
+      assertEquals(name, expected.getImage(name), model.getImage(name));
+      assertEquals(name, expected.getImage(name), branch.getImage(name));
+      assertEquals(name, model.getImage(name).getName());
+    }
+  }
+
+  @Test
+  public void testBranchComputesChainInOnePass() {
+    CountingParallelExecutor executor = new CountingParallelExecutor(2);
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor(executor);
+    model.loadImage(randomImage("base", 31, 17));
+    ConcurrentImageProcessor branch = model.createBranch();
+    branch.brighten("base", "bright", 25);
+    branch.sepia("bright", "sepia");
+    branch.brighten("sepia", "result", -10);
+    assertEquals(0, executor.getPasses());
+    CustomImage result = model.getImage("result");
+    assertEquals(1, executor.getPasses());
+
+    ImageProcessor expected = new ImageProcessorImpl();
+    expected.loadImage(randomImage("base", 31, 17));
+    expected.brighten("base", "bright", 25);
+    expected.sepia("bright", "sepia");
+    expected.brighten("sepia", "result", -10);
+    assertEquals(expected.getImage("result"), result);
+    // an image of the chain is only computed when it is requested
+    assertEquals(expected.getImage("bright"), model.getImage("bright"));
+    assertEquals(2, executor.getPasses());
+  }
+
+  @Test
+  public void testBranchDoesNotComputeUnusedImages() {
+    // images of different depths cannot be combined, but this fails only once it is requested
+    CustomImage deep = new CustomImage("deep", 2, 1, new short[][]{{1000, 2000}}, null, 4095);
+    CustomImage shallow = new CustomImage("shallow", 2, 1, new byte[][]{{10, 20}}, null, 255);
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor(new ParallelExecutor(1, 0));
+    ConcurrentImageProcessor branch = model.createBranch();
+    branch.loadImage(deep);
+    branch.loadImage(shallow);
+    branch.combine("deep", "shallow", "deep", "mixed");
+    branch.visualiseChannel("deep", "deepRed", 2);
+    assertEquals(2000, model.getImage("deepRed").getColor(0, 1, 0));
+    try {
+      model.getImage("mixed");
+      fail("Combining images of different depths should fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReadersDoNotWaitForBranch() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    AtomicBoolean hold = new AtomicBoolean();
+    // an executor that holds the branch in the middle of computing its images
+    ParallelExecutor executor = new ParallelExecutor(1, 0) {
+      @Override
+      void execute(int height, int width, BandOperation operation) {
+        if (hold.get()) {
+          started.countDown();
+          try {
+            finish.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.execute(height, width, operation);
+      }
+    };
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor(executor);
+    model.loadImage(randomImage("base", 8, 6));
+    model.sepia("base", "sepia");
+    CustomImage first = model.getImage("sepia");
+    ConcurrentImageProcessor branch = model.createBranch();
+    branch.brighten("base", "bright", 25);
+    branch.sepia("bright", "sepia");
+    hold.set(true);
+    Thread writer = new Thread(() -> branch.getImage("sepia"));
+    writer.start();
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    AtomicReference<CustomImage> read = new AtomicReference<>();
+    AtomicReference<String> error = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      ImageProcessorRO roModel = new ImageProcessorROImpl(model);
+      read.set(roModel.getImage("sepia"));
+      try {
+        roModel.getImage("bright");
+      } catch (IllegalArgumentException e) {
+        error.set(e.getMessage());
+      }
+    });
+    reader.start();
+    reader.join(10000);
+    boolean returned = !reader.isAlive();
+    finish.countDown();
+    writer.join();
+    assertTrue("The reader waited for the branch", returned);
+    // the reader gets the last computed image under the name, and an image that has not been
+    // computed yet is not found
+    assertEquals(first, read.get());
+    assertEquals("An Image with the given name not found.", error.get());
+
+    ImageProcessor expected = new ImageProcessorImpl();
+    expected.loadImage(randomImage("base", 8, 6));
+    expected.brighten("base", "bright", 25);
+    expected.sepia("bright", "sepia");
+    assertEquals(expected.getImage("sepia"), model.getImage("sepia"));
+    assertEquals(expected.getImage("bright"), model.getImage("bright"));
+  }
+
+  @Test
+  public void testBranchKeepsItsImageWhenNameIsReused() {
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor();
+    model.loadImage(randomImage("base", 4, 3));
+    ConcurrentImageProcessor branch = model.createBranch();
+    branch.brighten("base", "result", 10);
+    branch.brighten("result", "result", 10);
+    ImageProcessor expected = new ImageProcessorImpl();
+    expected.loadImage(randomImage("base", 4, 3));
+    expected.brighten("base", "result", 20);
+    assertEquals(expected.getImage("result"), model.getImage("result"));
+    // a later image of another branch replaces the image of the branch
+    ConcurrentImageProcessor other = model.createBranch();
+    other.sepia("base", "result");
+    expected.sepia("base", "result");
+    assertEquals(expected.getImage("result"), model.getImage("result"));
+    assertTrue(model.getVersion("result") > model.getVersion("base"));
+  }
+
+  @Test
+  public void testBranchesReadEachOtherConcurrently() throws InterruptedException {
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor(new ParallelExecutor(2, 0));
+    model.loadImage(randomImage("base", 300, 200));
+    ConcurrentImageProcessor first = model.createBranch();
+    ConcurrentImageProcessor second = model.createBranch();
+    first.blur("base", "x");
+    second.sharpen("base", "y");
+    // each branch computes the pending image of the other, while the other does the same
+    Thread reader = new Thread(() -> first.brighten("y", "z", 10));
+    reader.start();
+    second.brighten("x", "w", 10);
+    reader.join(10000);
+    assertFalse(reader.isAlive());
+
+    ImageProcessor expected = new ImageProcessorImpl();
+    expected.loadImage(randomImage("base", 300, 200));
+    expected.blur("base", "x");
+    expected.sharpen("base", "y");
+    expected.brighten("y", "z", 10);
+    expected.brighten("x", "w", 10);
+    assertEquals(expected.getImage("z"), model.getImage("z"));
+    assertEquals(expected.getImage("w"), model.getImage("w"));
+  }
+
+  @Test
+  public void testBranchErrorsMatchImageProcessorImpl() {
+    ConcurrentImageProcessor model = new ConcurrentImageProcessor();
+    ConcurrentImageProcessor branch = model.createBranch();
+    try {
+      branch.blur("missing", "result");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("An Image with the given name not found.", e.getMessage());
+    }
+    try {
+      model.getImage("result");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("An Image with the given name not found.", e.getMessage());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new ConcurrentImageProcessor(null);
+  }
+}
@@ -0,0 +1,180 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A Junit test class for the ConvolutionEngine and Kernel classes.
+ */
+public class ConvolutionEngineTest {
+  private static final int[][] GAUSSIAN = {{1, 2, 1}, {2, 4, 2}, {1, 2, 1}};
+  private static final int[][] SHARPEN = {{-1, -1, -1, -1, -1}, {-1, 2, 2, 2, -1},
+      {-1, 2, 8, 2, -1}, {-1, 2, 2, 2, -1}, {-1, -1, -1, -1, -1}};
+  private static final int[][] BOX = {{3, 3, 3, 3, 3}, {3, 3, 3, 3, 3}, {3, 3, 3, 3, 3},
+      {3, 3, 3, 3, 3}, {3, 3, 3, 3, 3}};
+  private static final int[][] ASYMMETRIC = {{0, -2, 4}, {0, 1, -2}, {0, -3, 6}};
+
+  private final ConvolutionEngine engine = new ConvolutionEngine(new ParallelExecutor(3, 0));
+
+  // reference implementation, a naive 2D convolution that skips positions outside the image
+  private int[] naive(int[] channel, int width, int height, int[][] kernel) {
+    int radius = kernel.length / 2;
+    int[] sums = new int[channel.length];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        for (int j = -radius; j <= radius; j++) {
+          for (int i = -radius; i <= radius; i++) {
+            if (x + i >= 0 && x + i < width && y + j >= 0 && y + j < height) {
+              sums[y * width + x] += kernel[j + radius][i + radius]
+                      * channel[(y + j) * width + x + i];
+            }
+          }
+        }
+      }
+    }
+    return sums;
+  }
+
+  // helper method to create random channel values
+  private int[] randomChannel(int size) {
+    return randomChannel(size, size);
+  }
+
+  // helper method to create random channel values from the given seed
+  private int[] randomChannel(int size, long seed) {
+    Random random = new Random(seed);
+    int[] channel = new int[size];
+    for (int i = 0; i < size; i++) {
+      channel[i] = random.nextInt(256);
+    }
+    return channel;
+  }
+
+  @Test
+  public void testSeparability() {
+    Kernel gaussian = new Kernel(GAUSSIAN);
+    assertTrue(gaussian.isSeparable());
+    assertArrayEquals(new int[]{1, 2, 1}, gaussian.getRowVector());
+    assertArrayEquals(new int[]{1, 2, 1}, gaussian.getColumnVector());
+    assertEquals(16.0, gaussian.getSum(), 0.0);
+    assertTrue(new Kernel(BOX).isSeparable());
+    assertTrue(new Kernel(ASYMMETRIC).isSeparable());
+    assertFalse(new Kernel(SHARPEN).isSeparable());
+    assertFalse(new Kernel(new int[][]{{1, 0, 0}, {0, 1, 0}, {0, 0, 1}}).isSeparable());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKernelWithEvenSize() {
+    new Kernel(new int[][]{{1, 1}, {1, 1}});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKernelThatIsNotSquare() {
+    new Kernel(new int[][]{{1}, {1}, {1}});
+  }
+
+  @Test
+  public void testAllStrategiesMatchNaiveConvolution() {
+    int[][] sizes = {{1, 1}, {2, 1}, {1, 7}, {3, 4}, {4, 4}, {5, 9}, {37, 23}, {64, 3}};
+    for (int[][] kernel : new int[][][]{GAUSSIAN, SHARPEN, BOX, ASYMMETRIC}) {
+      for (int[] size : sizes) {
+        int[] channel = randomChannel(size[0] * size[1]);
+        assertArrayEquals(naive(channel, size[0], size[1], kernel),
+                engine.convolve(channel, size[0], size[1], new Kernel(kernel)));
+      }
+    }
+  }
+
+  // helper method to create a kernel of the given size with random weights, that is not
+  // separable
+  private int[][] randomKernel(int size) {
+    Random random = new Random(size);
+    int[][] kernel = new int[size][size];
+    for (int j = 0; j < size; j++) {
+      for (int i = 0; i < size; i++) {
+        kernel[j][i] = random.nextInt(9) - 2;
+      }
+    }
+    return kernel;
+  }
+
+  @Test
+  public void testStrategySelection() {
+    assertEquals(ConvolutionEngine.Strategy.SEPARABLE,
+            ConvolutionEngine.selectStrategy(new Kernel(GAUSSIAN)));
+    assertEquals(ConvolutionEngine.Strategy.DIRECT,
+            ConvolutionEngine.selectStrategy(new Kernel(SHARPEN)));
+    assertEquals(ConvolutionEngine.Strategy.FOURIER,
+            ConvolutionEngine.selectStrategy(new Kernel(randomKernel(15))));
+    double[][] box = new double[31][31];
+    for (double[] row : box) {
+      Arrays.fill(row, 1.0 / 961);
+    }
+    assertEquals(ConvolutionEngine.Strategy.SEPARABLE,
+            ConvolutionEngine.selectStrategy(new Kernel(box)));
+  }
+
+  @Test
+  public void testIntegralKernels() {
+    assertTrue(new Kernel(GAUSSIAN).isIntegral());
+    assertTrue(new Kernel(new double[][]{{1.0, 2.0, 1.0}, {2, 4, 2}, {1, 2, 1}}).isIntegral());
+    assertFalse(new Kernel(new double[][]{{0.5, 1, 0.5}, {1, 2, 1}, {0.5, 1, 0.5}})
+            .isIntegral());
+    // weights this large could overflow an integer sum
+    assertFalse(new Kernel(new double[][]{{100000}}).isIntegral());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKernelWithWeightThatIsNotANumber() {
+    new Kernel(new double[][]{{1, 1, 1}, {1, Double.NaN, 1}, {1, 1, 1}});
+  }
+
+  @Test
+  public void testFourierMatchesNaiveConvolution() {
+    int[][] sizes = {{1, 1}, {3, 40}, {15, 15}, {100, 37}, {300, 7}};
+    for (int kernelSize : new int[]{13, 15, 31}) {
+      int[][] kernel = randomKernel(kernelSize);
+      for (int[] size : sizes) {
+        int[] first = randomChannel(size[0] * size[1]);
+        int[] second = randomChannel(size[0] * size[1], -1);
+        int[] third = randomChannel(size[0] * size[1], -2);
+        int[][] sums = engine.convolve(new int[][]{first, second, third}, size[0], size[1],
+                new Kernel(kernel));
+        assertArrayEquals(naive(first, size[0], size[1], kernel), sums[0]);
+        assertArrayEquals(naive(second, size[0], size[1], kernel), sums[1]);
+        assertArrayEquals(naive(third, size[0], size[1], kernel), sums[2]);
+      }
+    }
+  }
+
+  @Test
+  public void testRealKernelsMatchNaiveConvolution() {
+    int[][][] kernels = {GAUSSIAN, SHARPEN, randomKernel(15)};
+    double[] scales = {0.0625, 0.1, 0.01};
+    for (int k = 0; k < kernels.length; k++) {
+      int[][] kernel = kernels[k];
+      double[][] realKernel = new double[kernel.length][kernel.length];
+      for (int j = 0; j < kernel.length; j++) {
+        for (int i = 0; i < kernel.length; i++) {
+          realKernel[j][i] = kernel[j][i] * scales[k];
+        }
+      }
+      for (int[] size : new int[][]{{1, 1}, {5, 9}, {37, 23}}) {
+        int[] channel = randomChannel(size[0] * size[1]);
+        int[] expected = naive(channel, size[0], size[1], kernel);
+        double[] actual = engine.convolveReal(new int[][]{channel}, size[0], size[1],
+                new Kernel(realKernel))[0];
+        for (int i = 0; i < expected.length; i++) {
+          assertEquals(expected[i] * scales[k], actual[i], 1e-6);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A parallel executor for tests, which counts the passes it runs over the rows of an image.
+ */
+public class CountingParallelExecutor extends ParallelExecutor {
+  private final AtomicInteger passes = new AtomicInteger();
+
+  /**
+   * Constructs an executor that runs on the given number of threads.
+   *
+   * @param parallelism the number of threads
+   */
+  public CountingParallelExecutor(int parallelism) {
+    super(parallelism, 0);
+  }
+
+  /**
+   * Returns the number of passes the executor has run over the rows of an image.
+   *
+   * @return the number of passes
+   */
+  public int getPasses() {
+    return this.passes.get();
+  }
+
+  @Override
+  void execute(int height, int width, BandOperation operation) {
+    this.passes.incrementAndGet();
+    super.execute(height, width, operation);
+  }
+}
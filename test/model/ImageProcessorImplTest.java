@@ -1,17 +1,27 @@
 package model;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Random;
 
 import utility.CustomImage;
 import utility.Pixel;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * A Junit test class for the ImageProcessorImpl class.
  */
 public class ImageProcessorImplTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
   private CustomImage baseImg;
   private CustomImage overrideBaseImg;
   private CustomImage expectedRedGrayScale;
@@ -806,6 +816,45 @@ public class ImageProcessorImplTest {
     assertEquals(baseImg, actualCombineImg);
   }
 
+  @Test
+  public void testGreyscaleResultsAreSinglePlane() {
+    model.loadImage(baseImg);
+    model.visualiseChannel("base", "red", 2);
+    model.visualiseValue("base", "value");
+    model.visualiseIntensity("base", "intensity");
+    model.visualiseLuma("base", "luma");
+    model.dither("base", "dither");
+    assertTrue(model.getImage("red").isGreyscale());
+    assertTrue(model.getImage("value").isGreyscale());
+    assertTrue(model.getImage("intensity").isGreyscale());
+    assertTrue(model.getImage("luma").isGreyscale());
+    assertTrue(model.getImage("dither").isGreyscale());
+    assertEquals(expectedRedGrayScale, model.getImage("red"));
+    assertEquals(expectedLumaGrayScale, model.getImage("luma"));
+
+    // operations on a greyscale image read its single plane
+    model.visualiseLuma("luma", "luma_of_luma");
+    model.visualiseValue("red", "value_of_red");
+    assertEquals(expectedRedGrayScale, model.getImage("value_of_red"));
+    assertTrue(model.getImage("luma_of_luma").isGreyscale());
+  }
+
+  @Test
+  public void testSplitAndCombineArePlanar() {
+    model.loadImage(baseImg);
+    model.split("base", "base_red_split",
+            "base_green_split", "base_blue_split");
+    model.combine("base_red_split", "base_green_split",
+            "base_blue_split", "combine_rgb");
+    CustomImage actualCombineImg = model.getImage("combine_rgb");
+    assertTrue(actualCombineImg.isPlanar());
+    assertFalse(actualCombineImg.isGreyscale());
+    assertEquals(baseImg, actualCombineImg);
+    assertEquals(baseImg.hashCode(), CustomImage.combine(baseImg.getName(),
+            model.getImage("base_red_split"), model.getImage("base_green_split"),
+            model.getImage("base_blue_split")).hashCode());
+  }
+
   @Test
   public void testCombineBrightRedBlueGreenToFormOriginalImageWithBrightRed() {
     model.loadImage(baseImg);
@@ -948,6 +997,366 @@ public class ImageProcessorImplTest {
     model.blur("base", null);
   }
 
+  @Test
+  public void testBrightenGreyscaleStaysGreyscale() {
+    model.loadImage(baseImage);
+    model.visualiseLuma("base", "baseLuma");
+    model.brighten("baseLuma", "baseLumaBrighter", 50);
+    CustomImage luma = model.getImage("baseLuma");
+    CustomImage brighter = model.getImage("baseLumaBrighter");
+    assertTrue(brighter.isGreyscale());
+    for (int row = 0; row < luma.getHeight(); row++) {
+      for (int col = 0; col < luma.getWidth(); col++) {
+        assertEquals(Math.min(MAX_PIXEL_VALUE, luma.getColor(row, col, 0) + 50),
+                brighter.getColor(row, col, 2));
+      }
+    }
+  }
+
+  // helper method to run the same operations on the given model, with the given random image
+  private void runChain(ImageProcessor processor, CustomImage image) {
+    processor.loadImage(image);
+    processor.brighten("random", "a", 40);
+    processor.brighten("a", "a", -70);
+    processor.sepia("a", "b");
+    processor.brighten("b", "c", 25);
+    processor.visualiseLuma("c", "d");
+    processor.brighten("d", "e", 10);
+    processor.visualiseIntensity("random", "f");
+    processor.visualiseValue("f", "g");
+    processor.visualiseChannel("b", "h", 2);
+    processor.blur("c", "i");
+    processor.brighten("i", "j", -5);
+    processor.split("j", "red", "green", "blue");
+    processor.brighten("red", "red", 30);
+    processor.combine("red", "green", "blue", "k");
+    processor.colorMatrix("k", "l", new double[][]{{0, 0, 1}, {0, 1, 0}, {1, 0, 0}});
+    processor.flip("l", "m", 1);
+    processor.dither("m", "n");
+  }
+
+  @Test
+  public void testLazyMatchesEager() {
+    Random random = new Random(11);
+    int[] raster = new int[17 * 13];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = random.nextInt();
+    }
+    CustomImage image = new CustomImage("random", 17, 13, raster, MAX_PIXEL_VALUE);
+    ImageProcessor eager = new ImageProcessorImpl(new ParallelExecutor(2, 0), false);
+    ImageProcessorImpl lazy = new ImageProcessorImpl(new ParallelExecutor(2, 0), true);
+    assertTrue(lazy.isLazy());
+    runChain(eager, image);
+    runChain(lazy, image);
+    for (String name : new String[]{"a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "red",
+        "green", "blue", "k", "l", "m", "n"}) {
+      assertEquals(name, eager.getImage(name), lazy.getImage(name));
+    }
+    // the intermediate images are only computed when they are requested
+    ImageProcessorImpl fused = new ImageProcessorImpl(new ParallelExecutor(2, 0), true);
+    runChain(fused, image);
+    assertEquals(eager.getImage("e"), fused.getImage("e"));
+    assertTrue(fused.getImage("e").isGreyscale());
+    assertEquals(eager.getImage("n"), fused.getImage("n"));
+  }
+
+  @Test
+  public void testLazyDefersComputation() {
+    // images of different depths cannot be combined, but this fails only once it is requested
+    CustomImage deep = new CustomImage("deep", 2, 1, new short[][]{{1000, 2000}}, null, 4095);
+    CustomImage shallow = new CustomImage("shallow", 2, 1, new byte[][]{{10, 20}}, null, 255);
+    ImageProcessor lazy = new ImageProcessorImpl(new ParallelExecutor(1, 0), true);
+    lazy.loadImage(deep);
+    lazy.loadImage(shallow);
+    lazy.combine("deep", "shallow", "deep", "mixed");
+    lazy.visualiseChannel("deep", "deepRed", 2);
+    assertEquals(2000, lazy.getImage("deepRed").getColor(0, 1, 0));
+    try {
+      lazy.getImage("mixed");
+      fail("Combining images of different depths should fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOperationsKeepWideImages() {
+    // values that fit in 8 bits give the same results in an image with a max value of 1000, but
+    // the results keep the max value and are stored in planes
+    Random random = new Random(11);
+    int width = 7;
+    int height = 5;
+    short[][] widePlanes = new short[3][width * height];
+    byte[][] planes = new byte[3][width * height];
+    byte[] alpha = new byte[width * height];
+    for (int i = 0; i < width * height; i++) {
+      for (int channel = 0; channel < 3; channel++) {
+        int value = random.nextInt(61);
+        widePlanes[channel][i] = (short) value;
+        planes[channel][i] = (byte) value;
+      }
+      alpha[i] = (byte) random.nextInt(256);
+    }
+    ImageProcessor wide = new ImageProcessorImpl(new ParallelExecutor(2, 0), false);
+    ImageProcessor narrow = new ImageProcessorImpl(new ParallelExecutor(2, 0), false);
+    wide.loadImage(new CustomImage("image", width, height, widePlanes, alpha, 1000));
+    narrow.loadImage(new CustomImage("image", width, height, planes, alpha, MAX_PIXEL_VALUE));
+    double[][] matrix = {{0.5, 0.25, 0}, {0, 1, 0}, {0.1, 0.2, 0.3}};
+    for (ImageProcessor processor : new ImageProcessor[]{wide, narrow}) {
+      processor.brighten("image", "brighter", 10);
+      processor.flip("image", "horizontal", 0);
+      processor.flip("image", "vertical", 1);
+      processor.sepia("image", "sepia");
+      processor.colorMatrix("image", "matrix", matrix);
+      processor.visualiseLuma("image", "luma");
+      processor.visualiseValue("image", "value");
+      processor.visualiseIntensity("image", "intensity");
+      processor.blur("image", "blur");
+      processor.sharpen("image", "sharp");
+      processor.brighten("luma", "lumaBrighter", 5);
+      processor.flip("luma", "lumaFlipped", 0);
+      processor.sepia("luma", "lumaSepia");
+      processor.blur("luma", "lumaBlur");
+    }
+    for (String name : new String[]{"brighter", "horizontal", "vertical", "sepia", "matrix",
+        "luma", "value", "intensity", "blur", "sharp", "lumaBrighter", "lumaFlipped",
+        "lumaSepia", "lumaBlur"}) {
+      CustomImage result = wide.getImage(name);
+      assertEquals(name, narrow.getImage(name), result);
+      assertEquals(name, 1000, result.getMaxPixelValue());
+      assertTrue(name, result.isPlanar());
+    }
+    for (String name : new String[]{"luma", "value", "intensity", "lumaBrighter",
+        "lumaFlipped", "lumaBlur"}) {
+      assertTrue(name, wide.getImage(name).isGreyscale());
+    }
+  }
+
+  @Test
+  public void testBrightenAndDitherWideImage() {
+    ImageProcessor processor = new ImageProcessorImpl();
+    processor.loadImage(new CustomImage("bright", 2, 1, new short[][]{{900, 100}}, null, 1000));
+    processor.loadImage(new CustomImage("dark", 2, 1, new short[][]{{600, 100}}, null, 1000));
+    processor.brighten("bright", "brighter", 500);
+    processor.dither("dark", "dithered");
+    CustomImage brighter = processor.getImage("brighter");
+    assertEquals(1000, brighter.getColor(0, 0, 0));
+    assertEquals(600, brighter.getColor(0, 1, 0));
+    assertTrue(brighter.isGreyscale());
+    CustomImage dithered = processor.getImage("dithered");
+    assertEquals(1000, dithered.getColor(0, 0, 0));
+    assertEquals(0, dithered.getColor(0, 1, 0));
+    assertEquals(1000, dithered.getMaxPixelValue());
+    assertTrue(dithered.isGreyscale());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLazyChecksNamesWhenRecorded() {
+    ImageProcessor lazy = new ImageProcessorImpl(new ParallelExecutor(1, 0), true);
+    lazy.loadImage(baseImage);
+    lazy.sepia("missing", "result");
+  }
+
+  @Test
+  public void testLazyKeepsOverwrittenInputs() {
+    ImageProcessor lazy = new ImageProcessorImpl(new ParallelExecutor(1, 0), true);
+    lazy.loadImage(baseImage);
+    lazy.brighten("base", "brighter", 10);
+    // the pending image keeps the image it was recorded on, even when its name is reused
+    lazy.flip("base", "base", 0);
+    model.loadImage(baseImage);
+    model.brighten("base", "brighter", 10);
+    assertEquals(model.getImage("brighter"), lazy.getImage("brighter"));
+  }
+
+  @Test
+  public void testEvictedImagesAreRecomputed() {
+    Random random = new Random(5);
+    int[] raster = new int[17 * 13];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = random.nextInt();
+    }
+    CustomImage image = new CustomImage("random", 17, 13, raster, MAX_PIXEL_VALUE);
+    ImageProcessor eager = new ImageProcessorImpl(new ParallelExecutor(1, 0), false);
+    runChain(eager, image);
+    String[] names = {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "red", "green", "blue",
+        "k", "l", "m", "n"};
+    for (boolean lazy : new boolean[]{false, true}) {
+      for (EvictionPolicy policy : EvictionPolicy.values()) {
+        // room for the loaded image and about two more
+        MemoryImageStore store = new MemoryImageStore(3 * image.getSizeInBytes(), policy);
+        ImageProcessor bounded = new ImageProcessorImpl(new ParallelExecutor(1, 0), lazy, store);
+        runChain(bounded, image);
+        for (int round = 0; round < 2; round++) {
+          for (String name : names) {
+            assertEquals(name, eager.getImage(name), bounded.getImage(name));
+            assertTrue(store.getSizeInBytes() <= store.getBudget());
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testStoreReleasesUnreachableImages() {
+    MemoryImageStore store = new MemoryImageStore();
+    ImageProcessor processor = new ImageProcessorImpl(new ParallelExecutor(1, 0), false, store);
+    processor.loadImage(baseImage);
+    for (int i = 0; i < 10; i++) {
+      processor.brighten("base", "base", 1);
+    }
+    // only the last brightened image is kept
+    assertEquals(processor.getImage("base").getSizeInBytes(), store.getSizeInBytes());
+    processor.split("base", "red", "green", "blue");
+    processor.flip("red", "red", 0);
+    processor.loadImage(baseImage);
+    long expected = 0;
+    for (String name : new String[]{"base", "red", "green", "blue"}) {
+      expected += processor.getImage(name).getSizeInBytes();
+    }
+    assertEquals(expected, store.getSizeInBytes());
+  }
+
+  @Test
+  public void testSpilledImagesArePagedIn() throws IOException {
+    Random random = new Random(9);
+    int[] raster = new int[17 * 13];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = random.nextInt();
+    }
+    CustomImage image = new CustomImage("random", 17, 13, raster, MAX_PIXEL_VALUE);
+    ImageProcessor eager = new ImageProcessorImpl(new ParallelExecutor(1, 0), false);
+    runChain(eager, image);
+    try (SpillingImageStore store = new SpillingImageStore(2 * image.getSizeInBytes(),
+        folder.newFolder().toPath())) {
+      ImageProcessor spilling = new ImageProcessorImpl(new ParallelExecutor(1, 0), true, store);
+      runChain(spilling, image);
+      for (String name : new String[]{"random", "a", "b", "c", "d", "e", "f", "g", "h", "i",
+          "j", "red", "green", "blue", "k", "l", "m", "n", "random"}) {
+        assertEquals(name, eager.getImage(name), spilling.getImage(name));
+        assertTrue(store.getSizeInBytes() <= 2 * image.getSizeInBytes());
+      }
+      assertTrue(store.getSpilledSizeInBytes() > 0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImageStore() {
+    new ImageProcessorImpl(new ParallelExecutor(1, 0), false, null);
+  }
+
+  @Test
+  public void testColorMatrixFusedMatchesChained() {
+    // channel values low enough that the sepia tone is never clamped
+    Random random = new Random(7);
+    int[] raster = new int[20 * 30];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = CustomImage.pack(random.nextInt(181), random.nextInt(181), random.nextInt(181),
+              255);
+    }
+    model.loadImage(new CustomImage("random", 20, 30, raster, MAX_PIXEL_VALUE));
+    model.sepia("random", "randomSepia");
+    model.visualiseLuma("randomSepia", "randomChained");
+    double[][] sepia = {{0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}};
+    double[][] luma = {{0.216, 0.7152, 0.0722}, {0.216, 0.7152, 0.0722},
+        {0.216, 0.7152, 0.0722}};
+    model.colorMatrix("random", "randomFused", sepia, luma);
+    CustomImage chained = model.getImage("randomChained");
+    CustomImage fused = model.getImage("randomFused");
+    assertTrue(fused.isGreyscale());
+    for (int row = 0; row < chained.getHeight(); row++) {
+      for (int col = 0; col < chained.getWidth(); col++) {
+        // the chained result is rounded once more, after the sepia tone
+        assertEquals(chained.getColor(row, col, 0), fused.getColor(row, col, 0), 1);
+      }
+    }
+  }
+
+  @Test
+  public void testColorMatrixMatchesSepia() {
+    model.loadImage(baseImage);
+    model.sepia("base", "baseSepia");
+    model.colorMatrix("base", "baseMatrix", new double[][]{{0.393, 0.769, 0.189},
+        {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}});
+    assertEquals(model.getImage("baseSepia"), model.getImage("baseMatrix"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testColorMatrixWithInvalidMatrix() {
+    model.loadImage(baseImage);
+    model.colorMatrix("base", "baseMatrix", new double[][]{{1, 0}, {0, 1}});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testColorMatrixWithoutMatrix() {
+    model.loadImage(baseImage);
+    model.colorMatrix("base", "baseMatrix");
+  }
+
+  @Test
+  public void testFilterWithBlurKernel() {
+    model.loadImage(baseImage);
+    model.filter("base", "baseFilterOne", new double[][]{{1, 2, 1}, {2, 4, 2}, {1, 2, 1}});
+    assertEquals(expectedBaseImgBlurOne, model.getImage("baseFilterOne"));
+    // the normalised real kernel gives the same result as the integer kernel
+    model.filter("base", "baseFilterTwo", new double[][]{{0.0625, 0.125, 0.0625},
+        {0.125, 0.25, 0.125}, {0.0625, 0.125, 0.0625}});
+    assertEquals(expectedBaseImgBlurOne, model.getImage("baseFilterTwo"));
+  }
+
+  @Test
+  public void testFilterWithZeroSumKernel() {
+    model.loadImage(baseImage);
+    // the weights add up to zero, so the weighted sums are not divided
+    model.filter("base", "baseEdges", new double[][]{{0, 0, 0}, {0, 2, -1}, {0, 0, 0}});
+    CustomImage original = model.getImage("base");
+    CustomImage edges = model.getImage("baseEdges");
+    for (int row = 0; row < original.getHeight(); row++) {
+      for (int col = 0; col < original.getWidth(); col++) {
+        for (int channel = 0; channel < 3; channel++) {
+          int right = col + 1 < original.getWidth() ? original.getColor(row, col + 1, channel)
+                  : 0;
+          int expected = Math.max(0, Math.min(MAX_PIXEL_VALUE,
+                  2 * original.getColor(row, col, channel) - right));
+          assertEquals(expected, edges.getColor(row, col, channel));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFilterWithLargeKernelMatchesSmallKernel() {
+    model.loadImage(baseImage);
+    // a kernel padded with zeros is applied in the frequency domain, and gives the same result
+    double[][] kernel = new double[15][15];
+    kernel[6][7] = -1;
+    kernel[7][6] = -1;
+    kernel[7][7] = 8;
+    kernel[7][8] = -1;
+    kernel[8][7] = -1;
+    model.filter("base", "baseLarge", kernel);
+    model.filter("base", "baseSmall", new double[][]{{0, -1, 0}, {-1, 8, -1}, {0, -1, 0}});
+    assertEquals(model.getImage("baseSmall"), model.getImage("baseLarge"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilterWithEvenKernel() {
+    model.loadImage(baseImage);
+    model.filter("base", "baseFilter", new double[][]{{1, 1}, {1, 1}});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilterWithNullKernel() {
+    model.loadImage(baseImage);
+    model.filter("base", "baseFilter", null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilterWhenOriginalImageNotFound() {
+    model.loadImage(baseImage);
+    model.filter("base1", "baseFilter", new double[][]{{1}});
+  }
+
   @Test
   public void testSharpImageOnce() {
     model.loadImage(baseSharpImg);
@@ -0,0 +1,67 @@
+package model;
+
+import org.junit.Test;
+
+import utility.CustomImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A Junit test class for the LookupTable class.
+ */
+public class LookupTableTest {
+
+  @Test
+  public void testCompileClampsToRange() {
+    LookupTable table = LookupTable.compile(255, value -> value + 100);
+    assertEquals(100, table.apply(0, 0));
+    assertEquals(255, table.apply(1, 155));
+    assertEquals(255, table.apply(2, 255));
+    LookupTable darken = LookupTable.compile(15, value -> value - 20);
+    assertEquals(0, darken.apply(2, 15));
+    assertEquals(15, darken.getMaxPixelValue());
+  }
+
+  @Test
+  public void testIdentity() {
+    LookupTable identity = LookupTable.identity(255);
+    assertTrue(identity.isUniform());
+    for (int value = 0; value <= 255; value++) {
+      assertEquals(value, identity.apply(1, value));
+    }
+  }
+
+  @Test
+  public void testPerChannelTables() {
+    LookupTable table = LookupTable.compile(255, value -> 255 - value, value -> value,
+        value -> 0);
+    assertFalse(table.isUniform());
+    int pixel = CustomImage.pack(10, 20, 30, 40);
+    assertEquals(CustomImage.pack(245, 20, 0, 40), table.applyToPixel(pixel));
+  }
+
+  @Test
+  public void testComposedTableMatchesChainedTables() {
+    LookupTable brighten = LookupTable.compile(255, value -> value + 60);
+    LookupTable darken = LookupTable.compile(255, value -> value - 90);
+    LookupTable invert = LookupTable.compile(255, value -> 255 - value, value -> value / 2,
+        value -> value);
+    LookupTable composed = brighten.andThen(darken).andThen(invert);
+    for (int value = 0; value <= 255; value++) {
+      for (int channel = 0; channel < 3; channel++) {
+        assertEquals(invert.apply(channel, darken.apply(channel, brighten.apply(channel, value))),
+                composed.apply(channel, value));
+      }
+    }
+    // brightening clamps, so the composition is not the identity
+    assertEquals(165, brighten.andThen(darken).apply(0, 200));
+    assertTrue(brighten.andThen(darken).isUniform());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testComposeDifferentMaxValues() {
+    LookupTable.identity(255).andThen(LookupTable.identity(15));
+  }
+}
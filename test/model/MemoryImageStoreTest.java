@@ -0,0 +1,109 @@
+package model;
+
+import org.junit.Test;
+
+import utility.CustomImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A Junit test class for the MemoryImageStore class.
+ */
+public class MemoryImageStoreTest {
+
+  // helper method to create a packed image that takes 4 * width bytes
+  private static CustomImage image(String name, int width) {
+    return new CustomImage(name, width, 1, new int[width], 255);
+  }
+
+  @Test
+  public void testUnboundedStoreKeepsEveryImage() {
+    MemoryImageStore store = new MemoryImageStore();
+    assertFalse(store.isBounded());
+    assertEquals(Long.MAX_VALUE, store.getBudget());
+    for (int id = 0; id < 10; id++) {
+      store.put(id, image("image" + id, 100), false);
+    }
+    assertEquals(4000, store.getSizeInBytes());
+    for (int id = 0; id < 10; id++) {
+      assertTrue(store.contains(id));
+    }
+    store.remove(3);
+    assertNull(store.get(3));
+    assertEquals(3600, store.getSizeInBytes());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    MemoryImageStore store = new MemoryImageStore(1200, EvictionPolicy.LEAST_RECENTLY_USED);
+    assertTrue(store.isBounded());
+    CustomImage first = image("first", 100);
+    store.put(1, first, false);
+    store.put(2, image("second", 100), false);
+    store.put(3, image("third", 100), false);
+    assertSame(first, store.get(1));
+    store.put(4, image("fourth", 100), false);
+    // the second image is the least recently used one
+    assertFalse(store.contains(2));
+    assertTrue(store.contains(1));
+    assertTrue(store.contains(3));
+    assertTrue(store.contains(4));
+    assertEquals(1200, store.getSizeInBytes());
+  }
+
+  @Test
+  public void testLeastFrequentlyUsedEviction() {
+    MemoryImageStore store = new MemoryImageStore(1200, EvictionPolicy.LEAST_FREQUENTLY_USED);
+    store.put(1, image("first", 100), false);
+    store.put(2, image("second", 100), false);
+    store.put(3, image("third", 100), false);
+    store.get(1);
+    store.get(1);
+    store.get(3);
+    store.get(2);
+    store.get(2);
+    store.put(4, image("fourth", 100), false);
+    // the third image is used the fewest times
+    assertFalse(store.contains(3));
+    assertTrue(store.contains(1));
+    assertTrue(store.contains(2));
+    assertTrue(store.contains(4));
+  }
+
+  @Test
+  public void testPinnedImagesAreNeverEvicted() {
+    MemoryImageStore store = new MemoryImageStore(500, EvictionPolicy.LEAST_RECENTLY_USED);
+    store.put(1, image("pinned", 100), true);
+    store.put(2, image("other", 100), true);
+    assertEquals(800, store.getSizeInBytes());
+    assertTrue(store.contains(1));
+    assertTrue(store.contains(2));
+    // an image that does not fit next to the pinned images is evicted right away
+    store.put(3, image("evicted", 10), false);
+    assertFalse(store.contains(3));
+    assertEquals(800, store.getSizeInBytes());
+  }
+
+  @Test
+  public void testReplacingAnImage() {
+    MemoryImageStore store = new MemoryImageStore(1000, EvictionPolicy.LEAST_RECENTLY_USED);
+    store.put(1, image("small", 10), false);
+    store.put(1, image("large", 100), false);
+    assertEquals(400, store.getSizeInBytes());
+    assertEquals("large", store.get(1).getName());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new MemoryImageStore(-1, EvictionPolicy.LEAST_RECENTLY_USED);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullPolicy() {
+    new MemoryImageStore(100, null);
+  }
+}
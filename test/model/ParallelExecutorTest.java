@@ -0,0 +1,159 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import utility.CustomImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A Junit test class for the ParallelExecutor class.
+ */
+public class ParallelExecutorTest {
+
+  // helper method to create an image with random pixel values
+  private CustomImage randomImage(String name, int width, int height) {
+    Random random = new Random(42);
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = CustomImage.pack(random.nextInt(256), random.nextInt(256),
+              random.nextInt(256), 255);
+    }
+    return new CustomImage(name, width, height, raster, 255);
+  }
+
+  @Test
+  public void testEveryRowIsProcessedOnce() {
+    ParallelExecutor executor = new ParallelExecutor(4, 0);
+    AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+    executor.execute(1000, 7, (startRow, endRow) -> {
+      for (int i = startRow; i < endRow; i++) {
+        visits.incrementAndGet(i);
+      }
+    });
+    for (int i = 0; i < visits.length(); i++) {
+      assertEquals(1, visits.get(i));
+    }
+  }
+
+  @Test
+  public void testParallelOutputIsIdenticalToSequential() {
+    ImageProcessor sequential = new ImageProcessorImpl(new ParallelExecutor(1, 0));
+    ImageProcessor parallel = new ImageProcessorImpl(new ParallelExecutor(4, 0));
+    CustomImage image = randomImage("base", 257, 131);
+    sequential.loadImage(image);
+    parallel.loadImage(image);
+
+    String[] results = {"bright", "sepia", "luma", "value", "intensity"};
+    for (ImageProcessor model : new ImageProcessor[]{sequential, parallel}) {
+      model.brighten("base", "bright", 37);
+      model.sepia("base", "sepia");
+      model.visualiseLuma("base", "luma");
+      model.visualiseValue("base", "value");
+      model.visualiseIntensity("base", "intensity");
+    }
+    for (String result : results) {
+      assertEquals(sequential.getImage(result), parallel.getImage(result));
+    }
+  }
+
+  @Test
+  public void testConfinedExecutorProcessesOnItsPool() {
+    Thread caller = Thread.currentThread();
+    List<Thread> threads = new ArrayList<>();
+    // the image is below the threshold, so it is processed sequentially, but not by the caller
+    new ParallelExecutor(2, 1 << 20, true).execute(4, 4, (startRow, endRow) ->
+            threads.add(Thread.currentThread()));
+    assertEquals(1, threads.size());
+    assertNotSame(caller, threads.get(0));
+    new ParallelExecutor(2, 1 << 20).execute(4, 4, (startRow, endRow) ->
+            threads.add(Thread.currentThread()));
+    assertSame(caller, threads.get(1));
+  }
+
+  @Test
+  public void testConfinedExecutorBoundsConcurrentCallers() throws InterruptedException {
+    ParallelExecutor executor = new ParallelExecutor(1, 0, true);
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maximum = new AtomicInteger();
+    List<Thread> callers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread caller = new Thread(() -> executor.execute(8, 8, (startRow, endRow) -> {
+        maximum.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        active.decrementAndGet();
+      }));
+      callers.add(caller);
+      caller.start();
+    }
+    for (Thread caller : callers) {
+      caller.join();
+    }
+    assertEquals(1, maximum.get());
+  }
+
+  @Test
+  public void testConfinedOutputIsIdenticalToSequential() {
+    ImageProcessor sequential = new ImageProcessorImpl(new ParallelExecutor(1, 0));
+    ImageProcessor confined = new ImageProcessorImpl(new ParallelExecutor(2, 0, true), true);
+    CustomImage image = randomImage("base", 67, 41);
+    sequential.loadImage(image);
+    confined.loadImage(image);
+    for (ImageProcessor model : new ImageProcessor[]{sequential, confined}) {
+      model.brighten("base", "bright", 37);
+      model.flip("bright", "flipped", 0);
+      model.dither("flipped", "dithered");
+      model.blur("base", "blurred");
+    }
+    for (String result : new String[]{"dithered", "blurred"}) {
+      assertEquals(sequential.getImage(result), confined.getImage(result));
+    }
+  }
+
+  @Test
+  public void testConfinedExecutorKeepsExceptions() {
+    IllegalArgumentException exception = new IllegalArgumentException("Invalid");
+    try {
+      new ParallelExecutor(2, 0, true).compute(() -> {
+        throw exception;
+      });
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertSame(exception, e);
+    }
+  }
+
+  @Test
+  public void testConfiguration() {
+    ParallelExecutor executor = new ParallelExecutor(3, 100);
+    assertEquals(3, executor.getParallelism());
+    assertEquals(100, executor.getSequentialThreshold());
+    assertFalse(executor.isConfined());
+    assertTrue(new ParallelExecutor(1, 100, true).isConfined());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new ParallelExecutor(0, 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreshold() {
+    new ParallelExecutor(2, -1);
+  }
+}
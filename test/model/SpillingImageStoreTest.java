@@ -0,0 +1,146 @@
+package model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import utility.CustomImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A Junit test class for the SpillingImageStore class.
+ */
+public class SpillingImageStoreTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // helper method to create a packed image that takes 4 * width bytes
+  private static CustomImage image(String name, int width) {
+    int[] raster = new int[width];
+    for (int i = 0; i < width; i++) {
+      raster[i] = name.hashCode() * 31 + i;
+    }
+    return new CustomImage(name, width, 1, raster, 255);
+  }
+
+  @Test
+  public void testImagesBeyondTheBudgetAreSpilled() {
+    SpillingImageStore store = new SpillingImageStore(800, folder.getRoot().toPath());
+    assertTrue(store.isBounded());
+    CustomImage first = image("first", 100);
+    CustomImage second = image("second", 100);
+    store.put(1, first, true);
+    store.put(2, second, false);
+    store.get(1);
+    store.put(3, image("third", 100), false);
+    // the second image is the least recently used one
+    assertFalse(store.isInMemory(2));
+    assertTrue(store.contains(2));
+    assertEquals(800, store.getSizeInBytes());
+    assertTrue(store.getSpilledSizeInBytes() > 400);
+
+    // paging the second image back in spills the first image
+    assertEquals(second, store.get(2));
+    assertEquals("second", store.get(2).getName());
+    assertTrue(store.isInMemory(2));
+    assertFalse(store.isInMemory(1));
+    assertEquals(first, store.get(1));
+    assertEquals(800, store.getSizeInBytes());
+  }
+
+  @Test
+  public void testImageLargerThanTheBudget() {
+    SpillingImageStore store = new SpillingImageStore(100, folder.getRoot().toPath());
+    CustomImage large = image("large", 100);
+    store.put(1, large, false);
+    assertFalse(store.isInMemory(1));
+    assertEquals(0, store.getSizeInBytes());
+    assertEquals(large, store.get(1));
+  }
+
+  @Test
+  public void testRemoveAndClose() throws IOException {
+    SpillingImageStore store = new SpillingImageStore(0, folder.getRoot().toPath());
+    store.put(1, image("first", 10), false);
+    store.put(2, image("second", 10), false);
+    try (Stream<Path> files = Files.list(store.getDirectory())) {
+      assertEquals(2, files.count());
+    }
+    store.remove(1);
+    assertNull(store.get(1));
+    assertFalse(store.contains(1));
+    try (Stream<Path> files = Files.list(store.getDirectory())) {
+      assertEquals(1, files.count());
+    }
+    store.close();
+    assertFalse(Files.exists(store.getDirectory()));
+  }
+
+  @Test
+  public void testLostSnapshots() throws IOException {
+    SpillingImageStore store = new SpillingImageStore(0, folder.getRoot().toPath());
+    store.put(1, image("loaded", 10), true);
+    store.put(2, image("computed", 10), false);
+    // a computed image whose snapshot cannot be read is forgotten, so that it is recomputed
+    Files.delete(store.getDirectory().resolve("2.img"));
+    assertNull(store.get(2));
+    assertFalse(store.contains(2));
+    Files.delete(store.getDirectory().resolve("1.img"));
+    try {
+      store.get(1);
+      fail("A loaded image cannot be recomputed");
+    } catch (UncheckedIOException e) {
+      // expected
+    }
+    // a computed image whose snapshot cannot be written is dropped
+    store.remove(1);
+    Files.delete(store.getDirectory());
+    store.put(3, image("dropped", 10), false);
+    assertFalse(store.contains(3));
+    assertEquals(0, store.getSizeInBytes());
+    try {
+      store.put(4, image("pinned", 10), true);
+      fail("A loaded image cannot be dropped");
+    } catch (UncheckedIOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLostImageIsRecomputed() throws IOException {
+    SpillingImageStore store = new SpillingImageStore(0, folder.getRoot().toPath());
+    ImageProcessor model = new ImageProcessorImpl(new ParallelExecutor(1, 0), false, store);
+    model.loadImage(image("base", 10));
+    model.brighten("base", "bright", 10);
+    CustomImage bright = model.getImage("bright");
+    try (Stream<Path> files = Files.list(store.getDirectory())) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (!file.getFileName().toString().equals("0.img")) {
+          Files.delete(file);
+        }
+      }
+    }
+    assertEquals(bright, model.getImage("bright"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new SpillingImageStore(-1, folder.getRoot().toPath());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingScratchDirectory() {
+    new SpillingImageStore(100, folder.getRoot().toPath().resolve("missing"));
+  }
+}
@@ -9,8 +9,11 @@ import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -172,6 +175,178 @@ public class BufferedImageHelperTest extends ImageHelperAbstractTest {
     }
   }
 
+  @Test
+  public void testLoadThreeByteBgrPng() throws IOException {
+    CustomImage actualImage = testLoad("test_bgr.png", "png", BufferedImage.TYPE_3BYTE_BGR,
+            "test_image");
+    assertEquals(expectedImage, actualImage);
+  }
+
+  @Test
+  public void testLoadThreeByteBgrBmp() throws IOException {
+    CustomImage actualImage = testLoad("test_bgr.bmp", "bmp", BufferedImage.TYPE_3BYTE_BGR,
+            "test_image");
+    assertEquals(expectedImage, actualImage);
+  }
+
+  @Test
+  public void testLoadArgbPngKeepsAlpha() throws IOException {
+    File file = folder.newFile("test_argb.png");
+    BufferedImage bufferedImage = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+    bufferedImage.setRGB(0, 0, 0x80FF9933);
+    bufferedImage.setRGB(1, 0, 0xFF0000FF);
+    ImageIO.write(bufferedImage, "png", file);
+    CustomImage actualImage = imageHelper.load(file.getAbsolutePath(), "test_image");
+    assertEquals(new CustomImage("test_image", new Pixel[][]{
+        {new Pixel(255, 153, 51, 128), new Pixel(0, 0, 255, 255)}
+    }, 255), actualImage);
+  }
+
+  @Test
+  public void testSaveAndLoadPngKeepsAlpha() throws IOException {
+    CustomImage image = new CustomImage("alpha", new Pixel[][]{
+        {new Pixel(255, 153, 51, 128), new Pixel(0, 0, 255, 0)},
+        {new Pixel(1, 2, 3, 255), new Pixel(10, 20, 30, 40)}
+    }, 255);
+    String filePath = folder.getRoot().getAbsolutePath() + "/alpha.png";
+    imageHelper.save(image, filePath);
+    assertEquals(image, imageHelper.load(filePath, "alpha"));
+  }
+
+  @Test
+  public void testSaveOpaquePngWithoutAlpha() throws IOException {
+    String filePath = folder.getRoot().getAbsolutePath() + "/opaque.png";
+    imageHelper.save(expectedImage, filePath);
+    assertEquals(BufferedImage.TYPE_3BYTE_BGR, ImageIO.read(new File(filePath)).getType());
+  }
+
+  @Test
+  public void testSaveJpgDropsAlpha() throws IOException {
+    CustomImage image = new CustomImage("alpha", new Pixel[][]{
+        {new Pixel(255, 255, 255, 128), new Pixel(255, 255, 255, 0)}
+    }, 255);
+    String filePath = folder.getRoot().getAbsolutePath() + "/alpha.jpg";
+    imageHelper.save(image, filePath);
+    CustomImage actualImage = imageHelper.load(filePath, "alpha");
+    assertEquals(255, actualImage.getAlpha(0, 0));
+    assertEquals(255, actualImage.getAlpha(0, 1));
+  }
+
+  @Test
+  public void testSaveUsesEncoderOfExtension() throws IOException {
+    String folderPath = folder.getRoot().getAbsolutePath();
+    String[][] files = {{"/format.png", "png"}, {"/format.jpg", "JPEG"},
+        {"/format.jpeg", "JPEG"}, {"/format.bmp", "bmp"}};
+    for (String[] file : files) {
+      imageHelper.save(expectedImage, folderPath + file[0]);
+      try (ImageInputStream inputStream = ImageIO.createImageInputStream(
+              new File(folderPath + file[0]))) {
+        assertEquals(file[1].toLowerCase(),
+                ImageIO.getImageReaders(inputStream).next().getFormatName().toLowerCase());
+      }
+    }
+  }
+
+  @Test
+  public void testJpegQualityTradesSize() throws IOException {
+    CustomImage image = noiseImage();
+    String low = folder.getRoot().getAbsolutePath() + "/low.jpg";
+    String high = folder.getRoot().getAbsolutePath() + "/high.jpg";
+    new BufferedImageHelper(0.1f, BufferedImageHelper.DEFAULT_PNG_COMPRESSION_LEVEL)
+            .save(image, low);
+    new BufferedImageHelper(1f, BufferedImageHelper.DEFAULT_PNG_COMPRESSION_LEVEL)
+            .save(image, high);
+    assertTrue(new File(low).length() < new File(high).length());
+  }
+
+  @Test
+  public void testPngCompressionLevelTradesSize() throws IOException {
+    CustomImage image = noiseImage();
+    String none = folder.getRoot().getAbsolutePath() + "/none.png";
+    String best = folder.getRoot().getAbsolutePath() + "/best.png";
+    new BufferedImageHelper(BufferedImageHelper.DEFAULT_JPEG_QUALITY, 0).save(image, none);
+    new BufferedImageHelper(BufferedImageHelper.DEFAULT_JPEG_QUALITY, 9).save(image, best);
+    assertTrue(new File(best).length() < new File(none).length());
+    assertEquals(image, imageHelper.load(none, "noise"));
+    assertEquals(image, imageHelper.load(best, "noise"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidJpegQuality() {
+    new BufferedImageHelper(1.5f, BufferedImageHelper.DEFAULT_PNG_COMPRESSION_LEVEL);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPngCompressionLevel() {
+    new BufferedImageHelper(BufferedImageHelper.DEFAULT_JPEG_QUALITY, 10);
+  }
+
+  // helper method to create an image with a smooth gradient and some noise
+  private CustomImage noiseImage() {
+    int width = 64;
+    int height = 64;
+    int[] raster = new int[width * height];
+    Random random = new Random(42);
+    for (int i = 0; i < raster.length; i++) {
+      int value = (i % width) * 3 + random.nextInt(16);
+      raster[i] = CustomImage.pack(value, 255 - value, (i / width) * 3, 255);
+    }
+    return new CustomImage("noise", width, height, raster, 255);
+  }
+
+  @Test
+  public void testLoadGreyscalePngKeepsSamples() throws IOException {
+    File file = folder.newFile("test_grey.png");
+    BufferedImage bufferedImage = new BufferedImage(3, 1, BufferedImage.TYPE_BYTE_GRAY);
+    bufferedImage.getRaster().setSamples(0, 0, 3, 1, 0, new int[]{0, 64, 128});
+    ImageIO.write(bufferedImage, "png", file);
+    CustomImage actualImage = imageHelper.load(file.getAbsolutePath(), "test_image");
+    assertTrue(actualImage.isGreyscale());
+    assertEquals(new CustomImage("test_image", new Pixel[][]{
+        {new Pixel(0, 0, 0, 255), new Pixel(64, 64, 64, 255), new Pixel(128, 128, 128, 255)}
+    }, 255), actualImage);
+  }
+
+  @Test
+  public void testSaveAndLoadPng() throws IOException {
+    String filePath = folder.getRoot().getAbsolutePath() + "/roundTrip.png";
+    imageHelper.save(expectedImage, filePath);
+    assertEquals(expectedImage, imageHelper.load(filePath, "expected_test_image"));
+  }
+
+  @Test
+  public void testSaveAndLoadPlanarPng() throws IOException {
+    CustomImage planar = new CustomImage("planar", 3, 1,
+            new byte[][]{{1, 2, 3}, {4, 5, 6}, {7, 8, 9}}, null, 255);
+    String filePath = folder.getRoot().getAbsolutePath() + "/planar.png";
+    imageHelper.save(planar, filePath);
+    assertEquals(planar, imageHelper.load(filePath, "planar"));
+  }
+
+  @Test
+  public void testSaveSixteenBitPpmAsPng() throws IOException {
+    String ppmPath = folder.getRoot().getAbsolutePath() + "/deep.pnm";
+    // the planes are blue, green and red
+    CustomImage deep = new CustomImage("deep", 3, 1, new short[][]{
+        {0, (short) 65535, (short) 32896}, {257, (short) 65280, 128}, {(short) 40000, 1, 0}},
+            null, 65535);
+    new PPMImageHelper(PPMImageHelper.Format.P6).save(deep, ppmPath);
+    CustomImage loaded = new PPMImageHelper().load(ppmPath, "deep");
+    String pngPath = folder.getRoot().getAbsolutePath() + "/deep.png";
+    imageHelper.save(loaded, pngPath);
+    // the samples are scaled down to 8 bits
+    assertEquals(new CustomImage("deep", new Pixel[][]{{new Pixel(156, 1, 0, 255),
+        new Pixel(0, 254, 255, 255), new Pixel(0, 0, 128, 255)}}, 255),
+            imageHelper.load(pngPath, "deep"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testLoadUnsupportedFile() throws IOException {
+    File file = folder.newFile("test.png");
+    Files.write(file.toPath(), new byte[]{1, 2, 3});
+    imageHelper.load(file.getAbsolutePath(), "test_image");
+  }
+
   private CustomImage testLoad(String fileName, String format, int bufferedImageType,
                                String imageName) throws IOException {
     File file = createTestImageFile(fileName, ppmImageString, format, bufferedImageType);
@@ -4,6 +4,9 @@ package utility;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * A Junit test class for the CustomImage.
@@ -39,6 +42,146 @@ public class CustomImageTest {
     assertEquals(baseImg, expectedImg);
   }
 
+  @Test
+  public void testPackedConstructor() {
+    int[] raster = new int[]{
+        CustomImage.pack(255, 0, 0, 255), CustomImage.pack(0, 255, 0, 255),
+        CustomImage.pack(0, 0, 255, 255), CustomImage.pack(0, 0, 0, 255),
+        CustomImage.pack(255, 153, 51, 255), CustomImage.pack(255, 255, 255, 255)};
+    CustomImage packedImg = new CustomImage("packed", 3, 2, raster, MAX_PIXEL_VALUE);
+    assertEquals("packed", packedImg.getName());
+    assertEquals(3, packedImg.getWidth());
+    assertEquals(2, packedImg.getHeight());
+    assertEquals(expectedImg, packedImg);
+    assertEquals(orange, packedImg.getPixel(1, 1));
+    assertEquals(255, packedImg.getColor(1, 1, 2));
+    assertEquals(153, packedImg.getColor(1, 1, 1));
+    assertEquals(51, packedImg.getColor(1, 1, 0));
+    assertEquals(255, packedImg.getAlpha(1, 1));
+    assertEquals(0xFFFF9933, packedImg.getARGB(1, 1));
+  }
+
+  @Test
+  public void testCopyARGB() {
+    int[] raster = new int[6];
+    expectedImg.copyARGB(raster);
+    for (int i = 0; i < raster.length; i++) {
+      assertEquals(expectedImg.getARGB(i / 3, i % 3), raster[i]);
+    }
+  }
+
+  @Test
+  public void testPlanarConstructor() {
+    byte[] redPlane = new byte[]{(byte) 255, 0, 0, 0, (byte) 255, (byte) 255};
+    byte[] greenPlane = new byte[]{0, (byte) 255, 0, 0, (byte) 153, (byte) 255};
+    byte[] bluePlane = new byte[]{0, 0, (byte) 255, 0, 51, (byte) 255};
+    CustomImage planarImg = new CustomImage("planar", 3, 2,
+            new byte[][]{bluePlane, greenPlane, redPlane}, null, MAX_PIXEL_VALUE);
+    assertTrue(planarImg.isPlanar());
+    assertFalse(planarImg.isGreyscale());
+    assertEquals(expectedImg, planarImg);
+    assertEquals(orange, planarImg.getPixel(1, 1));
+    assertEquals(0xFFFF9933, planarImg.getARGB(1, 1));
+    int[] values = new int[6];
+    planarImg.copyChannel(1, values);
+    assertEquals(153, values[4]);
+  }
+
+  @Test
+  public void testGreyscaleImage() {
+    CustomImage greyImg = new CustomImage("grey", 2, 1,
+            new byte[][]{new byte[]{10, (byte) 200}}, new byte[]{(byte) 255, 100},
+            MAX_PIXEL_VALUE);
+    assertTrue(greyImg.isGreyscale());
+    assertEquals(new Pixel(200, 200, 200, 100), greyImg.getPixel(0, 1));
+    assertEquals(new CustomImage("grey", new Pixel[][]{{new Pixel(10, 10, 10, 255),
+        new Pixel(200, 200, 200, 100)}}, MAX_PIXEL_VALUE), greyImg);
+  }
+
+  @Test
+  public void testWideGreyscaleImage() {
+    CustomImage wideImg = new CustomImage("wide", 2, 1,
+            new short[][]{new short[]{1000, (short) 65535}}, null, 65535);
+    assertEquals(65535, wideImg.getMaxPixelValue());
+    assertEquals(1000, wideImg.getColor(0, 0, 2));
+    assertEquals(65535, wideImg.getColor(0, 1, 0));
+    assertEquals(255, wideImg.getAlpha(0, 1));
+  }
+
+  @Test
+  public void testWideImageIsScaledToPackedPixels() {
+    CustomImage wideImg = new CustomImage("wide", 2, 1,
+            new short[][]{new short[]{1000, (short) 65535}}, null, 65535);
+    int[] raster = new int[2];
+    wideImg.copyARGB(raster);
+    // 1000 * 255 / 65535 rounds to 4
+    assertEquals(0xFF040404, raster[0]);
+    assertEquals(0xFFFFFFFF, raster[1]);
+    assertEquals(raster[0], wideImg.getARGB(0, 0));
+  }
+
+  @Test
+  public void testPixelConstructorWithWideValues() {
+    CustomImage wideImg = new CustomImage("wide", new Pixel[][]{
+        {new Pixel(1000, 300, 0, 255), new Pixel(256, 1023, 512, 100)}}, 1023);
+    assertTrue(wideImg.isPlanar());
+    assertEquals(1023, wideImg.getMaxPixelValue());
+    // every channel keeps its own value, none spills into the next channel
+    assertEquals(new Pixel(1000, 300, 0, 255), wideImg.getPixel(0, 0));
+    assertEquals(new Pixel(256, 1023, 512, 100), wideImg.getPixel(0, 1));
+    assertEquals(0x6440FF80, wideImg.getARGB(0, 1));
+    assertEquals(new CustomImage("wide", 2, 1, new short[][]{new short[]{0, 512},
+        new short[]{300, 1023}, new short[]{1000, 256}}, new byte[]{(byte) 255, 100}, 1023),
+            wideImg);
+  }
+
+  @Test
+  public void testPixelConstructorRejectsValuesAboveMax() {
+    Pixel[][][] invalid = {{{new Pixel(256, 0, 0, 255)}}, {{new Pixel(0, -1, 0, 255)}},
+        {{new Pixel(0, 0, 0, 256)}}};
+    for (Pixel[][] pixels : invalid) {
+      try {
+        new CustomImage("invalid", pixels, MAX_PIXEL_VALUE);
+        fail("Expected an exception");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    try {
+      new CustomImage("invalid", new Pixel[][]{{new Pixel(1001, 0, 0, 255)}}, 1000);
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testExtractAndCombineChannels() {
+    CustomImage planarImg = expectedImg.toPlanar();
+    CustomImage redImg = planarImg.extractChannel("red", 2);
+    CustomImage greenImg = planarImg.extractChannel("green", 1);
+    CustomImage blueImg = expectedImg.extractChannel("blue", 0);
+    assertTrue(redImg.isGreyscale());
+    assertEquals(new Pixel(255, 255, 255, 255), redImg.getPixel(0, 0));
+    assertEquals(new Pixel(153, 153, 153, 255), greenImg.getPixel(1, 1));
+    assertEquals(expectedImg, CustomImage.combine("combined", redImg, greenImg, blueImg));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPlanarConstructorWithInvalidPlaneCount() {
+    new CustomImage("planar", 1, 1, new byte[2][1], null, MAX_PIXEL_VALUE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPackedConstructorWithInvalidRasterSize() {
+    new CustomImage("packed", 3, 2, new int[5], MAX_PIXEL_VALUE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetPixelWithNegativeCol() {
+    expectedImg.getPixel(1, -1);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testGetPixelWithInvalidRow() {
     expectedImg.getPixel(5, 1);
@@ -1,7 +1,20 @@
 package utility;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -11,6 +24,9 @@ public class ImageHelperFactoryTest {
 
   private final IImageHelperFactory imageHelperFactory = ImageHelperFactory.getInstance();
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void testGetHelperWhenPPMFileIsPassed() {
     String file = "test.ppm";
@@ -58,5 +74,75 @@ public class ImageHelperFactoryTest {
     assertTrue(imageHelperObj instanceof BufferedImageHelper);
   }
 
+  @Test
+  public void testGetHelperWhenPnmAndPgmFilesArePassed() {
+    assertTrue(imageHelperFactory.getHelper("test.pnm") instanceof PPMImageHelper);
+    assertTrue(imageHelperFactory.getHelper("test.pgm") instanceof PPMImageHelper);
+  }
+
+  @Test
+  public void testHelpersAreShared() {
+    assertSame(imageHelperFactory.getHelper("a.ppm"), imageHelperFactory.getHelper("b.ppm"));
+    assertSame(imageHelperFactory.getHelper("a.png"), imageHelperFactory.getHelper("b.jpg"));
+  }
+
+  @Test
+  public void testLoadHelperRecognisesContent() throws IOException {
+    File ppm = folder.newFile("mislabeled.png");
+    Files.write(ppm.toPath(), "P3\n1 1\n255\n1 2 3\n".getBytes(StandardCharsets.US_ASCII));
+    IImageHelper ppmHelper = imageHelperFactory.getLoadHelper(ppm.getPath());
+    assertTrue(ppmHelper instanceof PPMImageHelper);
+    CustomImage image = ppmHelper.load(ppm.getPath(), "image");
+    assertEquals(0xFF010203, image.getARGB(0, 0));
+
+    File png = folder.newFile("mislabeled.ppm");
+    ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", png);
+    assertTrue(imageHelperFactory.getLoadHelper(png.getPath()) instanceof BufferedImageHelper);
+
+    File bmp = folder.newFile("mislabeled.pgm");
+    ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "bmp", bmp);
+    assertTrue(imageHelperFactory.getLoadHelper(bmp.getPath()) instanceof BufferedImageHelper);
+  }
 
-}
\ No newline at end of file
+  @Test
+  public void testLoadHelperFallsBackToExtension() throws IOException {
+    assertTrue(imageHelperFactory.getLoadHelper("missing.pnm") instanceof PPMImageHelper);
+    File unknown = folder.newFile("unknown.png");
+    Files.write(unknown.toPath(), new byte[]{1, 2, 3});
+    assertTrue(imageHelperFactory.getLoadHelper(unknown.getPath())
+            instanceof BufferedImageHelper);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testLoadHelperForUnsupportedFormat() {
+    imageHelperFactory.getLoadHelper("missing.tiff");
+  }
+
+  @Test
+  public void testRegisteredHelper() throws IOException {
+    IImageHelper helper = new IImageHelper() {
+      @Override
+      public CustomImage load(String filePath, String imageName) {
+        return null;
+      }
+
+      @Override
+      public void save(CustomImage image, String filePath) {
+        // nothing is saved
+      }
+    };
+    // the helper is registered on a factory of its own, so that the shared factory is unchanged
+    ImageHelperFactory factory = new ImageHelperFactory();
+    factory.register("factory-test", helper, new byte[]{'F', 'T', 0, 1});
+    assertSame(helper, factory.getHelper("image.factory-test"));
+    File file = folder.newFile("image.ppm");
+    Files.write(file.toPath(), new byte[]{'F', 'T', 0, 1, 2});
+    assertSame(helper, factory.getLoadHelper(file.getPath()));
+    assertNotSame(helper, ImageHelperFactory.getInstance().getLoadHelper(file.getPath()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegisterEmptySignature() {
+    new ImageHelperFactory().register("factory-test", new PPMImageHelper(), new byte[0]);
+  }
+}
@@ -0,0 +1,95 @@
+package utility;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A Junit test class for the ImageSnapshot class.
+ */
+public class ImageSnapshotTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // helper method to write the given image to a snapshot and read it back
+  private CustomImage roundTrip(CustomImage image) throws IOException {
+    Path path = folder.newFile().toPath();
+    ImageSnapshot.write(image, path);
+    return ImageSnapshot.read(path);
+  }
+
+  @Test
+  public void testPackedImage() throws IOException {
+    Random random = new Random(3);
+    int[] raster = new int[31 * 7];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = random.nextInt();
+    }
+    CustomImage image = new CustomImage("packed", 31, 7, raster, 255);
+    CustomImage read = roundTrip(image);
+    assertEquals(image, read);
+    assertEquals("packed", read.getName());
+    assertFalse(read.isPlanar());
+    for (int i = 0; i < raster.length; i++) {
+      assertEquals(CustomImage.unpackAlpha(raster[i]), read.getAlpha(i / 31, i % 31));
+    }
+  }
+
+  @Test
+  public void testPlanarImages() throws IOException {
+    byte[][] planes = {{1, 2, 3, 4, 5, 6}, {7, 8, 9, 10, 11, 12}, {13, 14, 15, 16, 17, 18}};
+    byte[] alpha = {0, 50, 100, (byte) 150, (byte) 200, (byte) 255};
+    CustomImage color = new CustomImage("colour image", 3, 2, planes, alpha, 255);
+    CustomImage read = roundTrip(color);
+    assertTrue(read.isPlanar());
+    assertEquals(color, read);
+    assertEquals(150, read.getAlpha(1, 0));
+
+    CustomImage grey = new CustomImage("grey", 3, 2, new byte[][]{planes[0]}, null, 255);
+    read = roundTrip(grey);
+    assertTrue(read.isGreyscale());
+    assertEquals(grey, read);
+
+    short[][] deepPlanes = {{1000, 2000, 3000, 4000, 5000, (short) 65535}};
+    CustomImage deep = new CustomImage("deep", 2, 3, deepPlanes, null, 65535);
+    read = roundTrip(deep);
+    assertEquals(65535, read.getMaxPixelValue());
+    assertEquals(65535, read.getColor(2, 1, 1));
+    assertEquals(deep, read);
+  }
+
+  @Test
+  public void testEmptyImage() throws IOException {
+    CustomImage empty = new CustomImage("", 0, 0, new int[0], 255);
+    CustomImage read = roundTrip(empty);
+    assertEquals("", read.getName());
+    assertEquals(0, read.getWidth());
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidSnapshot() throws IOException {
+    Path path = folder.newFile().toPath();
+    Files.write(path, new byte[]{'P', '3', '\n', '1', ' ', '1', '\n', '2', '5', '5', '\n', '0',
+        ' ', '0', ' ', '0', '\n', '0', '0', '0', '0', '0', '0', '0', '0', '0'});
+    ImageSnapshot.read(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedSnapshot() throws IOException {
+    Path path = folder.newFile().toPath();
+    ImageSnapshot.write(new CustomImage("image", 10, 10, new int[100], 255), path);
+    byte[] contents = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(contents, contents.length - 1));
+    ImageSnapshot.read(path);
+  }
+}
@@ -7,9 +7,14 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -149,5 +154,285 @@ public class PPMImageHelperTest extends ImageHelperAbstractTest {
     }
   }
 
+  @Test
+  public void testLoadCommentsAnywhere() throws IOException {
+    String ppmImageString = "# leading comment\nP3 # magic\n3#width\n2 255\n\n"
+            + "255 0 0   0 255 0 # first row\n0 0 255\n"
+            + "# second row\n0 0 0 255 153 51\t255 255 255";
+    File file = createTestPPMImageFile("comments.ppm", ppmImageString);
+    CustomImage actualImage = imageHelper.load(file.getAbsolutePath(), "Test image");
+    assertEquals(new CustomImage("Test image", this.pixels, 255), actualImage);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadTruncatedFile() throws IOException {
+    File file = createTestPPMImageFile("truncated.ppm", "P3\n3 2\n255\n255 0 0 0 255");
+    imageHelper.load(file.getAbsolutePath(), "Test image");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadInvalidSample() throws IOException {
+    File file = createTestPPMImageFile("invalid.ppm", "P3\n1 1\n255\n255 0x 0\n");
+    imageHelper.load(file.getAbsolutePath(), "Test image");
+  }
+
+  // helper method to check that the given file is rejected because a sample is out of range
+  private void assertSampleRejected(IImageHelper helper, String fileName, byte[] contents,
+                                    String message) throws IOException {
+    File file = new File(folder.getRoot(), fileName);
+    Files.write(file.toPath(), contents);
+    try {
+      helper.load(file.getAbsolutePath(), "Test image");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
+
+  @Test
+  public void testLoadSampleAboveMaxValue() throws IOException {
+    assertSampleRejected(imageHelper, "above.ppm",
+            "P3\n1 1\n255\n300 0 0\n".getBytes(StandardCharsets.US_ASCII),
+            "Invalid PPM file: sample 300 is not between 0 and 255");
+    assertSampleRejected(imageHelper, "above.pgm",
+            "P2\n2 1\n100\n17 101\n".getBytes(StandardCharsets.US_ASCII),
+            "Invalid PPM file: sample 101 is not between 0 and 100");
+    assertSampleRejected(imageHelper, "wide.ppm",
+            "P3\n1 1\n1023\n0 1024 0\n".getBytes(StandardCharsets.US_ASCII),
+            "Invalid PPM file: sample 1024 is not between 0 and 1023");
+    // raw samples are checked as well, whether they are read or mapped
+    byte[] raw = {'P', '6', '\n', '1', ' ', '1', '\n', '1', '0', '0', '\n', 10, (byte) 200, 30};
+    assertSampleRejected(imageHelper, "above.pnm", raw,
+            "Invalid PPM file: sample 200 is not between 0 and 100");
+    assertSampleRejected(new PPMImageHelper(PPMImageHelper.Format.P6, 0), "mapped.pnm", raw,
+            "Invalid PPM file: sample 200 is not between 0 and 100");
+    byte[] wide = {'P', '5', '\n', '1', ' ', '1', '\n', '4', '0', '9', '5', '\n',
+        0x13, (byte) 0x88};
+    assertSampleRejected(imageHelper, "wide.pgm", wide,
+            "Invalid PPM file: sample 5000 is not between 0 and 4095");
+  }
+
+  @Test
+  public void testLoadLargeFile() throws IOException {
+    // the file is larger than the read buffer, so tokens straddle its refills
+    int width = 301;
+    int height = 257;
+    StringBuilder builder = new StringBuilder("P3\n" + width + " " + height + "\n255\n");
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = CustomImage.pack(i % 256, (i / 7) % 256, (i * 13) % 256, 255);
+      builder.append(i % 256).append(' ').append((i / 7) % 256).append(' ')
+              .append((i * 13) % 256).append(i % 5 == 0 ? "\n" : "  ");
+    }
+    File file = createTestPPMImageFile("large.ppm", builder.toString());
+    CustomImage actualImage = imageHelper.load(file.getAbsolutePath(), "large");
+    assertEquals(new CustomImage("large", width, height, raster, 255), actualImage);
+  }
+
+  // helper method to save the given image with a helper for the given format and load it back
+  private CustomImage roundTrip(CustomImage image, PPMImageHelper.Format format, String fileName)
+          throws IOException {
+    String filePath = folder.getRoot().getAbsolutePath() + "/" + fileName;
+    new PPMImageHelper(format).save(image, filePath);
+    return imageHelper.load(filePath, image.getName());
+  }
+
+  @Test
+  public void testRawPPM() throws IOException {
+    CustomImage image = new CustomImage("Test image", this.pixels, 255);
+    String filePath = folder.getRoot().getAbsolutePath() + "/raw.pnm";
+    new PPMImageHelper(PPMImageHelper.Format.P6).save(image, filePath);
+    byte[] contents = Files.readAllBytes(Paths.get(filePath));
+    byte[] expected = {'P', '6', '\n', '3', ' ', '2', '\n', '2', '5', '5', '\n',
+        (byte) 255, 0, 0, 0, (byte) 255, 0, 0, 0, (byte) 255,
+        0, 0, 0, (byte) 255, (byte) 153, 51, (byte) 255, (byte) 255, (byte) 255};
+    assertArrayEquals(expected, contents);
+    assertEquals(image, imageHelper.load(filePath, "Test image"));
+  }
+
+  @Test
+  public void testRawPPMLargerThanAChunk() throws IOException {
+    int width = 211;
+    int height = 173;
+    int[] raster = new int[width * height];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = CustomImage.pack(i % 256, (i / 3) % 256, (i * 7) % 256, 255);
+    }
+    CustomImage image = new CustomImage("large", width, height, raster, 255);
+    assertEquals(image, roundTrip(image, PPMImageHelper.Format.P6, "large.pnm"));
+  }
+
+  @Test
+  public void testRawPGM() throws IOException {
+    byte[] plane = new byte[300];
+    for (int i = 0; i < plane.length; i++) {
+      plane[i] = (byte) (i * 5);
+    }
+    CustomImage grey = new CustomImage("grey", 20, 15, new byte[][]{plane}, null, 255);
+    CustomImage loaded = roundTrip(grey, PPMImageHelper.Format.P5, "grey.pgm");
+    assertTrue(loaded.isGreyscale());
+    assertEquals(grey, loaded);
+    // a packed image whose pixels are all grey can be saved as well
+    Pixel greyPixel = new Pixel(40, 40, 40, 255);
+    CustomImage packed = new CustomImage("packed", new Pixel[][]{{greyPixel, greyPixel}}, 255);
+    assertEquals(packed, roundTrip(packed, PPMImageHelper.Format.P5, "packed.pgm"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRawPGMOfColorImage() throws IOException {
+    roundTrip(new CustomImage("Test image", this.pixels, 255), PPMImageHelper.Format.P5,
+            "color.pgm");
+  }
 
+  @Test
+  public void testSixteenBitImages() throws IOException {
+    short[][] planes = {{0, 1000, (short) 65535, 300, 7, 42}, {1, 2, 3, 4, 5, 6},
+        {(short) 40000, 20000, 10000, 5000, 2500, 1250}};
+    CustomImage deep = new CustomImage("deep", 3, 2, planes, null, 65535);
+    CustomImage loaded = roundTrip(deep, PPMImageHelper.Format.P6, "deep.pnm");
+    assertEquals(65535, loaded.getMaxPixelValue());
+    assertEquals(40000, loaded.getColor(0, 0, 2));
+    assertEquals(deep, loaded);
+    // the samples of a file must not exceed its max value
+    CustomImage deepGrey = new CustomImage("deepGrey", 3, 2,
+        new short[][]{{0, 1000, 4095, 300, 7, 42}}, null, 4095);
+    loaded = roundTrip(deepGrey, PPMImageHelper.Format.P5, "deep.pgm");
+    assertEquals(4095, loaded.getMaxPixelValue());
+    assertEquals(deepGrey, loaded);
+  }
+
+  @Test
+  public void testPlainSixteenBitAndGreyFiles() throws IOException {
+    File file = createTestPPMImageFile("deep.ppm", "P3\n2 1\n1023\n1023 0 512 1 2 3\n");
+    CustomImage loaded = imageHelper.load(file.getAbsolutePath(), "deep");
+    assertEquals(1023, loaded.getMaxPixelValue());
+    assertEquals(1023, loaded.getColor(0, 0, 2));
+    assertEquals(512, loaded.getColor(0, 0, 0));
+    assertEquals(3, loaded.getColor(0, 1, 0));
+    file = createTestPPMImageFile("grey.pgm", "P2\n2 1\n255\n17 200\n");
+    loaded = imageHelper.load(file.getAbsolutePath(), "grey");
+    assertTrue(loaded.isGreyscale());
+    assertEquals(200, loaded.getColor(0, 1, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadTruncatedRawFile() throws IOException {
+    File file = createTestPPMImageFile("truncated.pnm", "P6\n3 2\n255\nabcdefgh");
+    imageHelper.load(file.getAbsolutePath(), "Test image");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadInvalidMaxValue() throws IOException {
+    File file = createTestPPMImageFile("invalid.pnm", "P6\n1 1\n70000\nabcdef");
+    imageHelper.load(file.getAbsolutePath(), "Test image");
+  }
+
+  @Test
+  public void testMappedImages() throws IOException {
+    int width = 37;
+    int height = 23;
+    short[][] planes = new short[3][width * height];
+    for (int i = 0; i < width * height; i++) {
+      planes[0][i] = (short) (i * 3);
+      planes[1][i] = (short) (i * 5 % 4096);
+      planes[2][i] = (short) (4095 - i % 4096);
+    }
+    IImageHelper mapping = new PPMImageHelper(PPMImageHelper.Format.P6, 0);
+    CustomImage deep = new CustomImage("deep", width, height, planes, null, 4095);
+    String deepPath = folder.getRoot().getAbsolutePath() + "/deep.pnm";
+    mapping.save(deep, deepPath);
+    CustomImage mapped = mapping.load(deepPath, "mapped");
+    assertFalse(mapped.isPlanar());
+    assertEquals(0, mapped.getSizeInBytes());
+    assertEquals(4095, mapped.getMaxPixelValue());
+    assertEquals(deep, mapped);
+    assertEquals(deep, mapped.toPlanar());
+    CustomImage red = mapped.extractChannel("red", 2);
+    assertTrue(red.isGreyscale());
+    assertEquals(deep.extractChannel("red", 2), red);
+
+    CustomImage image = new CustomImage("Test image", this.pixels, 255);
+    String path = folder.getRoot().getAbsolutePath() + "/mapped.pnm";
+    mapping.save(image, path);
+    mapped = mapping.load(path, "Test image");
+    assertEquals(image, mapped);
+    assertEquals(image.getARGB(1, 1), mapped.getARGB(1, 1));
+    // a mapped image can be saved in another format
+    assertEquals(image, roundTrip(mapped, PPMImageHelper.Format.P3, "copy.ppm"));
+    assertEquals(image, roundTrip(mapped, PPMImageHelper.Format.P6, "copy.pnm"));
+    CustomImage green = mapped.extractChannel("green", 1);
+    assertEquals(green, roundTrip(green, PPMImageHelper.Format.P5, "green.pgm"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMappedTruncatedFile() throws IOException {
+    File file = createTestPPMImageFile("truncated.pnm", "P6\n3 2\n255\nabcdefgh");
+    new PPMImageHelper(PPMImageHelper.Format.P6, 0).load(file.getAbsolutePath(), "image");
+  }
+
+  @Test
+  public void testSaveMappedImageOverItsFile() throws IOException {
+    IImageHelper mapping = new PPMImageHelper(PPMImageHelper.Format.P6, 0);
+    CustomImage image = new CustomImage("Test image", this.pixels, 255);
+    File directory = folder.newFolder("mapped");
+    String path = directory.getAbsolutePath() + "/m.pnm";
+    mapping.save(image, path);
+    CustomImage mapped = mapping.load(path, "m");
+    mapping.save(mapped, path);
+    // the mapped image is still readable, and the file holds the whole image
+    assertEquals(image, mapped);
+    assertEquals(image, mapping.load(path, "m"));
+    new PPMImageHelper(PPMImageHelper.Format.P3).save(mapped, path);
+    assertEquals(image, mapped);
+    assertEquals(image, mapping.load(path, "m"));
+    // no temporary file is left behind
+    assertArrayEquals(new String[]{"m.pnm"}, directory.list());
+  }
+
+  @Test
+  public void testSavePlainLargerThanAChunk() throws IOException {
+    int width = 157;
+    int height = 91;
+    int[] raster = new int[width * height];
+    StringBuilder expected = new StringBuilder("P3\n" + width + " " + height + "\n255\n");
+    for (int i = 0; i < raster.length; i++) {
+      int red = i % 256;
+      int green = (i * 7) % 256;
+      int blue = (i / 3) % 256;
+      raster[i] = CustomImage.pack(red, green, blue, 255);
+      expected.append(red).append("\n").append(green).append("\n").append(blue).append("\n");
+    }
+    String filePath = folder.getRoot().getAbsolutePath() + "/large.ppm";
+    imageHelper.save(new CustomImage("large", width, height, raster, 255), filePath);
+    assertEquals(expected.toString(),
+            new String(Files.readAllBytes(Paths.get(filePath)), StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testSavePlainWithSamplesPerLine() throws IOException {
+    CustomImage image = new CustomImage("Test image", this.pixels, 255);
+    String filePath = folder.getRoot().getAbsolutePath() + "/packed.ppm";
+    new PPMImageHelper(PPMImageHelper.Format.P3, PPMImageHelper.DEFAULT_MAPPING_THRESHOLD, 4)
+            .save(image, filePath);
+    assertEquals("P3\n3 2\n255\n255 0 0 0\n255 0 0 0\n255 0 0 0\n255 153 51 255\n"
+            + "255 255\n", new String(Files.readAllBytes(Paths.get(filePath)),
+            StandardCharsets.US_ASCII));
+    assertEquals(image, imageHelper.load(filePath, "Test image"));
+    new PPMImageHelper(PPMImageHelper.Format.P3, PPMImageHelper.DEFAULT_MAPPING_THRESHOLD, 9)
+            .save(image, filePath);
+    assertEquals("P3\n3 2\n255\n255 0 0 0 255 0 0 0 255\n0 0 0 255 153 51 255 255 255\n",
+            new String(Files.readAllBytes(Paths.get(filePath)), StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testSavePlainSixteenBitImage() throws IOException {
+    short[][] planes = {{0, 10}, {(short) 65535, 9999}, {12345, 100}};
+    CustomImage deep = new CustomImage("deep", 2, 1, planes, null, 65535);
+    assertEquals(deep, roundTrip(deep, PPMImageHelper.Format.P3, "deep.ppm"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSamplesPerLine() {
+    new PPMImageHelper(PPMImageHelper.Format.P3, 0, 0);
+  }
 }